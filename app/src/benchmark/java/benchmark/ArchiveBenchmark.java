@@ -0,0 +1,130 @@
+package benchmark;
+
+import controller.LendingService;
+import controller.Simulator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import model.ContractArchive;
+import model.ContractRepository;
+import model.Item;
+import model.ItemRepository;
+import model.LendingClock;
+import model.MemberRepository;
+import model.ModelEventBus;
+import view.SimulationView;
+
+/**
+ * Measures what archiving ended contracts saves on the heap and costs in
+ * lookups.
+ *
+ * <p>
+ * The same simulated activity runs with every contract on the heap and with a
+ * {@link ContractArchive} taking the contracts ended more than the horizon
+ * ago. For both, the run time and the heap used afterwards are printed, then
+ * random contracts are looked up by ID, by item and by borrower, most of them
+ * archived in the second run.
+ * </p>
+ *
+ * <pre>
+ * ArchiveBenchmark [days=365] [bookingsPerDay=2000] [members=10000] [horizonDays=30] [lookups=100000]
+ * </pre>
+ */
+public class ArchiveBenchmark {
+  private static final String EMAIL = "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$";
+  private static final String PHONE = "\\d+";
+  private static final int BATCH = 4096;
+
+  /**
+   * Runs the simulation both ways with the lookups, printing the results.
+   *
+   * @param args optional days, bookings per day, member count, horizon and
+   *             lookup count
+   * @throws IOException if the archive cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    int days = args.length > 0 ? Integer.parseInt(args[0]) : 365;
+    int bookingsPerDay = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    int members = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+    int horizonDays = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+    int lookups = args.length > 4 ? Integer.parseInt(args[4]) : 100_000;
+
+    Run run = new Run(days, bookingsPerDay, members, horizonDays, null, lookups);
+    run = null;
+    Path directory = Files.createTempDirectory("archive-benchmark");
+    try (ContractArchive archive = new ContractArchive(directory)) {
+      run = new Run(days, bookingsPerDay, members, horizonDays, archive, lookups);
+      System.out.printf("archive: %,d contracts in %d segments, %,d KB, %.0f bytes per contract%n",
+          archive.countContracts(), archive.countSegments(), archive.getBytes() >> 10,
+          (double) archive.getBytes() / archive.countContracts());
+    } finally {
+      try (Stream<Path> files = Files.walk(directory)) {
+        for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * A simulated lending system, optionally archiving, and the lookups on it.
+   */
+  private static final class Run {
+    private Run(int days, int bookingsPerDay, int members, int horizonDays, ContractArchive archive,
+        int lookups) {
+      String label = archive != null ? "archived" : "on heap";
+      long nanos = -System.nanoTime();
+      ModelEventBus events = new ModelEventBus();
+      ContractRepository contracts = new ContractRepository(new LendingClock(), events);
+      if (archive != null) {
+        contracts.setArchive(archive, horizonDays, BATCH);
+      }
+      LendingService service = new LendingService(new MemberRepository(events), new ItemRepository(events),
+          contracts, EMAIL, PHONE);
+      Simulator simulator = new Simulator(service,
+          new SimulationView(new PrintStream(OutputStream.nullOutputStream())), 42);
+      simulator.populate(members, 2 * members, 1000);
+      simulator.run(days, bookingsPerDay, Math.max(1, bookingsPerDay / 20));
+      nanos += System.nanoTime();
+      System.out.printf("%-8s  %.3f s, %,d MB heap, %,d contracts on heap, %,d archived%n", label, nanos / 1e9,
+          usedHeap() >> 20, contracts.countContracts(), contracts.countArchivedContracts());
+
+      int total = contracts.countContracts() + contracts.countArchivedContracts();
+      List<Item> items = service.listItems();
+      Random random = new Random(7);
+      long found = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < lookups; i++) {
+        found += contracts.getContract("SIMC" + random.nextInt(total)) != null ? 1 : 0;
+      }
+      double byId = (System.nanoTime() - start) / 1e3 / lookups;
+      int listLookups = Math.max(1, lookups / 10);
+      start = System.nanoTime();
+      for (int i = 0; i < listLookups; i++) {
+        found += contracts.getContractsForItem(items.get(random.nextInt(items.size())).getId()).size();
+      }
+      double byItem = (System.nanoTime() - start) / 1e3 / listLookups;
+      start = System.nanoTime();
+      for (int i = 0; i < listLookups; i++) {
+        found += contracts.getContractsForBorrower("SIM" + random.nextInt(members)).size();
+      }
+      double byBorrower = (System.nanoTime() - start) / 1e3 / listLookups;
+      System.out.printf("%-8s  lookups: %.1f us by ID, %.1f us by item, %.1f us by borrower; %,d found%n", label,
+          byId, byItem, byBorrower, found);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package benchmark;
+
+import controller.AuditLog;
+import controller.LendingService;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import model.ContractRepository;
+import model.ItemRepository;
+import model.LendingClock;
+import model.MemberRepository;
+import model.ModelEventBus;
+import model.ModelEvents;
+
+/**
+ * Measures the latency an {@link AuditLog} adds to booking a contract.
+ *
+ * <p>
+ * Every round books the same number of non-conflicting contracts through the
+ * {@link LendingService} twice, on fresh repositories, once without and once
+ * with the audit log recording into a temporary directory, timing every
+ * booking on its own. The difference between the two runs is the cost of
+ * creating the event and encoding it into the ring; writing the files happens
+ * on the audit thread. As that difference is small next to the variation of a
+ * whole booking, the time spent in the audit log's recorder call is also timed
+ * on its own.
+ * </p>
+ *
+ * <pre>
+ * AuditBenchmark [contracts=1000000] [items=10000] [rounds=3]
+ * </pre>
+ */
+public class AuditBenchmark {
+  private static final String EMAIL = "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$";
+  private static final String PHONE = "\\d+";
+
+  /**
+   * Runs every round and prints the latency percentiles with and without the
+   * audit log.
+   *
+   * @param args optional contract count, item count and number of rounds
+   * @throws IOException if the audit files cannot be written or removed
+   */
+  public static void main(String[] args) throws IOException {
+    int contracts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int items = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    for (int round = 1; round <= rounds; round++) {
+      System.out.printf("round %d%n", round);
+      long[] plain = run(contracts, items, null);
+      Path directory = Files.createTempDirectory("audit");
+      long[] audited;
+      AuditLog audit = new AuditLog(directory);
+      TimedRecorder recorder = new TimedRecorder(audit, contracts);
+      try {
+        audited = run(contracts, items, recorder);
+      } finally {
+        audit.close();
+      }
+      print("without audit", plain);
+      print("with audit", audited);
+      print("recorder call", recorder.sorted());
+      System.out.printf("  added: mean %.0f ns, median %d ns; %d records written, %d waits for a full ring%n",
+          mean(audited) - mean(plain), audited[audited.length / 2] - plain[plain.length / 2], audit.getWritten(),
+          audit.getFullWaits());
+      try (Stream<Path> files = Files.list(directory)) {
+        for (Path file : (Iterable<Path>) files::iterator) {
+          Files.delete(file);
+        }
+      }
+      Files.delete(directory);
+    }
+  }
+
+  private static long[] run(int contracts, int items, Consumer<ModelEvents.ModelEvent> recorder) {
+    ModelEventBus events = new ModelEventBus();
+    MemberRepository members = new MemberRepository(events);
+    ItemRepository itemRepository = new ItemRepository(events);
+    ContractRepository contractRepository = new ContractRepository(new LendingClock(), events);
+    LendingService service = new LendingService(members, itemRepository, contractRepository, EMAIL, PHONE);
+    service.tryCreateMember("OWNER", "Owner", "owner@example.com", "1", 0);
+    service.tryCreateMember("BORROWER", "Borrower", "borrower@example.com", "2", 1000);
+    String[] itemIds = new String[items];
+    for (int i = 0; i < items; i++) {
+      itemIds[i] = service.tryCreateItem("OWNER", "Item " + i, 0).getValue().getId();
+    }
+    String[] contractIds = new String[contracts];
+    for (int i = 0; i < contracts; i++) {
+      contractIds[i] = "C" + i;
+    }
+    if (recorder != null) {
+      events.addRecorder(recorder);
+    }
+
+    LocalDate start = service.today().plusDays(1);
+    long[] nanos = new long[contracts];
+    for (int i = 0; i < contracts; i++) {
+      LocalDate from = start.plusDays(i / items * 2L);
+      long before = System.nanoTime();
+      service.tryCreateContract(contractIds[i], itemIds[i % items], "BORROWER", from, from);
+      nanos[i] = System.nanoTime() - before;
+    }
+    Arrays.sort(nanos);
+    return nanos;
+  }
+
+  private static void print(String label, long[] nanos) {
+    System.out.printf("  %-14s mean %6.0f ns, p50 %6d ns, p99 %7d ns, p99.9 %8d ns%n", label, mean(nanos),
+        nanos[nanos.length / 2], nanos[(int) (nanos.length * 0.99)], nanos[(int) (nanos.length * 0.999)]);
+  }
+
+  private static double mean(long[] nanos) {
+    long total = 0;
+    for (long n : nanos) {
+      total += n;
+    }
+    return (double) total / nanos.length;
+  }
+
+  /**
+   * Times the recorder calls for contracts created after it was added.
+   */
+  private static final class TimedRecorder implements Consumer<ModelEvents.ModelEvent> {
+    private final AuditLog audit;
+    private final long[] nanos;
+    private int count;
+
+    private TimedRecorder(AuditLog audit, int contracts) {
+      this.audit = audit;
+      this.nanos = new long[contracts];
+    }
+
+    @Override
+    public void accept(ModelEvents.ModelEvent event) {
+      long before = System.nanoTime();
+      audit.accept(event);
+      long elapsed = System.nanoTime() - before;
+      if (event instanceof ModelEvents.ContractCreated && count < nanos.length) {
+        nanos[count++] = elapsed;
+      }
+    }
+
+    private long[] sorted() {
+      long[] result = Arrays.copyOf(nanos, count);
+      Arrays.sort(result);
+      return result;
+    }
+  }
+}
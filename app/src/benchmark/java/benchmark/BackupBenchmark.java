@@ -0,0 +1,172 @@
+package benchmark;
+
+import controller.LendingService;
+import controller.OnlineBackup;
+import controller.Simulator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import model.ContractRepository;
+import model.ItemRepository;
+import model.LendingClock;
+import model.MemberRepository;
+import model.ModelEventBus;
+import view.SimulationView;
+
+/**
+ * Measures what an {@link OnlineBackup} does to the latency of booking a
+ * contract, and how fast it writes.
+ *
+ * <p>
+ * A simulated lending system is built first. Then contracts are booked one at
+ * a time, each timed on its own: without a backup, with the backup recording
+ * the changes into its image, while a full backup is written and while an
+ * incremental backup of the bookings made during the full one is written.
+ * The bookings run on the main thread and the backup on its own, so on a
+ * machine with fewer cores than that they compete for the CPU as well as for
+ * the disk. Last, a full backup is written without a bandwidth limit and
+ * without bookings, for the rate the backup itself reaches.
+ * </p>
+ *
+ * <pre>
+ * BackupBenchmark [members=50000] [days=90] [bookingsPerDay=2000] [bookings=200000] [megabytesPerSecond=16]
+ * </pre>
+ */
+public class BackupBenchmark {
+  private static final String EMAIL = "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$";
+  private static final String PHONE = "\\d+";
+  private static final int ITEMS = 10_000;
+
+  private static int booked;
+
+  /**
+   * Builds the system, runs every phase and prints the results.
+   *
+   * @param args optional member count, simulated days, bookings per simulated
+   *             day, bookings per phase and backup bandwidth in MB/s
+   * @throws Exception if the backup cannot be written or removed
+   */
+  public static void main(String[] args) throws Exception {
+    int members = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+    int days = args.length > 1 ? Integer.parseInt(args[1]) : 90;
+    int bookingsPerDay = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+    int bookings = args.length > 3 ? Integer.parseInt(args[3]) : 200_000;
+    long bytesPerSecond = (args.length > 4 ? Long.parseLong(args[4]) : 16) << 20;
+
+    ModelEventBus events = new ModelEventBus();
+    MemberRepository memberRepository = new MemberRepository(events);
+    ItemRepository itemRepository = new ItemRepository(events);
+    ContractRepository contractRepository = new ContractRepository(new LendingClock(), events);
+    LendingService service = new LendingService(memberRepository, itemRepository, contractRepository, EMAIL,
+        PHONE);
+    Simulator simulator = new Simulator(service, new SimulationView(new PrintStream(OutputStream.nullOutputStream())),
+        42);
+    simulator.populate(members, 2 * members, 1000);
+    simulator.run(days, bookingsPerDay, Math.max(1, bookingsPerDay / 20));
+    service.tryCreateMember("OWNER", "Owner", "owner@example.com", "1", 0);
+    service.tryCreateMember("BORROWER", "Borrower", "borrower@example.com", "2", 1000);
+    String[] itemIds = new String[ITEMS];
+    for (int i = 0; i < ITEMS; i++) {
+      itemIds[i] = service.tryCreateItem("OWNER", "Bench item " + i, 0).getValue().getId();
+    }
+    System.out.printf("model: %,d members, %,d items, %,d contracts%n", memberRepository.countMembers(),
+        itemRepository.getAllItems().size(), contractRepository.getAllContracts().size());
+
+    print("no backup", book(service, itemIds, bookings, null));
+    Path directory = Files.createTempDirectory("backup");
+    Path unlimited = Files.createTempDirectory("backup");
+    try (OnlineBackup backup = new OnlineBackup(directory, bytesPerSecond, memberRepository, itemRepository,
+        contractRepository)) {
+      events.addRecorder(backup);
+      print("recording", book(service, itemIds, bookings, null));
+
+      long start = System.nanoTime();
+      Future<Path> full = backup.backup(true);
+      long[] during = book(service, itemIds, Integer.MAX_VALUE, full);
+      printBackup("full", full.get(), System.nanoTime() - start, during);
+
+      start = System.nanoTime();
+      Future<Path> incremental = backup.backup(false);
+      during = book(service, itemIds, Integer.MAX_VALUE, incremental);
+      printBackup("incremental", incremental.get(), System.nanoTime() - start, during);
+      events.removeRecorder(backup);
+
+      try (OnlineBackup fast = new OnlineBackup(unlimited, Long.MAX_VALUE, memberRepository, itemRepository,
+          contractRepository)) {
+        start = System.nanoTime();
+        Path file = fast.backup(true).get();
+        long nanos = System.nanoTime() - start;
+        System.out.printf("unlimited full backup: %,d KB in %.3f s, %.1f MB/s%n", Files.size(file) >> 10,
+            nanos / 1e9, Files.size(file) / (nanos / 1e9) / (1 << 20));
+      }
+    } finally {
+      delete(directory);
+      delete(unlimited);
+    }
+  }
+
+  /**
+   * Books non-conflicting contracts until the count is reached or the backup
+   * is done, whichever comes first, and returns their sorted latencies.
+   */
+  private static long[] book(LendingService service, String[] itemIds, int bookings, Future<?> backup)
+      throws ExecutionException, InterruptedException {
+    long[] nanos = new long[backup == null ? bookings : 1 << 16];
+    int count = 0;
+    LocalDate start = service.today().plusDays(1);
+    while (count < bookings && (backup == null || !backup.isDone())) {
+      int i = booked++;
+      LocalDate day = start.plusDays(i / itemIds.length * 2L);
+      long before = System.nanoTime();
+      service.tryCreateContract("BENCH" + i, itemIds[i % itemIds.length], "BORROWER", day, day);
+      if (count == nanos.length) {
+        nanos = Arrays.copyOf(nanos, 2 * count);
+      }
+      nanos[count++] = System.nanoTime() - before;
+    }
+    if (backup != null) {
+      backup.get();
+    }
+    nanos = Arrays.copyOf(nanos, count);
+    Arrays.sort(nanos);
+    return nanos;
+  }
+
+  private static void printBackup(String kind, Path file, long nanos, long[] during) throws IOException {
+    System.out.printf("%s backup: %,d KB in %.3f s, %.1f MB/s%n", kind, Files.size(file) >> 10, nanos / 1e9,
+        Files.size(file) / (nanos / 1e9) / (1 << 20));
+    if (during.length > 0) {
+      print("during " + kind, during);
+    }
+  }
+
+  private static void print(String label, long[] nanos) {
+    System.out.printf("  %-18s %,8d bookings, mean %6.0f ns, p50 %6d ns, p99 %7d ns, p99.9 %8d ns%n", label,
+        nanos.length, mean(nanos), nanos[nanos.length / 2], nanos[(int) (nanos.length * 0.99)],
+        nanos[(int) (nanos.length * 0.999)]);
+  }
+
+  private static double mean(long[] nanos) {
+    long total = 0;
+    for (long n : nanos) {
+      total += n;
+    }
+    return (double) total / nanos.length;
+  }
+
+  private static void delete(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+}
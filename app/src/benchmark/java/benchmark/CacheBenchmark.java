@@ -0,0 +1,106 @@
+package benchmark;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import model.JdbcMemberRepository;
+import model.JdbcStorage;
+import model.Member;
+import model.MemberRepositoryInterface;
+import model.ModelEventBus;
+import model.SegmentedLruCache;
+
+/**
+ * Measures the member cache on lookups by ID following a Zipf distribution,
+ * where a few members are looked up very often and most rarely.
+ *
+ * <p>
+ * The members are stored in the database at the JDBC URL, whose driver must be
+ * on the class path, and looked up through a {@link JdbcMemberRepository}
+ * holding them in its cache. The lookups run without a cache and with caches
+ * of 1%, 5% and 20% of the members' size; for each, the time per lookup, the hit
+ * rate and the evictions are printed.
+ * </p>
+ *
+ * <pre>
+ * CacheBenchmark [members=100000] [lookups=1000000] [skew=0.99] [url=jdbc:h2:mem:cache]
+ * </pre>
+ */
+public class CacheBenchmark {
+  private static final String EMAIL = "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$";
+  private static final String PHONE = "\\d+";
+  // Roughly what one member weighs in the cache
+  private static final int MEMBER_BYTES = 256;
+
+  /**
+   * Runs the lookups with every cache size, printing the results.
+   *
+   * @param args optional member count, lookup count, Zipf exponent and JDBC
+   *             URL
+   */
+  public static void main(String[] args) {
+    int members = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+    double skew = args.length > 2 ? Double.parseDouble(args[2]) : 0.99;
+    String url = args.length > 3 ? args[3] : "jdbc:h2:mem:cache";
+
+    List<Member> batch = new ArrayList<>(members);
+    for (int i = 0; i < members; i++) {
+      batch.add(new Member("Z" + i, "Member " + i, "zipf" + i + "@example.com", String.valueOf(1_000_000 + i), 100,
+          EMAIL, PHONE));
+    }
+    String[] keys = zipfKeys(members, lookups, skew, new Random(42));
+    try (JdbcStorage storage = new JdbcStorage(url, 2)) {
+      new JdbcMemberRepository(storage, new ModelEventBus(), 0).addMembers(batch);
+      System.out.println("members in " + url);
+      run("no cache", new JdbcMemberRepository(storage, new ModelEventBus(), 0), keys);
+      for (double share : new double[] {0.01, 0.05, 0.2}) {
+        JdbcMemberRepository cached = new JdbcMemberRepository(storage, new ModelEventBus(),
+            (long) (share * members * MEMBER_BYTES));
+        run(String.format("%.0f%% cache", 100 * share), cached, keys);
+        SegmentedLruCache<String, Member> cache = cached.getCache();
+        System.out.printf("%-9s  %s, %,d KB%n", "", cache, cache.weight() >> 10);
+      }
+    } catch (SQLException e) {
+      System.out.println("The database is unavailable: " + e.getMessage());
+    }
+  }
+
+  private static void run(String label, MemberRepositoryInterface repository, String[] keys) {
+    long found = 0;
+    long start = System.nanoTime();
+    for (String key : keys) {
+      found += repository.getMemberById(key) != null ? 1 : 0;
+    }
+    double micros = (System.nanoTime() - start) / 1e3 / keys.length;
+    System.out.printf("%-9s  %.2f us per lookup, %,d found%n", label, micros, found);
+  }
+
+  /**
+   * Draws the IDs to look up, the member of rank r with a probability
+   * proportional to 1 / r^skew, the ranks shuffled over the members.
+   */
+  private static String[] zipfKeys(int members, int lookups, double skew, Random random) {
+    double[] cumulative = new double[members];
+    double sum = 0;
+    for (int rank = 0; rank < members; rank++) {
+      sum += 1 / Math.pow(rank + 1, skew);
+      cumulative[rank] = sum;
+    }
+    List<Integer> byRank = new ArrayList<>(members);
+    for (int i = 0; i < members; i++) {
+      byRank.add(i);
+    }
+    Collections.shuffle(byRank, random);
+    String[] keys = new String[lookups];
+    for (int i = 0; i < lookups; i++) {
+      int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      rank = rank >= 0 ? rank : Math.min(-rank - 1, members - 1);
+      keys[i] = "Z" + byRank.get(rank);
+    }
+    return keys;
+  }
+}
@@ -0,0 +1,158 @@
+package benchmark;
+
+import controller.ClusterLendingService;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures a lending cluster of 1, 2 and 4 node processes on this machine, and
+ * the rebalancing when a node joins.
+ *
+ * <p>
+ * For each size, the nodes are started as separate JVMs running
+ * {@code App --node 0}, a {@link ClusterLendingService} is created on them and
+ * given members and items, then client threads book contracts and check
+ * availability for a fixed time. The bookings and availability checks per
+ * second are printed. Finally a third node joins a cluster of two holding the
+ * same data, and the records moved and the time taken are printed.
+ * </p>
+ *
+ * <pre>
+ * ClusterBenchmark [members=5000] [seconds=10] [clients=16]
+ * </pre>
+ */
+public class ClusterBenchmark {
+  private static final String PREFIX = "Cluster node listening on port ";
+
+  /**
+   * Runs every cluster size, printing the rates.
+   *
+   * @param args optional member count, seconds per size and client threads
+   * @throws Exception if a node cannot be started or a client failed
+   */
+  public static void main(String[] args) throws Exception {
+    int members = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    int clients = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+    System.out.printf("%d cores, %d client threads%n", Runtime.getRuntime().availableProcessors(), clients);
+    for (int size : new int[] {1, 2, 4}) {
+      List<Process> processes = new ArrayList<>();
+      try {
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+          addresses.add(startNode(processes));
+        }
+        try (ClusterLendingService cluster = new ClusterLendingService(addresses)) {
+          List<String> itemIds = populate(cluster, members);
+          run(size, cluster, itemIds, members, seconds, clients);
+        }
+      } finally {
+        processes.forEach(Process::destroy);
+      }
+    }
+    rebalance(members);
+  }
+
+  private static void run(int size, ClusterLendingService cluster, List<String> itemIds, int members, int seconds,
+      int clients) throws InterruptedException, ExecutionException {
+    AtomicLong bookings = new AtomicLong();
+    AtomicLong checks = new AtomicLong();
+    long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+    ExecutorService pool = Executors.newFixedThreadPool(clients);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int c = 0; c < clients; c++) {
+      int client = c;
+      futures.add(pool.submit(() -> {
+        Random random = new Random(client);
+        LocalDate today = cluster.today();
+        for (int i = 0; System.nanoTime() < deadline; i++) {
+          String itemId = itemIds.get(random.nextInt(itemIds.size()));
+          LocalDate from = today.plusDays(1 + random.nextInt(365));
+          if (i % 2 == 0) {
+            cluster.tryCreateContract("C" + size + "-" + client + "-" + i, itemId,
+                "N" + random.nextInt(members), from, from.plusDays(random.nextInt(5)));
+            bookings.incrementAndGet();
+          } else {
+            cluster.isAvailable(itemId, from, from.plusDays(2));
+            checks.incrementAndGet();
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    pool.shutdown();
+    System.out.printf("%d node%s  %,8.0f bookings/s, %,8.0f availability checks/s, %,d contracts%n", size,
+        size == 1 ? " " : "s", bookings.get() / (double) seconds, checks.get() / (double) seconds,
+        cluster.listContracts().size());
+  }
+
+  private static void rebalance(int members) throws IOException {
+    List<Process> processes = new ArrayList<>();
+    try {
+      List<String> addresses = new ArrayList<>();
+      addresses.add(startNode(processes));
+      addresses.add(startNode(processes));
+      String joining = startNode(processes);
+      try (ClusterLendingService cluster = new ClusterLendingService(addresses)) {
+        List<String> itemIds = populate(cluster, members);
+        Random random = new Random(7);
+        for (int i = 0; i < itemIds.size(); i++) {
+          LocalDate from = cluster.today().plusDays(1 + random.nextInt(30));
+          cluster.tryCreateContract("R" + i, itemIds.get(i), "N" + random.nextInt(members), from, from);
+        }
+        long start = System.nanoTime();
+        int moved = cluster.join(joining);
+        System.out.printf("join     %,d of %,d records moved to the third node in %.0f ms%n", moved,
+            members + 2 * itemIds.size(), (System.nanoTime() - start) / 1e6);
+      }
+    } finally {
+      processes.forEach(Process::destroy);
+    }
+  }
+
+  private static List<String> populate(ClusterLendingService cluster, int members) {
+    Random random = new Random(42);
+    for (int i = 0; i < members; i++) {
+      cluster.createMember("N" + i, "Member " + i, "node" + i + "@example.com", String.valueOf(1_000_000 + i),
+          1_000_000);
+    }
+    List<String> itemIds = new ArrayList<>(2 * members);
+    for (int i = 0; i < 2 * members; i++) {
+      itemIds.add(cluster.createItem("N" + random.nextInt(members), "item " + i, 1 + random.nextInt(100)).getId());
+    }
+    return itemIds;
+  }
+
+  /**
+   * Starts a node on an ephemeral port and waits until it listens.
+   *
+   * @return the address of the node
+   */
+  private static String startNode(List<Process> processes) throws IOException {
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "controller.App",
+        "--node", "0").redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    processes.add(process);
+    BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+    for (String line = out.readLine(); line != null; line = out.readLine()) {
+      if (line.startsWith(PREFIX)) {
+        return "localhost:" + line.substring(PREFIX.length()).trim();
+      }
+    }
+    throw new IOException("Node exited before listening");
+  }
+}
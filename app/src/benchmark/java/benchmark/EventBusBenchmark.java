@@ -0,0 +1,134 @@
+package benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import model.Member;
+import model.MemberRepository;
+import model.ModelEventBus;
+import model.ModelEvents;
+
+/**
+ * Measures how fast model changes are published on a {@link ModelEventBus}.
+ *
+ * <p>
+ * Every operation adds one credit to a member of the repository, which
+ * publishes a credits change. The same number of operations runs with no
+ * subscriber, with one subscriber keeping up, and with one subscriber keeping
+ * up next to a slow one, whose buffer fills up so events for it are dropped
+ * while the publisher keeps its pace.
+ * </p>
+ *
+ * <pre>
+ * EventBusBenchmark [events=5000000] [members=10000] [rounds=3]
+ * </pre>
+ */
+public class EventBusBenchmark {
+  private static final int REQUEST_BATCH = 1024;
+
+  /**
+   * Runs every scenario and prints the publishing rate.
+   *
+   * @param args optional event count, member count and number of rounds
+   * @throws InterruptedException if interrupted while waiting for subscribers
+   */
+  public static void main(String[] args) throws InterruptedException {
+    int events = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+    int memberCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    for (int round = 1; round <= rounds; round++) {
+      System.out.printf("round %d%n", round);
+      run("no subscriber", events, memberCount, 0, false);
+      run("one subscriber", events, memberCount, 1, false);
+      run("one + slow", events, memberCount, 1, true);
+    }
+  }
+
+  private static void run(String label, int events, int memberCount, int fastSubscribers, boolean slowSubscriber)
+      throws InterruptedException {
+    ModelEventBus bus = new ModelEventBus();
+    MemberRepository repository = new MemberRepository(bus);
+    Member[] members = new Member[memberCount];
+    for (int i = 0; i < memberCount; i++) {
+      members[i] = new Member("M" + i, "Member " + i, "m" + i + "@example.com", String.valueOf(i), 0,
+          "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$", "\\d+");
+      repository.addMember(members[i]);
+    }
+    CountingSubscriber fast = fastSubscribers > 0 ? new CountingSubscriber(0) : null;
+    CountingSubscriber slow = slowSubscriber ? new CountingSubscriber(TimeUnit.MICROSECONDS.toNanos(100)) : null;
+    if (fast != null) {
+      bus.subscribe(fast);
+    }
+    if (slow != null) {
+      bus.subscribe(slow);
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < events; i++) {
+      members[i % memberCount].addCredits(1);
+    }
+    double publishSeconds = (System.nanoTime() - start) / 1e9;
+    bus.close();
+    if (fast != null) {
+      fast.completed.await();
+    }
+    double deliverSeconds = (System.nanoTime() - start) / 1e9;
+    if (slow != null) {
+      slow.completed.await(10, TimeUnit.SECONDS);
+    }
+    System.out.printf("  %-16s published %10.0f events/s, delivered %10.0f events/s, fast received %d, "
+        + "slow received %d, dropped %d%n", label, events / publishSeconds,
+        fast != null ? fast.received.get() / deliverSeconds : 0.0, fast != null ? fast.received.get() : 0,
+        slow != null ? slow.received.get() : 0, bus.getDropped());
+  }
+
+  /**
+   * Counts credit changes, requesting more in batches, optionally spending some
+   * time on each event.
+   */
+  private static final class CountingSubscriber implements Flow.Subscriber<ModelEvents.ModelEvent> {
+    private final long nanosPerEvent;
+    private final AtomicLong received = new AtomicLong();
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private Flow.Subscription subscription;
+    private long outstanding;
+
+    private CountingSubscriber(long nanosPerEvent) {
+      this.nanosPerEvent = nanosPerEvent;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      outstanding = REQUEST_BATCH;
+      subscription.request(REQUEST_BATCH);
+    }
+
+    @Override
+    public void onNext(ModelEvents.ModelEvent event) {
+      if (event instanceof ModelEvents.CreditsChanged) {
+        received.incrementAndGet();
+      }
+      if (nanosPerEvent > 0) {
+        LockSupport.parkNanos(nanosPerEvent);
+      }
+      if (--outstanding <= REQUEST_BATCH / 2) {
+        outstanding += REQUEST_BATCH;
+        subscription.request(REQUEST_BATCH);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      completed.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed.countDown();
+    }
+  }
+}
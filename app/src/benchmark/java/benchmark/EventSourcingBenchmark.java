@@ -0,0 +1,154 @@
+package benchmark;
+
+import controller.BorrowingStats;
+import controller.DomainEvent;
+import controller.EventLog;
+import controller.Projector;
+import controller.RepositoryProjection;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import model.ContractRepository;
+import model.ItemRepository;
+import model.MemberRepository;
+
+/**
+ * Measures how fast read models are rebuilt from an {@link EventLog}.
+ *
+ * <p>
+ * A log of generated events is written first: members registering, items
+ * being listed and then bookings, each followed by its expiry and the two
+ * credit moves charging the borrower and paying the owner. The borrowing
+ * statistics are rebuilt from it as one projection and as one shard per core
+ * in parallel, then caught up with events appended afterwards. As the
+ * repositories keep every contract on the heap, they are rebuilt from a
+ * smaller log of the same kind.
+ * </p>
+ *
+ * <pre>
+ * EventSourcingBenchmark [events=50000000] [members=100000] [repositoryEvents=5000000] [rounds=2]
+ * </pre>
+ */
+public class EventSourcingBenchmark {
+  private static final int APPENDED_EVENTS = 1_000_000;
+
+  /**
+   * Writes the logs, runs every rebuild and prints the rates.
+   *
+   * @param args optional event count, member count, event count of the
+   *             repository log and number of rounds
+   * @throws IOException          if a log cannot be written or read
+   * @throws InterruptedException if interrupted while rebuilding in parallel
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    long events = args.length > 0 ? Long.parseLong(args[0]) : 50_000_000L;
+    int members = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+    long repositoryEvents = args.length > 2 ? Long.parseLong(args[2]) : 5_000_000L;
+    int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+    int cores = Runtime.getRuntime().availableProcessors();
+
+    Path log = Files.createTempFile("events", ".log");
+    Path repositoryLog = Files.createTempFile("repository-events", ".log");
+    ExecutorService pool = Executors.newFixedThreadPool(cores);
+    try {
+      long start = System.nanoTime();
+      Generator generator = new Generator(members);
+      try (EventLog out = new EventLog(log)) {
+        generator.write(out, events);
+      }
+      report("written", events, Files.size(log), System.nanoTime() - start);
+      try (EventLog out = new EventLog(repositoryLog)) {
+        new Generator(members).write(out, repositoryEvents);
+      }
+
+      for (int round = 1; round <= rounds; round++) {
+        System.out.printf("round %d%n", round);
+        start = System.nanoTime();
+        Projector single = new Projector(log, new BorrowingStats());
+        long applied = single.catchUp();
+        report("stats, 1 shard", applied, Files.size(log), System.nanoTime() - start);
+
+        List<Projector> shards = new ArrayList<>();
+        for (int shard = 0; shard < cores; shard++) {
+          shards.add(new Projector(log, new BorrowingStats(shard, cores)));
+        }
+        start = System.nanoTime();
+        applied = Projector.catchUpAll(shards, pool) / cores;
+        report("stats, " + cores + "-way", applied, Files.size(log), System.nanoTime() - start);
+
+        long before = Files.size(log);
+        try (EventLog out = new EventLog(log)) {
+          generator.write(out, APPENDED_EVENTS);
+        }
+        start = System.nanoTime();
+        applied = single.catchUp();
+        report("stats, catch-up", applied, Files.size(log) - before, System.nanoTime() - start);
+
+        RepositoryProjection repositories = new RepositoryProjection(new MemberRepository(), new ItemRepository(),
+            new ContractRepository());
+        start = System.nanoTime();
+        applied = new Projector(repositoryLog, repositories).catchUp();
+        report("repositories", applied, Files.size(repositoryLog), System.nanoTime() - start);
+      }
+    } finally {
+      pool.shutdown();
+      Files.delete(log);
+      Files.delete(repositoryLog);
+    }
+  }
+
+  private static void report(String label, long events, long bytes, long nanos) {
+    double seconds = nanos / 1e9;
+    System.out.printf("  %-16s %,12d events in %7.3f s: %,12.0f events/s, %6.0f MB/s%n", label, events, seconds,
+        events / seconds, bytes / 1e6 / seconds);
+  }
+
+  /**
+   * Generates the events of members borrowing each other's items, continuing
+   * where the previous call stopped.
+   */
+  private static final class Generator {
+    private final int members;
+    private final int items;
+    private final LocalDate start = LocalDate.of(2020, 1, 1);
+    private long contracts;
+
+    private Generator(int members) {
+      this.members = members;
+      this.items = members;
+    }
+
+    private void write(EventLog out, long events) throws IOException {
+      long written = 0;
+      if (contracts == 0) {
+        for (int i = 0; i < members && written < events; i++, written++) {
+          out.append(DomainEvent.memberRegistered("M" + i, "Member " + i, "m" + i + "@example.com",
+              String.valueOf(1_000_000 + i), 1000));
+        }
+        for (int i = 0; i < items && written < events; i++, written += 2) {
+          out.append(DomainEvent.itemListed("I" + i, "M" + i % members, "Item " + i, cost(i)));
+          out.append(DomainEvent.creditsMoved("M" + i % members, cost(i)));
+        }
+      }
+      for (; written < events; written += 4, contracts++) {
+        int item = (int) (contracts % items);
+        String contractId = "C" + contracts;
+        String borrowerId = "M" + (contracts * 7919 % members);
+        LocalDate from = start.plusDays(contracts / items * 2);
+        out.append(DomainEvent.contractBooked(contractId, "I" + item, borrowerId, from, from.plusDays(1), true));
+        out.append(DomainEvent.of(DomainEvent.Type.CONTRACT_EXPIRED, contractId));
+        out.append(DomainEvent.creditsMoved(borrowerId, -cost(item)));
+        out.append(DomainEvent.creditsMoved("M" + item % members, cost(item)));
+      }
+    }
+
+    private static int cost(int item) {
+      return 1 + item % 50;
+    }
+  }
+}
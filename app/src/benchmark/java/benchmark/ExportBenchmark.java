@@ -0,0 +1,94 @@
+package benchmark;
+
+import controller.DataExporter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import model.Contract;
+import model.ContractRepository;
+import model.Item;
+import model.Member;
+import model.MemberRepository;
+
+/**
+ * Measures {@link DataExporter} on a large contract repository and ledger.
+ *
+ * <p>
+ * Besides the throughput, the bytes allocated per exported row are reported.
+ * They are all short-lived: nothing proportional to the number of rows is kept
+ * while exporting, unlike copying the whole repository first.
+ * </p>
+ *
+ * <pre>
+ * ExportBenchmark [contracts=1000000] [members=100000] [rounds=3]
+ * </pre>
+ */
+public class ExportBenchmark {
+  private static final String EMAIL_PATTERN = "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$";
+
+  /**
+   * Fills the repositories, then exports them in both formats.
+   *
+   * @param args optional contract count, member count and number of rounds
+   * @throws IOException if the files cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    int contractCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int memberCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    MemberRepository members = new MemberRepository();
+    for (int i = 0; i < memberCount; i++) {
+      members.addMember(new Member("M" + i, "Member, " + i, "m" + i + "@example.com", String.valueOf(i), i % 1000,
+          EMAIL_PATTERN, "\\d+"));
+    }
+    Member owner = members.getMemberById("M0");
+    ContractRepository contracts = new ContractRepository();
+    Item[] items = new Item[1000];
+    for (int i = 0; i < items.length; i++) {
+      items[i] = new Item(owner, "Item \"" + i + "\"", i % 100);
+    }
+    LocalDate start = LocalDate.of(2024, 1, 1);
+    for (int i = 0; i < contractCount; i++) {
+      LocalDate from = start.plusDays(i / items.length * 2L);
+      contracts.addContract(new Contract("C" + i, items[i % items.length],
+          members.getMemberById("M" + i % memberCount), from, from.plusDays(1)));
+    }
+
+    DataExporter exporter = new DataExporter(members, contracts);
+    Path directory = Files.createTempDirectory("export-benchmark");
+    for (int round = 1; round <= rounds; round++) {
+      System.out.printf("round %d%n", round);
+      for (DataExporter.Format format : DataExporter.Format.values()) {
+        Path contractFile = directory.resolve("contracts." + format.name().toLowerCase());
+        Path ledgerFile = directory.resolve("ledger." + format.name().toLowerCase());
+        run("contracts " + format, contractFile, () -> exporter.exportContracts(contractFile, format));
+        run("ledger " + format, ledgerFile, () -> exporter.exportLedger(ledgerFile, format));
+        Files.delete(contractFile);
+        Files.delete(ledgerFile);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  private static void run(String label, Path file, Export export) throws IOException {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+        .getThreadMXBean();
+    long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+    long startNanos = System.nanoTime();
+    long rows = export.rows();
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+    long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+    System.out.printf("  %-18s %9d rows %8.1f MB %10.0f rows/s %6.0f bytes allocated per row%n", label, rows,
+        Files.size(file) / 1e6, rows / seconds, (double) allocated / rows);
+  }
+
+  /**
+   * One export, returning the number of rows written.
+   */
+  private interface Export {
+    long rows() throws IOException;
+  }
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import model.CuckooFilter;
+
+/**
+ * Measures the {@link CuckooFilter} used for negative existence checks: the
+ * rate of keys added, the rate and false positive rate of lookups of absent
+ * keys, and the memory taken, once with the filter sized for the keys and once
+ * grown from a small table.
+ *
+ * <pre>
+ * FilterBenchmark [keys=10000000] [probes=10000000]
+ * </pre>
+ */
+public class FilterBenchmark {
+
+  /**
+   * Runs both filters, printing the results.
+   *
+   * @param args optional key count and number of absent keys looked up
+   */
+  public static void main(String[] args) {
+    int keys = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+    int probes = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+    run("sized", new CuckooFilter(keys), keys, probes);
+    run("grown", new CuckooFilter(1024), keys, probes);
+  }
+
+  private static void run(String label, CuckooFilter filter, int keys, int probes) {
+    long start = System.nanoTime();
+    for (int i = 0; i < keys; i++) {
+      filter.add("member" + i + "@example.com");
+    }
+    double addSeconds = (System.nanoTime() - start) / 1e9;
+
+    start = System.nanoTime();
+    int missing = 0;
+    for (int i = 0; i < keys; i += 10) {
+      missing += filter.mightContain("member" + i + "@example.com") ? 0 : 1;
+    }
+    double hitSeconds = (System.nanoTime() - start) / 1e9;
+
+    start = System.nanoTime();
+    long falsePositives = 0;
+    for (int i = 0; i < probes; i++) {
+      falsePositives += filter.mightContain("new" + i + "@example.org") ? 1 : 0;
+    }
+    double probeSeconds = (System.nanoTime() - start) / 1e9;
+
+    System.out.printf("%-5s  %,d keys in %,d KB (%.1f bits per key), %,.0f adds/s, %,.0f present lookups/s,"
+        + " %d missing%n", label, filter.size(), filter.getBytes() >> 10, 8.0 * filter.getBytes() / keys,
+        keys / addSeconds, keys / 10 / hitSeconds, missing);
+    System.out.printf("%-5s  %,.0f absent lookups/s, %,d false positives: %.4f%%%n", label, probes / probeSeconds,
+        falsePositives, 100.0 * falsePositives / probes);
+  }
+}
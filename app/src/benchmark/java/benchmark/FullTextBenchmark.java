@@ -0,0 +1,91 @@
+package benchmark;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import model.Contract;
+import model.ContractRepository;
+import model.Item;
+import model.ItemRepository;
+import model.Member;
+
+/**
+ * Measures multi-word item search over a large {@link ItemRepository}.
+ *
+ * <p>
+ * Item names are built from a small vocabulary so that common words match a
+ * large share of the items, which is the worst case for ranking. Every tenth
+ * item is booked today, so ranking by availability has to consult the
+ * contracts. Queries of one and two words are run with both rankings.
+ * </p>
+ *
+ * <pre>
+ * FullTextBenchmark [items=1000000] [queries=20000] [limit=20]
+ * </pre>
+ */
+public class FullTextBenchmark {
+  private static final String[] ADJECTIVES = { "cordless", "heavy", "compact", "electric", "folding", "camping",
+      "garden", "mountain", "kids", "vintage", "portable", "large" };
+  private static final String[] NOUNS = { "drill", "tent", "ladder", "saw", "bike", "kayak", "grill", "projector",
+      "mixer", "sander", "trailer", "canoe", "stove", "lantern", "speaker", "camera" };
+
+  /**
+   * Runs the benchmark and prints latency percentiles per ranking.
+   *
+   * @param args optional item count, query count and result limit
+   */
+  public static void main(String[] args) {
+    int itemCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int queries = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+    int limit = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+    Member owner = new Member("O1", "Owner", "owner@example.com", "1000", 0, "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$",
+        "\\d+");
+    Member borrower = new Member("B1", "Borrower", "borrower@example.com", "2000", 0,
+        "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$", "\\d+");
+    ItemRepository items = new ItemRepository();
+    ContractRepository contracts = new ContractRepository();
+    LocalDate today = LocalDate.now();
+    Random random = new Random(42);
+    long loadStart = System.nanoTime();
+    for (int i = 0; i < itemCount; i++) {
+      String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)]
+          + " " + Integer.toString(i % 5000, 36);
+      Item item = new Item(owner, name, random.nextInt(500));
+      items.addItem(item);
+      if (i % 10 == 0) {
+        contracts.addContract(new Contract("C" + i, item, borrower, today, today.plusDays(3)));
+      }
+    }
+    System.out.printf("loaded %d items in %.2fs%n", itemCount, (System.nanoTime() - loadStart) / 1e9);
+
+    String[] texts = new String[queries];
+    for (int i = 0; i < queries; i++) {
+      String noun = NOUNS[random.nextInt(NOUNS.length)];
+      texts[i] = random.nextBoolean() ? noun : ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + noun;
+    }
+    run("cost", items, texts, null, limit);
+    run("availability", items, texts, contracts.availableDuring(today, today), limit);
+  }
+
+  private static void run(String label, ItemRepository items, String[] texts, Predicate<Item> preferred,
+      int limit) {
+    for (int i = 0; i < Math.min(texts.length, 2000); i++) {
+      items.findItems(texts[i], preferred, limit); // Warm up
+    }
+    long[] latencies = new long[texts.length];
+    long found = 0;
+    for (int i = 0; i < texts.length; i++) {
+      long start = System.nanoTime();
+      List<Item> result = items.findItems(texts[i], preferred, limit);
+      latencies[i] = System.nanoTime() - start;
+      found += result.size();
+    }
+    Arrays.sort(latencies);
+    System.out.printf("%-12s queries=%d mean results=%.1f p50=%.0fus p99=%.0fus max=%.0fus%n", label,
+        texts.length, (double) found / texts.length, latencies[texts.length / 2] / 1e3,
+        latencies[(int) (texts.length * 0.99)] / 1e3, latencies[texts.length - 1] / 1e3);
+  }
+}
@@ -0,0 +1,114 @@
+package benchmark;
+
+import controller.HistoryProjection;
+import controller.LendingService;
+import controller.Simulator;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import model.ContractRepository;
+import model.Item;
+import model.ItemRepository;
+import model.LendingClock;
+import model.LendingHistory;
+import model.MemberRepository;
+import model.ModelEventBus;
+import view.SimulationView;
+
+/**
+ * Measures what keeping a {@link LendingHistory} costs and how fast questions
+ * about the past are answered.
+ *
+ * <p>
+ * The same simulated activity runs without and with a history recording it.
+ * The difference in run time is the cost of recording, the difference in heap
+ * used afterwards the memory the kept versions take. Then random balances,
+ * contracts and item bookings are looked up as of random past days.
+ * </p>
+ *
+ * <pre>
+ * HistoryBenchmark [days=365] [bookingsPerDay=2000] [members=10000] [queries=1000000]
+ * </pre>
+ */
+public class HistoryBenchmark {
+  private static final String EMAIL = "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$";
+  private static final String PHONE = "\\d+";
+
+  /**
+   * Runs the simulation both ways and the queries, printing the results.
+   *
+   * @param args optional days, bookings per day, member count and query count
+   */
+  public static void main(String[] args) {
+    int days = args.length > 0 ? Integer.parseInt(args[0]) : 365;
+    int bookingsPerDay = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    int members = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+    int queries = args.length > 3 ? Integer.parseInt(args[3]) : 1_000_000;
+
+    long nanos = -System.nanoTime();
+    Run run = new Run(days, bookingsPerDay, members, false);
+    nanos += System.nanoTime();
+    long heap = usedHeap();
+    System.out.printf("without history: %.3f s, %,d MB heap%n", nanos / 1e9, heap >> 20);
+    run = null;
+
+    nanos = -System.nanoTime();
+    run = new Run(days, bookingsPerDay, members, true);
+    nanos += System.nanoTime();
+    long historyHeap = usedHeap();
+    LendingHistory history = run.history;
+    LocalDate today = run.service.today();
+    System.out.printf("with history:    %.3f s, %,d MB heap (%,d MB more), %d days kept, %,d contracts%n",
+        nanos / 1e9, historyHeap >> 20, (historyHeap - heap) >> 20, history.countDays(),
+        history.asOf(today).countContracts());
+
+    List<Item> items = run.service.listItems();
+    Random random = new Random(7);
+    long found = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < queries; i++) {
+      LocalDate date = today.minusDays(random.nextInt(days + 1));
+      LendingHistory.Snapshot snapshot = history.asOf(date);
+      found += snapshot.getBalance("SIM" + random.nextInt(members)) != null ? 1 : 0;
+      found += snapshot.getContract("SIMC" + random.nextInt(days * bookingsPerDay)) != null ? 1 : 0;
+      found += snapshot.getBookings(items.get(random.nextInt(items.size())).getId(), date).size();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("as-of queries:   %,d in %.3f s, %.0f ns per balance, contract and bookings lookup; "
+        + "%,d found%n", queries, seconds, seconds * 1e9 / queries, found);
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * A simulated lending system, optionally with its history.
+   */
+  private static final class Run {
+    private final LendingService service;
+    private final LendingHistory history;
+
+    private Run(int days, int bookingsPerDay, int members, boolean recordHistory) {
+      ModelEventBus events = new ModelEventBus();
+      ContractRepository contracts = new ContractRepository(new LendingClock(), events);
+      history = recordHistory ? new LendingHistory() : null;
+      if (history != null) {
+        events.addRecorder(new HistoryProjection(history));
+        contracts.getClock().publishToday();
+      }
+      service = new LendingService(new MemberRepository(events), new ItemRepository(events), contracts, EMAIL,
+          PHONE);
+      Simulator simulator = new Simulator(service,
+          new SimulationView(new PrintStream(OutputStream.nullOutputStream())), 42);
+      simulator.populate(members, 2 * members, 1000);
+      simulator.run(days, bookingsPerDay, Math.max(1, bookingsPerDay / 20));
+    }
+  }
+}
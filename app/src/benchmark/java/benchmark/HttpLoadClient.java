@@ -0,0 +1,195 @@
+package benchmark;
+
+import controller.HttpApiServer;
+import controller.LendingService;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import model.ContractRepository;
+import model.Item;
+import model.ItemRepository;
+import model.MemberRepository;
+import view.JsonView;
+
+/**
+ * Load generator for the HTTP API.
+ *
+ * <p>
+ * Each connection is a keep-alive HTTP/1.1 socket driven by its own thread,
+ * sending read requests (member lookups and availability checks) back to back.
+ * Without a target address an in-process server with generated data is started
+ * on an ephemeral port.
+ * </p>
+ *
+ * <pre>
+ * HttpLoadClient [host:port] [connections=64] [seconds=10]
+ * </pre>
+ */
+public class HttpLoadClient {
+  private static final int MAX_LATENCY_MICROS = 100_000;
+
+  /**
+   * Runs the load test and prints throughput and latency percentiles.
+   *
+   * @param args optional target, connection count and duration
+   * @throws Exception if the embedded server cannot start or a worker fails
+   */
+  public static void main(String[] args) throws Exception {
+    HttpApiServer embedded = null;
+    String host = "localhost";
+    int port;
+    List<String> paths = new ArrayList<>();
+    if (args.length > 0 && !args[0].equals("-")) {
+      host = args[0].substring(0, args[0].indexOf(':'));
+      port = Integer.parseInt(args[0].substring(args[0].indexOf(':') + 1));
+      paths.add("/members");
+    } else {
+      LendingService service = new LendingService(new MemberRepository(), new ItemRepository(),
+          new ContractRepository(), "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$", "\\d+");
+      paths.addAll(seed(service, 200));
+      // As App does for --http, or the embedded server stalls on delayed ACKs
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+      embedded = new HttpApiServer(service, new JsonView(), 0);
+      embedded.start();
+      port = embedded.getPort();
+    }
+    int connections = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+    Worker[] workers = new Worker[connections];
+    for (int i = 0; i < connections; i++) {
+      workers[i] = new Worker(host, port, paths, i, deadline);
+      workers[i].start();
+    }
+    long requests = 0;
+    long errors = 0;
+    long[] histogram = new long[MAX_LATENCY_MICROS + 1];
+    for (Worker worker : workers) {
+      worker.join();
+      requests += worker.requests;
+      errors += worker.errors;
+      for (int i = 0; i < histogram.length; i++) {
+        histogram[i] += worker.histogram[i];
+      }
+    }
+    if (embedded != null) {
+      embedded.stop(0);
+    }
+
+    System.out.printf("connections=%d duration=%ds requests=%d errors=%d%n", connections, seconds, requests, errors);
+    System.out.printf("throughput=%.0f req/s%n", requests / (double) seconds);
+    System.out.printf("latency p50=%dus p99=%dus p99.9=%dus%n", percentile(histogram, requests, 0.50),
+        percentile(histogram, requests, 0.99), percentile(histogram, requests, 0.999));
+  }
+
+  private static List<String> seed(LendingService service, int members) {
+    List<String> paths = new ArrayList<>();
+    LocalDate today = LocalDate.now();
+    for (int i = 0; i < members; i++) {
+      String id = "M" + i;
+      service.createMember(id, "Member " + i, "m" + i + "@example.com", String.valueOf(1_000_000 + i), 1000);
+      Item item = service.createItem(id, "Item " + i, 10);
+      service.createContract("C" + i, item.getId(), id, today.plusDays(i % 30), today.plusDays(i % 30 + 2));
+      paths.add("/members/" + id);
+      paths.add("/availability?itemId=" + item.getId() + "&start=" + today + "&end=" + today.plusDays(7));
+    }
+    return paths;
+  }
+
+  private static long percentile(long[] histogram, long total, double fraction) {
+    long target = (long) Math.ceil(total * fraction);
+    long seen = 0;
+    for (int i = 0; i < histogram.length; i++) {
+      seen += histogram[i];
+      if (seen >= target) {
+        return i;
+      }
+    }
+    return MAX_LATENCY_MICROS;
+  }
+
+  /**
+   * One keep-alive connection issuing requests until the deadline.
+   */
+  private static final class Worker extends Thread {
+    private final String host;
+    private final int port;
+    private final List<String> paths;
+    private final long deadline;
+    private final long[] histogram = new long[MAX_LATENCY_MICROS + 1];
+    private int next;
+    private long requests;
+    private long errors;
+
+    Worker(String host, int port, List<String> paths, int offset, long deadline) {
+      this.host = host;
+      this.port = port;
+      this.paths = paths;
+      this.next = offset;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+      byte[][] requestBytes = new byte[paths.size()][];
+      for (int i = 0; i < requestBytes.length; i++) {
+        requestBytes[i] = ("GET " + paths.get(i) + " HTTP/1.1\r\nHost: " + host + "\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII);
+      }
+      try (Socket socket = new Socket(host, port)) {
+        socket.setTcpNoDelay(true);
+        OutputStream out = socket.getOutputStream();
+        InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+        while (System.nanoTime() < deadline) {
+          long start = System.nanoTime();
+          out.write(requestBytes[next++ % requestBytes.length]);
+          out.flush();
+          if (readResponse(in) >= 400) {
+            errors++;
+          }
+          long micros = (System.nanoTime() - start) / 1000;
+          histogram[(int) Math.min(micros, MAX_LATENCY_MICROS)]++;
+          requests++;
+        }
+      } catch (IOException e) {
+        errors++;
+      }
+    }
+
+    /**
+     * Reads one response and returns its status code.
+     */
+    private int readResponse(InputStream in) throws IOException {
+      String statusLine = readLine(in);
+      int status = Integer.parseInt(statusLine.substring(9, 12));
+      int length = 0;
+      for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+        if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+          length = Integer.parseInt(line.substring(15).trim());
+        }
+      }
+      in.readNBytes(length);
+      return status;
+    }
+
+    private String readLine(InputStream in) throws IOException {
+      StringBuilder line = new StringBuilder(64);
+      for (int b = in.read(); b != '\n'; b = in.read()) {
+        if (b < 0) {
+          throw new IOException("Connection closed");
+        }
+        if (b != '\r') {
+          line.append((char) b);
+        }
+      }
+      return line.toString();
+    }
+  }
+}
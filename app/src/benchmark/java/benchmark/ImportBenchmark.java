@@ -0,0 +1,94 @@
+package benchmark;
+
+import controller.CsvImporter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Random;
+import model.ContractRepository;
+import model.ItemRepository;
+import model.MemberRepository;
+import view.ImportView;
+
+/**
+ * Measures {@link CsvImporter} on generated member, item and contract files.
+ *
+ * <p>
+ * A share of the rows is invalid: bad emails, negative credits, unknown owners,
+ * reversed dates and bookings overlapping an earlier one. The files are written
+ * to a temporary directory, imported into empty repositories and deleted.
+ * </p>
+ *
+ * <pre>
+ * ImportBenchmark [rows=1000000] [failurePercent=5]
+ * </pre>
+ */
+public class ImportBenchmark {
+  /**
+   * Generates the files, imports them and prints the throughput per file.
+   *
+   * @param args optional row count per file and failure percentage
+   * @throws IOException if the files cannot be written or read
+   */
+  public static void main(String[] args) throws IOException {
+    int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int failurePercent = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+    Path directory = Files.createTempDirectory("import-benchmark");
+    Path members = directory.resolve("members.csv");
+    Path items = directory.resolve("items.csv");
+    Path contracts = directory.resolve("contracts.csv");
+    Random random = new Random(42);
+    LocalDate today = LocalDate.of(2024, 1, 1);
+    try (BufferedWriter out = Files.newBufferedWriter(members, StandardCharsets.UTF_8)) {
+      out.write("id,name,email,phone,credits\n");
+      for (int i = 0; i < rows; i++) {
+        boolean bad = random.nextInt(100) < failurePercent;
+        out.write("M" + i + ",\"Member " + i + "\",user" + i + (bad && i % 2 == 0 ? "-at-" : "@") + "example.com,"
+            + (1_000_000_000L + i) + "," + (bad && i % 2 == 1 ? -1 : 100) + "\n");
+      }
+    }
+    try (BufferedWriter out = Files.newBufferedWriter(items, StandardCharsets.UTF_8)) {
+      out.write("id,ownerId,name,cost\n");
+      for (int i = 0; i < rows; i++) {
+        boolean bad = random.nextInt(100) < failurePercent;
+        out.write("I" + i + "," + (bad ? "X" : "M") + random.nextInt(rows) + ",\"Item " + i + ", size "
+            + (i % 7) + "\"," + random.nextInt(500) + "\n");
+      }
+    }
+    try (BufferedWriter out = Files.newBufferedWriter(contracts, StandardCharsets.UTF_8)) {
+      out.write("id,itemId,borrowerId,start,end\n");
+      for (int i = 0; i < rows; i++) {
+        boolean bad = random.nextInt(100) < failurePercent;
+        LocalDate start = today.plusDays(random.nextInt(365));
+        LocalDate end = bad && i % 2 == 0 ? start.minusDays(1) : start.plusDays(random.nextInt(3));
+        // Every item gets a few bookings, so some of them overlap
+        out.write("C" + i + ",I" + random.nextInt(rows) + ",M" + random.nextInt(rows) + "," + start + "," + end
+            + "\n");
+      }
+    }
+
+    CsvImporter importer = new CsvImporter(new MemberRepository(), new ItemRepository(), new ContractRepository(),
+        "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$", "\\d+", new ImportView(System.out) {
+          @Override
+          public void displayRowError(long lineNumber, String row, String message) {
+            // Only the summaries are of interest here
+          }
+        });
+    long start = System.nanoTime();
+    long imported = importer.importMembers(members) + importer.importItems(items)
+        + importer.importContracts(contracts);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("total: %d rows, %d imported in %.2f s (%.0f rows/s) on %d cores%n", 3L * rows, imported,
+        seconds, 3 * rows / seconds, Runtime.getRuntime().availableProcessors());
+
+    for (Path file : new Path[] { members, items, contracts }) {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".errors"));
+    }
+    Files.delete(directory);
+  }
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+import model.Member;
+import model.MemberRepository;
+
+/**
+ * Measures prefix search over a large {@link MemberRepository}.
+ *
+ * <p>
+ * Fills the repository with generated members and runs random name, email,
+ * phone and ID prefixes of one to four characters, reporting the latency of
+ * fetching the first matches the selection prompts show.
+ * </p>
+ *
+ * <pre>
+ * SearchBenchmark [members=1000000] [queries=100000] [limit=10]
+ * </pre>
+ */
+public class SearchBenchmark {
+  private static final String[] FIRST_NAMES = { "Anna", "Bert", "Carla", "Dan", "Eva", "Frank", "Greta", "Hugo",
+      "Ines", "Jon", "Karin", "Lars", "Maja", "Nils", "Olga", "Per" };
+
+  /**
+   * Runs the benchmark and prints latency percentiles.
+   *
+   * @param args optional member count, query count and result limit
+   */
+  public static void main(String[] args) {
+    int memberCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int queries = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+    int limit = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    MemberRepository repository = new MemberRepository();
+    Random random = new Random(42);
+    long loadStart = System.nanoTime();
+    for (int i = 0; i < memberCount; i++) {
+      String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + Integer.toString(i, 36);
+      repository.addMember(new Member("M" + i, name, "user" + i + "@example.com", String.valueOf(10_000_000 + i),
+          100, "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$", "\\d+"));
+    }
+    System.out.printf("loaded %d members in %.2fs%n", memberCount, (System.nanoTime() - loadStart) / 1e9);
+
+    String[] prefixes = new String[queries];
+    for (int i = 0; i < queries; i++) {
+      String key;
+      switch (random.nextInt(4)) {
+        case 0:
+          key = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+          break;
+        case 1:
+          key = "user" + random.nextInt(memberCount);
+          break;
+        case 2:
+          key = String.valueOf(10_000_000 + random.nextInt(memberCount));
+          break;
+        default:
+          key = "M" + random.nextInt(memberCount);
+      }
+      prefixes[i] = key.substring(0, Math.min(key.length(), 1 + random.nextInt(4)));
+    }
+
+    for (int i = 0; i < Math.min(queries, 20_000); i++) {
+      repository.searchMembers(prefixes[i], limit); // Warm up
+    }
+    long[] latencies = new long[queries];
+    long matches = 0;
+    for (int i = 0; i < queries; i++) {
+      long start = System.nanoTime();
+      matches += repository.searchMembers(prefixes[i], limit).size();
+      latencies[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(latencies);
+    System.out.printf("queries=%d mean matches=%.1f p50=%.1fus p99=%.1fus max=%.1fus%n", queries,
+        (double) matches / queries, latencies[queries / 2] / 1e3, latencies[(int) (queries * 0.99)] / 1e3,
+        latencies[queries - 1] / 1e3);
+  }
+}
@@ -0,0 +1,196 @@
+package benchmark;
+
+import controller.NioSessionServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import model.ContractRepository;
+import model.ItemRepository;
+import model.Member;
+import model.MemberRepository;
+
+/**
+ * Simulates many terminal sessions against {@link NioSessionServer}.
+ *
+ * <p>
+ * Active sessions repeatedly open the member menu, list the members and go
+ * back, measuring the time from sending a line to receiving the next menu
+ * prompt. Idle sessions connect and never type. All sockets are driven by a
+ * single selector thread. Without a target address an in-process server is
+ * started and the heap cost per idle session is reported as well.
+ * </p>
+ *
+ * <pre>
+ * SessionLoadClient [host:port|-] [activeSessions=100] [idleSessions=1000] [rounds=50]
+ * </pre>
+ */
+public class SessionLoadClient {
+  private static final byte[] PROMPT = "Select an option: ".getBytes(StandardCharsets.US_ASCII);
+  private static final String[] SCRIPT = { "1", "3", "4" };
+
+  /**
+   * Runs the simulation and prints latency figures.
+   *
+   * @param args optional target, session counts and number of rounds
+   * @throws Exception if the server cannot be reached
+   */
+  public static void main(String[] args) throws Exception {
+    int active = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    int idle = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+    int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+    NioSessionServer embedded = null;
+    InetSocketAddress target;
+    if (args.length > 0 && !args[0].equals("-")) {
+      int colon = args[0].indexOf(':');
+      target = new InetSocketAddress(args[0].substring(0, colon), Integer.parseInt(args[0].substring(colon + 1)));
+    } else {
+      MemberRepository members = new MemberRepository();
+      for (int i = 0; i < 20; i++) {
+        members.addMember(new Member("M" + i, "Member " + i, "m" + i + "@example.com", String.valueOf(1000 + i),
+            100, "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$", "\\d+"));
+      }
+      embedded = new NioSessionServer(members, new ItemRepository(), new ContractRepository(), 0);
+      Thread serverThread = new Thread(embedded, "session-server");
+      serverThread.setDaemon(true);
+      serverThread.start();
+      target = new InetSocketAddress("localhost", embedded.getPort());
+    }
+
+    long heapBefore = usedHeap();
+    List<SocketChannel> idleChannels = new ArrayList<>();
+    for (int i = 0; i < idle; i++) {
+      idleChannels.add(SocketChannel.open(target));
+    }
+    if (embedded != null) {
+      while (embedded.getOpenSessions() < idle) {
+        Thread.sleep(10);
+      }
+      System.out.printf("idle sessions=%d heap per idle session=%d bytes%n", idle,
+          (usedHeap() - heapBefore) / Math.max(1, idle));
+    }
+
+    Selector selector = Selector.open();
+    ClientSession[] sessions = new ClientSession[active];
+    for (int i = 0; i < active; i++) {
+      SocketChannel channel = SocketChannel.open(target);
+      channel.configureBlocking(false);
+      sessions[i] = new ClientSession(channel, rounds * SCRIPT.length + 1);
+      channel.register(selector, SelectionKey.OP_READ, sessions[i]);
+      sessions[i].send(2); // The first prompt only appears once the session has input
+    }
+    long start = System.nanoTime();
+    int finished = 0;
+    while (finished < active) {
+      selector.select();
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        ClientSession session = (ClientSession) key.attachment();
+        if (session.onReadable()) {
+          finished++;
+          key.cancel();
+          session.channel.close();
+        }
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    long[] all = new long[0];
+    double[] sessionMeans = new double[active];
+    for (int i = 0; i < active; i++) {
+      long[] latencies = Arrays.copyOf(sessions[i].latencies, sessions[i].completed);
+      sessionMeans[i] = Arrays.stream(latencies).average().orElse(0) / 1000.0;
+      int offset = all.length;
+      all = Arrays.copyOf(all, offset + latencies.length);
+      System.arraycopy(latencies, 0, all, offset, latencies.length);
+    }
+    Arrays.sort(all);
+    Arrays.sort(sessionMeans);
+    System.out.printf("active sessions=%d commands=%d time=%.2fs throughput=%.0f commands/s%n", active, all.length,
+        seconds, all.length / seconds);
+    System.out.printf("command latency p50=%dus p99=%dus max=%dus%n", all[all.length / 2] / 1000,
+        all[(int) (all.length * 0.99)] / 1000, all[all.length - 1] / 1000);
+    System.out.printf("per-session mean latency min=%.0fus median=%.0fus max=%.0fus%n", sessionMeans[0],
+        sessionMeans[active / 2], sessionMeans[active - 1]);
+
+    for (SocketChannel channel : idleChannels) {
+      channel.close();
+    }
+    if (embedded != null) {
+      embedded.stop();
+    }
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * Client side of one scripted session.
+   */
+  private static final class ClientSession {
+    private final SocketChannel channel;
+    private final long[] latencies;
+    private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+    private int completed;
+    private int step;
+    private int promptsExpected;
+    private int promptMatch;
+    private long sentAt;
+
+    ClientSession(SocketChannel channel, int commands) {
+      this.channel = channel;
+      this.latencies = new long[commands];
+    }
+
+    void send(int prompts) throws IOException {
+      String line = step < latencies.length - 1 ? SCRIPT[step % SCRIPT.length] : "5";
+      ByteBuffer out = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.US_ASCII));
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+      promptsExpected = prompts;
+      sentAt = System.nanoTime();
+    }
+
+    /**
+     * Consumes available output and returns true when the session has ended.
+     */
+    boolean onReadable() throws IOException {
+      buffer.clear();
+      int count = channel.read(buffer);
+      if (count < 0) {
+        return true;
+      }
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        byte b = buffer.get();
+        promptMatch = b == PROMPT[promptMatch] ? promptMatch + 1 : (b == PROMPT[0] ? 1 : 0);
+        if (promptMatch == PROMPT.length) {
+          promptMatch = 0;
+          if (--promptsExpected == 0) {
+            latencies[completed++] = System.nanoTime() - sentAt;
+            step++;
+            send(1);
+          }
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package benchmark;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import model.Contract;
+import model.ContractRepository;
+import model.Item;
+import model.Member;
+import model.MemberRepository;
+import model.ModelEventBus;
+import model.Settlement;
+
+/**
+ * Measures how month-end settlement of expired contracts scales with the
+ * number of cores.
+ *
+ * <p>
+ * All contracts expire before the settlement date. Between runs they are made
+ * active again and added to a fresh repository, so every run ends and charges
+ * the same contracts. Runs use a pool of 1, 2, 4, ... cores up to the number
+ * available. With recorded set, a recorder is attached to the event bus of the
+ * members, as the audit and event logs are, so every charge also publishes a
+ * recorded event.
+ * </p>
+ *
+ * <pre>
+ * SettlementBenchmark [contracts=1000000] [members=100000] [rounds=3] [recorded=false]
+ * </pre>
+ */
+public class SettlementBenchmark {
+  /**
+   * Runs the settlement with every pool size and prints the speedup.
+   *
+   * @param args optional contract count, member count, number of rounds and
+   *             whether to record the events
+   */
+  public static void main(String[] args) {
+    int contractCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int memberCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+    boolean recorded = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+    ModelEventBus events = new ModelEventBus();
+    LongAdder recordedEvents = new LongAdder();
+    if (recorded) {
+      events.addRecorder(event -> recordedEvents.increment());
+    }
+    MemberRepository members = new MemberRepository(events);
+    for (int i = 0; i < memberCount; i++) {
+      members.addMember(new Member("M" + i, "Member " + i, "m" + i + "@example.com", String.valueOf(i), 1000,
+          "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$", "\\d+"));
+    }
+    // At most 1000 two-day contracts per item, so none of them overlap
+    Item[] items = new Item[Math.max(1000, (contractCount + 999) / 1000)];
+    for (int i = 0; i < items.length; i++) {
+      items[i] = new Item(members.getMemberById("M0"), "Item " + i, i % 50);
+    }
+    ContractRepository contracts = new ContractRepository();
+    LocalDate start = LocalDate.now().minusYears(6);
+    for (int i = 0; i < contractCount; i++) {
+      LocalDate from = start.plusDays(i / items.length * 2L);
+      contracts.addContract(new Contract("C" + i, items[i % items.length],
+          members.getMemberById("M" + i % memberCount), from, from.plusDays(1)));
+    }
+    List<Contract> all = contracts.getAllContracts();
+    LocalDate date = LocalDate.now();
+
+    int cores = Runtime.getRuntime().availableProcessors();
+    for (int round = 1; round <= rounds; round++) {
+      System.out.printf("round %d%n", round);
+      double baseline = 0;
+      for (int parallelism = 1; parallelism <= cores; parallelism = nextParallelism(parallelism, cores)) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        long startNanos = System.nanoTime();
+        Settlement settlement = Settlement.settle(contracts, members, date, pool);
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        pool.shutdown();
+        baseline = parallelism == 1 ? seconds : baseline;
+        System.out.printf("  %2d cores: %8d contracts in %.3f s (%10.0f contracts/s, speedup %.2f), %d overdrawn,"
+            + " %d events recorded%n", parallelism, settlement.getExpired(), seconds,
+            settlement.getExpired() / seconds, baseline / seconds, settlement.getOverdrawnBorrowers(),
+            recordedEvents.sumThenReset());
+        // Ended contracts leave the expiry queue, so start over with a fresh repository
+        contracts = new ContractRepository();
+        for (Contract contract : all) {
+          contract.setActive(true);
+          contracts.tryAddContract(contract);
+        }
+      }
+    }
+  }
+
+  private static int nextParallelism(int parallelism, int cores) {
+    return parallelism < cores && parallelism * 2 > cores ? cores : parallelism * 2;
+  }
+}
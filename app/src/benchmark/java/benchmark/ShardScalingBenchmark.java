@@ -0,0 +1,113 @@
+package benchmark;
+
+import controller.LendingServiceInterface;
+import controller.ShardedLendingService;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.Item;
+import model.LendingClock;
+import model.ModelEventBus;
+import model.Result;
+
+/**
+ * Measures how the write rate of {@link ShardedLendingService} grows with the
+ * number of shards, from 1 to 32.
+ *
+ * <p>
+ * For each shard count, members and items are created, then client threads
+ * book contracts on random items for random borrowers, most of them crossing
+ * shards, and settle every few thousand bookings. The bookings per second,
+ * the share of them that succeeded and the number of cores are printed; the
+ * rate cannot grow beyond the cores available.
+ * </p>
+ *
+ * <pre>
+ * ShardScalingBenchmark [members=20000] [bookings=200000] [clients=8]
+ * </pre>
+ */
+public class ShardScalingBenchmark {
+  private static final String EMAIL = "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$";
+  private static final String PHONE = "\\d+";
+  private static final int BOOKINGS_PER_DAY = 5000;
+
+  /**
+   * Runs every shard count, printing the rates.
+   *
+   * @param args optional member count, booking count and client thread count
+   * @throws InterruptedException if interrupted while waiting for the clients
+   * @throws ExecutionException   if a client failed
+   */
+  public static void main(String[] args) throws InterruptedException, ExecutionException {
+    int members = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+    int bookings = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+    int clients = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+    System.out.printf("%d cores, %d client threads%n", Runtime.getRuntime().availableProcessors(), clients);
+    for (int shards = 1; shards <= 32; shards *= 2) {
+      run(shards, members, bookings, clients);
+    }
+  }
+
+  private static void run(int shards, int members, int bookings, int clients)
+      throws InterruptedException, ExecutionException {
+    try (ShardedLendingService service = new ShardedLendingService(shards, new LendingClock(), new ModelEventBus(),
+        EMAIL, PHONE)) {
+      List<String> itemIds = populate(service, members);
+      ExecutorService pool = Executors.newFixedThreadPool(clients);
+      AtomicInteger booked = new AtomicInteger();
+      AtomicInteger sequence = new AtomicInteger();
+      List<Future<?>> futures = new ArrayList<>(clients);
+      long start = System.nanoTime();
+      for (int c = 0; c < clients; c++) {
+        int client = c;
+        futures.add(pool.submit(() -> book(service, itemIds, members, bookings / clients, client, booked,
+            sequence)));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      pool.shutdown();
+      int attempted = bookings / clients * clients;
+      System.out.printf("%2d shards  %,9.0f bookings/s, %.1f%% booked%n", shards, attempted / seconds,
+          100.0 * booked.get() / attempted);
+    }
+  }
+
+  private static List<String> populate(LendingServiceInterface service, int members) {
+    Random random = new Random(42);
+    List<String> itemIds = new ArrayList<>(2 * members);
+    for (int i = 0; i < members; i++) {
+      service.createMember("S" + i, "Member " + i, "shard" + i + "@example.com", String.valueOf(1_000_000 + i),
+          1_000_000);
+    }
+    for (int i = 0; i < 2 * members; i++) {
+      Item item = service.createItem("S" + random.nextInt(members), "item " + i, 1 + random.nextInt(100));
+      itemIds.add(item.getId());
+    }
+    return itemIds;
+  }
+
+  private static void book(LendingServiceInterface service, List<String> itemIds, int members, int count,
+      int client, AtomicInteger booked, AtomicInteger sequence) {
+    Random random = new Random(client);
+    for (int i = 0; i < count; i++) {
+      LocalDate from = service.today().plusDays(1 + random.nextInt(60));
+      Result<?> result = service.tryCreateContract("C" + client + "-" + i,
+          itemIds.get(random.nextInt(itemIds.size())), "S" + random.nextInt(members), from,
+          from.plusDays(random.nextInt(5)));
+      if (result.isOk()) {
+        booked.incrementAndGet();
+      }
+      if (sequence.incrementAndGet() % BOOKINGS_PER_DAY == 0) {
+        service.advanceAndSettle(1);
+      }
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package benchmark;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import model.Contract;
+import model.ContractRepository;
+import model.ContractRepositoryInterface;
+import model.Item;
+import model.ItemRepository;
+import model.ItemRepositoryInterface;
+import model.JdbcContractRepository;
+import model.JdbcItemRepository;
+import model.JdbcMemberRepository;
+import model.JdbcStorage;
+import model.LendingClock;
+import model.Member;
+import model.MemberRepository;
+import model.MemberRepositoryInterface;
+import model.ModelEventBus;
+
+/**
+ * Compares the in-memory repositories with the JDBC ones on the same work.
+ *
+ * <p>
+ * For each storage, members and items are added in batches, contracts booked
+ * one by one after checking the item is available, members looked up by email
+ * and items searched by word, then a credit is charged to every member in one
+ * transaction and the contracts are expired. The time of each step is printed. The JDBC run needs
+ * the driver of the URL on the class path; without it, it is reported as
+ * unavailable.
+ * </p>
+ *
+ * <pre>
+ * StorageBenchmark [members=20000] [contracts=50000] [lookups=20000] [url=jdbc:h2:mem:benchmark]
+ * </pre>
+ */
+public class StorageBenchmark {
+  private static final String EMAIL = "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$";
+  private static final String PHONE = "\\d+";
+  private static final long CACHE_BYTES = 16L << 20;
+  private static final String[] WORDS = {"drill", "ladder", "tent", "kayak", "saw", "projector", "bike", "mixer"};
+
+  /**
+   * Runs the work on both storages, printing the timings.
+   *
+   * @param args optional member count, contract count, lookup count and JDBC
+   *             URL
+   */
+  public static void main(String[] args) {
+    int members = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+    int contracts = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+    int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+    String url = args.length > 3 ? args[3] : "jdbc:h2:mem:benchmark";
+
+    ModelEventBus events = new ModelEventBus();
+    run("memory", new MemberRepository(events), new ItemRepository(events),
+        new ContractRepository(new LendingClock(), events), members, contracts, lookups);
+    try (JdbcStorage storage = new JdbcStorage(url, 2)) {
+      run("jdbc", new JdbcMemberRepository(storage, events, CACHE_BYTES),
+          new JdbcItemRepository(storage, events, CACHE_BYTES),
+          new JdbcContractRepository(storage, new LendingClock(), events), members, contracts, lookups);
+    } catch (SQLException e) {
+      System.out.println("jdbc      unavailable: " + e.getMessage());
+    }
+  }
+
+  private static void run(String label, MemberRepositoryInterface memberRepository,
+      ItemRepositoryInterface itemRepository, ContractRepositoryInterface contractRepository, int members,
+      int contracts, int lookups) {
+    Random random = new Random(42);
+    List<Member> memberBatch = new ArrayList<>(members);
+    for (int i = 0; i < members; i++) {
+      memberBatch.add(new Member("B" + i, "Member " + i, "member" + i + "@example.com", String.valueOf(1_000_000 + i),
+          1000, EMAIL, PHONE));
+    }
+    long start = System.nanoTime();
+    memberRepository.addMembers(memberBatch);
+    long addMembers = System.nanoTime() - start;
+
+    List<Item> itemBatch = new ArrayList<>(2 * members);
+    for (int i = 0; i < 2 * members; i++) {
+      itemBatch.add(new Item("BI" + i, memberBatch.get(i % members), WORDS[random.nextInt(WORDS.length)] + " "
+          + WORDS[random.nextInt(WORDS.length)] + " " + i, 1 + random.nextInt(100)));
+    }
+    start = System.nanoTime();
+    itemRepository.addItems(itemBatch);
+    long addItems = System.nanoTime() - start;
+
+    LocalDate today = contractRepository.getClock().today();
+    int booked = 0;
+    start = System.nanoTime();
+    for (int i = 0; i < contracts; i++) {
+      Item item = itemBatch.get(random.nextInt(itemBatch.size()));
+      LocalDate from = today.plusDays(random.nextInt(365));
+      LocalDate to = from.plusDays(random.nextInt(7));
+      if (contractRepository.isItemAvailable(item.getId(), from, to)) {
+        contractRepository.addContract(new Contract("BC" + i, item, memberBatch.get(random.nextInt(members)), from,
+            to));
+        booked++;
+      }
+    }
+    long book = System.nanoTime() - start;
+
+    long found = 0;
+    start = System.nanoTime();
+    for (int i = 0; i < lookups; i++) {
+      found += memberRepository.getMemberByEmail("member" + random.nextInt(members) + "@example.com") != null ? 1 : 0;
+    }
+    long byEmail = System.nanoTime() - start;
+    int searches = Math.max(1, lookups / 20);
+    start = System.nanoTime();
+    for (int i = 0; i < searches; i++) {
+      found += itemRepository.findItems(WORDS[random.nextInt(WORDS.length)], null, 10).size();
+    }
+    long search = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    contractRepository.inTransaction(() -> {
+      for (Member member : memberRepository.getMembers(0, members)) {
+        member.deductCredits(1);
+      }
+      return null;
+    });
+    long charge = System.nanoTime() - start;
+    start = System.nanoTime();
+    int expired = contractRepository.expireContracts(today.plusDays(400)).size();
+    long expire = System.nanoTime() - start;
+
+    System.out.printf("%-8s  add %,d members %.0f ms, %,d items %.0f ms; %,d of %,d booked %.1f us each%n", label,
+        members, addMembers / 1e6, itemBatch.size(), addItems / 1e6, booked, contracts, book / 1e3 / contracts);
+    System.out.printf("%-8s  %.1f us by email, %.1f us per search, %.0f ms charging, %,d expired in %.0f ms;"
+        + " %,d found%n", label, byEmail / 1e3 / lookups, search / 1e3 / searches, charge / 1e6, expired,
+        expire / 1e6, found);
+  }
+}
@@ -0,0 +1,113 @@
+package benchmark;
+
+import java.util.Random;
+import model.Member;
+import model.MemberRepository;
+import model.ModelExceptions;
+import model.Result;
+
+/**
+ * Compares the ways of rejecting invalid rows during a bulk member import.
+ *
+ * <p>
+ * A share of the generated rows fails, split evenly between an invalid email,
+ * negative credits and an email that is already taken. Each mode imports the
+ * same rows into a fresh repository:
+ * </p>
+ * <ul>
+ * <li>result: {@link Member#create} and {@link MemberRepository#tryAddMember},
+ * no exceptions at all</li>
+ * <li>stackless: the constructor and {@link MemberRepository#addMember},
+ * catching the model exceptions</li>
+ * <li>stack trace: as stackless, but every failure also creates an exception
+ * with a stack trace, which is what each failure used to cost</li>
+ * </ul>
+ *
+ * <pre>
+ * ValidationBenchmark [rows=1000000] [failurePercent=30] [rounds=5]
+ * </pre>
+ */
+public class ValidationBenchmark {
+  private static final String EMAIL_PATTERN = "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$";
+  private static final String PHONE_PATTERN = "\\d+";
+
+  /**
+   * Runs every mode and prints its throughput.
+   *
+   * @param args optional row count, failure percentage and number of rounds
+   */
+  public static void main(String[] args) {
+    int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int failurePercent = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+    String[] emails = new String[rows];
+    int[] credits = new int[rows];
+    Random random = new Random(42);
+    for (int i = 0; i < rows; i++) {
+      emails[i] = "user" + i + "@example.com";
+      credits[i] = 100;
+      if (random.nextInt(100) < failurePercent) {
+        switch (random.nextInt(3)) {
+          case 0:
+            emails[i] = "user" + i + "-at-example.com";
+            break;
+          case 1:
+            credits[i] = -1;
+            break;
+          default:
+            emails[i] = "user" + Math.max(0, i - 1) + "@example.com";
+        }
+      }
+    }
+
+    for (int round = 1; round <= rounds; round++) {
+      System.out.printf("round %d%n", round);
+      report("result", rows, () -> {
+        MemberRepository repository = new MemberRepository();
+        int failed = 0;
+        for (int i = 0; i < rows; i++) {
+          Result<Member> member = Member.create("M" + i, "Member", emails[i], String.valueOf(i), credits[i],
+              EMAIL_PATTERN, PHONE_PATTERN);
+          if (!member.isOk() || !repository.tryAddMember(member.getValue()).isOk()) {
+            failed++;
+          }
+        }
+        return failed;
+      });
+      report("stackless", rows, () -> importThrowing(rows, emails, credits, false));
+      report("stack trace", rows, () -> importThrowing(rows, emails, credits, true));
+    }
+  }
+
+  private static int importThrowing(int rows, String[] emails, int[] credits, boolean captureStackTrace) {
+    MemberRepository repository = new MemberRepository();
+    int failed = 0;
+    for (int i = 0; i < rows; i++) {
+      try {
+        repository.addMember(new Member("M" + i, "Member", emails[i], String.valueOf(i), credits[i], EMAIL_PATTERN,
+            PHONE_PATTERN));
+      } catch (ModelExceptions.ModelException e) {
+        if (captureStackTrace && new RuntimeException(e.getMessage()).getStackTrace().length < 0) {
+          throw e; // Never happens; keeps the stack trace from being optimized away
+        }
+        failed++;
+      }
+    }
+    return failed;
+  }
+
+  private static void report(String label, int rows, Import run) {
+    long start = System.nanoTime();
+    int failed = run.rows();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("  %-12s %8.0f rows/s (%d of %d rejected)%n", label, rows / seconds, failed, rows);
+  }
+
+  /**
+   * One import run, returning the number of rejected rows.
+   */
+  private interface Import {
+    int rows();
+  }
+}
@@ -1,43 +1,296 @@
 package controller;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 import model.Contract;
+import model.ContractArchive;
 import model.ContractRepository;
+import model.ContractRepositoryInterface;
 import model.Item;
 import model.ItemRepository;
+import model.ItemRepositoryInterface;
+import model.JdbcContractRepository;
+import model.JdbcItemRepository;
+import model.JdbcMemberRepository;
+import model.JdbcStorage;
+import model.LendingClock;
+import model.LendingHistory;
 import model.Member;
 import model.MemberRepository;
+import model.MemberRepositoryInterface;
+import model.ModelEventBus;
 import model.ModelExceptions;
+import view.BatchView;
 import view.ContractView;
+import view.ExportView;
+import view.ImportView;
 import view.ItemView;
+import view.JsonView;
 import view.MainView;
 import view.MemberView;
+import view.SimulationView;
 
 /**
  * Main application class for setting up and starting the system.
  */
 public class App {
+  private static final int ARCHIVE_HORIZON_DAYS = 90;
+  private static final int ARCHIVE_BATCH = 4096;
+  private static final int JDBC_CONNECTIONS = 4;
+  private static final long CACHE_BYTES = 16L << 20;
+  private static final long BACKUP_MINUTES = 1;
+  private static final int BACKUPS_PER_FULL = 60;
+  private static final long BACKUP_BYTES_PER_SECOND = 8L << 20;
+
   /**
    * The main method serves as the entry point for the application.
    * All resources like scanners are properly closed.
    *
-   * @param args command-line arguments passed to the application (not used in
-   *             this application)
+   * <p>
+   * The arguments are the options of {@link AppOptions}, followed by one of the
+   * modes below; without a mode the local console menu runs.
+   * </p>
+   *
+   * <pre>
+   * --http [port]                                serves the JSON API
+   * --sessions [port]                            serves console sessions over TCP
+   * --batch [file]                               runs a command script, stdin if no file or "-"
+   * --import members.csv [items.csv [contracts.csv]]
+   *                                              loads the files before any of the other modes
+   * --export contracts|ledger file               writes the contracts or the credit ledger as CSV, or
+   *                                              binary if the file name ends with ".bin"
+   * --simulate days [bookingsPerDay] [members]   fast-forwards through generated lending activity
+   * --node [port]                                serves the model as one node of a --cluster, journaling
+   *                                              its credit transfers to the --event-log if given
+   * </pre>
+   *
+   * @param args command-line arguments passed to the application
+   * @throws IOException if the server cannot be started or the script read
    */
-  public static void main(String[] args) {
-    // Create views
-    MemberView memberView = new MemberView();
-    ItemView itemView = new ItemView();
-    ContractView contractView = new ContractView();
-    MainView mainView = new MainView();
+  public static void main(String[] args) throws IOException {
+    // Create views sharing one scanner, so piped input is not split between
+    // four read-ahead buffers
+    Scanner console = new Scanner(System.in, StandardCharsets.UTF_8.name());
+    MemberView memberView = new MemberView(console, System.out);
+    ItemView itemView = new ItemView(console, System.out);
+    ContractView contractView = new ContractView(console, System.out);
+    MainView mainView = new MainView(console, System.out);
+
+    AppOptions options;
+    try {
+      options = AppOptions.parse(args);
+    } catch (IllegalArgumentException e) {
+      mainView.displayMessage(e.getMessage());
+      return;
+    }
+    String[] mode = options.getMode();
+
+    // Create repositories (Ensure these are the same instances passed everywhere),
+    // publishing their changes on one bus
+    ModelEventBus events = new ModelEventBus();
+    MemberRepositoryInterface memberRepository;
+    ItemRepositoryInterface itemRepository;
+    ContractRepositoryInterface contractRepository;
+    if (options.getJdbcUrl() != null) {
+      JdbcStorage storage;
+      try {
+        storage = new JdbcStorage(options.getJdbcUrl(), JDBC_CONNECTIONS);
+      } catch (SQLException e) {
+        throw new IOException("Cannot open the database " + options.getJdbcUrl() + ": " + e.getMessage(), e);
+      }
+      // Serve repeated lookups by ID from the heap instead of the database
+      memberRepository = new JdbcMemberRepository(storage, events, CACHE_BYTES);
+      itemRepository = new JdbcItemRepository(storage, events, CACHE_BYTES);
+      contractRepository = new JdbcContractRepository(storage, new LendingClock(), events);
+      closeOnExit(storage, mainView, "Database not closed: ");
+    } else {
+      ContractRepository contracts = new ContractRepository(new LendingClock(), events);
+      // Keep only active and recent contracts on the heap
+      if (options.getArchiveDirectory() != null) {
+        ContractArchive archive = new ContractArchive(options.getArchiveDirectory());
+        contracts.setArchive(archive, ARCHIVE_HORIZON_DAYS, ARCHIVE_BATCH);
+        closeOnExit(archive, mainView, "Contract archive not closed: ");
+      }
+      memberRepository = new MemberRepository(events);
+      itemRepository = new ItemRepository(events);
+      contractRepository = contracts;
+    }
+
+    // Rebuild the repositories, the history of the past and a cluster node's credit transfers from the
+    // event log before recording anything new; a follower records nothing, it appends what the leader ships
+    long replayed = 0;
+    ReplicaLendingService replica = null;
+    HistoryProjection history = new HistoryProjection(new LendingHistory());
+    CreditLedger ledger = new CreditLedger();
+    if (options.getEventLogFile() != null) {
+      Projection repositories = new RepositoryProjection(memberRepository, itemRepository, contractRepository,
+          options.isNode());
+      Projector projector = new Projector(options.getEventLogFile(), event -> {
+        repositories.apply(event);
+        history.apply(event);
+        ledger.apply(event);
+      });
+      long start = System.nanoTime();
+      replayed = projector.catchUp();
+      if (replayed > 0) {
+        mainView.displayMessage("Rebuilt the model from " + replayed + " events in " + options.getEventLogFile()
+            + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+      }
+      if (options.getLeader() != null) {
+        replica = new ReplicaLendingService(new LendingService(memberRepository, itemRepository,
+            contractRepository, memberView.getEmailRegexPattern(), memberView.getPhoneRegexPattern()), projector,
+            contractRepository.getClock(), events, history, options.getLeader());
+        replica.start();
+        closeOnExit(replica, mainView, "Replica not closed: ");
+        mainView.displayMessage("Following the event log of " + options.getLeader());
+      } else {
+        EventLog eventLog = new EventLog(options.getEventLogFile());
+        if (eventLog.getTruncated() > 0) {
+          mainView.displayMessage("Cut off " + eventLog.getTruncated() + " bytes of a torn write at the end of "
+              + options.getEventLogFile());
+        }
+        events.addRecorder(eventLog);
+        ledger.recordTo(eventLog);
+        closeOnExit(eventLog, mainView, "Event log incomplete: ");
+        if (options.getReplicationPort() >= 0) {
+          ReplicationLeader replication = new ReplicationLeader(eventLog, contractRepository.getClock(),
+              options.getReplicationPort());
+          replication.start();
+          closeOnExit(replication, mainView, "Replication not stopped: ");
+          mainView.displayMessage("Replicating the event log on port " + replication.getPort());
+        }
+      }
+    }
+    if (options.getAuditDirectory() != null) {
+      AuditLog audit = new AuditLog(options.getAuditDirectory());
+      events.addRecorder(audit);
+      closeOnExit(audit, mainView, "Audit log incomplete: ");
+    }
+
+    // Keep the history of what happens from now on for questions about the past; a
+    // follower's history is fed what the leader ships until it is promoted
+    if (replica == null) {
+      events.addRecorder(history);
+    }
+
+    // Restore an empty model from the backups, through the bus so the event log, audit and history record it
+    if (options.getRestoreDirectory() != null && replayed == 0 && memberRepository.countMembers() == 0
+        && replica == null) {
+      int restored = OnlineBackup.restore(options.getRestoreDirectory(),
+          new RepositoryProjection(memberRepository, itemRepository, contractRepository));
+      mainView.displayMessage("Restored the model from " + restored + " backups in " + options.getRestoreDirectory());
+    }
+
+    // Log the date this process starts at, which the changes until the clock next moves are dated by
+    if (replica == null) {
+      contractRepository.getClock().publishToday();
+    }
+
+    // Setup initial test data, which a rebuilt model or a database already has, which
+    // a cluster node would hold whatever the ring says and which a follower gets shipped
+    if (replayed == 0 && memberRepository.countMembers() == 0 && !options.isNode() && replica == null) {
+      setupTestData(memberRepository, itemRepository, contractRepository, memberView, itemView, contractView);
+    }
 
-    // Create repositories (Ensure these are the same instances passed everywhere)
-    MemberRepository memberRepository = new MemberRepository();
-    ItemRepository itemRepository = new ItemRepository();
-    ContractRepository contractRepository = new ContractRepository();
+    // Back up from copy-on-write images in the background, whatever mode runs in the foreground
+    if (options.getBackupDirectory() != null) {
+      OnlineBackup backup = new OnlineBackup(options.getBackupDirectory(), BACKUP_BYTES_PER_SECOND, memberRepository,
+          itemRepository, contractRepository);
+      events.addRecorder(backup);
+      backup.start(BACKUP_MINUTES, TimeUnit.MINUTES, BACKUPS_PER_FULL);
+      closeOnExit(backup, mainView, "Backup not stopped: ");
+      mainView.displayMessage("Backing up to " + options.getBackupDirectory());
+    }
 
-    // Setup initial test data
-    setupTestData(memberRepository, itemRepository, contractRepository, memberView, itemView, contractView);
+    if (mode.length > 1 && mode[0].equals("--import")) {
+      CsvImporter importer = new CsvImporter(memberRepository, itemRepository, contractRepository,
+          memberView.getEmailRegexPattern(), memberView.getPhoneRegexPattern(), new ImportView(System.out));
+      int files = 1;
+      while (files < mode.length && !mode[files].startsWith("--")) {
+        files++;
+      }
+      importer.importMembers(Paths.get(mode[1]));
+      if (files > 2) {
+        importer.importItems(Paths.get(mode[2]));
+      }
+      if (files > 3) {
+        importer.importContracts(Paths.get(mode[3]));
+      }
+      mode = Arrays.copyOfRange(mode, files, mode.length);
+    }
+    if (mode.length > 2 && mode[0].equals("--export")) {
+      DataExporter exporter = new DataExporter(memberRepository, contractRepository);
+      Path file = Paths.get(mode[2]);
+      long start = System.nanoTime();
+      long rows = mode[1].equals("ledger") ? exporter.exportLedger(file, DataExporter.Format.of(file))
+          : exporter.exportContracts(file, DataExporter.Format.of(file));
+      new ExportView(System.out).displayExportSummary(mode[2], rows, Files.size(file), System.nanoTime() - start);
+      return;
+    }
+    if (mode.length > 0 && mode[0].equals("--http")) {
+      int port = mode.length > 1 ? Integer.parseInt(mode[1]) : 8080;
+      // The JDK server writes headers and body separately; without TCP_NODELAY
+      // keep-alive clients stall on delayed ACKs for ~40 ms per request. The
+      // property is JVM-wide, so it is only set here, where this process is
+      // the server, and a -D given at launch wins.
+      if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+      }
+      LendingServiceInterface service = createService(replica, options, memberRepository, itemRepository,
+          contractRepository, memberView);
+      HttpApiServer server = new HttpApiServer(service, history.getHistory(), new JsonView(), port);
+      server.start();
+      mainView.displayMessage("HTTP API listening on port " + server.getPort());
+      return;
+    }
+    if (mode.length > 0 && mode[0].equals("--batch")) {
+      LendingServiceInterface service = createService(replica, options, memberRepository, itemRepository,
+          contractRepository, memberView);
+      InputStream source = mode.length > 1 && !mode[1].equals("-") ? Files.newInputStream(Paths.get(mode[1]))
+          : System.in;
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8),
+          1 << 20)) {
+        new BatchRunner(service, new BatchView(System.out)).run(reader);
+      }
+      return;
+    }
+    if (mode.length > 1 && mode[0].equals("--simulate")) {
+      int bookingsPerDay = mode.length > 2 ? Integer.parseInt(mode[2]) : 1000;
+      int members = mode.length > 3 ? Integer.parseInt(mode[3]) : 10_000;
+      LendingServiceInterface service = createService(replica, options, memberRepository, itemRepository,
+          contractRepository, memberView);
+      Simulator simulator = new Simulator(service, new SimulationView(System.out), 42);
+      simulator.populate(members, 2 * members, 1000);
+      simulator.run(Integer.parseInt(mode[1]), bookingsPerDay, Math.max(1, bookingsPerDay / 20));
+      return;
+    }
+    if (options.isNode()) {
+      ClusterNode clusterNode = new ClusterNode(memberRepository, itemRepository, contractRepository, ledger,
+          memberView.getEmailRegexPattern(), memberView.getPhoneRegexPattern(),
+          mode.length > 1 ? Integer.parseInt(mode[1]) : 7171);
+      clusterNode.start();
+      mainView.displayMessage("Cluster node listening on port " + clusterNode.getPort());
+      return;
+    }
+    if (mode.length > 0 && mode[0].equals("--sessions")) {
+      int port = mode.length > 1 ? Integer.parseInt(mode[1]) : 7070;
+      NioSessionServer server = new NioSessionServer(memberRepository, itemRepository, contractRepository, port);
+      mainView.displayMessage("Console sessions on port " + server.getPort());
+      server.run();
+      return;
+    }
 
     // Create controllers using the same repository instances
     MemberController memberController = new MemberController(memberRepository, memberView);
@@ -49,13 +302,51 @@ public class App {
     MainController mainController = new MainController(memberController, itemController, contractController, mainView);
     mainController.start();
 
-    // Close scanners
-    memberView.close();
-    itemView.close();
-    contractView.close();
+    // Close the shared scanner
     mainView.close();
   }
 
+  /**
+   * Creates the service behind the non-interactive modes: on the repositories,
+   * the replica if the repositories follow a leader, on the nodes of a cluster
+   * if nodes are given, or on shards the repositories are moved to if shards
+   * are requested.
+   */
+  private static LendingServiceInterface createService(ReplicaLendingService replica, AppOptions options,
+      MemberRepositoryInterface memberRepository, ItemRepositoryInterface itemRepository,
+      ContractRepositoryInterface contractRepository, MemberView memberView) {
+    if (replica != null) {
+      return replica;
+    }
+    if (options.getClusterNodes() != null) {
+      ClusterLendingService service = new ClusterLendingService(options.getClusterNodes());
+      Runtime.getRuntime().addShutdownHook(new Thread(service::close));
+      return service;
+    }
+    if (options.getShards() > 0) {
+      ShardedLendingService service = new ShardedLendingService(options.getShards(), memberRepository, itemRepository,
+          contractRepository, memberView.getEmailRegexPattern(), memberView.getPhoneRegexPattern());
+      Runtime.getRuntime().addShutdownHook(new Thread(service::close));
+      return service;
+    }
+    return new LendingService(memberRepository, itemRepository, contractRepository,
+        memberView.getEmailRegexPattern(), memberView.getPhoneRegexPattern());
+  }
+
+  /**
+   * Closes the log or database when the JVM exits, so buffered records are
+   * written.
+   */
+  private static void closeOnExit(Closeable log, MainView mainView, String failure) {
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        log.close();
+      } catch (IOException | RuntimeException e) {
+        mainView.displayMessage(failure + e.getMessage());
+      }
+    }));
+  }
+
   /**
    * Sets up initial test data for the application.
    *
@@ -66,8 +357,9 @@ public class App {
    * @param itemView           the item view
    * @param contractView       the contract view
    */
-  private static void setupTestData(MemberRepository memberRepository, ItemRepository itemRepository,
-      ContractRepository contractRepository, MemberView memberView, ItemView itemView, ContractView contractView) {
+  private static void setupTestData(MemberRepositoryInterface memberRepository, ItemRepositoryInterface itemRepository,
+      ContractRepositoryInterface contractRepository, MemberView memberView, ItemView itemView,
+      ContractView contractView) {
     try {
       // Retrieve validation patterns from the view
       String emailPattern = memberView.getEmailRegexPattern();
@@ -0,0 +1,288 @@
+package controller;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The options given before the mode on the command line of {@link App}, which
+ * choose where the model is kept and what runs beside the mode.
+ *
+ * <pre>
+ * --audit directory        writes every change to audit files in the directory
+ * --event-log file         rebuilds the model from the events in the file and appends every change to it
+ * --archive directory      moves contracts ended more than 90 days ago to compressed files in the directory
+ * --jdbc url               keeps the model in the database at the JDBC URL, caching the members and items
+ *                          looked up most
+ * --shards n               moves the model to n in-memory shards, each with its own thread, for the --http,
+ *                          --batch and --simulate modes
+ * --cluster host:port,...  runs the --http, --batch and --simulate modes on the cluster nodes listed
+ * --replicate port         ships the event log to followers connecting to the port
+ * --follow host:port       keeps the event log as a copy of the leader's and serves the replicated model
+ *                          read-only until promoted
+ * --restore directory      starts an empty model from the backups in the directory
+ * --backup directory       backs the model up to the directory while it runs, in full at once and every
+ *                          hour and incrementally every minute
+ * </pre>
+ *
+ * <p>
+ * The options may come in any order, each at most once, and the first
+ * argument that is not one of them starts the mode. Some of them refuse to
+ * be combined, rather than one silently winning over the other:
+ * </p>
+ *
+ * <ul>
+ * <li>--replicate and --follow need --event-log, the file shipped or kept,
+ * and exclude each other.</li>
+ * <li>--jdbc excludes --event-log, as the database keeps the model already
+ * and replaying the log into it would apply every change twice.</li>
+ * <li>--shards excludes --jdbc and --archive, as the shards hold the model
+ * on the heap, so the database or the archive would miss every change.</li>
+ * <li>--cluster excludes --shards, as the nodes hold the model instead.</li>
+ * <li>--follow excludes --shards, --cluster and --restore, as a follower
+ * serves the model the leader ships.</li>
+ * <li>--follow needs the --http, --batch or --simulate mode, the ones run on
+ * the replica, which refuses changes and reads under the lock the follower
+ * applies shipments with. The console, --sessions, --import, --export and
+ * --node would change or read the repositories behind its back.</li>
+ * <li>The --node mode excludes --shards and --cluster, as a node serves its
+ * own part of the model.</li>
+ * </ul>
+ */
+final class AppOptions {
+  private Path auditDirectory;
+  private Path eventLogFile;
+  private Path archiveDirectory;
+  private String jdbcUrl;
+  private int shards;
+  private List<String> clusterNodes;
+  private int replicationPort = -1;
+  private String leader;
+  private Path backupDirectory;
+  private Path restoreDirectory;
+  private String[] mode;
+
+  private AppOptions() {
+  }
+
+  /**
+   * Reads the options from the start of the arguments and checks that they
+   * can be combined.
+   *
+   * @param args the command-line arguments
+   * @return the options, with the arguments of the mode left after them
+   * @throws IllegalArgumentException if an option is given twice, has an
+   *                                  invalid value or excludes another one
+   *                                  given
+   */
+  static AppOptions parse(String[] args) {
+    AppOptions options = new AppOptions();
+    String[] rest = args;
+    while (rest.length > 1 && options.set(rest[0], rest[1])) {
+      rest = Arrays.copyOfRange(rest, 2, rest.length);
+    }
+    options.mode = rest;
+    options.validate();
+    return options;
+  }
+
+  /**
+   * Sets an option, returning false if the name is not one.
+   */
+  private boolean set(String name, String value) {
+    switch (name) {
+      case "--audit":
+        auditDirectory = Paths.get(once(name, auditDirectory, value));
+        return true;
+      case "--event-log":
+        eventLogFile = Paths.get(once(name, eventLogFile, value));
+        return true;
+      case "--archive":
+        archiveDirectory = Paths.get(once(name, archiveDirectory, value));
+        return true;
+      case "--jdbc":
+        jdbcUrl = once(name, jdbcUrl, value);
+        return true;
+      case "--shards":
+        shards = number(name, shards > 0 ? shards : null, value, 1);
+        return true;
+      case "--cluster":
+        clusterNodes = Arrays.asList(once(name, clusterNodes, value).split(","));
+        return true;
+      case "--replicate":
+        replicationPort = number(name, replicationPort >= 0 ? replicationPort : null, value, 0);
+        return true;
+      case "--follow":
+        leader = once(name, leader, value);
+        return true;
+      case "--backup":
+        backupDirectory = Paths.get(once(name, backupDirectory, value));
+        return true;
+      case "--restore":
+        restoreDirectory = Paths.get(once(name, restoreDirectory, value));
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static String once(String name, Object previous, String value) {
+    if (previous != null) {
+      throw new IllegalArgumentException(name + " is given twice");
+    }
+    return value;
+  }
+
+  private static int number(String name, Object previous, String value, int min) {
+    once(name, previous, value);
+    try {
+      int number = Integer.parseInt(value);
+      if (number >= min) {
+        return number;
+      }
+    } catch (NumberFormatException e) {
+      // Reported below like a number out of range
+    }
+    throw new IllegalArgumentException(name + " needs a number of at least " + min + ": " + value);
+  }
+
+  private void validate() {
+    if ((replicationPort >= 0 || leader != null) && eventLogFile == null) {
+      throw new IllegalArgumentException("Replication needs --event-log");
+    }
+    if (replicationPort >= 0 && leader != null) {
+      throw new IllegalArgumentException("--replicate cannot be combined with --follow");
+    }
+    if (jdbcUrl != null && eventLogFile != null) {
+      throw new IllegalArgumentException("--jdbc cannot be combined with --event-log");
+    }
+    if (shards > 0 && (jdbcUrl != null || archiveDirectory != null)) {
+      throw new IllegalArgumentException("--shards cannot be combined with --jdbc or --archive");
+    }
+    if (clusterNodes != null && shards > 0) {
+      throw new IllegalArgumentException("--cluster cannot be combined with --shards");
+    }
+    if (leader != null && (shards > 0 || clusterNodes != null || restoreDirectory != null)) {
+      throw new IllegalArgumentException("--follow cannot be combined with --shards, --cluster or --restore");
+    }
+    if (leader != null && !isReplicated()) {
+      throw new IllegalArgumentException("--follow needs the --http, --batch or --simulate mode");
+    }
+    if (isNode() && (shards > 0 || clusterNodes != null)) {
+      throw new IllegalArgumentException("--node cannot be combined with --shards or --cluster");
+    }
+  }
+
+  private boolean isReplicated() {
+    return mode.length > 0 && (mode[0].equals("--http") || mode[0].equals("--batch") || mode[0].equals("--simulate"));
+  }
+
+  /**
+   * Returns the directory to write audit files to.
+   *
+   * @return the directory, or null for no audit
+   */
+  Path getAuditDirectory() {
+    return auditDirectory;
+  }
+
+  /**
+   * Returns the event log to rebuild the model from and append to.
+   *
+   * @return the file, or null for no event log
+   */
+  Path getEventLogFile() {
+    return eventLogFile;
+  }
+
+  /**
+   * Returns the directory to archive ended contracts to.
+   *
+   * @return the directory, or null to keep every contract on the heap
+   */
+  Path getArchiveDirectory() {
+    return archiveDirectory;
+  }
+
+  /**
+   * Returns the JDBC URL of the database keeping the model.
+   *
+   * @return the URL, or null to keep the model in memory
+   */
+  String getJdbcUrl() {
+    return jdbcUrl;
+  }
+
+  /**
+   * Returns the number of shards to move the model to.
+   *
+   * @return the number of shards, or 0 for none
+   */
+  int getShards() {
+    return shards;
+  }
+
+  /**
+   * Returns the cluster nodes to run the modes on.
+   *
+   * @return the nodes as host:port, or null to run them in this process
+   */
+  List<String> getClusterNodes() {
+    return clusterNodes;
+  }
+
+  /**
+   * Returns the port to ship the event log to followers on.
+   *
+   * @return the port, 0 for an ephemeral one, or -1 for no replication
+   */
+  int getReplicationPort() {
+    return replicationPort;
+  }
+
+  /**
+   * Returns the leader whose event log to follow.
+   *
+   * @return the leader as host:port, or null if this process leads
+   */
+  String getLeader() {
+    return leader;
+  }
+
+  /**
+   * Returns the directory to back the model up to.
+   *
+   * @return the directory, or null for no backups
+   */
+  Path getBackupDirectory() {
+    return backupDirectory;
+  }
+
+  /**
+   * Returns the directory of the backups to restore an empty model from.
+   *
+   * @return the directory, or null to start the model empty
+   */
+  Path getRestoreDirectory() {
+    return restoreDirectory;
+  }
+
+  /**
+   * Returns the mode and its arguments, which follow the options.
+   *
+   * @return the arguments left, empty for the console menu
+   */
+  String[] getMode() {
+    return mode.clone();
+  }
+
+  /**
+   * Tells whether the mode serves the model as a cluster node.
+   *
+   * @return true for the --node mode
+   */
+  boolean isNode() {
+    return mode.length > 0 && mode[0].equals("--node");
+  }
+}
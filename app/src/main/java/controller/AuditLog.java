@@ -0,0 +1,428 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import model.Contract;
+import model.Item;
+import model.Member;
+import model.ModelEvents;
+
+/**
+ * Writes every booking, cancellation, credit change and other model change to
+ * rotating audit files without making the changes wait for the disk.
+ *
+ * <p>
+ * The log is a recorder of a {@link model.ModelEventBus}, so it gets every
+ * event on the thread that changed the model. It encodes the event into a
+ * fixed-size record in a ring of pre-allocated slots and returns, without
+ * allocating; an ordered write of the count of encoded records publishes the
+ * slot. A background thread copies runs of published slots to the current
+ * file with one write each, starts a new file when the current one reaches
+ * its size limit and forces the file to disk at a fixed interval, on rotation
+ * and on close.
+ * </p>
+ *
+ * <p>
+ * The ring has a single producer: the bus calls its recorders one event at a
+ * time under its recording lock, and nothing else may call
+ * {@link #accept(ModelEvents.ModelEvent)}. When the ring is full, the
+ * producer parks until the background thread frees a slot instead of
+ * dropping records, still holding that lock, so a stalled disk slows every
+ * change of the model down rather than leaving gaps in the audit trail.
+ * Files are named audit-NNNNNN.log and can be decoded with
+ * {@link AuditReader}.
+ * </p>
+ *
+ * <p>
+ * Records are {@link #RECORD_SIZE} bytes, big-endian:
+ * </p>
+ *
+ * <pre>
+ *   0 long   sequence number on the event bus
+ *   8 long   wall-clock time in epoch milliseconds
+ *  16 byte   record type, see {@link RecordType}
+ *  17 byte   UTF-8 byte length of each of the three IDs
+ *  20 int    first number: credits, cost, change, days advanced or start epoch day
+ *  24 int    second number: balance, new epoch day or end epoch day
+ *  28        reserved
+ *  32 bytes  first ID: member, item or contract
+ *  96 bytes  second ID: owner or item
+ * 160 bytes  third ID: borrower
+ * 224        reserved
+ * </pre>
+ *
+ * <p>
+ * IDs longer than {@link #ID_SIZE} bytes are truncated.
+ * </p>
+ */
+public class AuditLog implements Consumer<ModelEvents.ModelEvent>, Closeable {
+  /**
+   * Size of one record in bytes.
+   */
+  public static final int RECORD_SIZE = 256;
+  /**
+   * Space for each ID in a record in bytes.
+   */
+  public static final int ID_SIZE = 64;
+  static final int TIME = 8;
+  static final int TYPE = 16;
+  static final int LENGTHS = 17;
+  static final int FIRST_NUMBER = 20;
+  static final int SECOND_NUMBER = 24;
+  static final int IDS = 32;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+  private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final Path directory;
+  private final int slots;
+  private final int mask;
+  private final long maxFileBytes;
+  private final long forceNanos;
+  private final ByteBuffer ring;
+  private final AtomicLong published = new AtomicLong();
+  private final LongAdder fullWaits = new LongAdder();
+  private final LongAdder lost = new LongAdder();
+  private final Thread writer;
+  private volatile long written;
+  private volatile boolean closed;
+  private volatile boolean finished;
+  private volatile IOException failure;
+  private FileChannel channel;
+  private int fileIndex;
+  private long fileBytes;
+
+  /**
+   * Record types, stored as their position in this list plus one. New types
+   * are only ever appended.
+   */
+  public enum RecordType {
+    MEMBER_CREATED, MEMBER_DELETED, ITEM_CREATED, ITEM_DELETED, CONTRACT_CREATED, CONTRACT_CANCELLED,
+    CONTRACT_DELETED, CONTRACT_EXPIRED, CREDITS_CHANGED, CLOCK_ADVANCED;
+
+    byte code() {
+      return (byte) (ordinal() + 1);
+    }
+
+    static RecordType of(int code) {
+      RecordType[] types = values();
+      return code >= 1 && code <= types.length ? types[code - 1] : null;
+    }
+  }
+
+  /**
+   * Constructs an audit log and starts its writer thread.
+   *
+   * @param directory     the directory of the audit files, created if missing;
+   *                      numbering continues after the files already in it
+   * @param slots         the number of records the ring holds, rounded up to a
+   *                      power of two
+   * @param maxFileBytes  the size at which a new file is started
+   * @param forceInterval the longest time, in milliseconds, written records
+   *                      may stay unforced
+   * @throws IOException if the directory or the first file cannot be created
+   */
+  public AuditLog(Path directory, int slots, long maxFileBytes, long forceInterval) throws IOException {
+    this.directory = directory;
+    this.slots = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+    this.mask = this.slots - 1;
+    this.maxFileBytes = Math.max(1, maxFileBytes / RECORD_SIZE) * RECORD_SIZE;
+    this.forceNanos = TimeUnit.MILLISECONDS.toNanos(forceInterval);
+    this.ring = ByteBuffer.allocateDirect(this.slots * RECORD_SIZE);
+    Files.createDirectories(directory);
+    fileIndex = lastFileIndex(directory);
+    rotate();
+    writer = new Thread(this::drain, "audit-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Constructs an audit log with a ring of 64K records, 64MB files and at most
+   * 100 milliseconds between forces.
+   *
+   * @param directory the directory of the audit files
+   * @throws IOException if the directory or the first file cannot be created
+   */
+  public AuditLog(Path directory) throws IOException {
+    this(directory, 1 << 16, 64L << 20, 100);
+  }
+
+  /**
+   * Returns the name of the audit file with the given number.
+   *
+   * @param index the number of the file
+   * @return the file name
+   */
+  public static String fileName(int index) {
+    return String.format("audit-%06d.log", index);
+  }
+
+  /**
+   * Encodes the event into the next slot of the ring, waiting only if the ring
+   * is full. Events arriving after {@link #close()} are counted as lost. Must
+   * not be called by more than one thread at a time.
+   *
+   * @param event the event to record
+   */
+  @Override
+  public void accept(ModelEvents.ModelEvent event) {
+    if (closed) {
+      lost.increment();
+      return;
+    }
+    long sequence = published.get();
+    if (sequence - written >= slots) {
+      fullWaits.increment();
+      while (sequence - written >= slots) {
+        if (finished) {
+          lost.increment();
+          return;
+        }
+        LockSupport.parkNanos(FULL_PARK_NANOS);
+      }
+    }
+    encode((int) (sequence & mask) * RECORD_SIZE, event);
+    published.lazySet(sequence + 1);
+  }
+
+  /**
+   * Returns the number of records the writer thread has taken from the ring,
+   * which includes those lost because the files could not be written.
+   *
+   * @return the records taken from the ring
+   */
+  public long getWritten() {
+    return written;
+  }
+
+  /**
+   * Returns the number of times a writer found the ring full and had to wait.
+   *
+   * @return the waits for a free slot
+   */
+  public long getFullWaits() {
+    return fullWaits.sum();
+  }
+
+  /**
+   * Returns the number of records not written, because they arrived after
+   * closing or the files could not be written.
+   *
+   * @return the lost records
+   */
+  public long getLost() {
+    return lost.sum();
+  }
+
+  /**
+   * Writes the records still in the ring, forces the file to disk and stops the
+   * writer thread.
+   *
+   * @throws IOException if writing any record failed
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void encode(int offset, ModelEvents.ModelEvent event) {
+    ring.putLong(offset, event.getSequence());
+    ring.putLong(offset + TIME, System.currentTimeMillis());
+    if (event instanceof ModelEvents.CreditsChanged) {
+      ModelEvents.CreditsChanged change = (ModelEvents.CreditsChanged) event;
+      encode(offset, RecordType.CREDITS_CHANGED, change.getAmount(), change.getBalance(),
+          change.getMember().getId(), null, null);
+    } else if (event instanceof ModelEvents.ContractCreated) {
+      encode(offset, RecordType.CONTRACT_CREATED, ((ModelEvents.ContractCreated) event).getContract());
+    } else if (event instanceof ModelEvents.ContractCancelled) {
+      encode(offset, RecordType.CONTRACT_CANCELLED, ((ModelEvents.ContractCancelled) event).getContract());
+    } else if (event instanceof ModelEvents.ContractDeleted) {
+      encode(offset, RecordType.CONTRACT_DELETED, ((ModelEvents.ContractDeleted) event).getContract());
+    } else if (event instanceof ModelEvents.ContractExpired) {
+      encode(offset, RecordType.CONTRACT_EXPIRED, ((ModelEvents.ContractExpired) event).getContract());
+    } else if (event instanceof ModelEvents.MemberCreated) {
+      encode(offset, RecordType.MEMBER_CREATED, ((ModelEvents.MemberCreated) event).getMember());
+    } else if (event instanceof ModelEvents.MemberDeleted) {
+      encode(offset, RecordType.MEMBER_DELETED, ((ModelEvents.MemberDeleted) event).getMember());
+    } else if (event instanceof ModelEvents.ItemCreated) {
+      encode(offset, RecordType.ITEM_CREATED, ((ModelEvents.ItemCreated) event).getItem());
+    } else if (event instanceof ModelEvents.ItemDeleted) {
+      encode(offset, RecordType.ITEM_DELETED, ((ModelEvents.ItemDeleted) event).getItem());
+    } else if (event instanceof ModelEvents.ClockAdvanced) {
+      ModelEvents.ClockAdvanced advance = (ModelEvents.ClockAdvanced) event;
+      encode(offset, RecordType.CLOCK_ADVANCED, advance.getDays(), (int) advance.getToday().toEpochDay(), null,
+          null, null);
+    }
+  }
+
+  private void encode(int offset, RecordType type, Contract contract) {
+    encode(offset, type, (int) contract.getStartDate().toEpochDay(), (int) contract.getEndDate().toEpochDay(),
+        contract.getId(), contract.getItemId(), contract.getBorrowerId());
+  }
+
+  private void encode(int offset, RecordType type, Member member) {
+    encode(offset, type, member.getCredits(), 0, member.getId(), null, null);
+  }
+
+  private void encode(int offset, RecordType type, Item item) {
+    encode(offset, type, item.getCost(), 0, item.getId(), item.getOwnerId(), null);
+  }
+
+  private void encode(int offset, RecordType type, int first, int second, String firstId, String secondId,
+      String thirdId) {
+    ring.put(offset + TYPE, type.code());
+    ring.putInt(offset + FIRST_NUMBER, first);
+    ring.putInt(offset + SECOND_NUMBER, second);
+    ring.putInt(offset + SECOND_NUMBER + 4, 0);
+    ring.put(offset + LENGTHS, putId(offset + IDS, firstId));
+    ring.put(offset + LENGTHS + 1, putId(offset + IDS + ID_SIZE, secondId));
+    ring.put(offset + LENGTHS + 2, putId(offset + IDS + 2 * ID_SIZE, thirdId));
+    for (int i = offset + IDS + 3 * ID_SIZE; i < offset + RECORD_SIZE; i += Long.BYTES) {
+      ring.putLong(i, 0);
+    }
+  }
+
+  /**
+   * Writes the ID into its space, ASCII without allocating, and clears the rest.
+   */
+  private byte putId(int offset, String id) {
+    int length = id == null ? 0 : Math.min(id.length(), ID_SIZE);
+    for (int i = 0; i < length; i++) {
+      char c = id.charAt(i);
+      if (c >= 0x80) {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        length = Math.min(bytes.length, ID_SIZE);
+        for (int j = 0; j < length; j++) {
+          ring.put(offset + j, bytes[j]);
+        }
+        break;
+      }
+      ring.put(offset + i, (byte) c);
+    }
+    for (int i = length; i < ID_SIZE; i++) {
+      ring.put(offset + i, (byte) 0);
+    }
+    return (byte) length;
+  }
+
+  /**
+   * Runs on the writer thread until the log is closed and the ring is empty.
+   */
+  private void drain() {
+    ByteBuffer view = ring.duplicate();
+    long next = 0;
+    long lastForce = System.nanoTime();
+    boolean unforced = false;
+    while (true) {
+      long end = published.get();
+      if (end > next) {
+        write(view, next, end);
+        next = end;
+        written = end;
+        unforced = true;
+      } else if (closed) {
+        break;
+      }
+      if (unforced && System.nanoTime() - lastForce >= forceNanos) {
+        force();
+        lastForce = System.nanoTime();
+        unforced = false;
+      }
+      if (end == next) {
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    }
+    force();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      fail(e, 0);
+    }
+    finished = true;
+  }
+
+  private void write(ByteBuffer view, long from, long to) {
+    if (failure != null) {
+      lost.add(to - from);
+      return;
+    }
+    try {
+      while (from < to) {
+        if (fileBytes >= maxFileBytes) {
+          force();
+          channel.close();
+          rotate();
+        }
+        int slot = (int) (from & mask);
+        long count = Math.min(to - from, Math.min(slots - slot, (maxFileBytes - fileBytes) / RECORD_SIZE));
+        view.clear().position(slot * RECORD_SIZE).limit((int) (slot + count) * RECORD_SIZE);
+        while (view.hasRemaining()) {
+          channel.write(view);
+        }
+        fileBytes += count * RECORD_SIZE;
+        from += count;
+      }
+    } catch (IOException e) {
+      fail(e, to - from);
+    }
+  }
+
+  private void force() {
+    if (failure == null) {
+      try {
+        channel.force(false);
+      } catch (IOException e) {
+        fail(e, 0);
+      }
+    }
+  }
+
+  private void fail(IOException e, long records) {
+    if (failure == null) {
+      failure = e;
+    }
+    lost.add(records);
+  }
+
+  private void rotate() throws IOException {
+    fileIndex++;
+    channel = FileChannel.open(directory.resolve(fileName(fileIndex)), StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.WRITE);
+    fileBytes = 0;
+  }
+
+  private static int lastFileIndex(Path directory) throws IOException {
+    int last = 0;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "audit-*.log")) {
+      for (Path file : files) {
+        String name = String.valueOf(file.getFileName());
+        try {
+          last = Math.max(last, Integer.parseInt(name.substring("audit-".length(), name.length() - ".log".length())));
+        } catch (NumberFormatException e) {
+          // Not one of ours
+        }
+      }
+    }
+    return last;
+  }
+}
@@ -0,0 +1,145 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import view.AuditView;
+
+/**
+ * Decodes the files written by an {@link AuditLog} into readable lines.
+ *
+ * <pre>
+ * AuditReader file-or-directory...
+ * </pre>
+ *
+ * <p>
+ * Directories are read file by file in the order the log wrote them. A file
+ * cut short by a crash ends with a partial record, which is reported and
+ * skipped.
+ * </p>
+ */
+public class AuditReader {
+  private static final int BUFFER_RECORDS = 256;
+
+  private final AuditView auditView;
+
+  /**
+   * Constructs an AuditReader.
+   *
+   * @param auditView the view displaying the records
+   */
+  public AuditReader(AuditView auditView) {
+    this.auditView = auditView;
+  }
+
+  /**
+   * Prints the records of the given audit files and directories.
+   *
+   * @param args the files or directories to read
+   * @throws IOException if a file cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    AuditView view = new AuditView(System.out);
+    AuditReader reader = new AuditReader(view);
+    long records = 0;
+    for (String arg : args) {
+      for (Path file : auditFiles(Paths.get(arg))) {
+        records += reader.read(file);
+      }
+    }
+    view.displayTotal(records);
+  }
+
+  /**
+   * Displays every complete record of the file.
+   *
+   * @param file the audit file
+   * @return the number of records read
+   * @throws IOException if the file cannot be read
+   */
+  public long read(Path file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_RECORDS * AuditLog.RECORD_SIZE);
+    long records = 0;
+    try (FileChannel channel = FileChannel.open(file)) {
+      while (channel.read(buffer) >= 0 || buffer.position() > 0) {
+        buffer.flip();
+        if (buffer.remaining() < AuditLog.RECORD_SIZE && channel.position() == channel.size()) {
+          auditView.displayPartialRecord(file.toString(), buffer.remaining());
+          break;
+        }
+        while (buffer.remaining() >= AuditLog.RECORD_SIZE) {
+          display(buffer, buffer.position());
+          buffer.position(buffer.position() + AuditLog.RECORD_SIZE);
+          records++;
+        }
+        buffer.compact();
+      }
+    }
+    return records;
+  }
+
+  private void display(ByteBuffer buffer, int offset) {
+    AuditLog.RecordType type = AuditLog.RecordType.of(buffer.get(offset + AuditLog.TYPE));
+    int first = buffer.getInt(offset + AuditLog.FIRST_NUMBER);
+    int second = buffer.getInt(offset + AuditLog.SECOND_NUMBER);
+    String firstId = id(buffer, offset, 0);
+    String details;
+    if (type == null) {
+      details = "unknown record type " + buffer.get(offset + AuditLog.TYPE);
+    } else {
+      switch (type) {
+        case MEMBER_CREATED:
+        case MEMBER_DELETED:
+          details = String.format("member=%s credits=%d", firstId, first);
+          break;
+        case ITEM_CREATED:
+        case ITEM_DELETED:
+          details = String.format("item=%s owner=%s cost=%d", firstId, id(buffer, offset, 1), first);
+          break;
+        case CREDITS_CHANGED:
+          details = String.format("member=%s change=%+d balance=%d", firstId, first, second);
+          break;
+        case CLOCK_ADVANCED:
+          details = String.format("days=%d today=%s", first, LocalDate.ofEpochDay(second));
+          break;
+        default:
+          details = String.format("contract=%s item=%s borrower=%s from=%s to=%s", firstId, id(buffer, offset, 1),
+              id(buffer, offset, 2), LocalDate.ofEpochDay(first), LocalDate.ofEpochDay(second));
+          break;
+      }
+    }
+    auditView.displayRecord(buffer.getLong(offset), Instant.ofEpochMilli(buffer.getLong(offset + AuditLog.TIME)),
+        type == null ? "UNKNOWN" : type.name(), details);
+  }
+
+  private static String id(ByteBuffer buffer, int offset, int index) {
+    int length = Math.min(buffer.get(offset + AuditLog.LENGTHS + index) & 0xFF, AuditLog.ID_SIZE);
+    byte[] bytes = new byte[length];
+    buffer.get(offset + AuditLog.IDS + index * AuditLog.ID_SIZE, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static List<Path> auditFiles(Path path) throws IOException {
+    if (!Files.isDirectory(path)) {
+      return Collections.singletonList(path);
+    }
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, "audit-*.log")) {
+      for (Path file : stream) {
+        files.add(file);
+      }
+    }
+    Collections.sort(files);
+    return files;
+  }
+}
@@ -0,0 +1,230 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import model.Item;
+import model.ModelError;
+import model.Result;
+import view.BatchView;
+
+/**
+ * Runs scripted commands against the {@link LendingService} without prompts.
+ *
+ * <p>
+ * One command per line; tokens are separated by whitespace and may be quoted
+ * with double quotes. Blank lines and lines starting with '#' are skipped.
+ * Generated item IDs can be bound to an alias with a trailing "@name" token on
+ * item.create and referred to as "@name" afterwards. Queries print their
+ * answer as they run.
+ * </p>
+ *
+ * <pre>
+ * member.create   id name email phone credits
+ * member.delete   id
+ * item.create     ownerId name cost [@alias]
+ * item.delete     itemId
+ * contract.create id itemId borrowerId start end
+ * contract.delete id
+ * available       itemId start end
+ * advance         days
+ * </pre>
+ */
+public class BatchRunner {
+  private static final int MAX_REPORTED_ERRORS = 20;
+
+  private final LendingServiceInterface service;
+  private final BatchView batchView;
+  private final Map<String, String> aliases = new HashMap<>();
+  private final long[] counts = new long[Command.values().length];
+  private final long[] failures = new long[Command.values().length];
+  private final long[] nanos = new long[Command.values().length];
+  private final List<String> tokens = new ArrayList<>(8);
+  private long reportedErrors;
+
+  /**
+   * Constructs a BatchRunner.
+   *
+   * @param service   the service executing the commands.
+   * @param batchView the view reporting errors and throughput.
+   */
+  public BatchRunner(LendingServiceInterface service, BatchView batchView) {
+    this.service = service;
+    this.batchView = batchView;
+  }
+
+  /**
+   * Commands understood by the runner, with the number of arguments they take.
+   */
+  enum Command {
+    MEMBER_CREATE("member.create", 5),
+    MEMBER_DELETE("member.delete", 1),
+    ITEM_CREATE("item.create", 3),
+    ITEM_DELETE("item.delete", 1),
+    CONTRACT_CREATE("contract.create", 5),
+    CONTRACT_DELETE("contract.delete", 1),
+    AVAILABLE("available", 3),
+    ADVANCE("advance", 1);
+
+    private final String keyword;
+    private final int arguments;
+
+    Command(String keyword, int arguments) {
+      this.keyword = keyword;
+      this.arguments = arguments;
+    }
+
+    static Command parse(String keyword) {
+      for (Command command : values()) {
+        if (command.keyword.equals(keyword)) {
+          return command;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Executes every command read from the reader and reports per-command
+   * throughput at the end.
+   *
+   * @param reader the command source
+   * @throws IOException if the source cannot be read
+   */
+  public void run(BufferedReader reader) throws IOException {
+    long start = System.nanoTime();
+    long lineNumber = 0;
+    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+      lineNumber++;
+      if (!tokenize(line)) {
+        continue;
+      }
+      Command command = Command.parse(tokens.get(0));
+      if (command == null || tokens.size() - 1 < command.arguments) {
+        reportError(lineNumber, line, command == null ? "Unknown command" : "Missing arguments");
+        continue;
+      }
+      long before = System.nanoTime();
+      try {
+        ModelError error = execute(command);
+        if (error != null) {
+          failures[command.ordinal()]++;
+          reportError(lineNumber, line, error.getMessage());
+        }
+      } catch (RuntimeException e) {
+        failures[command.ordinal()]++;
+        reportError(lineNumber, line, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+      }
+      nanos[command.ordinal()] += System.nanoTime() - before;
+      counts[command.ordinal()]++;
+    }
+    for (Command command : Command.values()) {
+      if (counts[command.ordinal()] > 0) {
+        batchView.displayThroughput(command.keyword, counts[command.ordinal()], failures[command.ordinal()],
+            nanos[command.ordinal()]);
+      }
+    }
+    batchView.displaySummary(lineNumber, reportedErrors, System.nanoTime() - start);
+  }
+
+  /**
+   * Executes one command. Creations, where rejected rows are common, report
+   * failures as error codes instead of exceptions.
+   *
+   * @return the reason a creation was rejected, or null
+   */
+  private ModelError execute(Command command) {
+    switch (command) {
+      case MEMBER_CREATE:
+        return service.tryCreateMember(arg(1), arg(2), arg(3), arg(4), Integer.parseInt(arg(5))).getError();
+      case MEMBER_DELETE:
+        service.deleteMember(arg(1));
+        break;
+      case ITEM_CREATE:
+        Result<Item> item = service.tryCreateItem(arg(1), arg(2), Integer.parseInt(arg(3)));
+        if (item.isOk() && tokens.size() > 4 && tokens.get(4).startsWith("@")) {
+          aliases.put(tokens.get(4), item.getValue().getId());
+        }
+        return item.getError();
+      case ITEM_DELETE:
+        service.deleteItem(arg(1));
+        break;
+      case CONTRACT_CREATE:
+        return service.tryCreateContract(arg(1), arg(2), arg(3), date(arg(4)), date(arg(5))).getError();
+      case CONTRACT_DELETE:
+        service.deleteContract(arg(1));
+        break;
+      case AVAILABLE:
+        batchView.displayAvailability(arg(1), arg(2), arg(3), service.isAvailable(arg(1), date(arg(2)),
+            date(arg(3))));
+        break;
+      case ADVANCE:
+        service.advanceTime(Integer.parseInt(arg(1)));
+        break;
+      default:
+        throw new IllegalStateException("Unhandled command " + command);
+    }
+    return null;
+  }
+
+  private String arg(int index) {
+    String token = tokens.get(index);
+    if (token.startsWith("@")) {
+      String resolved = aliases.get(token);
+      return resolved != null ? resolved : token;
+    }
+    return token;
+  }
+
+  private LocalDate date(String token) {
+    try {
+      return LocalDate.parse(token);
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Invalid date " + token, e);
+    }
+  }
+
+  /**
+   * Splits the line into the reusable token list.
+   *
+   * @return false if the line is blank or a comment
+   */
+  private boolean tokenize(String line) {
+    tokens.clear();
+    int length = line.length();
+    int i = 0;
+    while (i < length) {
+      char c = line.charAt(i);
+      if (c == ' ' || c == '\t') {
+        i++;
+      } else if (c == '#' && tokens.isEmpty()) {
+        return false;
+      } else if (c == '"') {
+        int end = line.indexOf('"', i + 1);
+        end = end < 0 ? length : end;
+        tokens.add(line.substring(i + 1, end));
+        i = end + 1;
+      } else {
+        int end = i;
+        while (end < length && line.charAt(end) != ' ' && line.charAt(end) != '\t') {
+          end++;
+        }
+        tokens.add(line.substring(i, end));
+        i = end;
+      }
+    }
+    return !tokens.isEmpty();
+  }
+
+  private void reportError(long lineNumber, String line, String message) {
+    reportedErrors++;
+    if (reportedErrors <= MAX_REPORTED_ERRORS) {
+      batchView.displayCommandError(lineNumber, line, message);
+    }
+  }
+}
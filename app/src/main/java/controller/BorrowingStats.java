@@ -0,0 +1,151 @@
+package controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read model of how much every member borrows and lends, built only from the
+ * events of an {@link EventLog}.
+ *
+ * <p>
+ * The statistics can be split into shards by member ID, each built by its own
+ * {@link Projector}, so rebuilding them uses several cores; every shard then
+ * answers for the members {@link #shardOf(String, int)} assigns to it.
+ * </p>
+ */
+public class BorrowingStats implements Projection {
+  private final int shard;
+  private final int shards;
+  private final Map<String, MemberStats> stats = new HashMap<>();
+
+  /**
+   * Constructs the statistics of all members.
+   */
+  public BorrowingStats() {
+    this(0, 1);
+  }
+
+  /**
+   * Constructs one shard of the statistics.
+   *
+   * @param shard  the number of this shard, from 0
+   * @param shards the number of shards
+   */
+  public BorrowingStats(int shard, int shards) {
+    this.shard = shard;
+    this.shards = shards;
+  }
+
+  /**
+   * Returns the shard keeping the statistics of a member.
+   *
+   * @param memberId the member ID
+   * @param shards   the number of shards
+   * @return the number of the shard
+   */
+  public static int shardOf(String memberId, int shards) {
+    return Math.floorMod(memberId.hashCode(), shards);
+  }
+
+  /**
+   * Returns a copy of the statistics of a member.
+   *
+   * @param memberId the member ID
+   * @return the statistics, or null for an unknown member or one of another
+   *         shard
+   */
+  public synchronized MemberStats getStats(String memberId) {
+    MemberStats member = stats.get(memberId);
+    return member != null ? new MemberStats(member) : null;
+  }
+
+  /**
+   * Returns the number of members in this shard.
+   *
+   * @return the member count
+   */
+  public synchronized int countMembers() {
+    return stats.size();
+  }
+
+  @Override
+  public synchronized void apply(DomainEvent event) {
+    switch (event.getType()) {
+      case MEMBER_REGISTERED:
+        if (owns(event.getId())) {
+          stats.put(event.getId(), new MemberStats());
+        }
+        break;
+      case MEMBER_DELETED:
+        stats.remove(event.getId());
+        break;
+      case CONTRACT_BOOKED:
+        if (owns(event.getBorrowerId())) {
+          MemberStats borrower = stats.get(event.getBorrowerId());
+          if (borrower != null) {
+            borrower.bookings++;
+            borrower.daysBooked += event.getDays();
+          }
+        }
+        break;
+      case CREDITS_MOVED:
+        if (owns(event.getId())) {
+          MemberStats member = stats.get(event.getId());
+          if (member != null && event.getAmount() >= 0) {
+            member.creditsEarned += event.getAmount();
+          } else if (member != null) {
+            member.creditsSpent -= event.getAmount();
+          }
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private boolean owns(String memberId) {
+    return shards == 1 || shardOf(memberId, shards) == shard;
+  }
+
+  /**
+   * Borrowing and lending totals of one member.
+   */
+  public static final class MemberStats {
+    private long bookings;
+    private long daysBooked;
+    private long creditsEarned;
+    private long creditsSpent;
+
+    private MemberStats() {
+    }
+
+    private MemberStats(MemberStats other) {
+      this.bookings = other.bookings;
+      this.daysBooked = other.daysBooked;
+      this.creditsEarned = other.creditsEarned;
+      this.creditsSpent = other.creditsSpent;
+    }
+
+    public long getBookings() {
+      return bookings;
+    }
+
+    public long getDaysBooked() {
+      return daysBooked;
+    }
+
+    /**
+     * Returns the credits added to the member's account, for listing items and
+     * lending them out.
+     *
+     * @return the credits earned
+     */
+    public long getCreditsEarned() {
+      return creditsEarned;
+    }
+
+    public long getCreditsSpent() {
+      return creditsSpent;
+    }
+  }
+}
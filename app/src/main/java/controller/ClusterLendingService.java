@@ -0,0 +1,603 @@
+package controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import model.Contract;
+import model.Item;
+import model.Member;
+import model.ModelError;
+import model.ModelExceptions;
+import model.Result;
+import model.Settlement;
+
+/**
+ * Routes the lending operations to the {@link ClusterNode}s owning their data,
+ * so the model can outgrow one process.
+ *
+ * <p>
+ * The nodes are given as a static list of host:port names, the same for every
+ * router. Members belong to the node their ID hashes to
+ * on a {@link HashRing} of the names, items to the node of their ID, and
+ * contracts to the node of their item, so bookings, availability queries and
+ * deletions go to one node, and credit changes to the node of the member.
+ * Listings and searches ask every node and combine the answers; advancing the
+ * time advances every node, then charges each borrower on their own node.
+ * </p>
+ *
+ * <p>
+ * {@link #join(String)} adds a node at run time: the members, items and
+ * contracts that hash to it on the grown ring are copied to it from the other
+ * nodes, then deleted there, while the router holds back its other operations.
+ * A new member's ID is looked up on every node before the member is added to
+ * its own, so an ID still held elsewhere, e.g. by a member a failed join
+ * copied but did not delete, is not given out twice. Item IDs are random
+ * UUIDs generated by the router. Uniqueness of emails, phone numbers and
+ * contract IDs is checked per node only.
+ * </p>
+ *
+ * <p>
+ * Credits moving between nodes, to the owner of a new item and from the
+ * borrowers of expired contracts, follow a saga without locking two nodes:
+ * the node making the change posts the transfer to its {@link CreditLedger}
+ * in the same step, the router applies it on the node of the member, which
+ * ignores a transfer it applied before, and acknowledges it to the first
+ * node, or has it undo the change if the member is gone. Transfers a failed
+ * node kept from being delivered stay posted until {@link #reconcile()} or
+ * the next settlement delivers them.
+ * </p>
+ */
+public class ClusterLendingService implements LendingServiceInterface, Closeable {
+  private final Map<String, NodeClient> nodes = new LinkedHashMap<>();
+  private final ReadWriteLock membership = new ReentrantReadWriteLock();
+  private final Object settlementLock = new Object();
+  private HashRing ring;
+  private volatile LocalDate today;
+
+  /**
+   * Creates a router for the given nodes, moving any data that belongs
+   * elsewhere as if the nodes joined one after the other.
+   *
+   * @param addresses the nodes as host:port, at least one
+   * @throws UncheckedIOException if a node cannot be reached
+   */
+  public ClusterLendingService(List<String> addresses) {
+    if (addresses.isEmpty()) {
+      throw new IllegalArgumentException("At least one node is needed");
+    }
+    String first = addresses.get(0);
+    nodes.put(first, new NodeClient(first));
+    ring = new HashRing(List.of(first));
+    today = nodes.get(first).call(ClusterProtocol.TODAY, out -> { }, ClusterProtocol::readDate).orThrow();
+    for (String address : addresses.subList(1, addresses.size())) {
+      join(address);
+    }
+  }
+
+  /**
+   * Adds a node to the ring and moves to it the data it now owns.
+   *
+   * @param address the node as host:port
+   * @return the number of members, items and contracts moved
+   * @throws UncheckedIOException if a node cannot be reached
+   */
+  public int join(String address) {
+    membership.writeLock().lock();
+    try {
+      if (nodes.containsKey(address)) {
+        return 0;
+      }
+      // A transfer retried after its member moved would not be known as applied on the new node
+      if (!deliverAll().complete) {
+        throw new IllegalStateException("Credit transfers are pending on an unreachable node");
+      }
+      NodeClient joining = new NodeClient(address);
+      LocalDate date = today;
+      joining.call(ClusterProtocol.CATCH_UP, out -> ClusterProtocol.writeDate(out, date), ClusterProtocol::readDate)
+          .orThrow();
+      List<String> grown = new ArrayList<>(ring.getNodes());
+      grown.add(address);
+      int moved = 0;
+      for (Map.Entry<String, NodeClient> node : nodes.entrySet()) {
+        Records records = node.getValue().call(ClusterProtocol.EXPORT, out -> {
+          ClusterProtocol.writeStrings(out, grown);
+          out.writeUTF(address);
+        }, Records::read).orThrow();
+        moved += joining.call(ClusterProtocol.IMPORT, records::write, DataInputStream::readInt).orThrow();
+        node.getValue().call(ClusterProtocol.DROP, out -> {
+          ClusterProtocol.writeStrings(out, grown);
+          out.writeUTF(node.getKey());
+        }, DataInputStream::readInt).orThrow();
+      }
+      nodes.put(address, joining);
+      ring = new HashRing(grown);
+      return moved;
+    } finally {
+      membership.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the nodes in the order they joined.
+   *
+   * @return the nodes as host:port
+   */
+  public List<String> getNodes() {
+    return routed(() -> ring.getNodes());
+  }
+
+  @Override
+  public List<Member> listMembers() {
+    return routed(() -> gather(ClusterProtocol.LIST_MEMBERS, ClusterProtocol::readMembers));
+  }
+
+  @Override
+  public Member getMember(String memberId) {
+    return routed(() -> ownerOf(memberId).call(ClusterProtocol.GET_MEMBER,
+        out -> ClusterProtocol.writeString(out, memberId), ClusterProtocol::readMember).orThrow());
+  }
+
+  @Override
+  public Member createMember(String id, String name, String email, String phone, int credits) {
+    return tryCreateMember(id, name, email, phone, credits).orThrow();
+  }
+
+  @Override
+  public Result<Member> tryCreateMember(String id, String name, String email, String phone, int credits) {
+    return routed(() -> {
+      if (heldElsewhere(id)) {
+        return Result.failure(ModelError.ID_EXISTS);
+      }
+      return ownerOf(id).call(ClusterProtocol.ADD_MEMBER, out -> {
+        ClusterProtocol.writeString(out, id);
+        ClusterProtocol.writeString(out, name);
+        ClusterProtocol.writeString(out, email);
+        ClusterProtocol.writeString(out, phone);
+        out.writeInt(credits);
+      }, ClusterProtocol::readMember);
+    });
+  }
+
+  @Override
+  public void deleteMember(String memberId) {
+    routed(() -> ownerOf(memberId).call(ClusterProtocol.DELETE_MEMBER,
+        out -> ClusterProtocol.writeString(out, memberId), in -> null).orThrow());
+  }
+
+  @Override
+  public List<Item> listItems() {
+    return routed(() -> gather(ClusterProtocol.LIST_ITEMS, ClusterProtocol::readItems));
+  }
+
+  @Override
+  public List<Item> searchItems(String query, String sort, int limit) {
+    boolean byCost = "cost".equals(sort);
+    List<Item> preferred = new ArrayList<>();
+    List<Item> rest = new ArrayList<>();
+    routed(() -> {
+      for (NodeClient node : nodes.values()) {
+        node.call(ClusterProtocol.SEARCH_ITEMS, out -> {
+          ClusterProtocol.writeString(out, query);
+          out.writeBoolean(byCost);
+          out.writeInt(limit);
+        }, in -> {
+          for (int i = in.readInt(); i > 0; i--) {
+            Item item = ClusterProtocol.readItem(in);
+            (in.readBoolean() ? preferred : rest).add(item);
+          }
+          return null;
+        }).orThrow();
+      }
+      return null;
+    });
+    Comparator<Item> byCostOrder = Comparator.comparingInt(Item::getCost);
+    preferred.sort(byCostOrder);
+    rest.sort(byCostOrder);
+    preferred.addAll(rest);
+    return new ArrayList<>(preferred.subList(0, Math.min(Math.max(0, limit), preferred.size())));
+  }
+
+  @Override
+  public Item createItem(String ownerId, String name, int cost) {
+    return tryCreateItem(ownerId, name, cost).orThrow();
+  }
+
+  @Override
+  public Result<Item> tryCreateItem(String ownerId, String name, int cost) {
+    return routed(() -> {
+      NodeClient ownerNode = ownerOf(ownerId);
+      Result<Member> owner = ownerNode.call(ClusterProtocol.GET_MEMBER,
+          out -> ClusterProtocol.writeString(out, ownerId), ClusterProtocol::readMember);
+      if (!owner.isOk()) {
+        return Result.failure(owner.getError());
+      }
+      Result<Item> item = Item.create(owner.getValue(), name, cost);
+      if (!item.isOk()) {
+        return item;
+      }
+      NodeClient itemNode = ownerOf(item.getValue().getId());
+      String[] key = new String[1];
+      Result<Item> added = itemNode.call(ClusterProtocol.ADD_ITEM,
+          out -> ClusterProtocol.writeItem(out, item.getValue()), in -> {
+            Item listed = ClusterProtocol.readItem(in);
+            key[0] = in.readUTF();
+            return listed;
+          });
+      if (!added.isOk()) {
+        return added;
+      }
+      // The item node posted the credit of the owner; if the owner's node is down, it arrives on reconcile()
+      Delivery delivery = new Delivery();
+      deliver(itemNode, List.of(new CreditLedger.Transfer(key[0], ownerId, cost)), delivery);
+      return delivery.refused.isEmpty() ? added : Result.failure(ModelError.MEMBER_NOT_FOUND);
+    });
+  }
+
+  @Override
+  public void deleteItem(String itemId) {
+    routed(() -> ownerOf(itemId).call(ClusterProtocol.DELETE_ITEM,
+        out -> ClusterProtocol.writeString(out, itemId), in -> null).orThrow());
+  }
+
+  @Override
+  public List<Contract> listContracts() {
+    return routed(() -> gather(ClusterProtocol.LIST_CONTRACTS, ClusterProtocol::readContracts));
+  }
+
+  @Override
+  public Contract createContract(String id, String itemId, String borrowerId, LocalDate startDate,
+      LocalDate endDate) {
+    return tryCreateContract(id, itemId, borrowerId, startDate, endDate).orThrow();
+  }
+
+  // The borrower is read from their node and sent along to the node of the item, which checks in the same order
+  @Override
+  public Result<Contract> tryCreateContract(String id, String itemId, String borrowerId, LocalDate startDate,
+      LocalDate endDate) {
+    return routed(() -> {
+      Result<Member> borrower = ownerOf(borrowerId).call(ClusterProtocol.GET_MEMBER,
+          out -> ClusterProtocol.writeString(out, borrowerId), ClusterProtocol::readMember);
+      return ownerOf(itemId).call(ClusterProtocol.ADD_CONTRACT, out -> {
+        ClusterProtocol.writeString(out, id);
+        ClusterProtocol.writeString(out, itemId);
+        out.writeBoolean(borrower.isOk());
+        if (borrower.isOk()) {
+          ClusterProtocol.writeMember(out, borrower.getValue());
+        }
+        ClusterProtocol.writeDate(out, startDate);
+        ClusterProtocol.writeDate(out, endDate);
+      }, ClusterProtocol::readContract);
+    });
+  }
+
+  @Override
+  public void deleteContract(String contractId) {
+    boolean deleted = routed(() -> {
+      for (NodeClient node : nodes.values()) {
+        if (node.call(ClusterProtocol.DELETE_CONTRACT, out -> ClusterProtocol.writeString(out, contractId),
+            DataInputStream::readBoolean).orThrow()) {
+          return true;
+        }
+      }
+      return false;
+    });
+    if (!deleted) {
+      throw new ModelExceptions.ContractNotFoundException();
+    }
+  }
+
+  @Override
+  public boolean isAvailable(String itemId, LocalDate startDate, LocalDate endDate) {
+    return routed(() -> ownerOf(itemId).call(ClusterProtocol.AVAILABLE, out -> {
+      ClusterProtocol.writeString(out, itemId);
+      ClusterProtocol.writeDate(out, startDate);
+      ClusterProtocol.writeDate(out, endDate);
+    }, DataInputStream::readBoolean).orThrow());
+  }
+
+  @Override
+  public LocalDate today() {
+    return today;
+  }
+
+  @Override
+  public LocalDate advanceTime(int days) {
+    advanceAndSettle(days);
+    return today;
+  }
+
+  @Override
+  public Settlement advanceAndSettle(int days) {
+    synchronized (settlementLock) {
+      return routed(() -> settle(days));
+    }
+  }
+
+  @Override
+  public void close() {
+    membership.writeLock().lock();
+    try {
+      for (NodeClient node : nodes.values()) {
+        node.close();
+      }
+    } finally {
+      membership.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Ends the expired contracts on every node, which post the charges of their
+   * borrowers, then delivers the charges. The nodes are sent the date to reach
+   * rather than the days to add, so a node that already got there, e.g. in a
+   * settlement that failed on a later node and is retried, does not move on.
+   */
+  private Settlement settle(int days) {
+    if (days < 0) {
+      throw ModelError.NEGATIVE_AMOUNT.toException();
+    }
+    Settlement settlement = Settlement.of(0, 0, 0, 0, 0, 0);
+    LocalDate target = today.plusDays(days);
+    LocalDate date = today;
+    for (NodeClient node : nodes.values()) {
+      LocalDate nodeDate = node.call(ClusterProtocol.EXPIRE, out -> ClusterProtocol.writeDate(out, target), in -> {
+        LocalDate advanced = ClusterProtocol.readDate(in);
+        settlement.add(Settlement.of(in.readLong(), 0, 0, 0, 0, in.readLong()));
+        return advanced;
+      }).orThrow();
+      date = nodeDate.isAfter(date) ? nodeDate : date;
+    }
+    today = date;
+    Delivery delivery = deliverAll();
+    return settlement.add(Settlement.of(0, delivery.charged, 0, delivery.overdrawn, delivery.missingBorrowers, 0));
+  }
+
+  /**
+   * Delivers the transfers pending on every node, e.g. after a node that was
+   * down is back.
+   *
+   * @return true if every node was reached and no transfer is left pending
+   */
+  public boolean reconcile() {
+    return routed(() -> deliverAll().complete);
+  }
+
+  private Delivery deliverAll() {
+    Delivery delivery = new Delivery();
+    for (NodeClient node : nodes.values()) {
+      try {
+        deliver(node, node.call(ClusterProtocol.OUTBOX, out -> { }, ClusterProtocol::readTransfers).orThrow(),
+            delivery);
+      } catch (UncheckedIOException e) {
+        delivery.complete = false;
+      }
+    }
+    return delivery;
+  }
+
+  /**
+   * Applies transfers posted by a node on the nodes of their members, then
+   * acknowledges them to the posting node and has the member's node forget
+   * the keys the posting node will not send again, or has it compensate those
+   * whose member does not exist. Transfers whose member's node or posting
+   * node cannot be reached stay pending; applying them again later has no
+   * effect on the transfers that were applied.
+   */
+  private void deliver(NodeClient origin, List<CreditLedger.Transfer> transfers, Delivery delivery) {
+    Map<NodeClient, List<CreditLedger.Transfer>> byNode = new LinkedHashMap<>();
+    for (CreditLedger.Transfer transfer : transfers) {
+      byNode.computeIfAbsent(ownerOf(transfer.memberId), n -> new ArrayList<>()).add(transfer);
+    }
+    for (Map.Entry<NodeClient, List<CreditLedger.Transfer>> batch : byNode.entrySet()) {
+      try {
+        List<String> refused = batch.getKey().call(ClusterProtocol.APPLY_CREDITS,
+            out -> ClusterProtocol.writeTransfers(out, batch.getValue()), in -> {
+              in.readLong();
+              delivery.charged += in.readLong();
+              delivery.overdrawn += in.readLong();
+              return ClusterProtocol.readStrings(in);
+            }).orThrow();
+        List<String> applied = new ArrayList<>();
+        for (CreditLedger.Transfer transfer : batch.getValue()) {
+          if (!refused.contains(transfer.key)) {
+            applied.add(transfer.key);
+          } else if (transfer.key.startsWith(CreditLedger.CHARGE)) {
+            delivery.missingBorrowers++;
+          }
+        }
+        Map<String, Long> settled = origin.call(ClusterProtocol.ACKNOWLEDGE,
+            out -> ClusterProtocol.writeStrings(out, applied), ClusterProtocol::readSettled).orThrow();
+        if (!settled.isEmpty()) {
+          batch.getKey().call(ClusterProtocol.FORGET, out -> ClusterProtocol.writeSettled(out, settled), in -> null)
+              .orThrow();
+        }
+        if (!refused.isEmpty()) {
+          origin.call(ClusterProtocol.COMPENSATE, out -> ClusterProtocol.writeStrings(out, refused),
+              DataInputStream::readInt).orThrow();
+          delivery.refused.addAll(refused);
+        }
+      } catch (UncheckedIOException e) {
+        delivery.complete = false;
+      }
+    }
+  }
+
+  private NodeClient ownerOf(String id) {
+    return nodes.get(ring.owner(id));
+  }
+
+  /**
+   * Tells whether a node other than the one the ring gives the ID holds a
+   * member with it. The owner checks its own members when adding one.
+   */
+  private boolean heldElsewhere(String memberId) {
+    NodeClient owner = ownerOf(memberId);
+    for (NodeClient node : nodes.values()) {
+      if (node != owner && node.call(ClusterProtocol.GET_MEMBER, out -> ClusterProtocol.writeString(out, memberId),
+          ClusterProtocol::readMember).isOk()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private <T> List<T> gather(int operation, ClusterProtocol.Reply<List<T>> reply) {
+    List<T> all = new ArrayList<>();
+    for (NodeClient node : nodes.values()) {
+      all.addAll(node.call(operation, out -> { }, reply).orThrow());
+    }
+    return all;
+  }
+
+  /**
+   * Runs an operation while no node is joining.
+   */
+  private <T> T routed(Supplier<T> operation) {
+    membership.readLock().lock();
+    try {
+      return operation.get();
+    } finally {
+      membership.readLock().unlock();
+    }
+  }
+
+  /**
+   * The outcome of delivering credit transfers.
+   */
+  private static final class Delivery {
+    private final List<String> refused = new ArrayList<>();
+    private long charged;
+    private long overdrawn;
+    private long missingBorrowers;
+    private boolean complete = true;
+  }
+
+  /**
+   * The members, items and contracts moving to a joining node.
+   */
+  private static final class Records {
+    private final List<Member> members;
+    private final List<Item> items;
+    private final List<Contract> contracts;
+
+    private Records(List<Member> members, List<Item> items, List<Contract> contracts) {
+      this.members = members;
+      this.items = items;
+      this.contracts = contracts;
+    }
+
+    private static Records read(DataInputStream in) throws IOException {
+      return new Records(ClusterProtocol.readMembers(in), ClusterProtocol.readItems(in),
+          ClusterProtocol.readContracts(in));
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      ClusterProtocol.writeMembers(out, members);
+      ClusterProtocol.writeItems(out, items);
+      ClusterProtocol.writeContracts(out, contracts);
+    }
+  }
+
+  /**
+   * The connections to one node, opened as needed and reused, one per
+   * concurrent request.
+   */
+  private static final class NodeClient implements Closeable {
+    private final String host;
+    private final int port;
+    private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+    private NodeClient(String address) {
+      int colon = address.lastIndexOf(':');
+      if (colon < 0) {
+        throw new IllegalArgumentException("Node address must be host:port: " + address);
+      }
+      this.host = address.substring(0, colon);
+      this.port = Integer.parseInt(address.substring(colon + 1));
+    }
+
+    /**
+     * Sends a request and reads the reply.
+     *
+     * @return the result, or the error the node refused the request with
+     * @throws UncheckedIOException  if the node cannot be reached
+     * @throws IllegalStateException if the node failed to run the request
+     */
+    private <T> Result<T> call(int operation, ClusterProtocol.Request request, ClusterProtocol.Reply<T> reply) {
+      Connection connection = idle.poll();
+      try {
+        if (connection == null) {
+          connection = new Connection(host, port);
+        }
+        connection.out.writeByte(operation);
+        request.write(connection.out);
+        connection.out.flush();
+        int status = connection.in.readUnsignedByte();
+        Result<T> result;
+        if (status == ClusterProtocol.OK) {
+          result = Result.ok(reply.read(connection.in));
+        } else if (status == ClusterProtocol.REFUSED) {
+          result = Result.failure(ModelError.valueOf(connection.in.readUTF()));
+        } else {
+          String message = connection.in.readUTF();
+          idle.add(connection);
+          throw new IllegalStateException("Node " + host + ":" + port + " failed: " + message);
+        }
+        idle.add(connection);
+        return result;
+      } catch (IOException e) {
+        if (connection != null) {
+          connection.close();
+        }
+        // The other idle connections most likely broke with this one, e.g. when the node restarted
+        close();
+        throw new UncheckedIOException("Node " + host + ":" + port + " unreachable: " + e.getMessage(), e);
+      }
+    }
+
+    @Override
+    public void close() {
+      for (Connection connection = idle.poll(); connection != null; connection = idle.poll()) {
+        connection.close();
+      }
+    }
+  }
+
+  /**
+   * One open connection to a node.
+   */
+  private static final class Connection {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private Connection(String host, int port) throws IOException {
+      socket = new Socket(host, port);
+      socket.setTcpNoDelay(true);
+      in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+      out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+    }
+
+    private void close() {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // Nothing left to release
+      }
+    }
+  }
+}
@@ -0,0 +1,646 @@
+package controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import model.Contract;
+import model.ContractRepositoryInterface;
+import model.Item;
+import model.ItemRepositoryInterface;
+import model.Member;
+import model.MemberRepositoryInterface;
+import model.ModelError;
+import model.Result;
+import model.Settlement;
+
+/**
+ * One process of a lending cluster, serving the part of the data it owns to
+ * {@link ClusterLendingService} routers over {@link ClusterProtocol}.
+ *
+ * <p>
+ * The node holds the members whose IDs and the items whose IDs hash to it on
+ * the routers' {@link HashRing}, with the contracts of those items. It applies
+ * the same rules as {@link LendingService} to what it holds, but takes the
+ * owner of a new item and the borrower of a new contract from the request,
+ * since they may live on another node. Credits owed to members, which may
+ * also live elsewhere, are posted to its {@link CreditLedger} for the router
+ * to deliver. Each connection is served on its own thread (virtual
+ * where supported, see {@link VirtualThreads}); operations share a read-write
+ * lock like {@link LendingService}.
+ * </p>
+ */
+public class ClusterNode implements Closeable {
+  private final MemberRepositoryInterface memberRepository;
+  private final ItemRepositoryInterface itemRepository;
+  private final ContractRepositoryInterface contractRepository;
+  private final String emailPattern;
+  private final String phonePattern;
+  private final CreditLedger ledger;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+  private final ServerSocket serverSocket;
+  private final ExecutorService executor = VirtualThreads.newPerTaskExecutor();
+  private final Thread acceptor;
+  private volatile boolean running = true;
+
+  /**
+   * Creates a node bound to the given port. The node is not started.
+   *
+   * @param memberRepository   the repository for managing member data.
+   * @param itemRepository     the repository for managing item data.
+   * @param contractRepository the repository for managing contract data.
+   * @param emailPattern       the pattern to validate member emails.
+   * @param phonePattern       the pattern to validate member phone numbers.
+   * @param port               the port to listen on, or 0 for an ephemeral port.
+   * @throws IOException if the port cannot be bound
+   */
+  public ClusterNode(MemberRepositoryInterface memberRepository, ItemRepositoryInterface itemRepository,
+      ContractRepositoryInterface contractRepository, String emailPattern, String phonePattern, int port)
+      throws IOException {
+    this(memberRepository, itemRepository, contractRepository, new CreditLedger(), emailPattern, phonePattern, port);
+  }
+
+  /**
+   * Creates a node bound to the given port on existing data, e.g. restarting
+   * a node. The node is not started.
+   *
+   * @param memberRepository   the repository for managing member data.
+   * @param itemRepository     the repository for managing item data.
+   * @param contractRepository the repository for managing contract data.
+   * @param ledger             the credit transfers of the node.
+   * @param emailPattern       the pattern to validate member emails.
+   * @param phonePattern       the pattern to validate member phone numbers.
+   * @param port               the port to listen on, or 0 for an ephemeral port.
+   * @throws IOException if the port cannot be bound
+   */
+  public ClusterNode(MemberRepositoryInterface memberRepository, ItemRepositoryInterface itemRepository,
+      ContractRepositoryInterface contractRepository, CreditLedger ledger, String emailPattern, String phonePattern,
+      int port) throws IOException {
+    this.ledger = ledger;
+    this.memberRepository = memberRepository;
+    this.itemRepository = itemRepository;
+    this.contractRepository = contractRepository;
+    this.emailPattern = emailPattern;
+    this.phonePattern = phonePattern;
+    this.serverSocket = new ServerSocket();
+    serverSocket.setReuseAddress(true);
+    serverSocket.bind(new InetSocketAddress(port), 1024);
+    this.acceptor = new Thread(this::accept, "cluster-node-" + serverSocket.getLocalPort());
+  }
+
+  /**
+   * Starts accepting routers.
+   */
+  public void start() {
+    acceptor.start();
+  }
+
+  /**
+   * Returns the port the node listens on.
+   *
+   * @return the bound port
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Stops the node, dropping the open connections with any request in
+   * flight, as a crash of the process would.
+   */
+  @Override
+  public void close() throws IOException {
+    running = false;
+    serverSocket.close();
+    for (Socket socket : connections) {
+      socket.close();
+    }
+    executor.shutdown();
+  }
+
+  private void accept() {
+    while (running) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        connections.add(socket);
+        executor.execute(() -> serve(socket));
+      } catch (IOException e) {
+        if (running) {
+          System.err.println("Cluster node cannot accept connections: " + e.getMessage());
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Answers the requests of one router until it closes the connection.
+   */
+  private void serve(Socket socket) {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream reply = new DataOutputStream(buffer);
+    try (socket;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16))) {
+      while (true) {
+        int operation;
+        try {
+          operation = in.readUnsignedByte();
+        } catch (EOFException e) {
+          return;
+        }
+        buffer.reset();
+        ModelError error;
+        try {
+          error = handle(operation, in, reply);
+        } catch (RuntimeException e) {
+          out.writeByte(ClusterProtocol.FAILED);
+          out.writeUTF(String.valueOf(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+          out.flush();
+          continue;
+        }
+        if (error != null) {
+          out.writeByte(ClusterProtocol.REFUSED);
+          out.writeUTF(error.name());
+        } else {
+          out.writeByte(ClusterProtocol.OK);
+          buffer.writeTo(out);
+        }
+        out.flush();
+      }
+    } catch (IOException e) {
+      // The router went away; it reconnects for its next request
+    } finally {
+      connections.remove(socket);
+    }
+  }
+
+  /**
+   * Runs one request, writing its result to the reply.
+   *
+   * @return the error refusing the request, or null if it succeeded
+   */
+  private ModelError handle(int operation, DataInputStream in, DataOutputStream reply) throws IOException {
+    switch (operation) {
+      case ClusterProtocol.LIST_MEMBERS:
+        ClusterProtocol.writeMembers(reply, read(memberRepository::getAllMembers));
+        return null;
+      case ClusterProtocol.GET_MEMBER: {
+        String id = ClusterProtocol.readString(in);
+        Member member = read(() -> memberRepository.getMemberById(id));
+        if (member == null) {
+          return ModelError.MEMBER_NOT_FOUND;
+        }
+        ClusterProtocol.writeMember(reply, member);
+        return null;
+      }
+      case ClusterProtocol.ADD_MEMBER:
+        return addMember(in, reply);
+      case ClusterProtocol.DELETE_MEMBER: {
+        String id = ClusterProtocol.readString(in);
+        return write(() -> {
+          Member member = memberRepository.getMemberById(id);
+          if (member == null) {
+            return ModelError.MEMBER_NOT_FOUND;
+          }
+          memberRepository.deleteMember(member);
+          return null;
+        });
+      }
+      case ClusterProtocol.MOVE_CREDITS:
+        return moveCredits(in, reply);
+      case ClusterProtocol.LIST_ITEMS:
+        ClusterProtocol.writeItems(reply, read(itemRepository::getAllItems));
+        return null;
+      case ClusterProtocol.SEARCH_ITEMS:
+        return searchItems(in, reply);
+      case ClusterProtocol.ADD_ITEM:
+        return addItem(in, reply);
+      case ClusterProtocol.DELETE_ITEM: {
+        String id = ClusterProtocol.readString(in);
+        return write(() -> {
+          Item item = itemRepository.getItemById(id);
+          if (item == null) {
+            return ModelError.ITEM_NOT_FOUND;
+          }
+          contractRepository.cancelContractsForItem(item);
+          itemRepository.deleteItem(item);
+          return null;
+        });
+      }
+      case ClusterProtocol.LIST_CONTRACTS:
+        ClusterProtocol.writeContracts(reply, read(contractRepository::getAllContracts));
+        return null;
+      case ClusterProtocol.ADD_CONTRACT:
+        return addContract(in, reply);
+      case ClusterProtocol.DELETE_CONTRACT: {
+        String id = ClusterProtocol.readString(in);
+        reply.writeBoolean(write(() -> {
+          Contract contract = contractRepository.getContract(id);
+          if (contract != null) {
+            contractRepository.deleteContract(contract);
+          }
+          return contract != null;
+        }));
+        return null;
+      }
+      case ClusterProtocol.AVAILABLE:
+        return isAvailable(in, reply);
+      case ClusterProtocol.TODAY:
+        ClusterProtocol.writeDate(reply, contractRepository.getClock().today());
+        return null;
+      case ClusterProtocol.CATCH_UP:
+        return catchUp(in, reply);
+      case ClusterProtocol.EXPIRE:
+        return expire(in, reply);
+      case ClusterProtocol.APPLY_CREDITS:
+        return applyCredits(in, reply);
+      case ClusterProtocol.OUTBOX:
+        ClusterProtocol.writeTransfers(reply, ledger.pending());
+        return null;
+      case ClusterProtocol.ACKNOWLEDGE: {
+        List<String> keys = ClusterProtocol.readStrings(in);
+        ClusterProtocol.writeSettled(reply, write(() -> ledger.acknowledge(keys)));
+        return null;
+      }
+      case ClusterProtocol.FORGET: {
+        Map<String, Long> settled = ClusterProtocol.readSettled(in);
+        return write(() -> {
+          settled.forEach(ledger::forget);
+          return null;
+        });
+      }
+      case ClusterProtocol.COMPENSATE:
+        return compensate(in, reply);
+      case ClusterProtocol.EXPORT:
+        return export(in, reply);
+      case ClusterProtocol.IMPORT:
+        return importRecords(in, reply);
+      case ClusterProtocol.DROP:
+        return drop(in, reply);
+      default:
+        throw new IllegalArgumentException("Unknown operation " + operation);
+    }
+  }
+
+  private ModelError addMember(DataInputStream in, DataOutputStream reply) throws IOException {
+    String id = ClusterProtocol.readString(in);
+    String name = ClusterProtocol.readString(in);
+    String email = ClusterProtocol.readString(in);
+    String phone = ClusterProtocol.readString(in);
+    int credits = in.readInt();
+    Result<Member> created = Member.create(id, name, email, phone, credits, emailPattern, phonePattern);
+    Result<Member> added = created.isOk() ? write(() -> memberRepository.tryAddMember(created.getValue())) : created;
+    if (!added.isOk()) {
+      return added.getError();
+    }
+    ClusterProtocol.writeMember(reply, added.getValue());
+    return null;
+  }
+
+  private ModelError moveCredits(DataInputStream in, DataOutputStream reply) throws IOException {
+    String id = ClusterProtocol.readString(in);
+    int amount = in.readInt();
+    Integer balance = write(() -> {
+      Member member = memberRepository.getMemberById(id);
+      if (member == null) {
+        return null;
+      }
+      if (amount >= 0) {
+        member.addCredits(amount);
+      } else {
+        member.deductCredits(-amount);
+      }
+      return member.getCredits();
+    });
+    if (balance == null) {
+      return ModelError.MEMBER_NOT_FOUND;
+    }
+    reply.writeInt(balance);
+    return null;
+  }
+
+  /**
+   * Finds the best matches like {@link LendingService#searchItems}, telling
+   * for each whether it is available today, so the router can merge the
+   * answers of all nodes.
+   */
+  private ModelError searchItems(DataInputStream in, DataOutputStream reply) throws IOException {
+    String query = ClusterProtocol.readString(in);
+    boolean byCost = in.readBoolean();
+    int limit = in.readInt();
+    List<Item> found = new ArrayList<>();
+    List<Boolean> available = new ArrayList<>();
+    read(() -> {
+      LocalDate today = contractRepository.getClock().today();
+      found.addAll(itemRepository.findItems(query, byCost ? null : contractRepository.availableDuring(today, today),
+          limit));
+      for (Item item : found) {
+        available.add(byCost || contractRepository.isItemAvailable(item.getId(), today, today));
+      }
+      return null;
+    });
+    reply.writeInt(found.size());
+    for (int i = 0; i < found.size(); i++) {
+      ClusterProtocol.writeItem(reply, found.get(i));
+      reply.writeBoolean(available.get(i));
+    }
+    return null;
+  }
+
+  /**
+   * Lists an item and posts the credit of its owner, replying with the item
+   * and the key of the transfer.
+   */
+  private ModelError addItem(DataInputStream in, DataOutputStream reply) throws IOException {
+    Item item = ClusterProtocol.readItem(in);
+    String[] key = new String[1];
+    Result<Item> added = write(() -> {
+      Result<Item> result = itemRepository.tryAddItem(item);
+      if (result.isOk()) {
+        key[0] = ledger.post(CreditLedger.ITEM, item.getId(), item.getOwnerId(), item.getCost()).key;
+      }
+      return result;
+    });
+    if (!added.isOk()) {
+      return added.getError();
+    }
+    ClusterProtocol.writeItem(reply, added.getValue());
+    reply.writeUTF(key[0]);
+    return null;
+  }
+
+  /**
+   * Books a contract for an item of this node, checking in the same order as
+   * {@link LendingService#tryCreateContract}. The borrower is the copy the
+   * router read from its node, absent if it found none.
+   */
+  private ModelError addContract(DataInputStream in, DataOutputStream reply) throws IOException {
+    String id = ClusterProtocol.readString(in);
+    String itemId = ClusterProtocol.readString(in);
+    Member borrower = in.readBoolean() ? ClusterProtocol.readMember(in) : null;
+    LocalDate start = ClusterProtocol.readDate(in);
+    LocalDate end = ClusterProtocol.readDate(in);
+    Result<Contract> added = write(() -> {
+      Item item = itemRepository.getItemById(itemId);
+      if (item == null) {
+        return Result.failure(ModelError.ITEM_NOT_FOUND);
+      }
+      if (borrower == null) {
+        return Result.failure(ModelError.BORROWER_NOT_FOUND);
+      }
+      if (borrower.getCredits() < item.getCost()) {
+        return Result.failure(ModelError.INSUFFICIENT_FUNDS);
+      }
+      Result<Contract> contract = Contract.create(id, item, borrower, start, end);
+      if (!contract.isOk()) {
+        return contract;
+      }
+      if (contractRepository.hasConflict(contract.getValue())) {
+        return Result.failure(ModelError.CONFLICTING_CONTRACT);
+      }
+      return contractRepository.tryAddContract(contract.getValue());
+    });
+    if (!added.isOk()) {
+      return added.getError();
+    }
+    ClusterProtocol.writeContract(reply, added.getValue());
+    return null;
+  }
+
+  private ModelError isAvailable(DataInputStream in, DataOutputStream reply) throws IOException {
+    String itemId = ClusterProtocol.readString(in);
+    LocalDate start = ClusterProtocol.readDate(in);
+    LocalDate end = ClusterProtocol.readDate(in);
+    Boolean available = read(() -> itemRepository.getItemById(itemId) == null ? null
+        : contractRepository.isItemAvailable(itemId, start, end));
+    if (available == null) {
+      return ModelError.ITEM_NOT_FOUND;
+    }
+    reply.writeBoolean(available);
+    return null;
+  }
+
+  /**
+   * Moves the clock of a node that joined late to the date of the cluster.
+   */
+  private ModelError catchUp(DataInputStream in, DataOutputStream reply) throws IOException {
+    LocalDate date = ClusterProtocol.readDate(in);
+    LocalDate today = write(() -> contractRepository.getClock().advanceTo(date));
+    ClusterProtocol.writeDate(reply, today);
+    return null;
+  }
+
+  /**
+   * Advances the clock to the date of the cluster, unless it is there already,
+   * and ends the expired contracts of this node, posting the charge of every
+   * contract ended, and replies with the new date and the numbers of
+   * contracts ended and archived.
+   */
+  private ModelError expire(DataInputStream in, DataOutputStream reply) throws IOException {
+    LocalDate date = ClusterProtocol.readDate(in);
+    List<Contract> expired = new ArrayList<>();
+    Settlement archived = write(() -> {
+      Settlement settlement = Settlement.expire(contractRepository, contractRepository.getClock().advanceTo(date),
+          expired);
+      for (Contract contract : expired) {
+        ledger.post(CreditLedger.CHARGE, contract.getId(), contract.getBorrowerId(), -contract.getItemCost());
+      }
+      return settlement;
+    });
+    ClusterProtocol.writeDate(reply, contractRepository.getClock().today());
+    reply.writeLong(expired.size());
+    reply.writeLong(archived.getArchived());
+    return null;
+  }
+
+  /**
+   * Applies credit transfers to members of this node, each at most once, and
+   * replies with the number newly applied, the credits charged, the number of
+   * members left overdrawn by charges and the keys of the transfers whose
+   * member does not exist.
+   */
+  private ModelError applyCredits(DataInputStream in, DataOutputStream reply) throws IOException {
+    List<CreditLedger.Transfer> transfers = ClusterProtocol.readTransfers(in);
+    List<String> refused = new ArrayList<>();
+    long[] totals = new long[3]; // applied, charged, overdrawn
+    write(() -> {
+      Set<Member> charged = new HashSet<>();
+      for (CreditLedger.Transfer transfer : transfers) {
+        if (ledger.isApplied(transfer.key)) {
+          continue;
+        }
+        Member member = memberRepository.getMemberById(transfer.memberId);
+        if (member == null) {
+          refused.add(transfer.key);
+        } else {
+          ledger.markApplied(transfer.key);
+          if (transfer.amount >= 0) {
+            member.addCredits(transfer.amount);
+          } else {
+            member.deductCredits(-transfer.amount);
+            totals[1] -= transfer.amount;
+            charged.add(member);
+          }
+          totals[0]++;
+        }
+      }
+      for (Member member : charged) {
+        totals[2] += member.getCredits() < 0 ? 1 : 0;
+      }
+      return null;
+    });
+    reply.writeLong(totals[0]);
+    reply.writeLong(totals[1]);
+    reply.writeLong(totals[2]);
+    ClusterProtocol.writeStrings(reply, refused);
+    return null;
+  }
+
+  /**
+   * Undoes the changes behind transfers whose member does not exist: the item
+   * of a listing is deleted, and a charge is dropped.
+   */
+  private ModelError compensate(DataInputStream in, DataOutputStream reply) throws IOException {
+    List<String> keys = ClusterProtocol.readStrings(in);
+    reply.writeInt(write(() -> {
+      int undone = 0;
+      for (String key : keys) {
+        if (ledger.remove(key) != null && key.startsWith(CreditLedger.ITEM)) {
+          Item item = itemRepository.getItemById(CreditLedger.subject(key));
+          if (item != null) {
+            contractRepository.cancelContractsForItem(item);
+            itemRepository.deleteItem(item);
+            undone++;
+          }
+        }
+      }
+      return undone;
+    }));
+    return null;
+  }
+
+  /**
+   * Copies the members and items, with their contracts, that belong to
+   * another node on the given ring.
+   */
+  private ModelError export(DataInputStream in, DataOutputStream reply) throws IOException {
+    HashRing ring = new HashRing(ClusterProtocol.readStrings(in));
+    String target = in.readUTF();
+    List<Member> members = new ArrayList<>();
+    List<Item> items = new ArrayList<>();
+    List<Contract> contracts = new ArrayList<>();
+    read(() -> {
+      for (Member member : memberRepository.getAllMembers()) {
+        if (ring.owner(member.getId()).equals(target)) {
+          members.add(member);
+        }
+      }
+      for (Item item : itemRepository.getAllItems()) {
+        if (ring.owner(item.getId()).equals(target)) {
+          items.add(item);
+          contracts.addAll(contractRepository.getContractsForItem(item.getId()));
+        }
+      }
+      return null;
+    });
+    ClusterProtocol.writeMembers(reply, members);
+    ClusterProtocol.writeItems(reply, items);
+    ClusterProtocol.writeContracts(reply, contracts);
+    return null;
+  }
+
+  private ModelError importRecords(DataInputStream in, DataOutputStream reply) throws IOException {
+    List<Member> members = ClusterProtocol.readMembers(in);
+    List<Item> items = ClusterProtocol.readItems(in);
+    List<Contract> contracts = ClusterProtocol.readContracts(in);
+    reply.writeInt(write(() -> {
+      int imported = 0;
+      for (Member member : members) {
+        imported += memberRepository.tryAddMember(member).isOk() ? 1 : 0;
+      }
+      for (Item item : items) {
+        imported += itemRepository.tryAddItem(item).isOk() ? 1 : 0;
+      }
+      for (Contract contract : contracts) {
+        imported += contractRepository.tryAddContract(contract).isOk() ? 1 : 0;
+      }
+      return imported;
+    }));
+    return null;
+  }
+
+  /**
+   * Deletes the members and items, with their contracts, that this node no
+   * longer owns on the given ring, once the router copied them to their new
+   * node.
+   */
+  private ModelError drop(DataInputStream in, DataOutputStream reply) throws IOException {
+    HashRing ring = new HashRing(ClusterProtocol.readStrings(in));
+    String self = in.readUTF();
+    reply.writeInt(write(() -> {
+      int dropped = 0;
+      for (Member member : memberRepository.getAllMembers()) {
+        if (!ring.owner(member.getId()).equals(self)) {
+          memberRepository.deleteMember(member);
+          dropped++;
+        }
+      }
+      for (Item item : itemRepository.getAllItems()) {
+        if (!ring.owner(item.getId()).equals(self)) {
+          for (Contract contract : contractRepository.getContractsForItem(item.getId())) {
+            contractRepository.deleteContract(contract);
+            dropped++;
+          }
+          itemRepository.deleteItem(item);
+          dropped++;
+        }
+      }
+      return dropped;
+    }));
+    return null;
+  }
+
+  private <T> T read(Supplier<T> operation) {
+    lock.readLock().lock();
+    try {
+      return operation.get();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Runs a change under the write lock, then writes the journal of the ledger
+   * before the reply goes out.
+   */
+  private <T> T write(Supplier<T> operation) {
+    lock.writeLock().lock();
+    try {
+      return operation.get();
+    } finally {
+      lock.writeLock().unlock();
+      ledger.flush();
+    }
+  }
+}
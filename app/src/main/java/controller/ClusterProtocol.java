@@ -0,0 +1,259 @@
+package controller;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import model.Contract;
+import model.Item;
+import model.Member;
+
+/**
+ * Binary messages between a {@link ClusterLendingService} and its
+ * {@link ClusterNode}s.
+ *
+ * <p>
+ * A request is an operation byte followed by its arguments; the reply is a
+ * status byte followed by the result if {@link #OK}, the name of a
+ * {@link model.ModelError} if {@link #REFUSED} or a message if
+ * {@link #FAILED}. Strings are written with {@link DataOutputStream#writeUTF}
+ * after a presence flag, dates as epoch days, and lists as a count followed by
+ * the elements. Members, items and contracts are written with everything
+ * needed to rebuild them, the owner of an item and the item and borrower of a
+ * contract included, and credit transfers as their key, member ID and amount.
+ * </p>
+ */
+final class ClusterProtocol {
+  static final int OK = 0;
+  static final int REFUSED = 1;
+  static final int FAILED = 2;
+
+  static final int LIST_MEMBERS = 1;
+  static final int GET_MEMBER = 2;
+  static final int ADD_MEMBER = 3;
+  static final int DELETE_MEMBER = 4;
+  static final int MOVE_CREDITS = 5;
+  static final int LIST_ITEMS = 6;
+  static final int SEARCH_ITEMS = 7;
+  static final int ADD_ITEM = 8;
+  static final int DELETE_ITEM = 9;
+  static final int LIST_CONTRACTS = 10;
+  static final int ADD_CONTRACT = 11;
+  static final int DELETE_CONTRACT = 12;
+  static final int AVAILABLE = 13;
+  static final int TODAY = 14;
+  static final int CATCH_UP = 15;
+  static final int EXPIRE = 16;
+  static final int APPLY_CREDITS = 17;
+  static final int EXPORT = 18;
+  static final int IMPORT = 19;
+  static final int DROP = 20;
+  static final int OUTBOX = 21;
+  static final int ACKNOWLEDGE = 22;
+  static final int COMPENSATE = 23;
+  static final int FORGET = 24;
+
+  // Values read back were validated where they were created
+  private static final String ANY = "(?s).*";
+
+  private ClusterProtocol() {
+  }
+
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+    out.writeLong(date.toEpochDay());
+  }
+
+  static LocalDate readDate(DataInputStream in) throws IOException {
+    return LocalDate.ofEpochDay(in.readLong());
+  }
+
+  static void writeMember(DataOutputStream out, Member member) throws IOException {
+    writeString(out, member.getId());
+    writeString(out, member.getName());
+    writeString(out, member.getEmail());
+    writeString(out, member.getPhone());
+    out.writeInt(member.getCredits());
+  }
+
+  /**
+   * Reads a member, which may be overdrawn.
+   */
+  static Member readMember(DataInputStream in) throws IOException {
+    String id = readString(in);
+    String name = readString(in);
+    String email = readString(in);
+    String phone = readString(in);
+    int credits = in.readInt();
+    Member member = new Member(id, name, email, phone, Math.max(0, credits), ANY, ANY);
+    if (credits < 0) {
+      member.deductCredits(-credits);
+    }
+    return member;
+  }
+
+  static void writeItem(DataOutputStream out, Item item) throws IOException {
+    writeString(out, item.getId());
+    writeString(out, item.getName());
+    out.writeInt(item.getCost());
+    writeMember(out, item.getOwner());
+  }
+
+  static Item readItem(DataInputStream in) throws IOException {
+    String id = readString(in);
+    String name = readString(in);
+    int cost = in.readInt();
+    return new Item(id, readMember(in), name, cost);
+  }
+
+  static void writeContract(DataOutputStream out, Contract contract) throws IOException {
+    writeString(out, contract.getId());
+    writeItem(out, contract.getItem());
+    writeMember(out, contract.getBorrower());
+    writeDate(out, contract.getStartDate());
+    writeDate(out, contract.getEndDate());
+    out.writeBoolean(contract.isActive());
+  }
+
+  static Contract readContract(DataInputStream in) throws IOException {
+    String id = readString(in);
+    Item item = readItem(in);
+    Member borrower = readMember(in);
+    Contract contract = new Contract(id, item, borrower, readDate(in), readDate(in));
+    contract.setActive(in.readBoolean());
+    return contract;
+  }
+
+  static void writeMembers(DataOutputStream out, List<Member> members) throws IOException {
+    out.writeInt(members.size());
+    for (Member member : members) {
+      writeMember(out, member);
+    }
+  }
+
+  static List<Member> readMembers(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    List<Member> members = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      members.add(readMember(in));
+    }
+    return members;
+  }
+
+  static void writeItems(DataOutputStream out, List<Item> items) throws IOException {
+    out.writeInt(items.size());
+    for (Item item : items) {
+      writeItem(out, item);
+    }
+  }
+
+  static List<Item> readItems(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    List<Item> items = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      items.add(readItem(in));
+    }
+    return items;
+  }
+
+  static void writeContracts(DataOutputStream out, List<Contract> contracts) throws IOException {
+    out.writeInt(contracts.size());
+    for (Contract contract : contracts) {
+      writeContract(out, contract);
+    }
+  }
+
+  static List<Contract> readContracts(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    List<Contract> contracts = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      contracts.add(readContract(in));
+    }
+    return contracts;
+  }
+
+  static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+    out.writeInt(values.size());
+    for (String value : values) {
+      out.writeUTF(value);
+    }
+  }
+
+  static List<String> readStrings(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    List<String> values = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      values.add(in.readUTF());
+    }
+    return values;
+  }
+
+  static void writeTransfers(DataOutputStream out, List<CreditLedger.Transfer> transfers) throws IOException {
+    out.writeInt(transfers.size());
+    for (CreditLedger.Transfer transfer : transfers) {
+      out.writeUTF(transfer.key);
+      writeString(out, transfer.memberId);
+      out.writeInt(transfer.amount);
+    }
+  }
+
+  static List<CreditLedger.Transfer> readTransfers(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    List<CreditLedger.Transfer> transfers = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      transfers.add(new CreditLedger.Transfer(in.readUTF(), readString(in), in.readInt()));
+    }
+    return transfers;
+  }
+
+  /**
+   * Writes the highest sequence number settled by origin, as a count followed
+   * by origin and sequence number pairs.
+   */
+  static void writeSettled(DataOutputStream out, Map<String, Long> settled) throws IOException {
+    out.writeInt(settled.size());
+    for (Map.Entry<String, Long> origin : settled.entrySet()) {
+      out.writeUTF(origin.getKey());
+      out.writeLong(origin.getValue());
+    }
+  }
+
+  static Map<String, Long> readSettled(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    Map<String, Long> settled = new LinkedHashMap<>();
+    for (int i = 0; i < count; i++) {
+      settled.put(in.readUTF(), in.readLong());
+    }
+    return settled;
+  }
+
+  /**
+   * Writes the arguments of a request.
+   */
+  interface Request {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  /**
+   * Reads the result of a reply.
+   *
+   * @param <T> the type of the result
+   */
+  interface Reply<T> {
+    T read(DataInputStream in) throws IOException;
+  }
+}
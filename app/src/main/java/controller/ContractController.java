@@ -3,22 +3,29 @@ package controller;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
 import model.Contract;
-import model.ContractRepository;
+import model.ContractRepositoryInterface;
 import model.Item;
-import model.ItemRepository;
+import model.ItemRepositoryInterface;
 import model.Member;
-import model.MemberRepository;
+import model.MemberRepositoryInterface;
+import model.ModelError;
 import model.ModelExceptions;
+import model.Result;
+import model.Settlement;
 import view.ContractViewInterface;
 
 /**
  * Controller class to manage contract operations.
  */
 public class ContractController {
-  private final ContractRepository contractRepository;
-  private final ItemRepository itemRepository;
-  private final MemberRepository memberRepository;
+  private static final int MAX_MATCHES = 10;
+
+  private final ContractRepositoryInterface contractRepository;
+  private final ItemRepositoryInterface itemRepository;
+  private final MemberRepositoryInterface memberRepository;
   private final ContractViewInterface contractView;
 
   /**
@@ -30,12 +37,12 @@ public class ContractController {
    * @param memberRepository   the repository for managing member data.
    * @param contractView       the view interface for interacting with the user.
    */
-  public ContractController(ContractRepository contractRepository, ItemRepository itemRepository,
-      MemberRepository memberRepository, ContractViewInterface contractView) {
-    // Defensive copies to protect internal state
-    this.contractRepository = new ContractRepository(contractRepository); // Assuming a copy constructor exists
-    this.itemRepository = new ItemRepository(itemRepository); // Assuming a copy constructor exists
-    this.memberRepository = new MemberRepository(memberRepository); // Assuming a copy constructor exists
+  public ContractController(ContractRepositoryInterface contractRepository, ItemRepositoryInterface itemRepository,
+      MemberRepositoryInterface memberRepository, ContractViewInterface contractView) {
+    // Repositories are shared so every controller and session sees the same data
+    this.contractRepository = contractRepository;
+    this.itemRepository = itemRepository;
+    this.memberRepository = memberRepository;
     this.contractView = contractView; // No need to copy, as this is an interface
   }
 
@@ -45,9 +52,9 @@ public class ContractController {
    * @param original the original ContractController to copy from.
    */
   public ContractController(ContractController original) {
-    this.contractRepository = new ContractRepository(original.contractRepository); // Assuming a copy constructor exists
-    this.itemRepository = new ItemRepository(original.itemRepository); // Assuming a copy constructor exists
-    this.memberRepository = new MemberRepository(original.memberRepository); // Assuming a copy constructor exists
+    this.contractRepository = original.contractRepository; // Shared with the original
+    this.itemRepository = original.itemRepository; // Shared with the original
+    this.memberRepository = original.memberRepository; // Shared with the original
     this.contractView = original.contractView; // Interface, no need to copy
   }
 
@@ -57,22 +64,16 @@ public class ContractController {
    * @param days the number of days to advance
    */
   public void advanceTime(int days) {
-    LocalDate newDate = LocalDate.now().plusDays(days);
-
-    List<Contract> contracts = contractRepository.getAllContracts();
-    for (Contract contract : contracts) {
-      if (contract.getEndDate().isBefore(newDate) && contract.isActive()) {
-        contract.setActive(false);
-        Member borrower = contract.getBorrower();
-        Item item = contract.getItem();
-        try {
-          borrower.deductCredits(item.getCost());
-        } catch (ModelExceptions.NegativeAmountException e) {
-          contractView.displayNegativeAmountMessage();
-        }
-      }
+    LocalDate newDate;
+    try {
+      newDate = contractRepository.getClock().advance(days);
+    } catch (ModelExceptions.NegativeAmountException e) {
+      contractView.displayNegativeAmountMessage();
+      return;
     }
-
+    Settlement settlement = Settlement.settle(contractRepository, memberRepository, newDate,
+        ForkJoinPool.commonPool());
+    contractView.displaySettlementSummary(settlement);
     contractView.displayAdvanceTimeMessage(days, newDate);
   }
 
@@ -82,11 +83,10 @@ public class ContractController {
   public void createContract() {
     while (true) {
       try {
-        List<Item> allItems = itemRepository.getAllItems();
-        List<Member> allMembers = memberRepository.getAllMembers();
-
-        Item selectedItem = selectItemFromInput(allItems);
-        Member selectedBorrower = selectBorrowerFromInput(allMembers);
+        List<Item> items = findItems(contractView.getItemSearchInput());
+        Item selectedItem = items.isEmpty() ? null : selectItemFromInput(items);
+        List<Member> members = memberRepository.searchMembers(contractView.getBorrowerSearchInput(), MAX_MATCHES);
+        Member selectedBorrower = members.isEmpty() ? null : selectBorrowerFromInput(members);
 
         if (selectedItem == null || selectedBorrower == null) {
           contractView.displayItemOrBorrowerNotFoundMessage();
@@ -101,16 +101,24 @@ public class ContractController {
         String[] contractInput = contractView.getContractInput();
         Contract contract = createContract(contractInput, selectedItem, selectedBorrower);
 
-        if (contract == null || isConflictingContract(contract)) {
+        if (contract == null) {
           contractView.displayConflictingContractMessage();
           continue;
         }
 
-        contractRepository.addContract(contract);
+        // Checked and added in one step, so another session cannot book the same days in between
+        Result<Contract> added = contractRepository.tryAddContract(contract);
+        if (added.getError() == ModelError.CONFLICTING_CONTRACT) {
+          contractView.displayConflictingContractMessage();
+          continue;
+        }
+        added.orThrow();
         contractView.displayContractDetails(contract);
         contractView.displayCreateSuccessMessage();
         break;
 
+      } catch (NoSuchElementException e) {
+        throw e; // Input is closed, nothing left to retry with
       } catch (Exception e) {
         contractView.displayUnexpectedErrorMessage(e.getMessage());
       }
@@ -140,18 +148,6 @@ public class ContractController {
     }
   }
 
-  /**
-   * Checks if the new contract conflicts with any existing contract.
-   *
-   * @param newContract the new contract
-   * @return true if the contract conflicts with any existing contract, otherwise
-   *         false
-   */
-  private boolean isConflictingContract(Contract newContract) {
-    return contractRepository.getAllContracts().stream()
-        .anyMatch(existingContract -> existingContract.conflictsWith(newContract));
-  }
-
   /**
    * Deletes a contract based on user input.
    */
@@ -169,10 +165,32 @@ public class ContractController {
   }
 
   /**
-   * Displays all contracts.
+   * Displays all contracts one page at a time.
    */
   public void viewAllContracts() {
-    contractView.displayAllContracts(contractRepository.getAllContracts());
+    Pager pager = new Pager(Pager.DEFAULT_PAGE_SIZE);
+    while (true) {
+      int total = contractRepository.countContracts();
+      pager.clamp(total);
+      List<Contract> page = contractRepository.getContracts(pager.offset(), pager.pageSize());
+      contractView.displayContractPage(page, pager.offset(), pager.page(), pager.pageCount(total), total);
+      if (pager.pageCount(total) <= 1 || !pager.navigate(contractView.getPageCommand(), total)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Finds items by the words in their name, ranking those free today first, and
+   * falls back to name and ID prefixes when no name contains every word.
+   *
+   * @param query the search text
+   * @return the best matches
+   */
+  private List<Item> findItems(String query) {
+    LocalDate today = contractRepository.getClock().today();
+    List<Item> items = itemRepository.findItems(query, contractRepository.availableDuring(today, today), MAX_MATCHES);
+    return items.isEmpty() ? itemRepository.searchItems(query, MAX_MATCHES) : items;
   }
 
   /**
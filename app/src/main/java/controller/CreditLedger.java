@@ -0,0 +1,256 @@
+package controller;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * The credit transfers a {@link ClusterNode} takes part in: the outbox of
+ * transfers it owes to members that may live on other nodes, and the keys of
+ * the transfers it applied to its own members.
+ *
+ * <p>
+ * A node posts a transfer in the same step as the change causing it, e.g.
+ * listing an item credits its owner and ending a contract charges its
+ * borrower, so the change and the debt are never seen apart. The router then
+ * delivers the transfer to the node of the member, which applies it at most
+ * once by its key, and acknowledges it to remove it from the outbox. A
+ * transfer whose member no longer exists is compensated instead: the listing
+ * is undone, and the charge dropped. A node that was unreachable keeps its
+ * transfers until a later delivery succeeds, so credits move without locking
+ * two nodes at once and balances reconcile once every node is back.
+ * </p>
+ *
+ * <p>
+ * Keys are {@code item:} followed by the item ID for the credit of a listing,
+ * or {@code charge:} followed by the contract ID for the charge of a
+ * contract, then {@code @}, the origin of the ledger and a sequence number.
+ * The origin is drawn at random whenever a ledger is created, so a key is
+ * never reused, not even for a contract ID booked again or by a node
+ * restarted. Once the origin has acknowledged a transfer, it is never
+ * delivered again: the origin tells the router the highest sequence number
+ * up to which it has no transfer pending, and the node of the member forgets
+ * the keys up to it, counting any of them that still arrives as applied.
+ * </p>
+ *
+ * <p>
+ * Posting, applying, settling and forgetting are appended to the journal, the
+ * event log of the node, from which {@link #apply(DomainEvent)} rebuilds the
+ * ledger when the node restarts.
+ * </p>
+ */
+public final class CreditLedger implements Projection {
+  static final String ITEM = "item:";
+  static final String CHARGE = "charge:";
+
+  private final String origin = Long.toHexString(UUID.randomUUID().getLeastSignificantBits());
+  private final Map<String, Transfer> outbox = new LinkedHashMap<>();
+  // Applied keys by origin, as sequence numbers above the one forgotten up to
+  private final Map<String, NavigableSet<Long>> applied = new HashMap<>();
+  private final Map<String, Long> forgotten = new HashMap<>();
+  private long sequence;
+  private EventLog journal;
+
+  /**
+   * Appends every change of the ledger from now on to an event log, e.g. once
+   * the ledger was rebuilt from it.
+   *
+   * @param journal the event log
+   */
+  public synchronized void recordTo(EventLog journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * Writes the journal to the file, so a reply to the router never reports a
+   * change that a crash of the process loses.
+   *
+   * @throws UncheckedIOException if the journal cannot be written
+   */
+  public synchronized void flush() {
+    if (journal != null) {
+      try {
+        journal.flush();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of transfers posted and not yet acknowledged.
+   *
+   * @return the number of pending transfers
+   */
+  public synchronized int countPending() {
+    return outbox.size();
+  }
+
+  /**
+   * Returns the number of transfers applied to the members of the node and
+   * not forgotten yet.
+   *
+   * @return the number of applied transfers
+   */
+  public synchronized int countApplied() {
+    int count = 0;
+    for (NavigableSet<Long> sequences : applied.values()) {
+      count += sequences.size();
+    }
+    return count;
+  }
+
+  @Override
+  public synchronized void apply(DomainEvent event) {
+    switch (event.getType()) {
+      case TRANSFER_POSTED:
+        outbox.put(event.getId(), new Transfer(event.getId(), event.getReference(), event.getAmount()));
+        break;
+      case TRANSFER_APPLIED:
+        applied.computeIfAbsent(origin(event.getId()), o -> new TreeSet<>()).add(sequence(event.getId()));
+        break;
+      case TRANSFER_SETTLED:
+        outbox.remove(event.getId());
+        break;
+      case TRANSFERS_FORGOTTEN:
+        forgetUpTo(event.getId(), event.getSequence());
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Posts a transfer with a new key.
+   *
+   * @param kind     {@link #ITEM} or {@link #CHARGE}
+   * @param subject  the ID of the item or contract causing the transfer
+   * @param memberId the member credited or charged
+   * @param amount   the credits added or, if negative, charged
+   * @return the transfer
+   */
+  synchronized Transfer post(String kind, String subject, String memberId, int amount) {
+    Transfer transfer = new Transfer(kind + subject + "@" + origin + "." + ++sequence, memberId, amount);
+    outbox.put(transfer.key, transfer);
+    record(DomainEvent.transferPosted(transfer.key, memberId, amount));
+    return transfer;
+  }
+
+  synchronized List<Transfer> pending() {
+    return new ArrayList<>(outbox.values());
+  }
+
+  synchronized Transfer remove(String key) {
+    Transfer removed = outbox.remove(key);
+    if (removed != null) {
+      record(DomainEvent.of(DomainEvent.Type.TRANSFER_SETTLED, key));
+    }
+    return removed;
+  }
+
+  /**
+   * Removes acknowledged transfers from the outbox.
+   *
+   * @return for every origin of the keys, the highest sequence number up to
+   *         which no transfer of it is pending, so none will be delivered
+   *         again
+   */
+  synchronized Map<String, Long> acknowledge(Collection<String> keys) {
+    Map<String, Long> settled = new HashMap<>();
+    for (String key : keys) {
+      remove(key);
+      settled.put(origin(key), origin(key).equals(origin) ? sequence : Long.MAX_VALUE);
+    }
+    for (String key : outbox.keySet()) {
+      settled.computeIfPresent(origin(key), (o, upTo) -> Math.min(upTo, sequence(key) - 1));
+    }
+    return settled;
+  }
+
+  synchronized boolean isApplied(String key) {
+    String keyOrigin = origin(key);
+    long keySequence = sequence(key);
+    NavigableSet<Long> sequences = applied.get(keyOrigin);
+    return keySequence <= forgotten.getOrDefault(keyOrigin, 0L)
+        || sequences != null && sequences.contains(keySequence);
+  }
+
+  synchronized void markApplied(String key) {
+    applied.computeIfAbsent(origin(key), o -> new TreeSet<>()).add(sequence(key));
+    record(DomainEvent.of(DomainEvent.Type.TRANSFER_APPLIED, key));
+  }
+
+  /**
+   * Forgets the applied keys of an origin up to a sequence number, which are
+   * counted as applied from now on.
+   */
+  synchronized void forget(String keyOrigin, long upTo) {
+    if (forgetUpTo(keyOrigin, upTo)) {
+      record(DomainEvent.transfersForgotten(keyOrigin, upTo));
+    }
+  }
+
+  private boolean forgetUpTo(String keyOrigin, long upTo) {
+    if (upTo <= forgotten.getOrDefault(keyOrigin, 0L)) {
+      return false;
+    }
+    forgotten.put(keyOrigin, upTo);
+    NavigableSet<Long> sequences = applied.get(keyOrigin);
+    if (sequences != null) {
+      sequences.headSet(upTo, true).clear();
+      if (sequences.isEmpty()) {
+        applied.remove(keyOrigin);
+      }
+    }
+    return true;
+  }
+
+  private void record(DomainEvent event) {
+    if (journal != null) {
+      try {
+        journal.append(event);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Returns the ID of the item or contract a key is for.
+   */
+  static String subject(String key) {
+    return key.substring(key.indexOf(':') + 1, key.lastIndexOf('@'));
+  }
+
+  private static String origin(String key) {
+    return key.substring(key.lastIndexOf('@') + 1, key.lastIndexOf('.'));
+  }
+
+  private static long sequence(String key) {
+    return Long.parseLong(key.substring(key.lastIndexOf('.') + 1));
+  }
+
+  /**
+   * Credits added to or, if negative, charged to a member, identified by a key
+   * unique to the change that caused it.
+   */
+  static final class Transfer {
+    final String key;
+    final String memberId;
+    final int amount;
+
+    Transfer(String key, String memberId, int amount) {
+      this.key = key;
+      this.memberId = memberId;
+      this.amount = amount;
+    }
+  }
+}
@@ -0,0 +1,475 @@
+package controller;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import model.Contract;
+import model.ContractRepositoryInterface;
+import model.Item;
+import model.ItemRepositoryInterface;
+import model.Member;
+import model.MemberRepositoryInterface;
+import model.ModelError;
+import model.Result;
+import view.ImportView;
+
+/**
+ * Imports members, items and contracts from CSV files in bulk.
+ *
+ * <p>
+ * Files are memory-mapped and cut into chunks at line boundaries. Chunks are
+ * parsed and validated in parallel on a fork-join pool, straight from the
+ * mapped bytes, and loaded in file order through the batch insert methods of
+ * the repositories, which update their search indexes once per chunk. Owners,
+ * items and borrowers are resolved by ID, so members have to be imported
+ * before the items and contracts referring to them.
+ * </p>
+ *
+ * <p>
+ * One row per line, fields separated by commas and optionally quoted with
+ * double quotes ("" inside quotes is a quote). A first line starting with
+ * "id," is taken as a header and skipped, as are columns beyond the ones listed
+ * below, so files written by {@link DataExporter} can be imported again.
+ * Every rejected row is written to "&lt;file&gt;.errors" with its line number
+ * and the reason.
+ * </p>
+ *
+ * <pre>
+ * members:   id,name,email,phone,credits
+ * items:     id,ownerId,name,cost
+ * contracts: id,itemId,borrowerId,start,end
+ * </pre>
+ *
+ * <p>
+ * Imported rows are taken as they are: owners are not credited for their
+ * items and borrowers are not charged for their contracts.
+ * </p>
+ */
+public class CsvImporter {
+  private static final int CHUNK_SIZE = 4 << 20;
+  private static final int MAX_REPORTED_ERRORS = 20;
+  private static final String ERROR_REPORT_SUFFIX = ".errors";
+  private static final long INVALID_NUMBER = Long.MIN_VALUE;
+
+  private final MemberRepositoryInterface memberRepository;
+  private final ItemRepositoryInterface itemRepository;
+  private final ContractRepositoryInterface contractRepository;
+  private final String emailPattern;
+  private final String phonePattern;
+  private final ImportView importView;
+  private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+  /**
+   * Constructs a CsvImporter.
+   *
+   * @param memberRepository   the repository receiving the members.
+   * @param itemRepository     the repository receiving the items.
+   * @param contractRepository the repository receiving the contracts.
+   * @param emailPattern       the pattern member emails must match.
+   * @param phonePattern       the pattern member phone numbers must match.
+   * @param importView         the view reporting rejected rows and throughput.
+   */
+  public CsvImporter(MemberRepositoryInterface memberRepository, ItemRepositoryInterface itemRepository,
+      ContractRepositoryInterface contractRepository, String emailPattern, String phonePattern, ImportView importView) {
+    this.memberRepository = memberRepository;
+    this.itemRepository = itemRepository;
+    this.contractRepository = contractRepository;
+    this.emailPattern = emailPattern;
+    this.phonePattern = phonePattern;
+    this.importView = importView;
+  }
+
+  /**
+   * Imports members from "id,name,email,phone,credits" rows.
+   *
+   * @param file the CSV file
+   * @return the number of members added
+   * @throws IOException if the file cannot be read or the report written
+   */
+  public long importMembers(Path file) throws IOException {
+    return importFile(file, 5, (fields, chunk) -> {
+      long credits = parseNumber(fields[4]);
+      if (credits == INVALID_NUMBER) {
+        return chunk.reject("Invalid credits " + fields[4]);
+      }
+      Result<Member> member = Member.create(fields[0], fields[1], fields[2], fields[3], (int) credits,
+          emailPattern, phonePattern);
+      return member.isOk() ? member.getValue() : chunk.reject(member.getError().getMessage());
+    }, memberRepository::addMembers);
+  }
+
+  /**
+   * Imports items from "id,ownerId,name,cost" rows.
+   *
+   * @param file the CSV file
+   * @return the number of items added
+   * @throws IOException if the file cannot be read or the report written
+   */
+  public long importItems(Path file) throws IOException {
+    return importFile(file, 4, (fields, chunk) -> {
+      long cost = parseNumber(fields[3]);
+      if (cost == INVALID_NUMBER) {
+        return chunk.reject("Invalid cost " + fields[3]);
+      }
+      Member owner = memberRepository.getMemberById(fields[1]);
+      if (owner == null) {
+        return chunk.reject(ModelError.MEMBER_NOT_FOUND.getMessage());
+      }
+      Result<Item> item = Item.create(fields[0], owner, fields[2], (int) cost);
+      return item.isOk() ? item.getValue() : chunk.reject(item.getError().getMessage());
+    }, itemRepository::addItems);
+  }
+
+  /**
+   * Imports contracts from "id,itemId,borrowerId,start,end" rows, with dates as
+   * yyyy-MM-dd. Contracts overlapping an earlier contract for the same item are
+   * rejected.
+   *
+   * @param file the CSV file
+   * @return the number of contracts added
+   * @throws IOException if the file cannot be read or the report written
+   */
+  public long importContracts(Path file) throws IOException {
+    return importFile(file, 5, (fields, chunk) -> {
+      LocalDate start = parseDate(fields[3]);
+      LocalDate end = parseDate(fields[4]);
+      if (start == null || end == null) {
+        return chunk.reject("Invalid date " + (start == null ? fields[3] : fields[4]));
+      }
+      Item item = itemRepository.getItemById(fields[1]);
+      if (item == null) {
+        return chunk.reject(ModelError.ITEM_NOT_FOUND.getMessage());
+      }
+      Member borrower = memberRepository.getMemberById(fields[2]);
+      if (borrower == null) {
+        return chunk.reject(ModelError.BORROWER_NOT_FOUND.getMessage());
+      }
+      Result<Contract> contract = Contract.create(fields[0], item, borrower, start, end);
+      return contract.isOk() ? contract.getValue() : chunk.reject(contract.getError().getMessage());
+    }, contractRepository::addContracts);
+  }
+
+  /**
+   * Parses the chunks of the file in parallel and loads them in order, keeping
+   * only a few chunks in flight so memory stays bounded for any file size.
+   */
+  private <T> long importFile(Path file, int columns, RowParser<T> parser, Function<List<T>, ModelError[]> loader)
+      throws IOException {
+    long startNanos = System.nanoTime();
+    Path reportPath = file.resolveSibling(file.getFileName() + ERROR_REPORT_SUFFIX);
+    Files.deleteIfExists(reportPath);
+    ImportView report = null;
+    long imported = 0;
+    long rejected = 0;
+    long firstLine = 1;
+    int maxInFlight = pool.getParallelism() + 1;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      Deque<ForkJoinTask<Chunk<T>>> inFlight = new ArrayDeque<>();
+      while (position < size || !inFlight.isEmpty()) {
+        while (position < size && inFlight.size() < maxInFlight) {
+          ByteBuffer bytes = nextChunk(channel, position, size);
+          boolean skipHeader = position == 0;
+          position += bytes.limit();
+          inFlight.add(pool.submit(() -> parse(new Chunk<>(bytes, columns), parser, skipHeader)));
+        }
+        Chunk<T> chunk = inFlight.poll().join();
+        ModelError[] errors = loader.apply(chunk.values);
+        for (int i = 0; i < errors.length; i++) {
+          if (errors[i] != null) {
+            chunk.rejectValue(i, errors[i].getMessage());
+          }
+        }
+        imported += chunk.values.size() - chunk.loadRejections;
+        chunk.rejections.sort(Comparator.comparingInt(rejection -> rejection.line));
+        for (Rejection rejection : chunk.rejections) {
+          long lineNumber = firstLine + rejection.line;
+          String row = chunk.text(rejection.start, rejection.end);
+          if (rejected++ < MAX_REPORTED_ERRORS) {
+            importView.displayRowError(lineNumber, row, rejection.message);
+          }
+          if (report == null) {
+            report = new ImportView(new PrintStream(new BufferedOutputStream(Files.newOutputStream(reportPath),
+                1 << 16), false, StandardCharsets.UTF_8));
+          }
+          report.displayRowError(lineNumber, row, rejection.message);
+        }
+        firstLine += chunk.lines;
+      }
+    } finally {
+      if (report != null) {
+        report.close();
+      }
+    }
+    importView.displayImportSummary(String.valueOf(file.getFileName()), imported, rejected,
+        report != null ? reportPath.toString() : null, System.nanoTime() - startNanos);
+    return imported;
+  }
+
+  /**
+   * Maps the next chunk of the file, ending after the last complete line that
+   * fits into {@link #CHUNK_SIZE} bytes, or after a longer line.
+   */
+  private static ByteBuffer nextChunk(FileChannel channel, long position, long size) throws IOException {
+    long window = CHUNK_SIZE;
+    while (true) {
+      int length = (int) Math.min(window, size - position);
+      ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+      if (position + length == size) {
+        return bytes;
+      }
+      for (int end = length - 1; end >= 0; end--) {
+        if (bytes.get(end) == '\n') {
+          return bytes.limit(end + 1);
+        }
+      }
+      window = Math.min(window * 2, Integer.MAX_VALUE);
+    }
+  }
+
+  private static <T> Chunk<T> parse(Chunk<T> chunk, RowParser<T> parser, boolean skipHeader) {
+    ByteBuffer bytes = chunk.bytes;
+    int limit = bytes.limit();
+    int start = 0;
+    while (start < limit) {
+      int end = start;
+      while (end < limit && bytes.get(end) != '\n') {
+        end++;
+      }
+      int contentEnd = end > start && bytes.get(end - 1) == '\r' ? end - 1 : end;
+      chunk.startLine(start, contentEnd);
+      if (skipHeader && chunk.lines == 1 && isHeader(bytes, start, contentEnd)) {
+        start = end + 1;
+        continue;
+      }
+      if (contentEnd > start) {
+        int count = chunk.split();
+        T value = count >= chunk.fields.length ? parser.parse(chunk.fields, chunk)
+            : chunk.reject("Expected " + chunk.fields.length + " fields, found " + count);
+        if (value != null) {
+          chunk.accept(value);
+        }
+      }
+      start = end + 1;
+    }
+    return chunk;
+  }
+
+  private static boolean isHeader(ByteBuffer bytes, int start, int end) {
+    return end - start >= 3 && (bytes.get(start) | 0x20) == 'i' && (bytes.get(start + 1) | 0x20) == 'd'
+        && bytes.get(start + 2) == ',';
+  }
+
+  /**
+   * Parses a decimal integer without throwing.
+   *
+   * @return the number, or {@link #INVALID_NUMBER} if the text is not an int
+   */
+  static long parseNumber(String text) {
+    int length = text.length();
+    int i = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+    if (length == i || length - i > 10) {
+      return INVALID_NUMBER;
+    }
+    long value = 0;
+    for (; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return INVALID_NUMBER;
+      }
+      value = value * 10 + (c - '0');
+    }
+    value = text.charAt(0) == '-' ? -value : value;
+    return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? INVALID_NUMBER : value;
+  }
+
+  /**
+   * Parses a yyyy-MM-dd date without throwing.
+   *
+   * @return the date, or null if the text is not a valid date
+   */
+  static LocalDate parseDate(String text) {
+    if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+      return null;
+    }
+    int year = digits(text, 0, 4);
+    int month = digits(text, 5, 7);
+    int day = digits(text, 8, 10);
+    if (year < 0 || month < 1 || month > 12 || day < 1
+        || day > Month.of(month).length(Year.isLeap(year))) {
+      return null;
+    }
+    return LocalDate.of(year, month, day);
+  }
+
+  private static int digits(String text, int from, int to) {
+    int value = 0;
+    for (int i = from; i < to; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  /**
+   * Turns the fields of one row into a value.
+   */
+  private interface RowParser<T> {
+    /**
+     * Parses one row.
+     *
+     * @return the value, or the result of {@link Chunk#reject(String)}
+     */
+    T parse(String[] fields, Chunk<T> chunk);
+  }
+
+  /**
+   * A rejected row, by its line within the chunk and its byte range.
+   */
+  private static final class Rejection {
+    private final int line;
+    private final int start;
+    private final int end;
+    private final String message;
+
+    private Rejection(int line, int start, int end, String message) {
+      this.line = line;
+      this.start = start;
+      this.end = end;
+      this.message = message;
+    }
+  }
+
+  /**
+   * One chunk of a file: the mapped bytes, the parsing state of the current
+   * line and the parsed values with the lines they came from.
+   */
+  private static final class Chunk<T> {
+    private final ByteBuffer bytes;
+    private final String[] fields;
+    private final List<T> values = new ArrayList<>();
+    private final List<Rejection> rejections = new ArrayList<>();
+    // Line index, start and end offset of every value
+    private int[] valueLines = new int[3 * 1024];
+    private byte[] scratch = new byte[256];
+    private int lines;
+    private int lineStart;
+    private int lineEnd;
+    private int loadRejections;
+
+    private Chunk(ByteBuffer bytes, int columns) {
+      this.bytes = bytes;
+      this.fields = new String[columns];
+    }
+
+    private void startLine(int start, int end) {
+      lines++;
+      lineStart = start;
+      lineEnd = end;
+    }
+
+    private void accept(T value) {
+      int slot = 3 * values.size();
+      if (slot == valueLines.length) {
+        valueLines = Arrays.copyOf(valueLines, slot * 2);
+      }
+      valueLines[slot] = lines - 1;
+      valueLines[slot + 1] = lineStart;
+      valueLines[slot + 2] = lineEnd;
+      values.add(value);
+    }
+
+    /**
+     * Rejects the current line.
+     *
+     * @return null, so parsers can return it
+     */
+    private T reject(String message) {
+      rejections.add(new Rejection(lines - 1, lineStart, lineEnd, message));
+      return null;
+    }
+
+    private void rejectValue(int index, String message) {
+      loadRejections++;
+      rejections.add(new Rejection(valueLines[3 * index], valueLines[3 * index + 1], valueLines[3 * index + 2],
+          message));
+    }
+
+    private String text(int start, int end) {
+      byte[] row = new byte[end - start];
+      bytes.get(start, row);
+      return new String(row, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Splits the current line into the fields array.
+     *
+     * @return the number of fields on the line, which may exceed the columns
+     */
+    private int split() {
+      int count = 0;
+      int i = lineStart;
+      while (true) {
+        int length = 0;
+        if (i < lineEnd && bytes.get(i) == '"') {
+          i++;
+          while (i < lineEnd) {
+            byte b = bytes.get(i++);
+            if (b == '"') {
+              if (i == lineEnd || bytes.get(i) != '"') {
+                break;
+              }
+              i++;
+            }
+            length = append(length, b);
+          }
+          while (i < lineEnd && bytes.get(i) != ',') {
+            i++;
+          }
+        } else {
+          while (i < lineEnd && bytes.get(i) != ',') {
+            length = append(length, bytes.get(i++));
+          }
+        }
+        if (count < fields.length) {
+          fields[count] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        count++;
+        if (i >= lineEnd) {
+          return count;
+        }
+        i++;
+      }
+    }
+
+    private int append(int length, byte b) {
+      if (length == scratch.length) {
+        scratch = Arrays.copyOf(scratch, length * 2);
+      }
+      scratch[length] = b;
+      return length + 1;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import model.Contract;
+import model.ContractRepositoryInterface;
+import model.Member;
+import model.MemberRepositoryInterface;
+
+/**
+ * Streams contracts and the member credit ledger to files, page by page, so
+ * the heap needed does not grow with the size of the repositories.
+ *
+ * <p>
+ * Rows are read {@link #PAGE_SIZE} at a time through the paging methods of the
+ * repositories and encoded into one reusable direct buffer that is written to
+ * a file channel whenever it fills up. Rows added or deleted while an export
+ * runs may be missed or written twice, as with paging in the console.
+ * </p>
+ *
+ * <p>
+ * CSV files start with a header row and quote fields like
+ * {@link CsvImporter} expects, so exported files can be imported again:
+ * </p>
+ *
+ * <pre>
+ * contracts: id,itemId,borrowerId,start,end,itemName,borrowerName,active
+ * ledger:    id,name,email,phone,credits
+ * </pre>
+ *
+ * <p>
+ * The binary format is the magic number 0x4C4E4401 ("LND" and version 1), one
+ * byte for the kind of records (1 contracts, 2 ledger), every record preceded
+ * by a 1 byte and a final 0 byte. Strings are a varint byte length followed by
+ * UTF-8, numbers zigzag varints and dates zigzag varint epoch days. Contract
+ * records hold the CSV columns in the same order, with active as one byte.
+ * </p>
+ */
+public class DataExporter {
+  static final int BINARY_MAGIC = 0x4C4E4401;
+  static final byte CONTRACTS = 1;
+  static final byte LEDGER = 2;
+  private static final int PAGE_SIZE = 1024;
+
+  private final MemberRepositoryInterface memberRepository;
+  private final ContractRepositoryInterface contractRepository;
+
+  /**
+   * Output formats.
+   */
+  public enum Format {
+    CSV, BINARY;
+
+    /**
+     * Picks the format from the file name: ".bin" is binary, anything else CSV.
+     *
+     * @param file the file to write
+     * @return the format
+     */
+    public static Format of(Path file) {
+      return String.valueOf(file.getFileName()).endsWith(".bin") ? BINARY : CSV;
+    }
+  }
+
+  /**
+   * Constructs a DataExporter.
+   *
+   * @param memberRepository   the repository of the ledger.
+   * @param contractRepository the repository of the contracts.
+   */
+  public DataExporter(MemberRepositoryInterface memberRepository, ContractRepositoryInterface contractRepository) {
+    this.memberRepository = memberRepository;
+    this.contractRepository = contractRepository;
+  }
+
+  /**
+   * Writes every contract to the file, replacing it, the archived ones after
+   * those on the heap.
+   *
+   * @param file   the file to write
+   * @param format the format of the file
+   * @return the number of contracts written
+   * @throws IOException if the file cannot be written
+   */
+  public long exportContracts(Path file, Format format) throws IOException {
+    long rows = 0;
+    try (RecordWriter out = new RecordWriter(file)) {
+      if (format == Format.CSV) {
+        out.text("id,itemId,borrowerId,start,end,itemName,borrowerName,active\n");
+      } else {
+        out.putInt(BINARY_MAGIC).put(CONTRACTS);
+      }
+      for (List<Contract> page = contractRepository.getContracts(0, PAGE_SIZE); !page.isEmpty();
+          page = contractRepository.getContracts((int) rows, PAGE_SIZE)) {
+        writeContracts(out, format, page);
+        rows += page.size();
+      }
+      long hot = rows;
+      for (List<Contract> page = contractRepository.getArchivedContracts(0, PAGE_SIZE); !page.isEmpty();
+          page = contractRepository.getArchivedContracts((int) (rows - hot), PAGE_SIZE)) {
+        writeContracts(out, format, page);
+        rows += page.size();
+      }
+      if (format == Format.BINARY) {
+        out.put(0);
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Writes every member with their credit balance to the file, replacing it.
+   *
+   * @param file   the file to write
+   * @param format the format of the file
+   * @return the number of members written
+   * @throws IOException if the file cannot be written
+   */
+  public long exportLedger(Path file, Format format) throws IOException {
+    long rows = 0;
+    try (RecordWriter out = new RecordWriter(file)) {
+      if (format == Format.CSV) {
+        out.text("id,name,email,phone,credits\n");
+      } else {
+        out.putInt(BINARY_MAGIC).put(LEDGER);
+      }
+      for (List<Member> page = memberRepository.getMembers(0, PAGE_SIZE); !page.isEmpty();
+          page = memberRepository.getMembers((int) rows, PAGE_SIZE)) {
+        for (Member member : page) {
+          if (format == Format.CSV) {
+            out.field(member.getId()).comma().field(member.getName()).comma().field(member.getEmail()).comma()
+                .field(member.getPhone()).comma().number(member.getCredits()).put('\n');
+          } else {
+            out.record().string(member.getId()).string(member.getName()).string(member.getEmail())
+                .string(member.getPhone()).varint(member.getCredits());
+          }
+        }
+        rows += page.size();
+      }
+      if (format == Format.BINARY) {
+        out.put(0);
+      }
+    }
+    return rows;
+  }
+
+  private static void writeContracts(RecordWriter out, Format format, List<Contract> page) throws IOException {
+    for (Contract contract : page) {
+      if (format == Format.CSV) {
+        out.field(contract.getId()).comma().field(contract.getItemId()).comma()
+            .field(contract.getBorrowerId()).comma().date(contract.getStartDate()).comma()
+            .date(contract.getEndDate()).comma().field(contract.getItemName()).comma()
+            .field(contract.getBorrowerName()).comma().text(contract.isActive() ? "true\n" : "false\n");
+      } else {
+        out.record().string(contract.getId()).string(contract.getItemId()).string(contract.getBorrowerId())
+            .varint(contract.getStartDate().toEpochDay()).varint(contract.getEndDate().toEpochDay())
+            .string(contract.getItemName()).string(contract.getBorrowerName())
+            .put(contract.isActive() ? 1 : 0);
+      }
+    }
+  }
+}
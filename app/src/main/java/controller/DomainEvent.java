@@ -0,0 +1,319 @@
+package controller;
+
+import java.time.LocalDate;
+
+/**
+ * A change of the lending model as stored in an {@link EventLog}: self-contained
+ * values instead of the references to model objects that
+ * {@link model.ModelEvents} carry, so the model can be rebuilt from a sequence
+ * of them.
+ *
+ * <p>
+ * Which fields are set depends on the type; the others are null or 0. When
+ * reading a log, one instance is reused for every event, so projections must
+ * copy what they keep rather than keep the event.
+ * </p>
+ */
+public class DomainEvent {
+  private Type type;
+  private String id;
+  private String reference;
+  private String borrowerId;
+  private String name;
+  private String email;
+  private String phone;
+  private int amount;
+  private long startDay;
+  private long endDay;
+  private boolean active;
+  private long sequence;
+
+  /**
+   * Event types, stored as their position in this list plus one. New types are
+   * only ever appended; readers skip types they do not know.
+   */
+  public enum Type {
+    MEMBER_REGISTERED, MEMBER_DELETED, ITEM_LISTED, ITEM_DELETED, CONTRACT_BOOKED, CONTRACT_CANCELLED,
+    CONTRACT_DELETED, CONTRACT_EXPIRED, CREDITS_MOVED, CLOCK_ADVANCED, TRANSFER_POSTED, TRANSFER_APPLIED,
+    TRANSFER_SETTLED, TRANSFERS_FORGOTTEN;
+
+    int code() {
+      return ordinal() + 1;
+    }
+
+    static Type of(int code) {
+      Type[] types = values();
+      return code >= 1 && code <= types.length ? types[code - 1] : null;
+    }
+  }
+
+  DomainEvent() {
+  }
+
+  /**
+   * Creates the event of a member joining.
+   *
+   * @param id      the member ID
+   * @param name    the name
+   * @param email   the email address
+   * @param phone   the phone number
+   * @param credits the initial credits
+   * @return the event
+   */
+  public static DomainEvent memberRegistered(String id, String name, String email, String phone, int credits) {
+    DomainEvent event = new DomainEvent().set(Type.MEMBER_REGISTERED, id);
+    event.name = name;
+    event.email = email;
+    event.phone = phone;
+    event.amount = credits;
+    return event;
+  }
+
+  /**
+   * Creates the event of an item being listed.
+   *
+   * @param id      the item ID
+   * @param ownerId the ID of the owning member
+   * @param name    the name
+   * @param cost    the cost per contract
+   * @return the event
+   */
+  public static DomainEvent itemListed(String id, String ownerId, String name, int cost) {
+    DomainEvent event = new DomainEvent().set(Type.ITEM_LISTED, id);
+    event.reference = ownerId;
+    event.name = name;
+    event.amount = cost;
+    return event;
+  }
+
+  /**
+   * Creates the event of a contract being booked.
+   *
+   * @param id         the contract ID
+   * @param itemId     the ID of the item
+   * @param borrowerId the ID of the borrowing member
+   * @param start      the first day
+   * @param end        the last day
+   * @param active     whether the contract is active
+   * @return the event
+   */
+  public static DomainEvent contractBooked(String id, String itemId, String borrowerId, LocalDate start,
+      LocalDate end, boolean active) {
+    DomainEvent event = new DomainEvent().set(Type.CONTRACT_BOOKED, id);
+    event.reference = itemId;
+    event.borrowerId = borrowerId;
+    event.startDay = start.toEpochDay();
+    event.endDay = end.toEpochDay();
+    event.active = active;
+    return event;
+  }
+
+  /**
+   * Creates the event of credits moving into or out of a member's account.
+   *
+   * @param memberId the member ID
+   * @param amount   the amount added or, if negative, deducted
+   * @return the event
+   */
+  public static DomainEvent creditsMoved(String memberId, int amount) {
+    DomainEvent event = new DomainEvent().set(Type.CREDITS_MOVED, memberId);
+    event.amount = amount;
+    return event;
+  }
+
+  /**
+   * Creates the event of the clock moving forward. It carries the new date,
+   * as start and end date, rather than the days advanced, so applying it
+   * twice does no harm.
+   *
+   * @param today the current date after the advance
+   * @return the event
+   */
+  public static DomainEvent clockAdvanced(LocalDate today) {
+    DomainEvent event = new DomainEvent().set(Type.CLOCK_ADVANCED, null);
+    event.startDay = today.toEpochDay();
+    event.endDay = event.startDay;
+    return event;
+  }
+
+  /**
+   * Creates the event of a {@link CreditLedger} posting a credit transfer to
+   * its outbox.
+   *
+   * @param key      the key of the transfer
+   * @param memberId the ID of the member credited or charged
+   * @param amount   the credits added or, if negative, charged
+   * @return the event
+   */
+  public static DomainEvent transferPosted(String key, String memberId, int amount) {
+    DomainEvent event = new DomainEvent().set(Type.TRANSFER_POSTED, key);
+    event.reference = memberId;
+    event.amount = amount;
+    return event;
+  }
+
+  /**
+   * Creates the event of a {@link CreditLedger} forgetting the transfers of
+   * an origin applied up to a sequence number, which will not be delivered
+   * again.
+   *
+   * @param origin   the origin of the transfers
+   * @param sequence the highest sequence number forgotten
+   * @return the event
+   */
+  public static DomainEvent transfersForgotten(String origin, long sequence) {
+    DomainEvent event = new DomainEvent().set(Type.TRANSFERS_FORGOTTEN, origin);
+    event.sequence = sequence;
+    return event;
+  }
+
+  /**
+   * Creates an event carrying only the ID of what it is about, like deletions,
+   * cancellations and expiries.
+   *
+   * @param type the type of the event
+   * @param id   the ID of the member, item or contract
+   * @return the event
+   */
+  public static DomainEvent of(Type type, String id) {
+    return new DomainEvent().set(type, id);
+  }
+
+  /**
+   * Clears every field and sets the type and ID, for reuse while reading.
+   */
+  DomainEvent set(Type type, String id) {
+    this.type = type;
+    this.id = id;
+    reference = null;
+    borrowerId = null;
+    name = null;
+    email = null;
+    phone = null;
+    amount = 0;
+    startDay = 0;
+    endDay = 0;
+    active = false;
+    sequence = 0;
+    return this;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Returns the ID of the member, item or contract the event is about.
+   *
+   * @return the ID
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Returns the owner ID of a listed item, the item ID of a booked contract or
+   * the member ID of a posted transfer.
+   *
+   * @return the referenced ID
+   */
+  public String getReference() {
+    return reference;
+  }
+
+  public String getBorrowerId() {
+    return borrowerId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getEmail() {
+    return email;
+  }
+
+  public String getPhone() {
+    return phone;
+  }
+
+  /**
+   * Returns the initial credits of a member, the cost of an item or the credits
+   * moved or transferred, negative when deducted.
+   *
+   * @return the amount
+   */
+  public int getAmount() {
+    return amount;
+  }
+
+  public LocalDate getStartDate() {
+    return LocalDate.ofEpochDay(startDay);
+  }
+
+  public LocalDate getEndDate() {
+    return LocalDate.ofEpochDay(endDay);
+  }
+
+  /**
+   * Returns the number of days of a booked contract, counting both ends.
+   *
+   * @return the days booked
+   */
+  public long getDays() {
+    return endDay - startDay + 1;
+  }
+
+  public boolean isActive() {
+    return active;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  void setReference(String reference) {
+    this.reference = reference;
+  }
+
+  void setBorrowerId(String borrowerId) {
+    this.borrowerId = borrowerId;
+  }
+
+  void setName(String name) {
+    this.name = name;
+  }
+
+  void setEmail(String email) {
+    this.email = email;
+  }
+
+  void setPhone(String phone) {
+    this.phone = phone;
+  }
+
+  void setAmount(int amount) {
+    this.amount = amount;
+  }
+
+  void setDays(long startDay, long endDay) {
+    this.startDay = startDay;
+    this.endDay = endDay;
+  }
+
+  void setActive(boolean active) {
+    this.active = active;
+  }
+
+  void setSequence(long sequence) {
+    this.sequence = sequence;
+  }
+
+  long getStartDay() {
+    return startDay;
+  }
+
+  long getEndDay() {
+    return endDay;
+  }
+}
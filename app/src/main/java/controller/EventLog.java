@@ -0,0 +1,508 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import model.Contract;
+import model.Item;
+import model.Member;
+import model.ModelEvents;
+
+/**
+ * Append-only binary log of {@link DomainEvent}s, the canonical state of an
+ * event-sourced lending model from which the repositories and other
+ * {@link Projection}s are rebuilt.
+ *
+ * <p>
+ * As a recorder of a {@link model.ModelEventBus}, the log turns every model
+ * event into a domain event on the thread that made the change and appends it
+ * to a 64KB buffer, which is written to the file when full and on
+ * {@link #flush()}, {@link #force()} and {@link #close()}. Events still in the
+ * buffer are lost if the process dies. Opening an existing log appends to it,
+ * after cutting off the torn tail such a crash, or a power failure, leaves.
+ * </p>
+ *
+ * <p>
+ * The file is a sequence of 1MB segments. Every segment starts with a header
+ * of the magic number 0x4C4E4453 ("LNDS"), the segment's sequence number as a
+ * long, counting from 0 at the start of the file, and a CRC32C of the two.
+ * Records never cross a segment boundary: one that does not fit the rest of a
+ * segment goes to the next one, and the rest is filled with zeros. Every
+ * record is a type byte, a four-byte big-endian length of the body, a CRC32C
+ * of the type, length and body, and the body: the ID, then depending on the
+ * type
+ * </p>
+ *
+ * <pre>
+ * MEMBER_REGISTERED   name, email, phone, credits
+ * ITEM_LISTED         owner ID, name, cost
+ * CONTRACT_BOOKED     item ID, borrower ID, start day, end day, active byte
+ * CREDITS_MOVED       amount
+ * CLOCK_ADVANCED      day
+ * TRANSFER_POSTED     member ID, amount
+ * TRANSFERS_FORGOTTEN sequence
+ * </pre>
+ *
+ * <p>
+ * with strings and numbers encoded like {@link RecordWriter} does and days as
+ * epoch days. Readers skip records of types they do not know by their length.
+ * </p>
+ *
+ * <p>
+ * Reading stops at the first record that is incomplete or fails its checksum.
+ * If a valid segment follows, that is corruption rather than a torn tail, and
+ * reading fails instead of dropping what comes after. As segments have a
+ * fixed size, opening the log for appending finds the end by mapping and
+ * checking only the last segment with a valid header, however long the log.
+ * </p>
+ */
+public class EventLog implements Consumer<ModelEvents.ModelEvent>, Closeable {
+  static final int MAGIC = 0x4C4E4453;
+  static final int SEGMENT_SIZE = 1 << 20;
+  static final int SEGMENT_HEADER_SIZE = 16;
+  private static final int UNSEGMENTED_MAGIC = 0x4C4E4445;
+  private static final int RECORD_HEADER_SIZE = RecordWriter.RECORD_HEADER_SIZE;
+  private static final int NUMBERS_SIZE = 32;
+
+  private final Path file;
+  private final RecordWriter out;
+  private final DomainEvent converted = new DomainEvent();
+  private final long truncated;
+  private long end;
+  private long forced;
+
+  /**
+   * Opens the log for appending, creating it if missing.
+   *
+   * @param file the log file
+   * @throws IOException if the file cannot be opened or is not an event log
+   */
+  public EventLog(Path file) throws IOException {
+    this.file = file;
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      long size = channel.size();
+      end = recover(file, channel, size);
+      truncated = size - end;
+      channel.truncate(end);
+      channel.force(false);
+      forced = end;
+      channel.position(end);
+      out = new RecordWriter(channel);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the number of bytes of a torn tail cut off when the log was
+   * opened.
+   *
+   * @return the bytes cut off, 0 if the log ended cleanly
+   */
+  public long getTruncated() {
+    return truncated;
+  }
+
+  /**
+   * Reads the events of a log from a position on and applies them to the
+   * projection, stopping at the end of the file or at a record not completely
+   * written yet or torn.
+   *
+   * @param file       the log file
+   * @param from       the position after the last event applied before, or 0
+   *                   to start from the beginning
+   * @param projection the projection to apply the events to
+   * @return the position after the last event applied, to continue from
+   * @throws IOException if the file cannot be read, is not an event log or has
+   *                     a corrupt record before its last segment
+   */
+  public static long replay(Path file, long from, Projection projection) throws IOException {
+    if (!Files.exists(file)) {
+      return 0;
+    }
+    Decoder decoder = new Decoder();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (from < SEGMENT_HEADER_SIZE) {
+        checkMagic(file, channel, size);
+      }
+      long position = from;
+      while (position < size) {
+        long segment = position / SEGMENT_SIZE;
+        long start = segment * SEGMENT_SIZE;
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start,
+            Math.min(size - start, SEGMENT_SIZE));
+        int offset = decoder.decode(mapped, (int) (position - start), segment, projection);
+        position = start + offset;
+        if (offset < SEGMENT_SIZE) {
+          if (isSegment(channel, start + SEGMENT_SIZE, size)) {
+            throw new IOException("Corrupt record at position " + position + " of " + file);
+          }
+          break; // Incomplete or torn record at the end of the file
+        }
+      }
+      return position;
+    }
+  }
+
+  /**
+   * Appends the event.
+   *
+   * @param event the event
+   * @throws IOException if the buffer had to be written and that failed
+   */
+  public synchronized void append(DomainEvent event) throws IOException {
+    int maxBytes = NUMBERS_SIZE + maxBytes(event.getId()) + maxBytes(event.getReference())
+        + maxBytes(event.getBorrowerId()) + maxBytes(event.getName()) + maxBytes(event.getEmail())
+        + maxBytes(event.getPhone());
+    int offset = (int) (end % SEGMENT_SIZE);
+    if (offset > 0 && SEGMENT_SIZE - offset < RECORD_HEADER_SIZE + maxBytes) {
+      out.zeros(SEGMENT_SIZE - offset);
+      end += SEGMENT_SIZE - offset;
+      offset = 0;
+    }
+    if (offset == 0) {
+      out.putInt(MAGIC).putLong(end / SEGMENT_SIZE).putInt(headerChecksum(end / SEGMENT_SIZE));
+      end += SEGMENT_HEADER_SIZE;
+    }
+    int start = out.beginRecord(event.getType().code(), maxBytes);
+    out.string(event.getId());
+    switch (event.getType()) {
+      case MEMBER_REGISTERED:
+        out.string(event.getName()).string(event.getEmail()).string(event.getPhone()).varint(event.getAmount());
+        break;
+      case ITEM_LISTED:
+        out.string(event.getReference()).string(event.getName()).varint(event.getAmount());
+        break;
+      case CONTRACT_BOOKED:
+        out.string(event.getReference()).string(event.getBorrowerId()).varint(event.getStartDay())
+            .varint(event.getEndDay()).put(event.isActive() ? 1 : 0);
+        break;
+      case CREDITS_MOVED:
+        out.varint(event.getAmount());
+        break;
+      case CLOCK_ADVANCED:
+        out.varint(event.getStartDay());
+        break;
+      case TRANSFER_POSTED:
+        out.string(event.getReference()).varint(event.getAmount());
+        break;
+      case TRANSFERS_FORGOTTEN:
+        out.varint(event.getSequence());
+        break;
+      default:
+        break;
+    }
+    end += out.endRecord(start);
+  }
+
+  /**
+   * Appends the domain event for a model event, as a recorder of the event bus.
+   *
+   * @param event the model event
+   * @throws UncheckedIOException if the log cannot be written
+   */
+  @Override
+  public synchronized void accept(ModelEvents.ModelEvent event) {
+    try {
+      if (convert(event, converted)) {
+        append(converted);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns the size of the log including the events not written yet, which is
+   * the position a projection reaches once they are.
+   *
+   * @return the size in bytes
+   */
+  public synchronized long size() {
+    return end;
+  }
+
+  /**
+   * Writes the buffered events to the file, so readers see them.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  public synchronized void flush() throws IOException {
+    out.flush();
+  }
+
+  /**
+   * Writes the buffered events and forces the file to disk, unless nothing was
+   * appended since the last time.
+   *
+   * @return the size of the log on disk, which ends after a complete record
+   *         and survives a crash of the process or the machine
+   * @throws IOException if the file cannot be written
+   */
+  public synchronized long force() throws IOException {
+    if (forced < end) {
+      out.force();
+      forced = end;
+    }
+    return forced;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+
+  /**
+   * Sets the domain event for a model event.
+   *
+   * @return false if the model event has no domain event
+   */
+  static boolean convert(ModelEvents.ModelEvent event, DomainEvent to) {
+    if (event instanceof ModelEvents.CreditsChanged) {
+      ModelEvents.CreditsChanged change = (ModelEvents.CreditsChanged) event;
+      to.set(DomainEvent.Type.CREDITS_MOVED, change.getMember().getId()).setAmount(change.getAmount());
+    } else if (event instanceof ModelEvents.ContractCreated) {
+      Contract contract = ((ModelEvents.ContractCreated) event).getContract();
+      to.set(DomainEvent.Type.CONTRACT_BOOKED, contract.getId()).setReference(contract.getItemId());
+      to.setBorrowerId(contract.getBorrowerId());
+      to.setDays(contract.getStartDate().toEpochDay(), contract.getEndDate().toEpochDay());
+      to.setActive(contract.isActive());
+    } else if (event instanceof ModelEvents.ContractExpired) {
+      to.set(DomainEvent.Type.CONTRACT_EXPIRED, ((ModelEvents.ContractExpired) event).getContract().getId());
+    } else if (event instanceof ModelEvents.ContractCancelled) {
+      to.set(DomainEvent.Type.CONTRACT_CANCELLED, ((ModelEvents.ContractCancelled) event).getContract().getId());
+    } else if (event instanceof ModelEvents.ContractDeleted) {
+      to.set(DomainEvent.Type.CONTRACT_DELETED, ((ModelEvents.ContractDeleted) event).getContract().getId());
+    } else if (event instanceof ModelEvents.MemberCreated) {
+      Member member = ((ModelEvents.MemberCreated) event).getMember();
+      to.set(DomainEvent.Type.MEMBER_REGISTERED, member.getId()).setName(member.getName());
+      to.setEmail(member.getEmail());
+      to.setPhone(member.getPhone());
+      to.setAmount(member.getCredits());
+    } else if (event instanceof ModelEvents.MemberDeleted) {
+      to.set(DomainEvent.Type.MEMBER_DELETED, ((ModelEvents.MemberDeleted) event).getMember().getId());
+    } else if (event instanceof ModelEvents.ItemCreated) {
+      Item item = ((ModelEvents.ItemCreated) event).getItem();
+      to.set(DomainEvent.Type.ITEM_LISTED, item.getId()).setReference(item.getOwnerId());
+      to.setName(item.getName());
+      to.setAmount(item.getCost());
+    } else if (event instanceof ModelEvents.ItemDeleted) {
+      to.set(DomainEvent.Type.ITEM_DELETED, ((ModelEvents.ItemDeleted) event).getItem().getId());
+    } else if (event instanceof ModelEvents.ClockAdvanced) {
+      long day = ((ModelEvents.ClockAdvanced) event).getToday().toEpochDay();
+      to.set(DomainEvent.Type.CLOCK_ADVANCED, null).setDays(day, day);
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Finds the end of the valid records, checking the last segment with a
+   * valid header only.
+   */
+  private static long recover(Path file, FileChannel channel, long size) throws IOException {
+    checkMagic(file, channel, size);
+    for (long segment = (size - 1) / SEGMENT_SIZE; segment >= 0; segment--) {
+      long start = segment * SEGMENT_SIZE;
+      if (isSegment(channel, start, size)) {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start,
+            Math.min(size - start, SEGMENT_SIZE));
+        return start + new Decoder().decode(mapped, 0, segment, null);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Fails unless the file is empty or starts like a segmented event log.
+   */
+  private static void checkMagic(Path file, FileChannel channel, long size) throws IOException {
+    if (size < Integer.BYTES) {
+      return;
+    }
+    ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+    channel.read(magic, 0);
+    if (magic.getInt(0) == UNSEGMENTED_MAGIC) {
+      throw new IOException(file + " is an event log without segments and checksums, from an earlier version");
+    }
+    if (magic.getInt(0) != MAGIC) {
+      throw new IOException(file + " is not an event log");
+    }
+  }
+
+  /**
+   * Tells whether a valid segment header is at the position.
+   */
+  private static boolean isSegment(FileChannel channel, long start, long size) throws IOException {
+    if (size - start < SEGMENT_HEADER_SIZE) {
+      return false;
+    }
+    ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+    while (header.hasRemaining()) {
+      if (channel.read(header, start + header.position()) < 0) {
+        return false;
+      }
+    }
+    return isHeader(header, start / SEGMENT_SIZE);
+  }
+
+  private static boolean isHeader(ByteBuffer segment, long sequence) {
+    return segment.getInt(0) == MAGIC && segment.getLong(Integer.BYTES) == sequence
+        && segment.getInt(Integer.BYTES + Long.BYTES) == headerChecksum(sequence);
+  }
+
+  private static int headerChecksum(long sequence) {
+    CRC32C crc = new CRC32C();
+    crc.update(ByteBuffer.allocate(Integer.BYTES + Long.BYTES).putInt(MAGIC).putLong(sequence).flip());
+    return (int) crc.getValue();
+  }
+
+  private static int maxBytes(String value) {
+    return value == null ? 1 : 5 + 3 * value.length();
+  }
+
+  /**
+   * Decodes records from a window of the file into one reused event.
+   */
+  private static final class Decoder {
+    private final DomainEvent event = new DomainEvent();
+    private final CRC32C crc = new CRC32C();
+    private byte[] bytes = new byte[256];
+
+    /**
+     * Applies the valid records of a segment from an offset on, checking the
+     * header first when starting at 0.
+     *
+     * @param segment    the segment, shorter than a full one at the end of
+     *                   the file
+     * @param projection the projection to apply the records to, or null to
+     *                   only check them
+     * @return the offset after the last valid record, or the segment size if
+     *         the segment is complete and every record in it valid
+     */
+    private int decode(ByteBuffer segment, int offset, long sequence, Projection projection) {
+      int limit = segment.limit();
+      int position = offset;
+      if (position == 0) {
+        if (limit < SEGMENT_HEADER_SIZE || !isHeader(segment, sequence)) {
+          return 0;
+        }
+        position = SEGMENT_HEADER_SIZE;
+      }
+      while (true) {
+        // Zeros after the last record of a complete segment
+        if (SEGMENT_SIZE - position < RECORD_HEADER_SIZE
+            || limit - position >= RECORD_HEADER_SIZE && segment.get(position) == 0) {
+          return limit == SEGMENT_SIZE ? SEGMENT_SIZE : position;
+        }
+        if (limit - position < RECORD_HEADER_SIZE) {
+          return position;
+        }
+        int length = segment.getInt(position + 1);
+        if (length < 0 || limit - position - RECORD_HEADER_SIZE < length
+            || checksum(segment, position, length) != segment.getInt(position + 5)) {
+          return position;
+        }
+        DomainEvent.Type type = DomainEvent.Type.of(segment.get(position));
+        segment.limit(limit).position(position + RECORD_HEADER_SIZE);
+        position += RECORD_HEADER_SIZE + length;
+        if (type != null && projection != null) {
+          projection.apply(read(type, segment));
+        }
+      }
+    }
+
+    private int checksum(ByteBuffer segment, int position, int length) {
+      crc.reset();
+      segment.limit(position + 5).position(position);
+      crc.update(segment);
+      segment.limit(position + RECORD_HEADER_SIZE + length).position(position + RECORD_HEADER_SIZE);
+      crc.update(segment);
+      return (int) crc.getValue();
+    }
+
+    private DomainEvent read(DomainEvent.Type type, ByteBuffer in) {
+      event.set(type, string(in));
+      switch (type) {
+        case MEMBER_REGISTERED:
+          event.setName(string(in));
+          event.setEmail(string(in));
+          event.setPhone(string(in));
+          event.setAmount((int) varint(in));
+          break;
+        case ITEM_LISTED:
+          event.setReference(string(in));
+          event.setName(string(in));
+          event.setAmount((int) varint(in));
+          break;
+        case CONTRACT_BOOKED:
+          event.setReference(string(in));
+          event.setBorrowerId(string(in));
+          event.setDays(varint(in), varint(in));
+          event.setActive(in.get() != 0);
+          break;
+        case CREDITS_MOVED:
+          event.setAmount((int) varint(in));
+          break;
+        case CLOCK_ADVANCED:
+          long day = varint(in);
+          event.setDays(day, day);
+          break;
+        case TRANSFER_POSTED:
+          event.setReference(string(in));
+          event.setAmount((int) varint(in));
+          break;
+        case TRANSFERS_FORGOTTEN:
+          event.setSequence(varint(in));
+          break;
+        default:
+          break;
+      }
+      return event;
+    }
+
+    private String string(ByteBuffer in) {
+      int length = (int) unsigned(in);
+      if (bytes.length < length) {
+        bytes = new byte[Math.max(length, 2 * bytes.length)];
+      }
+      in.get(bytes, 0, length);
+      return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static long varint(ByteBuffer in) {
+      long value = unsigned(in);
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unsigned(ByteBuffer in) {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = in.get();
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      return value;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring assigning keys to named nodes.
+ *
+ * <p>
+ * Every node is placed at 128 points of a 64-bit ring by hashing its name with
+ * the index of the point; a key belongs to the node of the first point at or
+ * after the hash of the key, wrapping around. Adding a node so only moves the
+ * keys that now fall before its points, about 1 / n of them, all to the new
+ * node, and the many points per node keep the shares of the nodes within a
+ * few percent of each other. The ring depends on the node names only, so
+ * processes given the same names agree on the owner of every key.
+ * </p>
+ */
+public final class HashRing {
+  private static final int POINTS_PER_NODE = 128;
+
+  private final TreeMap<Long, String> points = new TreeMap<>();
+  private final List<String> nodes = new ArrayList<>();
+
+  /**
+   * Creates a ring of the given nodes.
+   *
+   * @param nodes the names of the nodes, e.g. host:port
+   */
+  public HashRing(List<String> nodes) {
+    for (String node : nodes) {
+      add(node);
+    }
+  }
+
+  /**
+   * Adds a node. Adding a node twice has no effect.
+   *
+   * @param node the name of the node
+   */
+  public void add(String node) {
+    if (nodes.contains(node)) {
+      return;
+    }
+    nodes.add(node);
+    for (int i = 0; i < POINTS_PER_NODE; i++) {
+      points.put(hash(node + "#" + i), node);
+    }
+  }
+
+  /**
+   * Returns the node a key belongs to.
+   *
+   * @param key the key, e.g. an item ID
+   * @return the name of the node
+   * @throws IllegalStateException if the ring has no nodes
+   */
+  public String owner(String key) {
+    if (points.isEmpty()) {
+      throw new IllegalStateException("The ring has no nodes");
+    }
+    Map.Entry<Long, String> point = points.ceilingEntry(hash(key != null ? key : ""));
+    return (point != null ? point : points.firstEntry()).getValue();
+  }
+
+  /**
+   * Returns the nodes in the order they were added.
+   *
+   * @return the names of the nodes
+   */
+  public List<String> getNodes() {
+    return Collections.unmodifiableList(nodes);
+  }
+
+  /**
+   * Hashes the UTF-16 units of the key with 64-bit FNV-1a and mixes the
+   * result, so similar keys land far apart.
+   */
+  static long hash(String key) {
+    long hash = 0xCBF29CE484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+    }
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return hash ^ (hash >>> 33);
+  }
+}
@@ -0,0 +1,79 @@
+package controller;
+
+import java.util.function.Consumer;
+import model.LendingHistory;
+import model.ModelEvents;
+
+/**
+ * Builds a {@link LendingHistory} from the events of an {@link EventLog},
+ * dating the changes by the clock events logged between them.
+ *
+ * <p>
+ * Replaying the log rebuilds the history a restart would otherwise lose. As a
+ * recorder of a {@link model.ModelEventBus} added once the log is replayed,
+ * the projection then keeps the history up to date with the events the log
+ * records from then on, converted the way the log converts them.
+ * </p>
+ */
+public class HistoryProjection implements Projection, Consumer<ModelEvents.ModelEvent> {
+  private final LendingHistory history;
+  private final DomainEvent converted = new DomainEvent();
+
+  /**
+   * Constructs a projection into the given history.
+   *
+   * @param history the history to build
+   */
+  public HistoryProjection(LendingHistory history) {
+    this.history = history;
+  }
+
+  public LendingHistory getHistory() {
+    return history;
+  }
+
+  @Override
+  public synchronized void accept(ModelEvents.ModelEvent event) {
+    if (EventLog.convert(event, converted)) {
+      apply(converted);
+    }
+  }
+
+  @Override
+  public void apply(DomainEvent event) {
+    String id = event.getId();
+    switch (event.getType()) {
+      case MEMBER_REGISTERED:
+        history.registerMember(id, event.getAmount());
+        break;
+      case MEMBER_DELETED:
+        history.deleteMember(id);
+        break;
+      case CREDITS_MOVED:
+        history.moveCredits(id, event.getAmount());
+        break;
+      case ITEM_LISTED:
+        history.listItem(id, event.getReference());
+        break;
+      case ITEM_DELETED:
+        history.deleteItem(id);
+        break;
+      case CONTRACT_BOOKED:
+        history.bookContract(id, event.getReference(), event.getBorrowerId(), event.getStartDate(),
+            event.getEndDate(), event.isActive());
+        break;
+      case CONTRACT_CANCELLED:
+      case CONTRACT_EXPIRED:
+        history.endContract(id);
+        break;
+      case CONTRACT_DELETED:
+        history.deleteContract(id);
+        break;
+      case CLOCK_ADVANCED:
+        history.advanceTo(event.getStartDate());
+        break;
+      default:
+        break;
+    }
+  }
+}
@@ -0,0 +1,386 @@
+package controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import model.LendingHistory;
+import model.ModelExceptions;
+import view.JsonView;
+
+/**
+ * Embedded HTTP server exposing the lending operations as JSON endpoints.
+ *
+ * <p>
+ * Every request is handled on its own virtual thread (see
+ * {@link VirtualThreads}). Parameters are read from the query string and, for
+ * POST requests, from an application/x-www-form-urlencoded body.
+ * </p>
+ *
+ * <pre>
+ * GET    /members                    POST /members   id,name,email,phone,credits
+ * GET    /members/{id}               DELETE /members/{id}
+ * GET    /items                      POST /items     ownerId,name,cost
+ * GET    /items?q=&amp;sort=cost|availability&amp;limit=
+ * DELETE /items/{id}
+ * GET    /contracts                  POST /contracts id,itemId,borrowerId,start,end
+ * DELETE /contracts/{id}
+ * GET    /availability?itemId=&amp;start=&amp;end=
+ * POST   /time/advance?days=
+ * GET    /history/members/{id}?date=
+ * GET    /history/items/{id}?date=&amp;day=
+ * GET    /history/contracts/{id}?date=
+ * GET    /replication                POST /replication/promote
+ * </pre>
+ *
+ * <p>
+ * The history endpoints answer from a {@link LendingHistory}, if the server
+ * has one, with the state at the end of the given date, today by default. The
+ * replication endpoints exist on a {@link ReplicaLendingService}, which
+ * answers changes with 503 until it is promoted.
+ * </p>
+ */
+public class HttpApiServer {
+  private final LendingServiceInterface service;
+  private final LendingHistory history;
+  private final JsonView jsonView;
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * Creates a server bound to the given port. The server is not started.
+   *
+   * @param service  the service that performs the operations.
+   * @param jsonView the view that renders the responses.
+   * @param port     the port to listen on, or 0 for an ephemeral port.
+   * @throws IOException if the port cannot be bound
+   */
+  public HttpApiServer(LendingServiceInterface service, JsonView jsonView, int port) throws IOException {
+    this(service, null, jsonView, port);
+  }
+
+  /**
+   * Creates a server bound to the given port that also answers questions about
+   * the past. The server is not started.
+   *
+   * @param service  the service that performs the operations.
+   * @param history  the history of the model, or null for none.
+   * @param jsonView the view that renders the responses.
+   * @param port     the port to listen on, or 0 for an ephemeral port.
+   * @throws IOException if the port cannot be bound
+   */
+  public HttpApiServer(LendingServiceInterface service, LendingHistory history, JsonView jsonView, int port)
+      throws IOException {
+    this.service = service;
+    this.history = history;
+    this.jsonView = jsonView;
+    this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+    this.executor = VirtualThreads.newPerTaskExecutor();
+    server.setExecutor(executor);
+    server.createContext("/members", this::handleMembers);
+    server.createContext("/items", this::handleItems);
+    server.createContext("/contracts", this::handleContracts);
+    server.createContext("/availability", this::handleAvailability);
+    server.createContext("/time/advance", this::handleAdvanceTime);
+    if (history != null) {
+      server.createContext("/history", this::handleHistory);
+    }
+    if (service instanceof ReplicaLendingService) {
+      server.createContext("/replication", this::handleReplication);
+    }
+  }
+
+  /**
+   * Starts accepting requests.
+   */
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * Stops the server, waiting at most the given number of seconds for running
+   * requests.
+   *
+   * @param delaySeconds the maximum time to wait
+   */
+  public void stop(int delaySeconds) {
+    server.stop(delaySeconds);
+    executor.shutdown();
+  }
+
+  /**
+   * Returns the port the server listens on.
+   *
+   * @return the bound port
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  private void handleMembers(HttpExchange exchange) throws IOException {
+    handle(exchange, (method, id, params) -> {
+      if (id == null && method.equals("GET")) {
+        return ok(jsonView.members(service.listMembers()));
+      } else if (id == null && method.equals("POST")) {
+        return created(jsonView.member(service.createMember(stringParam(params, "id"), stringParam(params, "name"),
+            stringParam(params, "email"), stringParam(params, "phone"), intParam(params, "credits"))));
+      } else if (id != null && method.equals("GET")) {
+        return ok(jsonView.member(service.getMember(id)));
+      } else if (id != null && method.equals("DELETE")) {
+        service.deleteMember(id);
+        return ok(jsonView.field("deleted", id));
+      }
+      return null;
+    });
+  }
+
+  private void handleItems(HttpExchange exchange) throws IOException {
+    handle(exchange, (method, id, params) -> {
+      if (id == null && method.equals("GET") && params.containsKey("q")) {
+        int limit = params.containsKey("limit") ? intParam(params, "limit") : 20;
+        return ok(jsonView.items(service.searchItems(params.get("q"), params.get("sort"), limit)));
+      } else if (id == null && method.equals("GET")) {
+        return ok(jsonView.items(service.listItems()));
+      } else if (id == null && method.equals("POST")) {
+        return created(jsonView.item(service.createItem(stringParam(params, "ownerId"), stringParam(params, "name"),
+            intParam(params, "cost"))));
+      } else if (id != null && method.equals("DELETE")) {
+        service.deleteItem(id);
+        return ok(jsonView.field("deleted", id));
+      }
+      return null;
+    });
+  }
+
+  private void handleContracts(HttpExchange exchange) throws IOException {
+    handle(exchange, (method, id, params) -> {
+      if (id == null && method.equals("GET")) {
+        return ok(jsonView.contracts(service.listContracts()));
+      } else if (id == null && method.equals("POST")) {
+        return created(jsonView.contract(service.createContract(stringParam(params, "id"),
+            stringParam(params, "itemId"), stringParam(params, "borrowerId"), dateParam(params, "start"),
+            dateParam(params, "end"))));
+      } else if (id != null && method.equals("DELETE")) {
+        service.deleteContract(id);
+        return ok(jsonView.field("deleted", id));
+      }
+      return null;
+    });
+  }
+
+  private void handleAvailability(HttpExchange exchange) throws IOException {
+    handle(exchange, (method, id, params) -> {
+      if (id == null && method.equals("GET")) {
+        return ok(jsonView.field("available", service.isAvailable(stringParam(params, "itemId"),
+            dateParam(params, "start"), dateParam(params, "end"))));
+      }
+      return null;
+    });
+  }
+
+  private void handleAdvanceTime(HttpExchange exchange) throws IOException {
+    handle(exchange, (method, id, params) -> {
+      if (id == null && method.equals("POST")) {
+        return ok(jsonView.field("date", service.advanceTime(intParam(params, "days"))));
+      }
+      return null;
+    });
+  }
+
+  private void handleHistory(HttpExchange exchange) throws IOException {
+    handle(exchange, (method, path, params) -> {
+      int slash = path != null ? path.indexOf('/') : -1;
+      if (slash < 0 || !method.equals("GET")) {
+        return null;
+      }
+      String id = path.substring(slash + 1);
+      LocalDate date = params.containsKey("date") ? dateParam(params, "date") : service.today();
+      LendingHistory.Snapshot snapshot = history.asOf(date);
+      switch (path.substring(0, slash)) {
+        case "members":
+          Integer balance = snapshot.getBalance(id);
+          if (balance == null) {
+            throw new ModelExceptions.MemberNotFoundException();
+          }
+          return ok(jsonView.balanceAsOf(date, id, balance));
+        case "items":
+          String ownerId = snapshot.getOwnerId(id);
+          if (ownerId == null) {
+            throw new ModelExceptions.ItemNotFoundException();
+          }
+          LocalDate day = params.containsKey("day") ? dateParam(params, "day") : date;
+          return ok(jsonView.itemAsOf(date, id, ownerId, day, snapshot.getBookings(id, day)));
+        case "contracts":
+          LendingHistory.ContractState contract = snapshot.getContract(id);
+          if (contract == null) {
+            throw new ModelExceptions.ContractNotFoundException();
+          }
+          return ok(jsonView.contractAsOf(date, contract));
+        default:
+          return null;
+      }
+    });
+  }
+
+  private void handleReplication(HttpExchange exchange) throws IOException {
+    ReplicaLendingService replica = (ReplicaLendingService) service;
+    handle(exchange, (method, id, params) -> {
+      if (id == null && method.equals("GET")) {
+        return ok(replicationStatus(replica));
+      }
+      if ("promote".equals(id) && method.equals("POST")) {
+        try {
+          replica.promote();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return ok(replicationStatus(replica));
+      }
+      return null;
+    });
+  }
+
+  private String replicationStatus(ReplicaLendingService replica) {
+    ReplicationFollower follower = replica.getFollower();
+    return jsonView.replication(replica.isPromoted() ? "primary" : "follower", follower.getLeader(),
+        follower.isConnected(), follower.getPosition(), follower.getLagBytes(), follower.getLagMillis());
+  }
+
+  /**
+   * Resolves the request, runs the route and maps model failures to HTTP
+   * status codes. Bad input is answered with 400 and its message; anything
+   * else is a fault of the server, logged and answered with 500 without
+   * details.
+   */
+  private void handle(HttpExchange exchange, Route route) throws IOException {
+    Response response;
+    try {
+      String method = exchange.getRequestMethod();
+      Map<String, String> params = new HashMap<>();
+      parseParams(exchange.getRequestURI().getRawQuery(), params);
+      if (method.equals("POST")) {
+        try (InputStream body = exchange.getRequestBody()) {
+          parseParams(new String(body.readAllBytes(), StandardCharsets.UTF_8), params);
+        }
+      }
+      response = route.apply(method, pathId(exchange), params);
+      if (response == null) {
+        response = new Response(405, jsonView.error("MethodNotAllowed", method + " " + exchange.getRequestURI()));
+      }
+    } catch (ModelExceptions.MemberNotFoundException | ModelExceptions.ItemNotFoundException
+        | ModelExceptions.BorrowerNotFoundException | ModelExceptions.ContractNotFoundException e) {
+      response = failure(404, e);
+    } catch (ModelExceptions.IdExistsException | ModelExceptions.EmailExistsException
+        | ModelExceptions.PhoneExistsException | ModelExceptions.ConflictingContractException
+        | ModelExceptions.InsufficientFundsException | ModelExceptions.MemberHasContractsException e) {
+      response = failure(409, e);
+    } catch (ModelExceptions.ReadOnlyException e) {
+      response = failure(503, e);
+    } catch (ModelExceptions.ModelException | IllegalArgumentException e) {
+      response = failure(400, e);
+    } catch (RuntimeException e) {
+      System.err.println("Request " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + " failed:");
+      e.printStackTrace();
+      response = new Response(500, jsonView.error("InternalError", "The request could not be completed"));
+    }
+    send(exchange, response);
+  }
+
+  private Response failure(int status, RuntimeException e) {
+    String code = e.getClass().getSimpleName().replace("Exception", "");
+    return new Response(status, jsonView.error(code, e.getMessage() == null ? code : e.getMessage()));
+  }
+
+  private void send(HttpExchange exchange, Response response) throws IOException {
+    byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(response.status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private String pathId(HttpExchange exchange) {
+    String context = exchange.getHttpContext().getPath();
+    String path = exchange.getRequestURI().getPath();
+    if (path.length() <= context.length() + 1) {
+      return null;
+    }
+    return URLDecoder.decode(path.substring(context.length() + 1), StandardCharsets.UTF_8);
+  }
+
+  private void parseParams(String raw, Map<String, String> params) {
+    if (raw == null || raw.isEmpty()) {
+      return;
+    }
+    for (String pair : raw.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq > 0) {
+        params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+            URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  private String stringParam(Map<String, String> params, String name) {
+    String value = params.get(name);
+    if (value == null) {
+      throw new IllegalArgumentException("Parameter '" + name + "' is required");
+    }
+    return value;
+  }
+
+  private int intParam(Map<String, String> params, String name) {
+    try {
+      return Integer.parseInt(params.get(name));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Parameter '" + name + "' must be a number", e);
+    }
+  }
+
+  private LocalDate dateParam(Map<String, String> params, String name) {
+    try {
+      return LocalDate.parse(stringParam(params, name));
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Parameter '" + name + "' must be a date (YYYY-MM-DD)", e);
+    }
+  }
+
+  private static Response ok(String body) {
+    return new Response(200, body);
+  }
+
+  private static Response created(String body) {
+    return new Response(201, body);
+  }
+
+  /**
+   * A single endpoint, returning null when the method is not supported.
+   */
+  private interface Route {
+    Response apply(String method, String id, Map<String, String> params);
+  }
+
+  /**
+   * Status code and JSON body of a response.
+   */
+  private static final class Response {
+    private final int status;
+    private final String body;
+
+    Response(int status, String body) {
+      this.status = status;
+      this.body = body;
+    }
+  }
+}
@@ -1,11 +1,12 @@
 package controller;
 
 import java.util.List;
-import model.ContractRepository;
+import java.util.NoSuchElementException;
+import model.ContractRepositoryInterface;
 import model.Item;
-import model.ItemRepository;
+import model.ItemRepositoryInterface;
 import model.Member;
-import model.MemberRepository;
+import model.MemberRepositoryInterface;
 import view.ItemViewInterface;
 
 /**
@@ -14,10 +15,12 @@ import view.ItemViewInterface;
  * coordinating user input with business logic.
  */
 public class ItemController {
-  private final ItemRepository itemRepository;
+  private static final int MAX_MATCHES = 10;
+
+  private final ItemRepositoryInterface itemRepository;
   private final ItemViewInterface itemView;
-  private final ContractRepository contractRepository;
-  private final MemberRepository memberRepository;
+  private final ContractRepositoryInterface contractRepository;
+  private final MemberRepositoryInterface memberRepository;
 
   /**
    * Constructs an ItemController with the specified repositories and view.
@@ -27,13 +30,13 @@ public class ItemController {
    * @param contractRepository the repository for managing contract data.
    * @param memberRepository   the repository for managing member data.
    */
-  public ItemController(ItemRepository itemRepository, ItemViewInterface itemView,
-      ContractRepository contractRepository, MemberRepository memberRepository) {
-    // Defensive copies to protect internal state
-    this.itemRepository = new ItemRepository(itemRepository); // Assuming there's a copy constructor
+  public ItemController(ItemRepositoryInterface itemRepository, ItemViewInterface itemView,
+      ContractRepositoryInterface contractRepository, MemberRepositoryInterface memberRepository) {
+    // Repositories are shared so every controller and session sees the same data
+    this.itemRepository = itemRepository;
     this.itemView = itemView; // Interface, no need to copy
-    this.contractRepository = new ContractRepository(contractRepository); // Assuming there's a copy constructor
-    this.memberRepository = new MemberRepository(memberRepository); // Assuming there's a copy constructor
+    this.contractRepository = contractRepository;
+    this.memberRepository = memberRepository;
   }
 
   /**
@@ -43,10 +46,10 @@ public class ItemController {
    */
   public ItemController(ItemController original) {
     // Copy the necessary fields from the original object
-    this.itemRepository = new ItemRepository(original.itemRepository); // Assuming a copy constructor exists
+    this.itemRepository = original.itemRepository; // Shared with the original
     this.itemView = original.itemView; // Interface, no need to copy
-    this.contractRepository = new ContractRepository(original.contractRepository); // Assuming a copy constructor exists
-    this.memberRepository = new MemberRepository(original.memberRepository); // Assuming a copy constructor exists
+    this.contractRepository = original.contractRepository; // Shared with the original
+    this.memberRepository = original.memberRepository; // Shared with the original
   }
 
   /**
@@ -75,6 +78,8 @@ public class ItemController {
         itemView.displayCreateSuccessMessage();
         break;
 
+      } catch (NoSuchElementException e) {
+        throw e; // Input is closed, nothing left to retry with
       } catch (Exception e) {
         itemView.displayUnexpectedErrorMessage(e.getMessage());
       }
@@ -119,14 +124,35 @@ public class ItemController {
   }
 
   /**
-   * Retrieves and displays all items.
+   * Displays all items one page at a time.
+   */
+  public void viewAllItems() {
+    Pager pager = new Pager(Pager.DEFAULT_PAGE_SIZE);
+    while (true) {
+      int total = itemRepository.countItems();
+      pager.clamp(total);
+      List<Item> page = itemRepository.getItems(pager.offset(), pager.pageSize());
+      itemView.displayItemPage(page, pager.offset(), pager.page(), pager.pageCount(total), total);
+      if (pager.pageCount(total) <= 1 || !pager.navigate(itemView.getPageCommand(), total)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Lets the user search the items by name or ID and pick one of the first
+   * matches.
    *
-   * @return a list of all items
+   * @return the selected item, or null if nothing matched or the selection is
+   *         invalid
    */
-  public List<Item> viewAllItems() {
-    List<Item> allItems = itemRepository.getAllItems();
-    itemView.displayAllItems(allItems);
-    return allItems; // Return the list of items
+  public Item selectItem() {
+    List<Item> matches = itemRepository.searchItems(itemView.getItemSearchInput(), MAX_MATCHES);
+    if (matches.isEmpty()) {
+      itemView.displayItemNotFoundMessage();
+      return null;
+    }
+    return selectItemFromInput(matches);
   }
 
   /**
@@ -165,12 +191,18 @@ public class ItemController {
   }
 
   /**
-   * Selects an owner based on user input.
+   * Selects an owner by searching the members and picking one of the first
+   * matches.
    *
-   * @return the selected owner, or null if the selection is invalid
+   * @return the selected owner, or null if nothing matched or the selection is
+   *         invalid
    */
   public Member selectOwner() {
-    List<Member> members = memberRepository.getAllMembers();
+    List<Member> members = memberRepository.searchMembers(itemView.getSelectedOwnerName(), MAX_MATCHES);
+    if (members.isEmpty()) {
+      itemView.displayInvalidSelectionMessage();
+      return null;
+    }
     itemView.displayMembers(members);
     try {
       int index = Integer.parseInt(itemView.getSelectedItemIndex()) - 1;
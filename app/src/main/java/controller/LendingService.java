@@ -0,0 +1,246 @@
+package controller;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import model.Contract;
+import model.ContractRepositoryInterface;
+import model.Item;
+import model.ItemRepositoryInterface;
+import model.Member;
+import model.MemberRepositoryInterface;
+import model.ModelError;
+import model.ModelExceptions;
+import model.Result;
+import model.Settlement;
+
+/**
+ * Non-interactive entry point to the lending operations.
+ * Applies the same business rules as the console controllers, but takes its
+ * input as arguments and reports failures as {@link ModelExceptions} instead of
+ * prompting the user again. The repositories are shared, not copied, so the
+ * service can sit behind several concurrent front ends. Every change runs in
+ * one transaction of the contract repository, which matters for a database.
+ */
+public class LendingService implements LendingServiceInterface {
+  private final MemberRepositoryInterface memberRepository;
+  private final ItemRepositoryInterface itemRepository;
+  private final ContractRepositoryInterface contractRepository;
+  private final String emailPattern;
+  private final String phonePattern;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Constructs a LendingService on top of the given repositories.
+   *
+   * @param memberRepository   the repository for managing member data.
+   * @param itemRepository     the repository for managing item data.
+   * @param contractRepository the repository for managing contract data.
+   * @param emailPattern       the pattern to validate member emails.
+   * @param phonePattern       the pattern to validate member phone numbers.
+   */
+  public LendingService(MemberRepositoryInterface memberRepository, ItemRepositoryInterface itemRepository,
+      ContractRepositoryInterface contractRepository, String emailPattern, String phonePattern) {
+    this.memberRepository = memberRepository;
+    this.itemRepository = itemRepository;
+    this.contractRepository = contractRepository;
+    this.emailPattern = emailPattern;
+    this.phonePattern = phonePattern;
+  }
+
+  @Override
+  public List<Member> listMembers() {
+    return read(memberRepository::getAllMembers);
+  }
+
+  @Override
+  public Member getMember(String memberId) {
+    return read(() -> requireMember(memberId));
+  }
+
+  @Override
+  public Member createMember(String id, String name, String email, String phone, int credits) {
+    return tryCreateMember(id, name, email, phone, credits).orThrow();
+  }
+
+  @Override
+  public Result<Member> tryCreateMember(String id, String name, String email, String phone, int credits) {
+    return write(() -> {
+      Result<Member> member = Member.create(id, name, email, phone, credits, emailPattern, phonePattern);
+      return member.isOk() ? memberRepository.tryAddMember(member.getValue()) : member;
+    });
+  }
+
+  @Override
+  public void deleteMember(String memberId) {
+    write(() -> {
+      memberRepository.deleteMember(requireMember(memberId));
+      return null;
+    });
+  }
+
+  @Override
+  public List<Item> listItems() {
+    return read(itemRepository::getAllItems);
+  }
+
+  @Override
+  public List<Item> searchItems(String query, String sort, int limit) {
+    return read(() -> {
+      LocalDate today = contractRepository.getClock().today();
+      return itemRepository.findItems(query,
+          "cost".equals(sort) ? null : contractRepository.availableDuring(today, today), limit);
+    });
+  }
+
+  @Override
+  public Item createItem(String ownerId, String name, int cost) {
+    return tryCreateItem(ownerId, name, cost).orThrow();
+  }
+
+  @Override
+  public Result<Item> tryCreateItem(String ownerId, String name, int cost) {
+    return write(() -> {
+      Member owner = memberRepository.getMemberById(ownerId);
+      if (owner == null) {
+        return Result.failure(ModelError.MEMBER_NOT_FOUND);
+      }
+      Result<Item> item = Item.create(owner, name, cost);
+      if (!item.isOk()) {
+        return item;
+      }
+      Result<Item> added = itemRepository.tryAddItem(item.getValue());
+      if (added.isOk()) {
+        owner.addCredits(cost);
+      }
+      return added;
+    });
+  }
+
+  @Override
+  public void deleteItem(String itemId) {
+    write(() -> {
+      Item item = requireItem(itemId);
+      contractRepository.cancelContractsForItem(item);
+      itemRepository.deleteItem(item);
+      return null;
+    });
+  }
+
+  @Override
+  public List<Contract> listContracts() {
+    return read(contractRepository::getAllContracts);
+  }
+
+  @Override
+  public Contract createContract(String id, String itemId, String borrowerId, LocalDate startDate,
+      LocalDate endDate) {
+    return tryCreateContract(id, itemId, borrowerId, startDate, endDate).orThrow();
+  }
+
+  @Override
+  public Result<Contract> tryCreateContract(String id, String itemId, String borrowerId, LocalDate startDate,
+      LocalDate endDate) {
+    return write(() -> {
+      Item item = itemRepository.getItemById(itemId);
+      if (item == null) {
+        return Result.failure(ModelError.ITEM_NOT_FOUND);
+      }
+      Member borrower = memberRepository.getMemberById(borrowerId);
+      if (borrower == null) {
+        return Result.failure(ModelError.BORROWER_NOT_FOUND);
+      }
+      if (borrower.getCredits() < item.getCost()) {
+        return Result.failure(ModelError.INSUFFICIENT_FUNDS);
+      }
+      Result<Contract> contract = Contract.create(id, item, borrower, startDate, endDate);
+      if (!contract.isOk()) {
+        return contract;
+      }
+      if (contractRepository.hasConflict(contract.getValue())) {
+        return Result.failure(ModelError.CONFLICTING_CONTRACT);
+      }
+      return contractRepository.tryAddContract(contract.getValue());
+    });
+  }
+
+  @Override
+  public void deleteContract(String contractId) {
+    write(() -> {
+      Contract contract = contractRepository.getContract(contractId);
+      if (contract == null) {
+        throw new ModelExceptions.ContractNotFoundException();
+      }
+      contractRepository.deleteContract(contract);
+      return null;
+    });
+  }
+
+  @Override
+  public boolean isAvailable(String itemId, LocalDate startDate, LocalDate endDate) {
+    return read(() -> {
+      requireItem(itemId);
+      return contractRepository.isItemAvailable(itemId, startDate, endDate);
+    });
+  }
+
+  @Override
+  public LocalDate today() {
+    return contractRepository.getClock().today();
+  }
+
+  @Override
+  public LocalDate advanceTime(int days) {
+    return write(() -> {
+      settle(days);
+      return contractRepository.getClock().today();
+    });
+  }
+
+  @Override
+  public Settlement advanceAndSettle(int days) {
+    return write(() -> settle(days));
+  }
+
+  private Settlement settle(int days) {
+    LocalDate newDate = contractRepository.getClock().advance(days);
+    return Settlement.settle(contractRepository, memberRepository, newDate, ForkJoinPool.commonPool());
+  }
+
+  private Member requireMember(String memberId) {
+    Member member = memberRepository.getMemberById(memberId);
+    if (member == null) {
+      throw new ModelExceptions.MemberNotFoundException();
+    }
+    return member;
+  }
+
+  private Item requireItem(String itemId) {
+    Item item = itemRepository.getItemById(itemId);
+    if (item == null) {
+      throw new ModelExceptions.ItemNotFoundException();
+    }
+    return item;
+  }
+
+  private <T> T read(Supplier<T> operation) {
+    lock.readLock().lock();
+    try {
+      return operation.get();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private <T> T write(Supplier<T> operation) {
+    lock.writeLock().lock();
+    try {
+      return contractRepository.inTransaction(operation);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+}
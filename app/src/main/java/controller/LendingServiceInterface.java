@@ -0,0 +1,199 @@
+package controller;
+
+import java.time.LocalDate;
+import java.util.List;
+import model.Contract;
+import model.Item;
+import model.Member;
+import model.ModelExceptions;
+import model.Result;
+import model.Settlement;
+
+/**
+ * The lending operations behind the non-interactive front ends.
+ * {@link LendingService} runs them on one set of repositories,
+ * {@link ShardedLendingService} routes them to partitions of the data.
+ */
+public interface LendingServiceInterface {
+  /**
+   * Returns all members.
+   *
+   * @return a list of all members
+   */
+  List<Member> listMembers();
+
+  /**
+   * Returns the member with the given ID.
+   *
+   * @param memberId the ID of the member
+   * @return the member
+   * @throws ModelExceptions.MemberNotFoundException if no such member exists
+   */
+  Member getMember(String memberId);
+
+  /**
+   * Creates and stores a new member.
+   *
+   * @param id      the ID of the member
+   * @param name    the name of the member
+   * @param email   the email of the member
+   * @param phone   the phone number of the member
+   * @param credits the initial credits of the member
+   * @return the created member
+   */
+  Member createMember(String id, String name, String email, String phone, int credits);
+
+  /**
+   * Creates and stores a new member without throwing for invalid or duplicate
+   * data, for bulk operations.
+   *
+   * @param id      the ID of the member
+   * @param name    the name of the member
+   * @param email   the email of the member
+   * @param phone   the phone number of the member
+   * @param credits the initial credits of the member
+   * @return the created member, or the reason it was rejected
+   */
+  Result<Member> tryCreateMember(String id, String name, String email, String phone, int credits);
+
+  /**
+   * Deletes the member with the given ID.
+   *
+   * @param memberId the ID of the member
+   * @throws ModelExceptions.MemberNotFoundException if no such member exists
+   */
+  void deleteMember(String memberId);
+
+  /**
+   * Returns all items.
+   *
+   * @return a list of all items
+   */
+  List<Item> listItems();
+
+  /**
+   * Finds the items whose name contains every word of the query.
+   *
+   * @param query the words to look for
+   * @param sort  "cost" for the cheapest first, anything else for items
+   *              available today first and then the cheapest
+   * @param limit the maximum number of items to return
+   * @return the best matching items, best first
+   */
+  List<Item> searchItems(String query, String sort, int limit);
+
+  /**
+   * Creates a new item for the given owner and credits the owner with its cost,
+   * as {@link ItemController#createItem(Member)} does.
+   *
+   * @param ownerId the ID of the owning member
+   * @param name    the name of the item
+   * @param cost    the cost of the item per contract
+   * @return the created item
+   * @throws ModelExceptions.MemberNotFoundException if the owner does not exist
+   */
+  Item createItem(String ownerId, String name, int cost);
+
+  /**
+   * Creates a new item without throwing for invalid data, for bulk operations.
+   *
+   * @param ownerId the ID of the owning member
+   * @param name    the name of the item
+   * @param cost    the cost of the item per contract
+   * @return the created item, or the reason it was rejected
+   */
+  Result<Item> tryCreateItem(String ownerId, String name, int cost);
+
+  /**
+   * Deletes the item with the given ID and cancels its active contracts.
+   *
+   * @param itemId the ID of the item
+   * @throws ModelExceptions.ItemNotFoundException if no such item exists
+   */
+  void deleteItem(String itemId);
+
+  /**
+   * Returns all contracts.
+   *
+   * @return a list of all contracts
+   */
+  List<Contract> listContracts();
+
+  /**
+   * Creates a contract for an item and a borrower.
+   *
+   * @param id         the ID of the contract
+   * @param itemId     the ID of the item to borrow
+   * @param borrowerId the ID of the borrowing member
+   * @param startDate  the first day of the contract
+   * @param endDate    the last day of the contract
+   * @return the created contract
+   * @throws ModelExceptions.ItemNotFoundException       if the item does not exist
+   * @throws ModelExceptions.BorrowerNotFoundException   if the borrower does not
+   *                                                     exist
+   * @throws ModelExceptions.InsufficientFundsException  if the borrower cannot
+   *                                                     afford the item
+   * @throws ModelExceptions.ConflictingContractException if the item is already
+   *                                                     booked in the period
+   */
+  Contract createContract(String id, String itemId, String borrowerId, LocalDate startDate,
+      LocalDate endDate);
+
+  /**
+   * Creates a contract without throwing for invalid data, for bulk operations.
+   *
+   * @param id         the ID of the contract
+   * @param itemId     the ID of the item to borrow
+   * @param borrowerId the ID of the borrowing member
+   * @param startDate  the first day of the contract
+   * @param endDate    the last day of the contract
+   * @return the created contract, or the reason it was rejected
+   */
+  Result<Contract> tryCreateContract(String id, String itemId, String borrowerId, LocalDate startDate,
+      LocalDate endDate);
+
+  /**
+   * Deletes the contract with the given ID.
+   *
+   * @param contractId the ID of the contract
+   * @throws ModelExceptions.ContractNotFoundException if no such contract exists
+   */
+  void deleteContract(String contractId);
+
+  /**
+   * Checks if an item can be booked for the whole period.
+   *
+   * @param itemId    the ID of the item
+   * @param startDate the first day of the period
+   * @param endDate   the last day of the period
+   * @return true if the item is free for the period
+   * @throws ModelExceptions.ItemNotFoundException if the item does not exist
+   */
+  boolean isAvailable(String itemId, LocalDate startDate, LocalDate endDate);
+
+  /**
+   * Returns the current date of the lending system.
+   *
+   * @return the current date
+   */
+  LocalDate today();
+
+  /**
+   * Advances time and ends every active contract that expired before the new
+   * date, charging the borrower the cost of the item.
+   *
+   * @param days the number of days to advance
+   * @return the new date
+   * @throws ModelExceptions.NegativeAmountException if days is negative
+   */
+  LocalDate advanceTime(int days);
+
+  /**
+   * Advances time like {@link #advanceTime(int)} and returns what was settled.
+   *
+   * @param days the number of days to advance
+   * @return the totals of the contracts ended
+   * @throws ModelExceptions.NegativeAmountException if days is negative
+   */
+  Settlement advanceAndSettle(int days);
+}
@@ -1,6 +1,6 @@
 package controller;
 
-import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import model.Item;
 import model.Member;
@@ -39,35 +39,58 @@ public class MainController {
    * selections.
    */
   public void start() {
+    showMainMenu();
     boolean running = true;
     while (running) {
-      try {
-        String rawMainSelection = mainView.getRawMainMenuSelection(); // Get raw input
-        int mainSelection = parseMainMenuSelection(rawMainSelection); // Parse and validate input
+      running = resume();
+    }
+  }
 
-        switch (mainSelection) {
-          case 1:
-            handleMemberMenu();
-            break;
-          case 2:
-            handleItemMenu();
-            break;
-          case 3:
-            handleContractMenu();
-            break;
-          case 4:
-            handleAdvanceTime();
-            break;
-          case 5:
-            running = false;
-            break;
-          default:
-            mainView.displayInvalidSelectionMessage();
-        }
-      } catch (Exception e) {
-        mainView.displayUnexpectedErrorMessage(e.getMessage());
+  /**
+   * Displays the main menu, whose selection {@link #resume()} reads. A session
+   * served without a thread of its own shows it once and resumes whenever the
+   * user has typed a selection.
+   */
+  public void showMainMenu() {
+    mainView.displayMainMenu();
+  }
+
+  /**
+   * Reads one selection of the main menu shown last, handles it, including
+   * any submenu it opens, and shows the main menu again.
+   *
+   * @return false once the user exits or the input ends
+   */
+  public boolean resume() {
+    try {
+      String rawMainSelection = mainView.getRawMainMenuSelection(); // Get raw input
+      int mainSelection = parseMainMenuSelection(rawMainSelection); // Parse and validate input
+
+      switch (mainSelection) {
+        case 1:
+          handleMemberMenu();
+          break;
+        case 2:
+          handleItemMenu();
+          break;
+        case 3:
+          handleContractMenu();
+          break;
+        case 4:
+          handleAdvanceTime();
+          break;
+        case 5:
+          return false;
+        default:
+          mainView.displayInvalidSelectionMessage();
       }
+    } catch (NoSuchElementException e) {
+      return false; // Input is closed, e.g. end of piped input or a closed session
+    } catch (Exception e) {
+      mainView.displayUnexpectedErrorMessage(e.getMessage());
     }
+    showMainMenu();
+    return true;
   }
 
   /**
@@ -107,6 +130,8 @@ public class MainController {
           default:
             mainView.displayInvalidSelectionMessage();
         }
+      } catch (NoSuchElementException e) {
+        throw e; // Let start() end the session
       } catch (Exception e) {
         mainView.displayUnexpectedErrorMessage(e.getMessage());
       }
@@ -151,15 +176,9 @@ public class MainController {
             }
             break;
           case 2:
-            List<Item> allItems = itemController.viewAllItems(); // Get all items
-            String selectedItemIndex = mainView.getSelectedItemIndex(); // Get raw input from the view
-            int index = parseInputToIndex(selectedItemIndex, allItems.size()); // Parse and validate input
-
-            if (index >= 0) {
-              Item itemToDelete = allItems.get(index); // Select the Item object
+            Item itemToDelete = itemController.selectItem(); // Reports an invalid selection itself
+            if (itemToDelete != null) {
               itemController.deleteItem(itemToDelete); // Passing the Item object directly
-            } else {
-              mainView.displayInvalidSelectionMessage();
             }
             break;
           case 3:
@@ -171,21 +190,14 @@ public class MainController {
           default:
             mainView.displayInvalidSelectionMessage();
         }
+      } catch (NoSuchElementException e) {
+        throw e; // Let start() end the session
       } catch (Exception e) {
         mainView.displayUnexpectedErrorMessage(e.getMessage());
       }
     }
   }
 
-  private int parseInputToIndex(String input, int maxSize) {
-    try {
-      int index = Integer.parseInt(input) - 1; // Convert to zero-based index
-      return (index >= 0 && index < maxSize) ? index : -1; // Validate index
-    } catch (NumberFormatException e) {
-      return -1; // Return -1 if the input is invalid
-    }
-  }
-
   /**
    * Handles the contract menu operations, allowing the user to create, delete, or
    * view contracts.
@@ -213,6 +225,8 @@ public class MainController {
           default:
             mainView.displayInvalidSelectionMessage();
         }
+      } catch (NoSuchElementException e) {
+        throw e; // Let start() end the session
       } catch (Exception e) {
         mainView.displayUnexpectedErrorMessage(e.getMessage());
       }
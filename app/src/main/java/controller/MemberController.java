@@ -2,7 +2,7 @@ package controller;
 
 import java.util.List;
 import model.Member;
-import model.MemberRepository;
+import model.MemberRepositoryInterface;
 import model.ModelExceptions;
 import view.MemberViewInterface;
 
@@ -12,7 +12,9 @@ import view.MemberViewInterface;
  * coordinating user input with business logic.
  */
 public class MemberController {
-  private final MemberRepository memberRepository;
+  private static final int MAX_MATCHES = 10;
+
+  private final MemberRepositoryInterface memberRepository;
   private final MemberViewInterface memberView;
 
   /**
@@ -21,8 +23,8 @@ public class MemberController {
    * @param memberRepository the repository for managing member data.
    * @param memberView       the view interface for interacting with the user.
    */
-  public MemberController(MemberRepository memberRepository, MemberViewInterface memberView) {
-    this.memberRepository = new MemberRepository(memberRepository); // Defensive copy to fix FindBugs issue
+  public MemberController(MemberRepositoryInterface memberRepository, MemberViewInterface memberView) {
+    this.memberRepository = memberRepository; // Shared, so every controller sees the same members
     this.memberView = memberView; // Interface, no need to copy
   }
 
@@ -32,7 +34,7 @@ public class MemberController {
    * @param original the original MemberController to copy from.
    */
   public MemberController(MemberController original) {
-    this.memberRepository = new MemberRepository(original.memberRepository); // Defensive copy
+    this.memberRepository = original.memberRepository; // Shared with the original
     this.memberView = original.memberView; // Interface, no need to copy
   }
 
@@ -94,8 +96,7 @@ public class MemberController {
    */
   public void deleteMember() {
     while (true) {
-      List<Member> members = memberRepository.getAllMembers();
-      Member member = selectMemberFromInput(members);
+      Member member = searchMember();
       if (member != null) {
         deleteMember(member); // Call the overloaded deleteMember method
         break;
@@ -106,11 +107,20 @@ public class MemberController {
   }
 
   /**
-   * Displays all members currently stored in the repository.
+   * Displays the members currently stored in the repository one page at a time,
+   * letting the user move between pages when there is more than one.
    */
   public void viewAllMembers() {
-    List<Member> members = memberRepository.getAllMembers();
-    memberView.displayAllMembers(members);
+    Pager pager = new Pager(Pager.DEFAULT_PAGE_SIZE);
+    while (true) {
+      int total = memberRepository.countMembers();
+      pager.clamp(total);
+      List<Member> page = memberRepository.getMembers(pager.offset(), pager.pageSize());
+      memberView.displayMemberPage(page, pager.offset(), pager.page(), pager.pageCount(total), total);
+      if (pager.pageCount(total) <= 1 || !pager.navigate(memberView.getPageCommand(), total)) {
+        return;
+      }
+    }
   }
 
   /**
@@ -173,14 +183,25 @@ public class MemberController {
   }
 
   /**
-   * Selects an owner by retrieving all members and then selecting one based on
-   * user input.
+   * Selects an owner by searching the members and then selecting one of the
+   * matches based on user input.
    *
    * @return the selected member, or null if the selection is invalid.
    */
   public Member selectOwner() {
-    List<Member> members = memberRepository.getAllMembers();
-    return selectMemberFromInput(members);
+    return searchMember();
+  }
+
+  /**
+   * Asks for the beginning of a name, email, phone number or ID and lets the
+   * user pick one of the first matches instead of listing every member.
+   *
+   * @return the selected member, or null if nothing matched or the selection is
+   *         invalid.
+   */
+  public Member searchMember() {
+    List<Member> matches = memberRepository.searchMembers(memberView.getMemberSearchInput(), MAX_MATCHES);
+    return matches.isEmpty() ? null : selectMemberFromInput(matches);
   }
 
   /**
@@ -0,0 +1,310 @@
+package controller;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.ContractRepositoryInterface;
+import model.ItemRepositoryInterface;
+import model.MemberRepositoryInterface;
+import view.SocketSession;
+
+/**
+ * Line-protocol TCP server running one console session per connection.
+ *
+ * <p>
+ * A single selector thread accepts connections and moves bytes between the
+ * sockets and the {@link SocketSession} buffers. Each session drives its own
+ * {@link MainController} over the shared repositories.
+ * </p>
+ *
+ * <p>
+ * A session only holds a controller thread while it has input to handle: one
+ * is started when the client sends bytes, and it ends once the session is
+ * back at the main menu with nothing more typed. Connections that never type
+ * anything, or sit at the main menu, cost a channel and a small buffer. The
+ * thread is virtual where supported (see {@link VirtualThreads}); on JDK 17 it
+ * is a platform thread, with its stack reserved for as long as it runs, so
+ * the number of sessions served at once is bounded by the sessions busy with
+ * a command or halfway through a submenu dialog, not by those connected.
+ * </p>
+ *
+ * <p>
+ * A client sending faster than its controller reads is not read from until
+ * the controller has caught up, as the controller waits for a client not
+ * reading its output.
+ * </p>
+ */
+public class NioSessionServer implements Runnable {
+  private final MemberRepositoryInterface memberRepository;
+  private final ItemRepositoryInterface itemRepository;
+  private final ContractRepositoryInterface contractRepository;
+  private final Selector selector;
+  private final ServerSocketChannel serverChannel;
+  private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+  private final Queue<Connection> pendingReads = new ConcurrentLinkedQueue<>();
+  private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+  private final AtomicInteger openSessions = new AtomicInteger();
+  private volatile boolean running = true;
+
+  /**
+   * Creates a server bound to the given port. Call {@link #run()} to serve.
+   *
+   * @param memberRepository   the repository for managing member data.
+   * @param itemRepository     the repository for managing item data.
+   * @param contractRepository the repository for managing contract data.
+   * @param port               the port to listen on, or 0 for an ephemeral port.
+   * @throws IOException if the port cannot be bound
+   */
+  public NioSessionServer(MemberRepositoryInterface memberRepository, ItemRepositoryInterface itemRepository,
+      ContractRepositoryInterface contractRepository, int port) throws IOException {
+    this.memberRepository = memberRepository;
+    this.itemRepository = itemRepository;
+    this.contractRepository = contractRepository;
+    this.selector = Selector.open();
+    this.serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(port), 4096);
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+  }
+
+  /**
+   * Returns the port the server listens on.
+   *
+   * @return the bound port
+   * @throws IOException if the address cannot be read
+   */
+  public int getPort() throws IOException {
+    return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+  }
+
+  /**
+   * Returns the number of connected sessions.
+   *
+   * @return the number of open sessions
+   */
+  public int getOpenSessions() {
+    return openSessions.get();
+  }
+
+  /**
+   * Stops the selector loop and closes the listening socket.
+   */
+  public void stop() {
+    running = false;
+    selector.wakeup();
+  }
+
+  /**
+   * Runs the selector loop until {@link #stop()} is called.
+   */
+  @Override
+  public void run() {
+    try {
+      while (running) {
+        selector.select();
+        for (Connection connection = pendingWrites.poll(); connection != null; connection = pendingWrites.poll()) {
+          if (connection.key.isValid()) {
+            connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+          }
+        }
+        for (Connection connection = pendingReads.poll(); connection != null; connection = pendingReads.poll()) {
+          if (connection.key.isValid() && !connection.ended) {
+            connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_READ);
+          }
+        }
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          try {
+            if (key.isAcceptable()) {
+              accept();
+            } else {
+              Connection connection = (Connection) key.attachment();
+              if (key.isReadable()) {
+                connection.read();
+              }
+              if (key.isValid() && key.isWritable()) {
+                connection.write();
+              }
+            }
+          } catch (IOException e) {
+            if (key.attachment() instanceof Connection) {
+              ((Connection) key.attachment()).close();
+            }
+          }
+        }
+      }
+    } catch (IOException | ClosedSelectorException e) {
+      running = false;
+    } finally {
+      closeAll();
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel = serverChannel.accept();
+    if (channel == null) {
+      return;
+    }
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    Connection connection = new Connection(channel);
+    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    openSessions.incrementAndGet();
+  }
+
+  private void closeAll() {
+    for (SelectionKey key : selector.keys()) {
+      if (key.attachment() instanceof Connection) {
+        ((Connection) key.attachment()).close();
+      }
+    }
+    try {
+      serverChannel.close();
+      selector.close();
+    } catch (IOException e) {
+      // nothing left to release
+    }
+  }
+
+  /**
+   * Socket state of one session, touched only by the selector thread apart
+   * from the controller and the callbacks of its threads, which run one at a
+   * time.
+   */
+  private final class Connection {
+    private final SocketChannel channel;
+    private final SocketSession session;
+    private final AtomicBoolean controlling = new AtomicBoolean();
+    private MainController controller;
+    private SelectionKey key;
+    private boolean started;
+    private boolean ended;
+    private volatile boolean done;
+    private boolean closed;
+
+    Connection(SocketChannel channel) {
+      this.channel = channel;
+      this.session = new SocketSession(this::outputReady, this::inputDrained);
+    }
+
+    void read() throws IOException {
+      readBuffer.clear();
+      int count = channel.read(readBuffer);
+      if (count < 0) {
+        ended = true;
+        session.closeInput();
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        if (!started) {
+          close();
+        } else {
+          resumeController(); // A controller waiting at the main menu still has to see the end
+        }
+        return;
+      }
+      readBuffer.flip();
+      if (!session.receive(readBuffer)) {
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+      }
+      started = true;
+      resumeController();
+    }
+
+    void write() throws IOException {
+      if (session.writeTo(channel)) {
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        if (done) {
+          close();
+        }
+      }
+    }
+
+    void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      session.closeInput();
+      key.cancel();
+      openSessions.decrementAndGet();
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // the connection is gone either way
+      }
+    }
+
+    /**
+     * Starts a controller thread unless one is running.
+     */
+    private void resumeController() {
+      if (!controlling.getAndSet(true)) {
+        VirtualThreads.newThread(this::runController).start();
+      }
+    }
+
+    /**
+     * Handles the input received so far, then gives the thread back. A thread
+     * ending races with bytes arriving, so it looks for input once more after
+     * letting the next one start.
+     */
+    private void runController() {
+      boolean waiting = false;
+      try {
+        if (controller == null) {
+          controller = newController();
+          controller.showMainMenu();
+        }
+        while (!waiting) {
+          while (session.hasInput()) {
+            if (!controller.resume()) {
+              return;
+            }
+          }
+          session.flush();
+          controlling.set(false);
+          waiting = !session.hasInput() || controlling.getAndSet(true);
+        }
+      } finally {
+        if (!waiting) {
+          finished();
+        }
+      }
+    }
+
+    private MainController newController() {
+      MemberController memberController = new MemberController(memberRepository, session.memberView());
+      ItemController itemController = new ItemController(itemRepository, session.itemView(), contractRepository,
+          memberRepository);
+      ContractController contractController = new ContractController(contractRepository, itemRepository,
+          memberRepository, session.contractView());
+      return new MainController(memberController, itemController, contractController, session.mainView());
+    }
+
+    private void inputDrained() {
+      pendingReads.add(this);
+      selector.wakeup();
+    }
+
+    private void outputReady() {
+      pendingWrites.add(this);
+      selector.wakeup();
+    }
+
+    private void finished() {
+      done = true;
+      outputReady(); // The selector closes the channel once the output is sent
+    }
+  }
+}
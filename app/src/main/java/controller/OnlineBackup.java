@@ -0,0 +1,445 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import model.Contract;
+import model.ContractRepositoryInterface;
+import model.Item;
+import model.ItemRepositoryInterface;
+import model.Member;
+import model.MemberRepositoryInterface;
+import model.ModelEvents;
+import model.PersistentMap;
+
+/**
+ * Backs up the members, items, contracts and credits while the model keeps
+ * changing, in full or only what changed since the previous backup.
+ *
+ * <p>
+ * As a recorder of a {@link model.ModelEventBus}, the backup keeps an image of
+ * the model in {@link PersistentMap}s of {@link DomainEvent}s, one per member,
+ * item and contract, holding what a log would need to add it as it is now.
+ * Every change creates a new image sharing all but O(log n) nodes with the
+ * previous one, so taking a point-in-time image is reading one field: it
+ * holds every change published before it and none after, without stopping or
+ * locking anything the console, the HTTP API or the shards do.
+ * </p>
+ *
+ * <p>
+ * Backups are written by one background thread in the {@link EventLog} format,
+ * at most the given number of bytes per second so they do not take the disk
+ * from the log and the database, to a temporary file renamed to
+ * backup-NNNNNN-full.log or backup-NNNNNN-incremental.log when complete. A
+ * full backup adds every member, item and contract; an incremental one is
+ * found by a structural diff of the image against the one the previous backup
+ * wrote, which skips the subtrees the two share, and holds the events turning
+ * one into the other. {@link #restore} replays the last full backup and the
+ * incremental ones after it. The first backup of a process is always full,
+ * since the image of the previous backup is gone with the process that took
+ * it. Every backup ends with the date of the clock, as a clock event; archived
+ * contracts are not part of a backup.
+ * </p>
+ */
+public class OnlineBackup implements Consumer<ModelEvents.ModelEvent>, Closeable {
+  private static final Pattern FILE_NAME = Pattern.compile("backup-(\\d{6})-(full|incremental)\\.log");
+  private static final long PACING_BYTES = 64 * 1024;
+
+  private final Path directory;
+  private final long bytesPerSecond;
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "online-backup");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private volatile Image image = new Image(PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty(),
+      null);
+  private Image backedUp;
+  private int sequence;
+  private int scheduled;
+
+  /**
+   * Creates a backup of the given repositories, taking the image from them as
+   * they are. The repositories should not change before the backup is added
+   * to the bus they publish to.
+   *
+   * @param directory          the directory of the backup files, created if
+   *                           missing
+   * @param bytesPerSecond     the most bytes written per second
+   * @param memberRepository   the repository of the members
+   * @param itemRepository     the repository of the items
+   * @param contractRepository the repository of the contracts
+   * @throws IOException if the directory cannot be created or listed
+   */
+  public OnlineBackup(Path directory, long bytesPerSecond, MemberRepositoryInterface memberRepository,
+      ItemRepositoryInterface itemRepository, ContractRepositoryInterface contractRepository) throws IOException {
+    this.directory = directory;
+    this.bytesPerSecond = bytesPerSecond;
+    Files.createDirectories(directory);
+    TreeMap<Integer, Path> backups = list(directory);
+    this.sequence = backups.isEmpty() ? 0 : backups.lastKey();
+    Image seed = image;
+    for (Member member : memberRepository.getAllMembers()) {
+      seed = seed.apply(DomainEvent.memberRegistered(member.getId(), member.getName(), member.getEmail(),
+          member.getPhone(), member.getCredits()));
+    }
+    for (Item item : itemRepository.getAllItems()) {
+      seed = seed.apply(DomainEvent.itemListed(item.getId(), item.getOwnerId(), item.getName(), item.getCost()));
+    }
+    for (Contract contract : contractRepository.getAllContracts()) {
+      seed = seed.apply(DomainEvent.contractBooked(contract.getId(), contract.getItemId(), contract.getBorrowerId(),
+          contract.getStartDate(), contract.getEndDate(), contract.isActive()));
+    }
+    image = seed.apply(DomainEvent.clockAdvanced(contractRepository.getClock().today()));
+  }
+
+  /**
+   * Takes a full backup now and then one every interval, full every given
+   * number of backups and incremental otherwise.
+   *
+   * @param interval  the time between backups
+   * @param unit      the unit of the interval
+   * @param fullEvery the number of backups from one full backup to the next
+   */
+  public void start(long interval, TimeUnit unit, int fullEvery) {
+    executor.scheduleWithFixedDelay(() -> {
+      boolean full = scheduled++ % fullEvery == 0;
+      try {
+        write(full);
+      } catch (IOException e) {
+        System.err.println("Backup to " + directory + " failed: " + e.getMessage());
+      }
+    }, 0, interval, unit);
+  }
+
+  /**
+   * Takes a backup in the background, of the image as it is now.
+   *
+   * @param full true for a full backup, false for the changes since the
+   *             previous one
+   * @return the backup file once written
+   */
+  public Future<Path> backup(boolean full) {
+    Image taken = image;
+    return executor.submit(() -> write(taken, full));
+  }
+
+  @Override
+  public synchronized void accept(ModelEvents.ModelEvent event) {
+    DomainEvent converted = new DomainEvent();
+    if (EventLog.convert(event, converted)) {
+      image = image.apply(converted);
+    }
+  }
+
+  /**
+   * Stops taking backups, cutting one in progress short.
+   */
+  @Override
+  public void close() throws IOException {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Replays the last full backup in a directory and the incremental backups
+   * taken after it, up to the first one missing.
+   *
+   * @param directory  the directory of the backup files
+   * @param projection the projection to apply the events to
+   * @return the number of backup files replayed, 0 if there is no full backup
+   * @throws IOException if a backup cannot be read
+   */
+  public static int restore(Path directory, Projection projection) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return 0;
+    }
+    TreeMap<Integer, Path> backups = list(directory);
+    Integer first = null;
+    for (Integer number : backups.descendingKeySet()) {
+      if (String.valueOf(backups.get(number).getFileName()).endsWith("-full.log")) {
+        first = number;
+        break;
+      }
+    }
+    if (first == null) {
+      return 0;
+    }
+    int replayed = 0;
+    for (int number = first; backups.containsKey(number); number++) {
+      Path file = backups.get(number);
+      if (number > first && !String.valueOf(file.getFileName()).endsWith("-incremental.log")) {
+        break;
+      }
+      EventLog.replay(file, 0, projection);
+      replayed++;
+    }
+    return replayed;
+  }
+
+  /**
+   * Writes a backup of the image as it is now, on the backup thread.
+   */
+  private Path write(boolean full) throws IOException {
+    return write(image, full);
+  }
+
+  private Path write(Image taken, boolean full) throws IOException {
+    boolean incremental = !full && backedUp != null;
+    Path file = directory.resolve(String.format("backup-%06d-%s.log", sequence + 1,
+        incremental ? "incremental" : "full"));
+    Path temporary = directory.resolve(file.getFileName() + ".tmp");
+    Files.deleteIfExists(temporary);
+    try (PacedLog log = new PacedLog(temporary)) {
+      if (incremental) {
+        writeChanges(log, backedUp, taken);
+      } else {
+        taken.members.forEach((id, member) -> log.appendMember(member));
+        taken.items.forEach((id, item) -> log.append(item));
+        taken.contracts.forEach((id, contract) -> log.append(contract));
+        log.append(taken.clock);
+      }
+      log.force();
+    } catch (UncheckedIOException e) {
+      Files.deleteIfExists(temporary);
+      throw e.getCause();
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temporary);
+      throw e;
+    }
+    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+    sequence++;
+    backedUp = taken;
+    return file;
+  }
+
+  /**
+   * Writes the events turning the older image into the newer one. What goes
+   * is removed before what comes is added, from contracts up to members and
+   * back, so every event refers to members and items the restored model has.
+   * Members, items and contracts replaced under the same ID are removed and
+   * added again.
+   */
+  private static void writeChanges(PacedLog log, Image older, Image newer) {
+    List<String> removedMembers = new ArrayList<>();
+    List<DomainEvent> addedMembers = new ArrayList<>();
+    List<DomainEvent> credits = new ArrayList<>();
+    newer.members.diff(older.members, (id, before, after) -> {
+      if (before != null && after != null && sameMember(before, after)) {
+        credits.add(DomainEvent.creditsMoved(id, after.getAmount() - before.getAmount()));
+        return;
+      }
+      if (before != null) {
+        removedMembers.add(id);
+      }
+      if (after != null) {
+        addedMembers.add(after);
+      }
+    });
+    List<String> removedItems = new ArrayList<>();
+    List<DomainEvent> addedItems = new ArrayList<>();
+    newer.items.diff(older.items, (id, before, after) -> {
+      if (before != null) {
+        removedItems.add(id);
+      }
+      if (after != null) {
+        addedItems.add(after);
+      }
+    });
+    List<String> removedContracts = new ArrayList<>();
+    List<DomainEvent> addedContracts = new ArrayList<>();
+    List<String> expired = new ArrayList<>();
+    newer.contracts.diff(older.contracts, (id, before, after) -> {
+      if (before != null && after != null && sameBooking(before, after) && before.isActive()
+          && !after.isActive()) {
+        expired.add(id);
+        return;
+      }
+      if (before != null) {
+        removedContracts.add(id);
+      }
+      if (after != null) {
+        addedContracts.add(after);
+      }
+    });
+
+    removedContracts.forEach(id -> log.append(DomainEvent.of(DomainEvent.Type.CONTRACT_DELETED, id)));
+    removedItems.forEach(id -> log.append(DomainEvent.of(DomainEvent.Type.ITEM_DELETED, id)));
+    removedMembers.forEach(id -> log.append(DomainEvent.of(DomainEvent.Type.MEMBER_DELETED, id)));
+    addedMembers.forEach(log::appendMember);
+    credits.forEach(log::append);
+    addedItems.forEach(log::append);
+    addedContracts.forEach(log::append);
+    expired.forEach(id -> log.append(DomainEvent.of(DomainEvent.Type.CONTRACT_EXPIRED, id)));
+    if (newer.clock != older.clock) {
+      log.append(newer.clock);
+    }
+  }
+
+  private static boolean sameMember(DomainEvent before, DomainEvent after) {
+    return before.getName().equals(after.getName()) && before.getEmail().equals(after.getEmail())
+        && before.getPhone().equals(after.getPhone());
+  }
+
+  /**
+   * Tells whether two contracts book the same item for the same borrower and
+   * days, so they can only differ in being active.
+   */
+  private static boolean sameBooking(DomainEvent before, DomainEvent after) {
+    return Objects.equals(before.getReference(), after.getReference())
+        && Objects.equals(before.getBorrowerId(), after.getBorrowerId())
+        && before.getStartDate().equals(after.getStartDate()) && before.getEndDate().equals(after.getEndDate());
+  }
+
+  /**
+   * Lists the backup files of a directory by number.
+   */
+  private static TreeMap<Integer, Path> list(Path directory) throws IOException {
+    TreeMap<Integer, Path> backups = new TreeMap<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files.forEach(file -> {
+        Matcher name = FILE_NAME.matcher(String.valueOf(file.getFileName()));
+        if (name.matches()) {
+          backups.put(Integer.parseInt(name.group(1)), file);
+        }
+      });
+    }
+    return backups;
+  }
+
+  /**
+   * An event log written no faster than the bandwidth of the backup, which
+   * surfaces write failures as unchecked exceptions so it can be filled from
+   * the callbacks of the image.
+   */
+  private final class PacedLog implements Closeable {
+    private final EventLog log;
+    private final long start = System.nanoTime();
+    private long paced;
+
+    private PacedLog(Path file) throws IOException {
+      this.log = new EventLog(file);
+    }
+
+    /**
+     * Appends a member, registering a negative balance as a deduction from
+     * zero, which is how the model got there.
+     */
+    private void appendMember(DomainEvent member) {
+      if (member.getAmount() >= 0) {
+        append(member);
+        return;
+      }
+      append(DomainEvent.memberRegistered(member.getId(), member.getName(), member.getEmail(), member.getPhone(),
+          0));
+      append(DomainEvent.creditsMoved(member.getId(), member.getAmount()));
+    }
+
+    private void append(DomainEvent event) {
+      try {
+        log.append(event);
+        long size = log.size();
+        if (size - paced >= PACING_BYTES) {
+          paced = size;
+          long ahead = size * 1_000_000_000L / bytesPerSecond - (System.nanoTime() - start);
+          if (ahead > 0) {
+            TimeUnit.NANOSECONDS.sleep(ahead);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new UncheckedIOException(new InterruptedIOException("Backup interrupted"));
+      }
+    }
+
+    private void force() throws IOException {
+      log.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+      log.close();
+    }
+  }
+
+  /**
+   * The members, items and contracts at one point in time, as the events that
+   * would add them. Images never change.
+   */
+  private static final class Image {
+    private final PersistentMap<String, DomainEvent> members;
+    private final PersistentMap<String, DomainEvent> items;
+    private final PersistentMap<String, DomainEvent> contracts;
+    private final DomainEvent clock;
+
+    private Image(PersistentMap<String, DomainEvent> members, PersistentMap<String, DomainEvent> items,
+        PersistentMap<String, DomainEvent> contracts, DomainEvent clock) {
+      this.members = members;
+      this.items = items;
+      this.contracts = contracts;
+      this.clock = clock;
+    }
+
+    /**
+     * Returns the image with the event applied, which must not be changed
+     * afterwards.
+     */
+    private Image apply(DomainEvent event) {
+      String id = event.getId();
+      switch (event.getType()) {
+        case MEMBER_REGISTERED:
+          return new Image(members.put(id, event), items, contracts, clock);
+        case MEMBER_DELETED:
+          return new Image(members.remove(id), items, contracts, clock);
+        case CREDITS_MOVED: {
+          DomainEvent member = members.get(id);
+          return member == null ? this : new Image(members.put(id, DomainEvent.memberRegistered(id,
+              member.getName(), member.getEmail(), member.getPhone(), member.getAmount() + event.getAmount())),
+              items, contracts, clock);
+        }
+        case ITEM_LISTED:
+          return new Image(members, items.put(id, event), contracts, clock);
+        case ITEM_DELETED:
+          return new Image(members, items.remove(id), contracts, clock);
+        case CONTRACT_BOOKED:
+          return new Image(members, items, contracts.put(id, event), clock);
+        case CONTRACT_CANCELLED:
+        case CONTRACT_EXPIRED: {
+          DomainEvent contract = contracts.get(id);
+          return contract == null || !contract.isActive() ? this : new Image(members, items, contracts.put(id,
+              DomainEvent.contractBooked(id, contract.getReference(), contract.getBorrowerId(),
+                  contract.getStartDate(), contract.getEndDate(), false)), clock);
+        }
+        case CONTRACT_DELETED:
+          return new Image(members, items, contracts.remove(id), clock);
+        case CLOCK_ADVANCED:
+          return clock != null && clock.getStartDay() >= event.getStartDay() ? this
+              : new Image(members, items, contracts, event);
+        default:
+          return this;
+      }
+    }
+  }
+}
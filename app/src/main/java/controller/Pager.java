@@ -0,0 +1,76 @@
+package controller;
+
+/**
+ * Cursor over a paged list, driven by the navigation commands typed after
+ * each page: "n" (next), "p" (previous), a page number (jump), "size N"
+ * (rows per page) and anything else to leave.
+ */
+final class Pager {
+  static final int DEFAULT_PAGE_SIZE = 20;
+
+  private int page;
+  private int pageSize;
+
+  Pager(int pageSize) {
+    this.pageSize = pageSize;
+  }
+
+  int offset() {
+    return page * pageSize;
+  }
+
+  int pageSize() {
+    return pageSize;
+  }
+
+  int page() {
+    return page + 1;
+  }
+
+  int pageCount(int total) {
+    return Math.max(1, (total + pageSize - 1) / pageSize);
+  }
+
+  /**
+   * Keeps the cursor on an existing page after rows were added or removed.
+   */
+  void clamp(int total) {
+    page = Math.min(page, pageCount(total) - 1);
+  }
+
+  /**
+   * Applies a navigation command.
+   *
+   * @return false if the user wants to leave the list
+   */
+  boolean navigate(String command, int total) {
+    String trimmed = command == null ? "" : command.trim().toLowerCase();
+    if (trimmed.equals("n")) {
+      page = Math.min(page + 1, pageCount(total) - 1);
+    } else if (trimmed.equals("p")) {
+      page = Math.max(page - 1, 0);
+    } else if (trimmed.startsWith("size ")) {
+      Integer size = parse(trimmed.substring(5).trim());
+      if (size != null && size > 0) {
+        int firstRow = offset();
+        pageSize = size;
+        page = firstRow / pageSize;
+      }
+    } else {
+      Integer target = parse(trimmed);
+      if (target == null) {
+        return false;
+      }
+      page = Math.max(0, Math.min(target - 1, pageCount(total) - 1));
+    }
+    return true;
+  }
+
+  private Integer parse(String text) {
+    try {
+      return Integer.valueOf(text);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
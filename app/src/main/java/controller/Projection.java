@@ -0,0 +1,21 @@
+package controller;
+
+/**
+ * Read model built by applying the events of an {@link EventLog} in order.
+ *
+ * <p>
+ * Projections only ever see events through {@link #apply(DomainEvent)}, so new
+ * ones can be added without touching the code that changes the model. A
+ * {@link Projector} keeps track of how far a projection has read, so it can be
+ * rebuilt from the start or catch up with new events.
+ * </p>
+ */
+public interface Projection {
+  /**
+   * Applies the next event. The event object is reused for the following
+   * events, so what the projection keeps must be copied out of it.
+   *
+   * @param event the event
+   */
+  void apply(DomainEvent event);
+}
@@ -0,0 +1,114 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Feeds a {@link Projection} the events of an {@link EventLog}, remembering
+ * the position reached so later calls only read what was appended since.
+ *
+ * <p>
+ * Several projections are rebuilt in parallel by catching them up on an
+ * executor together; each reads the log on its own, so they do not wait for
+ * each other. A large read model can also be split into shards, each a
+ * projection of its own that ignores the events of the others, to rebuild it
+ * on several cores.
+ * </p>
+ */
+public class Projector {
+  private final Path log;
+  private final Projection projection;
+  private long position;
+  private long applied;
+
+  /**
+   * Constructs a Projector that has not read anything yet.
+   *
+   * @param log        the event log file
+   * @param projection the projection to feed
+   */
+  public Projector(Path log, Projection projection) {
+    this.log = log;
+    this.projection = projection;
+  }
+
+  /**
+   * Catches every projector up on the executor, one task per projector, and
+   * waits for all of them.
+   *
+   * @param projectors the projectors
+   * @param executor   the executor running them
+   * @return the number of events applied, summed over all projectors
+   * @throws IOException          if the log cannot be read
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public static long catchUpAll(Collection<Projector> projectors, ExecutorService executor)
+      throws IOException, InterruptedException {
+    List<Callable<Long>> tasks = new ArrayList<>();
+    for (Projector projector : projectors) {
+      tasks.add(projector::catchUp);
+    }
+    long total = 0;
+    for (Future<Long> result : executor.invokeAll(tasks)) {
+      try {
+        total += result.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+    return total;
+  }
+
+  public Path getLog() {
+    return log;
+  }
+
+  public Projection getProjection() {
+    return projection;
+  }
+
+  /**
+   * Returns the position in the log up to which events were applied.
+   *
+   * @return the position in bytes
+   */
+  public synchronized long getPosition() {
+    return position;
+  }
+
+  /**
+   * Returns the number of events applied so far.
+   *
+   * @return the events applied
+   */
+  public synchronized long getApplied() {
+    return applied;
+  }
+
+  /**
+   * Applies the events written to the log since the last call, or all of them
+   * on the first call.
+   *
+   * @return the number of events applied by this call
+   * @throws IOException if the log cannot be read
+   */
+  public synchronized long catchUp() throws IOException {
+    long[] count = new long[1];
+    position = EventLog.replay(log, position, event -> {
+      count[0]++;
+      projection.apply(event);
+    });
+    applied += count[0];
+    return count[0];
+  }
+}
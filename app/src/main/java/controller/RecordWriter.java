@@ -0,0 +1,287 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.zip.CRC32C;
+
+/**
+ * Encodes text and binary records into a direct buffer and writes it to a
+ * file channel when full, without going through strings or byte arrays.
+ *
+ * <p>
+ * Strings are a varint byte length followed by UTF-8, numbers zigzag varints.
+ * </p>
+ */
+class RecordWriter implements Closeable {
+  static final int RECORD_HEADER_SIZE = 9;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final CRC32C crc = new CRC32C();
+
+  /**
+   * Opens the file for writing, replacing it.
+   */
+  RecordWriter(Path file) throws IOException {
+    this(FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING));
+  }
+
+  /**
+   * Writes to the channel from its current position.
+   */
+  RecordWriter(FileChannel channel) {
+    this.channel = channel;
+  }
+
+  RecordWriter record() throws IOException {
+    return put(1);
+  }
+
+  /**
+   * Starts a record with a type byte, a four-byte length and a four-byte
+   * CRC32C, first making room for the whole record so that
+   * {@link #endRecord(int)} can fill in the length and checksum.
+   *
+   * @return the buffer position of the record
+   */
+  int beginRecord(int type, int maxBytes) throws IOException {
+    if (maxBytes > BUFFER_SIZE - RECORD_HEADER_SIZE) {
+      throw new IllegalArgumentException("Record of up to " + maxBytes + " bytes does not fit the buffer");
+    }
+    ensure(maxBytes + RECORD_HEADER_SIZE);
+    int start = buffer.position();
+    buffer.put((byte) type).putInt(0).putInt(0);
+    return start;
+  }
+
+  /**
+   * Fills in the length and the CRC32C of the type, length and body of a
+   * record.
+   *
+   * @return the bytes of the whole record
+   */
+  int endRecord(int start) {
+    int end = buffer.position();
+    buffer.putInt(start + 1, end - start - RECORD_HEADER_SIZE);
+    crc.reset();
+    buffer.limit(start + 5).position(start);
+    crc.update(buffer);
+    buffer.limit(end).position(start + RECORD_HEADER_SIZE);
+    crc.update(buffer);
+    buffer.limit(buffer.capacity());
+    buffer.putInt(start + 5, (int) crc.getValue());
+    return end - start;
+  }
+
+  RecordWriter putInt(int value) throws IOException {
+    ensure(Integer.BYTES);
+    buffer.putInt(value);
+    return this;
+  }
+
+  RecordWriter putLong(long value) throws IOException {
+    ensure(Long.BYTES);
+    buffer.putLong(value);
+    return this;
+  }
+
+  /**
+   * Writes the given number of zero bytes.
+   */
+  RecordWriter zeros(int count) throws IOException {
+    int left = count;
+    while (left > 0) {
+      ensure(1);
+      int chunk = Math.min(left, buffer.remaining());
+      for (int i = 0; i < chunk; i++) {
+        buffer.put((byte) 0);
+      }
+      left -= chunk;
+    }
+    return this;
+  }
+
+  RecordWriter put(int b) throws IOException {
+    ensure(1);
+    buffer.put((byte) b);
+    return this;
+  }
+
+  RecordWriter comma() throws IOException {
+    return put(',');
+  }
+
+  RecordWriter text(String text) throws IOException {
+    utf8(text, 0, text.length());
+    return this;
+  }
+
+  RecordWriter number(long value) throws IOException {
+    ensure(20);
+    if (value < 0) {
+      buffer.put((byte) '-');
+    }
+    long rest = Math.abs(value);
+    int digits = 1;
+    for (long limit = 10; digits < 19 && rest >= limit; limit *= 10) {
+      digits++;
+    }
+    for (int i = digits - 1; i >= 0; i--) {
+      buffer.put(buffer.position() + i, (byte) ('0' + rest % 10));
+      rest /= 10;
+    }
+    buffer.position(buffer.position() + digits);
+    return this;
+  }
+
+  /**
+   * Writes the date as yyyy-MM-dd without formatting it into a string first.
+   */
+  RecordWriter date(LocalDate date) throws IOException {
+    if (date.getYear() < 1000 || date.getYear() > 9999) {
+      return text(date.toString());
+    }
+    number(date.getYear()).put('-');
+    if (date.getMonthValue() < 10) {
+      put('0');
+    }
+    number(date.getMonthValue()).put('-');
+    if (date.getDayOfMonth() < 10) {
+      put('0');
+    }
+    return number(date.getDayOfMonth());
+  }
+
+  /**
+   * Writes a CSV field, quoted if it contains a separator, quote or line
+   * break.
+   */
+  RecordWriter field(String value) throws IOException {
+    if (value == null) {
+      return this;
+    }
+    boolean quote = false;
+    for (int i = 0; i < value.length() && !quote; i++) {
+      char c = value.charAt(i);
+      quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+    }
+    if (!quote) {
+      return text(value);
+    }
+    put('"');
+    int from = 0;
+    for (int at = value.indexOf('"'); at >= 0; at = value.indexOf('"', from)) {
+      utf8(value, from, at + 1);
+      put('"');
+      from = at + 1;
+    }
+    utf8(value, from, value.length());
+    return put('"');
+  }
+
+  RecordWriter string(String value) throws IOException {
+    String text = value != null ? value : "";
+    unsigned(utf8Length(text));
+    return text(text);
+  }
+
+  RecordWriter varint(long value) throws IOException {
+    return unsigned((value << 1) ^ (value >> 63));
+  }
+
+  RecordWriter unsigned(long value) throws IOException {
+    ensure(10);
+    long rest = value;
+    while ((rest & ~0x7FL) != 0) {
+      buffer.put((byte) ((rest & 0x7F) | 0x80));
+      rest >>>= 7;
+    }
+    buffer.put((byte) rest);
+    return this;
+  }
+
+  void utf8(String text, int from, int to) throws IOException {
+    for (int i = from; i < to; i++) {
+      ensure(4);
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        buffer.put((byte) c);
+      } else if (c < 0x800) {
+        buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+        buffer.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+            .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        buffer.put((byte) '?');
+      } else {
+        buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+      }
+    }
+  }
+
+  static int utf8Length(String text) {
+    int bytes = 0;
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        bytes++;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+        bytes += 4;
+        i++;
+      } else {
+        bytes += Character.isSurrogate(c) ? 1 : 3;
+      }
+    }
+    return bytes;
+  }
+
+  void ensure(int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush();
+    }
+  }
+
+  /**
+   * Returns the number of bytes written so far, including those still
+   * buffered, counted from the start of the file.
+   */
+  long size() throws IOException {
+    return channel.position() + buffer.position();
+  }
+
+  void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Writes the buffer and forces the file to disk.
+   */
+  void force() throws IOException {
+    flush();
+    channel.force(false);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,235 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import model.Contract;
+import model.Item;
+import model.LendingClock;
+import model.Member;
+import model.ModelError;
+import model.ModelEventBus;
+import model.ModelEvents;
+import model.Result;
+import model.Settlement;
+
+/**
+ * Lending operations on a read replica: the repositories are kept up to date
+ * by a {@link ReplicationFollower}, queries are answered from them, and
+ * changes are refused with {@link ModelError#READ_ONLY} until the replica is
+ * promoted.
+ *
+ * <p>
+ * Queries run under a read lock whose write lock the follower holds while it
+ * applies events, so they see every shipment completely or not at all.
+ * Promotion is manual, for when the leader is gone for good: it stops
+ * following, applies what was received, opens the local copy of the log as the
+ * event log of the model and from then on runs changes like the primary did.
+ * Restarting the process as a leader on that log lets the other followers
+ * follow it, since their copies are a prefix of it.
+ * </p>
+ */
+public class ReplicaLendingService implements LendingServiceInterface, Closeable {
+  private final LendingServiceInterface service;
+  private final Projector projector;
+  private final ModelEventBus events;
+  private final Consumer<ModelEvents.ModelEvent> history;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final ReplicationFollower follower;
+  private volatile EventLog promoted;
+
+  /**
+   * Creates a replica following the leader at the given address. The replica
+   * is not started.
+   *
+   * @param service   the service running the operations on the repositories.
+   * @param projector the projector of the local copy of the log into the same
+   *                  repositories, caught up with it already.
+   * @param clock     the clock of the repositories.
+   * @param events    the bus the repositories publish to, without an event log.
+   * @param history   the recorder fed by the projector while following, added
+   *                  to the bus once promoted, or null for none.
+   * @param leader    the leader as host:port.
+   */
+  public ReplicaLendingService(LendingServiceInterface service, Projector projector, LendingClock clock,
+      ModelEventBus events, Consumer<ModelEvents.ModelEvent> history, String leader) {
+    this.service = service;
+    this.projector = projector;
+    this.events = events;
+    this.history = history;
+    this.follower = new ReplicationFollower(leader, projector, clock, lock.writeLock());
+  }
+
+  /**
+   * Starts following the leader.
+   */
+  public void start() {
+    follower.start();
+  }
+
+  public ReplicationFollower getFollower() {
+    return follower;
+  }
+
+  /**
+   * Tells whether the replica was promoted and accepts changes.
+   *
+   * @return true if promoted
+   */
+  public boolean isPromoted() {
+    return promoted != null;
+  }
+
+  /**
+   * Stops following the leader and makes this the primary, appending every
+   * change to the local copy of the log. Promoting twice has no effect.
+   *
+   * @throws IOException if the log cannot be read or opened for appending
+   */
+  public synchronized void promote() throws IOException {
+    if (promoted != null) {
+      return;
+    }
+    follower.close();
+    projector.catchUp();
+    EventLog log = new EventLog(projector.getLog());
+    events.addRecorder(log);
+    if (history != null) {
+      events.addRecorder(history);
+    }
+    promoted = log;
+  }
+
+  @Override
+  public void close() throws IOException {
+    follower.close();
+    EventLog log = promoted;
+    if (log != null) {
+      log.close();
+    }
+  }
+
+  @Override
+  public List<Member> listMembers() {
+    return read(service::listMembers);
+  }
+
+  @Override
+  public Member getMember(String memberId) {
+    return read(() -> service.getMember(memberId));
+  }
+
+  @Override
+  public Member createMember(String id, String name, String email, String phone, int credits) {
+    return tryCreateMember(id, name, email, phone, credits).orThrow();
+  }
+
+  @Override
+  public Result<Member> tryCreateMember(String id, String name, String email, String phone, int credits) {
+    return change(() -> service.tryCreateMember(id, name, email, phone, credits));
+  }
+
+  @Override
+  public void deleteMember(String memberId) {
+    requirePromoted();
+    service.deleteMember(memberId);
+  }
+
+  @Override
+  public List<Item> listItems() {
+    return read(service::listItems);
+  }
+
+  @Override
+  public List<Item> searchItems(String query, String sort, int limit) {
+    return read(() -> service.searchItems(query, sort, limit));
+  }
+
+  @Override
+  public Item createItem(String ownerId, String name, int cost) {
+    return tryCreateItem(ownerId, name, cost).orThrow();
+  }
+
+  @Override
+  public Result<Item> tryCreateItem(String ownerId, String name, int cost) {
+    return change(() -> service.tryCreateItem(ownerId, name, cost));
+  }
+
+  @Override
+  public void deleteItem(String itemId) {
+    requirePromoted();
+    service.deleteItem(itemId);
+  }
+
+  @Override
+  public List<Contract> listContracts() {
+    return read(service::listContracts);
+  }
+
+  @Override
+  public Contract createContract(String id, String itemId, String borrowerId, LocalDate startDate,
+      LocalDate endDate) {
+    return tryCreateContract(id, itemId, borrowerId, startDate, endDate).orThrow();
+  }
+
+  @Override
+  public Result<Contract> tryCreateContract(String id, String itemId, String borrowerId, LocalDate startDate,
+      LocalDate endDate) {
+    return change(() -> service.tryCreateContract(id, itemId, borrowerId, startDate, endDate));
+  }
+
+  @Override
+  public void deleteContract(String contractId) {
+    requirePromoted();
+    service.deleteContract(contractId);
+  }
+
+  @Override
+  public boolean isAvailable(String itemId, LocalDate startDate, LocalDate endDate) {
+    return read(() -> service.isAvailable(itemId, startDate, endDate));
+  }
+
+  @Override
+  public LocalDate today() {
+    return read(service::today);
+  }
+
+  @Override
+  public LocalDate advanceTime(int days) {
+    advanceAndSettle(days);
+    return today();
+  }
+
+  @Override
+  public Settlement advanceAndSettle(int days) {
+    requirePromoted();
+    return service.advanceAndSettle(days);
+  }
+
+  private <T> T read(Supplier<T> operation) {
+    lock.readLock().lock();
+    try {
+      return operation.get();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Runs a change if the replica was promoted.
+   */
+  private <T> Result<T> change(Supplier<Result<T>> operation) {
+    return promoted != null ? operation.get() : Result.failure(ModelError.READ_ONLY);
+  }
+
+  private void requirePromoted() {
+    if (promoted == null) {
+      throw ModelError.READ_ONLY.toException();
+    }
+  }
+}
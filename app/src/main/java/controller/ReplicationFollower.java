@@ -0,0 +1,224 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.locks.Lock;
+import model.LendingClock;
+
+/**
+ * Follows a {@link ReplicationLeader}: appends what it ships to a local copy of
+ * its event log and applies the new events through a {@link Projector}.
+ *
+ * <p>
+ * The bytes go from the socket to the copy with
+ * {@link FileChannel#transferFrom}, and the projector then reads the events
+ * from the file like a rebuild does, holding the given lock so queries never
+ * see a half applied event. The clock is moved forward to the leader's date.
+ * When the connection drops, the follower reconnects every 500 ms and asks for
+ * what comes after the last valid record of its copy, which also survives a
+ * restart of the follower.
+ * </p>
+ *
+ * <p>
+ * The lag is reported two ways: the bytes of the leader's log not applied
+ * yet, and the age of the newest leader state fully applied, measured from
+ * the send time of the last shipment that left nothing to apply. While the
+ * leader is idle, the age grows to the heartbeat interval before it drops
+ * again; while the leader is unreachable, it keeps growing.
+ * </p>
+ */
+public class ReplicationFollower implements Closeable {
+  private static final long RETRY_MILLIS = 500;
+  private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+  private final String host;
+  private final int port;
+  private final Projector projector;
+  private final LendingClock clock;
+  private final Lock applyLock;
+  private final Thread thread;
+  private volatile boolean running = true;
+  private volatile SocketChannel channel;
+  private volatile long leaderEnd;
+  private volatile long caughtUpAt;
+
+  /**
+   * Creates a follower of the leader at the given address. The follower is not
+   * started.
+   *
+   * @param leader    the leader as host:port.
+   * @param projector the projector of the local copy of the log, caught up
+   *                  with it already.
+   * @param clock     the clock of the replicated model.
+   * @param applyLock the lock to hold while applying events.
+   */
+  public ReplicationFollower(String leader, Projector projector, LendingClock clock, Lock applyLock) {
+    int colon = leader.lastIndexOf(':');
+    if (colon < 0) {
+      throw new IllegalArgumentException("Leader address must be host:port: " + leader);
+    }
+    this.host = leader.substring(0, colon);
+    this.port = Integer.parseInt(leader.substring(colon + 1));
+    this.projector = projector;
+    this.clock = clock;
+    this.applyLock = applyLock;
+    this.thread = new Thread(this::run, "replication-follower");
+  }
+
+  /**
+   * Starts following.
+   */
+  public void start() {
+    thread.start();
+  }
+
+  /**
+   * Returns the leader followed.
+   *
+   * @return the leader as host:port
+   */
+  public String getLeader() {
+    return host + ":" + port;
+  }
+
+  /**
+   * Tells whether the follower is connected to the leader.
+   *
+   * @return true if connected
+   */
+  public boolean isConnected() {
+    return channel != null;
+  }
+
+  /**
+   * Returns the position in the log up to which events were applied.
+   *
+   * @return the position in bytes
+   */
+  public long getPosition() {
+    return projector.getPosition();
+  }
+
+  /**
+   * Returns the bytes of the leader's log, as last heard of, that are not
+   * applied yet.
+   *
+   * @return the lag in bytes
+   */
+  public long getLagBytes() {
+    return Math.max(0, leaderEnd - projector.getPosition());
+  }
+
+  /**
+   * Returns the age of the newest state of the leader that was fully applied.
+   *
+   * @return the lag in milliseconds, or -1 if the follower never caught up
+   */
+  public long getLagMillis() {
+    long at = caughtUpAt;
+    return at == 0 ? -1 : Math.max(0, System.currentTimeMillis() - at);
+  }
+
+  /**
+   * Stops following and waits until the shipments received are applied.
+   */
+  @Override
+  public void close() throws IOException {
+    running = false;
+    SocketChannel open = channel;
+    if (open != null) {
+      open.close();
+    }
+    // Not interrupted, which would close the log file in the middle of applying events
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void run() {
+    boolean reported = false;
+    while (running) {
+      try (SocketChannel connection = SocketChannel.open()) {
+        connection.socket().connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        connection.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel = connection;
+        reported = false;
+        follow(connection);
+      } catch (IOException e) {
+        // Reported once per outage, not for every retry
+        if (running && !reported) {
+          System.err.println("Replication from " + getLeader() + " interrupted: " + e.getMessage());
+          reported = true;
+        }
+      } finally {
+        channel = null;
+      }
+      try {
+        Thread.sleep(RETRY_MILLIS);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Receives and applies shipments until the connection drops.
+   */
+  private void follow(SocketChannel connection) throws IOException {
+    try (FileChannel copy = FileChannel.open(projector.getLog(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE)) {
+      // Anything after the last valid record is the torn tail of an earlier shipment
+      long position = projector.getPosition();
+      copy.truncate(position);
+      ByteBuffer header = ByteBuffer.allocate(ReplicationLeader.HEADER_SIZE);
+      header.putLong(position).flip();
+      while (header.hasRemaining()) {
+        connection.write(header);
+      }
+      while (running) {
+        header.clear();
+        ReplicationLeader.readFully(connection, header);
+        long end = header.getLong(0);
+        long sentAt = header.getLong(Long.BYTES);
+        LocalDate leaderDate = LocalDate.ofEpochDay(header.getLong(2 * Long.BYTES));
+        long target = position + header.getLong(3 * Long.BYTES);
+        while (position < target) {
+          long received = copy.transferFrom(connection, position, target - position);
+          if (received == 0) {
+            throw new EOFException("Connection closed in a shipment");
+          }
+          position += received;
+        }
+        apply(leaderDate);
+        leaderEnd = end;
+        if (projector.getPosition() >= end) {
+          caughtUpAt = sentAt;
+        }
+      }
+    }
+  }
+
+  private void apply(LocalDate leaderDate) throws IOException {
+    applyLock.lock();
+    try {
+      projector.catchUp();
+      long days = ChronoUnit.DAYS.between(clock.today(), leaderDate);
+      if (days > 0) {
+        clock.advance((int) days);
+      }
+    } finally {
+      applyLock.unlock();
+    }
+  }
+}
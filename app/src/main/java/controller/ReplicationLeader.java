@@ -0,0 +1,186 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import model.LendingClock;
+
+/**
+ * Ships an {@link EventLog} to {@link ReplicationFollower}s over TCP, so they
+ * keep a copy of it and replay it into repositories of their own.
+ *
+ * <p>
+ * A follower connects and sends the length of its copy as a long. Its copy is
+ * a prefix of the log, so the leader sends it everything from that position
+ * on and, from then on, whatever is appended, going from the file to the
+ * socket with {@link FileChannel#transferTo} without copying through the heap.
+ * Every shipment starts with four longs: the length of the log once the
+ * shipment is in, the time it was sent in milliseconds, the date of the
+ * leader's clock as an epoch day and the number of bytes that follow. When
+ * nothing was appended for 100 ms an empty shipment is sent instead, which
+ * tells the follower the leader is alive and keeps its clock in step.
+ * </p>
+ *
+ * <p>
+ * The leader checks for new events every 5 ms and forces them to disk before
+ * shipping them, so a follower only ever gets complete records that the leader
+ * recovers after a crash of its process or machine too. Its copy thus stays a
+ * prefix of the log, and it can reconnect to the restarted leader.
+ * </p>
+ */
+public class ReplicationLeader implements Closeable {
+  static final int HEADER_SIZE = 4 * Long.BYTES;
+  private static final long POLL_MILLIS = 5;
+  private static final long HEARTBEAT_MILLIS = 100;
+
+  private final EventLog log;
+  private final LendingClock clock;
+  private final ServerSocketChannel server;
+  private final int port;
+  private final Set<SocketChannel> followers = ConcurrentHashMap.newKeySet();
+  private final ExecutorService executor = VirtualThreads.newPerTaskExecutor();
+  private final Thread acceptor;
+  private volatile boolean running = true;
+
+  /**
+   * Creates a leader bound to the given port. The leader is not started.
+   *
+   * @param log   the log to ship, which must be open.
+   * @param clock the clock whose date followers take over.
+   * @param port  the port to listen on, or 0 for an ephemeral port.
+   * @throws IOException if the port cannot be bound
+   */
+  public ReplicationLeader(EventLog log, LendingClock clock, int port) throws IOException {
+    this.log = log;
+    this.clock = clock;
+    this.server = ServerSocketChannel.open();
+    try {
+      server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      server.bind(new InetSocketAddress(port));
+      this.port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+    } catch (IOException e) {
+      server.close();
+      throw e;
+    }
+    this.acceptor = new Thread(this::accept, "replication-leader-" + this.port);
+  }
+
+  /**
+   * Starts accepting followers.
+   */
+  public void start() {
+    acceptor.start();
+  }
+
+  /**
+   * Returns the port the leader listens on.
+   *
+   * @return the bound port
+   */
+  public int getPort() {
+    return port;
+  }
+
+  /**
+   * Returns the number of followers connected.
+   *
+   * @return the connected followers
+   */
+  public int countFollowers() {
+    return followers.size();
+  }
+
+  /**
+   * Stops the leader and disconnects the followers, which keep what they got.
+   */
+  @Override
+  public void close() throws IOException {
+    running = false;
+    server.close();
+    for (SocketChannel follower : followers) {
+      follower.close();
+    }
+    executor.shutdown();
+  }
+
+  private void accept() {
+    while (running) {
+      try {
+        SocketChannel follower = server.accept();
+        follower.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        followers.add(follower);
+        executor.execute(() -> ship(follower));
+      } catch (IOException e) {
+        if (running) {
+          System.err.println("Replication leader cannot accept followers: " + e.getMessage());
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Sends one follower what it lacks and then everything appended, until it
+   * disconnects.
+   */
+  private void ship(SocketChannel follower) {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    try (follower; FileChannel file = FileChannel.open(log.getFile(), StandardOpenOption.READ)) {
+      ByteBuffer request = ByteBuffer.allocate(Long.BYTES);
+      readFully(follower, request);
+      long position = request.getLong(0);
+      long lastSent = 0;
+      while (running) {
+        long now = System.currentTimeMillis();
+        if (log.size() == position && now - lastSent < HEARTBEAT_MILLIS) {
+          Thread.sleep(POLL_MILLIS);
+          continue;
+        }
+        long end = log.force();
+        if (position > end) {
+          throw new IOException("Follower has " + position + " bytes of a log of " + end);
+        }
+        header.clear();
+        header.putLong(end).putLong(now).putLong(clock.today().toEpochDay()).putLong(end - position).flip();
+        while (header.hasRemaining()) {
+          follower.write(header);
+        }
+        while (position < end) {
+          position += file.transferTo(position, end - position, follower);
+        }
+        lastSent = now;
+      }
+    } catch (IOException e) {
+      if (running) {
+        System.err.println("Replication follower disconnected: " + e.getMessage());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      followers.remove(follower);
+    }
+  }
+
+  /**
+   * Reads from the channel until the buffer is full.
+   *
+   * @throws EOFException if the channel ends first
+   */
+  static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new EOFException("Connection closed");
+      }
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package controller;
+
+import model.Contract;
+import model.ContractRepositoryInterface;
+import model.Item;
+import model.ItemRepositoryInterface;
+import model.Member;
+import model.MemberRepositoryInterface;
+import model.Result;
+
+/**
+ * Projects the events of an {@link EventLog} into the member, item and contract
+ * repositories, making them the read side of an event-sourced model.
+ *
+ * <p>
+ * The values in the log were validated when the events happened, so members
+ * are rebuilt without checking their email and phone formats against the
+ * current patterns. Credits are only ever changed by credit events, never as a
+ * side effect of listing items or ending contracts, because the log already
+ * holds those changes. The clock moves forward to the dates of the clock
+ * events, never back. Events referring to members, items or contracts the
+ * repositories do not have, or adding ones they have, are skipped and
+ * counted.
+ * </p>
+ *
+ * <p>
+ * The items and contracts of a {@link ClusterNode} may belong to members of
+ * other nodes, of which the log holds only the ID. A projection for a node
+ * gives them an owner or borrower with that ID and nothing else, like the
+ * copy a router sends, rather than skipping them.
+ * </p>
+ */
+public class RepositoryProjection implements Projection {
+  private static final String ANY = "(?s).*";
+
+  private final MemberRepositoryInterface memberRepository;
+  private final ItemRepositoryInterface itemRepository;
+  private final ContractRepositoryInterface contractRepository;
+  private final boolean remoteMembers;
+  private long skipped;
+
+  /**
+   * Constructs a RepositoryProjection. The repositories should not publish to
+   * an event log the events are read from.
+   *
+   * @param memberRepository   the repository of the members
+   * @param itemRepository     the repository of the items
+   * @param contractRepository the repository of the contracts
+   */
+  public RepositoryProjection(MemberRepositoryInterface memberRepository, ItemRepositoryInterface itemRepository,
+      ContractRepositoryInterface contractRepository) {
+    this(memberRepository, itemRepository, contractRepository, false);
+  }
+
+  /**
+   * Constructs a RepositoryProjection, for a cluster node if members may live
+   * on other nodes.
+   *
+   * @param memberRepository   the repository of the members
+   * @param itemRepository     the repository of the items
+   * @param contractRepository the repository of the contracts
+   * @param remoteMembers      whether items and contracts may refer to
+   *                           members the repository does not have
+   */
+  public RepositoryProjection(MemberRepositoryInterface memberRepository, ItemRepositoryInterface itemRepository,
+      ContractRepositoryInterface contractRepository, boolean remoteMembers) {
+    this.memberRepository = memberRepository;
+    this.itemRepository = itemRepository;
+    this.contractRepository = contractRepository;
+    this.remoteMembers = remoteMembers;
+  }
+
+  /**
+   * Returns the number of events that did not fit the repositories.
+   *
+   * @return the events skipped
+   */
+  public synchronized long getSkipped() {
+    return skipped;
+  }
+
+  @Override
+  public synchronized void apply(DomainEvent event) {
+    boolean applied;
+    switch (event.getType()) {
+      case MEMBER_REGISTERED:
+        applied = memberRepository.tryAddMember(new Member(event.getId(), event.getName(), event.getEmail(),
+            event.getPhone(), Math.max(0, event.getAmount()), ANY, ANY)).isOk();
+        break;
+      case MEMBER_DELETED:
+        applied = deleteMember(event.getId());
+        break;
+      case ITEM_LISTED:
+        applied = addItem(event);
+        break;
+      case ITEM_DELETED:
+        applied = deleteItem(event.getId());
+        break;
+      case CONTRACT_BOOKED:
+        applied = addContract(event);
+        break;
+      case CONTRACT_CANCELLED:
+      case CONTRACT_EXPIRED:
+        applied = endContract(event.getId());
+        break;
+      case CONTRACT_DELETED:
+        applied = deleteContract(event.getId());
+        break;
+      case CREDITS_MOVED:
+        applied = moveCredits(event.getId(), event.getAmount());
+        break;
+      case CLOCK_ADVANCED:
+        contractRepository.getClock().advanceTo(event.getStartDate());
+        applied = true;
+        break;
+      default:
+        applied = false;
+        break;
+    }
+    if (!applied) {
+      skipped++;
+    }
+  }
+
+  private boolean deleteMember(String id) {
+    Member member = memberRepository.getMemberById(id);
+    if (member == null) {
+      return false;
+    }
+    memberRepository.deleteMember(member);
+    return true;
+  }
+
+  private boolean addItem(DomainEvent event) {
+    Member owner = member(event.getReference());
+    if (owner == null) {
+      return false;
+    }
+    Result<Item> item = Item.create(event.getId(), owner, event.getName(), event.getAmount());
+    return item.isOk() && itemRepository.tryAddItem(item.getValue()).isOk();
+  }
+
+  private boolean deleteItem(String id) {
+    Item item = itemRepository.getItemById(id);
+    if (item == null) {
+      return false;
+    }
+    itemRepository.deleteItem(item);
+    return true;
+  }
+
+  private boolean addContract(DomainEvent event) {
+    Item item = itemRepository.getItemById(event.getReference());
+    Member borrower = member(event.getBorrowerId());
+    if (item == null || borrower == null) {
+      return false;
+    }
+    Result<Contract> contract = Contract.create(event.getId(), item, borrower, event.getStartDate(),
+        event.getEndDate());
+    if (!contract.isOk()) {
+      return false;
+    }
+    contract.getValue().setActive(event.isActive());
+    return contractRepository.tryAddContract(contract.getValue()).isOk();
+  }
+
+  /**
+   * Returns the member with the ID, or for a cluster node one standing in for
+   * a member of another node.
+   */
+  private Member member(String id) {
+    Member member = memberRepository.getMemberById(id);
+    if (member == null && remoteMembers && id != null) {
+      return new Member(id, "", "", "", 0, ANY, ANY);
+    }
+    return member;
+  }
+
+  private boolean endContract(String id) {
+    Contract contract = contractRepository.getContract(id);
+    if (contract == null) {
+      return false;
+    }
+    contract.setActive(false);
+    return true;
+  }
+
+  private boolean deleteContract(String id) {
+    Contract contract = contractRepository.getContract(id);
+    if (contract == null) {
+      return false;
+    }
+    contractRepository.deleteContract(contract);
+    return true;
+  }
+
+  private boolean moveCredits(String memberId, int amount) {
+    Member member = memberRepository.getMemberById(memberId);
+    if (member == null) {
+      return false;
+    }
+    if (amount >= 0) {
+      member.addCredits(amount);
+    } else {
+      member.deductCredits(-amount);
+    }
+    return true;
+  }
+}
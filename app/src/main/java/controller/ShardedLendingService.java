@@ -0,0 +1,542 @@
+package controller;
+
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import model.Contract;
+import model.ContractRepository;
+import model.ContractRepositoryInterface;
+import model.Item;
+import model.ItemRepository;
+import model.ItemRepositoryInterface;
+import model.LendingClock;
+import model.Member;
+import model.MemberRepository;
+import model.MemberRepositoryInterface;
+import model.ModelError;
+import model.ModelEventBus;
+import model.ModelExceptions;
+import model.Result;
+import model.Settlement;
+
+/**
+ * Lending operations on data partitioned into shards, so writes to different
+ * shards run on different cores.
+ *
+ * <p>
+ * Members are placed by a hash of their ID, items by a hash of theirs, and a
+ * contract lives with its item. Every shard has its own repositories and
+ * indexes and a single thread that runs all operations on them, so a shard
+ * needs no locking of its own. An operation touching two shards, e.g. a
+ * contract for an item in one shard by a borrower in another, runs on the
+ * thread of the lower shard, which waits for the higher one; always taking them
+ * in that order cannot deadlock. Listing an item holds one shard at a time: the
+ * item is added on its shard, then its owner credited on theirs, and the item
+ * deleted again if the owner was deleted in between. Email addresses, phone
+ * numbers and contract IDs must be unique across shards, so they are reserved
+ * in shared concurrent maps before the shard adds them. A contract ID stays
+ * reserved, whether the contract is active or ended, until the contract is
+ * deleted, as its shard still holds it. Listings and searches ask every shard
+ * in parallel and combine the answers.
+ * </p>
+ *
+ * <p>
+ * All shards share one clock. A settlement ends the expired contracts on the
+ * shards of their items, then charges the borrowers on their own shards.
+ * </p>
+ */
+public class ShardedLendingService implements LendingServiceInterface, Closeable {
+  private final Shard[] shards;
+  private final LendingClock clock;
+  private final String emailPattern;
+  private final String phonePattern;
+  private final Map<String, String> emails = new ConcurrentHashMap<>();
+  private final Map<String, String> phones = new ConcurrentHashMap<>();
+  private final Set<String> contractIds = ConcurrentHashMap.newKeySet();
+  private final Object settlementLock = new Object();
+
+  /**
+   * Creates a service on empty in-memory shards.
+   *
+   * @param shardCount   the number of shards, at least 1
+   * @param clock        the clock shared by the shards
+   * @param events       the bus the repositories of every shard publish to
+   * @param emailPattern the pattern to validate member emails.
+   * @param phonePattern the pattern to validate member phone numbers.
+   */
+  public ShardedLendingService(int shardCount, LendingClock clock, ModelEventBus events, String emailPattern,
+      String phonePattern) {
+    this(shardCount, new MemberRepository(events), new ItemRepository(events), new ContractRepository(clock, events),
+        emailPattern, phonePattern);
+  }
+
+  /**
+   * Creates a service on in-memory shards holding what the repositories hold,
+   * e.g. a model rebuilt from an event log, restored or imported. It moves to
+   * the shards without being published again; the shards publish their
+   * changes on the bus of the repositories, which must not be changed
+   * afterwards.
+   *
+   * @param shardCount   the number of shards, at least 1
+   * @param members      the members to place on the shards
+   * @param items        the items to place on the shards
+   * @param contracts    the contracts to place with their items, and the
+   *                     clock and bus the shards share
+   * @param emailPattern the pattern to validate member emails.
+   * @param phonePattern the pattern to validate member phone numbers.
+   */
+  public ShardedLendingService(int shardCount, MemberRepositoryInterface members, ItemRepositoryInterface items,
+      ContractRepositoryInterface contracts, String emailPattern, String phonePattern) {
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("At least one shard is needed");
+    }
+    this.clock = contracts.getClock();
+    this.emailPattern = emailPattern;
+    this.phonePattern = phonePattern;
+    this.shards = new Shard[shardCount];
+    final List<Member> allMembers = members.getAllMembers();
+    final List<Contract> allContracts = contracts.getAllContracts();
+    List<List<Member>> memberShards = split(allMembers, shardCount, Member::getId);
+    List<List<Item>> itemShards = split(items.getAllItems(), shardCount, Item::getId);
+    List<List<Contract>> contractShards = split(allContracts, shardCount, Contract::getItemId);
+    ModelEventBus events = contracts.getEventBus();
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard(i, new MemberRepository(events, memberShards.get(i)),
+          new ItemRepository(events, itemShards.get(i)), new ContractRepository(clock, events, contractShards.get(i)));
+    }
+    for (Member member : allMembers) {
+      emails.put(member.getEmail(), member.getId());
+      phones.put(member.getPhone(), member.getId());
+    }
+    for (Contract contract : allContracts) {
+      contractIds.add(contract.getId());
+    }
+  }
+
+  /**
+   * Returns the number of shards.
+   *
+   * @return the number of shards
+   */
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  @Override
+  public List<Member> listMembers() {
+    return gather(shard -> shard.members.getAllMembers());
+  }
+
+  @Override
+  public Member getMember(String memberId) {
+    Member member = on(shardOf(memberId), shard -> shard.members.getMemberById(memberId));
+    if (member == null) {
+      throw new ModelExceptions.MemberNotFoundException();
+    }
+    return member;
+  }
+
+  @Override
+  public Member createMember(String id, String name, String email, String phone, int credits) {
+    return tryCreateMember(id, name, email, phone, credits).orThrow();
+  }
+
+  @Override
+  public Result<Member> tryCreateMember(String id, String name, String email, String phone, int credits) {
+    Result<Member> created = Member.create(id, name, email, phone, credits, emailPattern, phonePattern);
+    if (!created.isOk()) {
+      return created;
+    }
+    Member member = created.getValue();
+    return on(shardOf(id), shard -> {
+      if (shard.members.getMemberById(id) != null) {
+        return Result.failure(ModelError.ID_EXISTS);
+      }
+      if (emails.putIfAbsent(member.getEmail(), id) != null) {
+        return Result.failure(ModelError.EMAIL_EXISTS);
+      }
+      if (phones.putIfAbsent(member.getPhone(), id) != null) {
+        emails.remove(member.getEmail(), id);
+        return Result.failure(ModelError.PHONE_EXISTS);
+      }
+      Result<Member> added = shard.members.tryAddMember(member);
+      if (!added.isOk()) {
+        emails.remove(member.getEmail(), id);
+        phones.remove(member.getPhone(), id);
+      }
+      return added;
+    });
+  }
+
+  @Override
+  public void deleteMember(String memberId) {
+    on(shardOf(memberId), shard -> {
+      Member member = shard.members.getMemberById(memberId);
+      if (member == null) {
+        throw new ModelExceptions.MemberNotFoundException();
+      }
+      shard.members.deleteMember(member);
+      emails.remove(member.getEmail(), memberId);
+      phones.remove(member.getPhone(), memberId);
+      return null;
+    });
+  }
+
+  @Override
+  public List<Item> listItems() {
+    return gather(shard -> shard.items.getAllItems());
+  }
+
+  // Every shard returns its best matches, the available ones first unless sorting by cost, merged in that order
+  @Override
+  public List<Item> searchItems(String query, String sort, int limit) {
+    LocalDate today = clock.today();
+    boolean byCost = "cost".equals(sort);
+    List<List<List<Item>>> answers = gatherEach(shard -> {
+      List<Item> available = new ArrayList<>();
+      List<Item> others = new ArrayList<>();
+      for (Item item : shard.items.findItems(query, byCost ? null : shard.contracts.availableDuring(today, today),
+          limit)) {
+        (byCost || shard.contracts.isItemAvailable(item.getId(), today, today) ? available : others).add(item);
+      }
+      return List.of(available, others);
+    });
+    List<Item> preferred = new ArrayList<>();
+    List<Item> rest = new ArrayList<>();
+    for (List<List<Item>> answer : answers) {
+      preferred.addAll(answer.get(0));
+      rest.addAll(answer.get(1));
+    }
+    Comparator<Item> byCostOrder = Comparator.comparingInt(Item::getCost);
+    preferred.sort(byCostOrder);
+    rest.sort(byCostOrder);
+    preferred.addAll(rest);
+    return new ArrayList<>(preferred.subList(0, Math.min(Math.max(0, limit), preferred.size())));
+  }
+
+  @Override
+  public Item createItem(String ownerId, String name, int cost) {
+    return tryCreateItem(ownerId, name, cost).orThrow();
+  }
+
+  @Override
+  public Result<Item> tryCreateItem(String ownerId, String name, int cost) {
+    Shard ownerShard = shardOf(ownerId);
+    Member owner = on(ownerShard, shard -> shard.members.getMemberById(ownerId));
+    if (owner == null) {
+      return Result.failure(ModelError.MEMBER_NOT_FOUND);
+    }
+    Result<Item> created = Item.create(owner, name, cost);
+    if (!created.isOk()) {
+      return created;
+    }
+    Item item = created.getValue();
+    Shard itemShard = shardOf(item.getId());
+    Result<Item> added = on(itemShard, shard -> shard.items.tryAddItem(item));
+    if (!added.isOk()) {
+      return added;
+    }
+    boolean credited = on(ownerShard, shard -> {
+      Member current = shard.members.getMemberById(ownerId);
+      if (current != null) {
+        current.addCredits(cost);
+      }
+      return current != null;
+    });
+    if (!credited) {
+      // The owner was deleted in between, so the listing is undone with any contract booked for it meanwhile
+      try {
+        deleteItem(item.getId());
+      } catch (ModelExceptions.ItemNotFoundException e) {
+        // Deleted in between as well
+      }
+      return Result.failure(ModelError.MEMBER_NOT_FOUND);
+    }
+    return added;
+  }
+
+  @Override
+  public void deleteItem(String itemId) {
+    on(shardOf(itemId), shard -> {
+      Item item = shard.items.getItemById(itemId);
+      if (item == null) {
+        throw new ModelExceptions.ItemNotFoundException();
+      }
+      shard.contracts.cancelContractsForItem(item);
+      shard.items.deleteItem(item);
+      return null;
+    });
+  }
+
+  @Override
+  public List<Contract> listContracts() {
+    return gather(shard -> shard.contracts.getAllContracts());
+  }
+
+  @Override
+  public Contract createContract(String id, String itemId, String borrowerId, LocalDate startDate,
+      LocalDate endDate) {
+    return tryCreateContract(id, itemId, borrowerId, startDate, endDate).orThrow();
+  }
+
+  @Override
+  public Result<Contract> tryCreateContract(String id, String itemId, String borrowerId, LocalDate startDate,
+      LocalDate endDate) {
+    Shard itemShard = shardOf(itemId);
+    Shard borrowerShard = shardOf(borrowerId);
+    return onBoth(itemShard, borrowerShard, () -> {
+      Item item = itemShard.items.getItemById(itemId);
+      if (item == null) {
+        return Result.failure(ModelError.ITEM_NOT_FOUND);
+      }
+      Member borrower = borrowerShard.members.getMemberById(borrowerId);
+      if (borrower == null) {
+        return Result.failure(ModelError.BORROWER_NOT_FOUND);
+      }
+      if (borrower.getCredits() < item.getCost()) {
+        return Result.failure(ModelError.INSUFFICIENT_FUNDS);
+      }
+      Result<Contract> contract = Contract.create(id, item, borrower, startDate, endDate);
+      if (!contract.isOk()) {
+        return contract;
+      }
+      if (itemShard.contracts.hasConflict(contract.getValue())) {
+        return Result.failure(ModelError.CONFLICTING_CONTRACT);
+      }
+      if (!contractIds.add(id)) {
+        return Result.failure(ModelError.ID_EXISTS);
+      }
+      Result<Contract> added = itemShard.contracts.tryAddContract(contract.getValue());
+      if (!added.isOk()) {
+        contractIds.remove(id);
+      }
+      return added;
+    });
+  }
+
+  @Override
+  public void deleteContract(String contractId) {
+    for (Shard shard : shards) {
+      boolean deleted = on(shard, s -> {
+        Contract contract = s.contracts.getContract(contractId);
+        if (contract == null) {
+          return false;
+        }
+        s.contracts.deleteContract(contract);
+        contractIds.remove(contractId);
+        return true;
+      });
+      if (deleted) {
+        return;
+      }
+    }
+    throw new ModelExceptions.ContractNotFoundException();
+  }
+
+  @Override
+  public boolean isAvailable(String itemId, LocalDate startDate, LocalDate endDate) {
+    return on(shardOf(itemId), shard -> {
+      if (shard.items.getItemById(itemId) == null) {
+        throw new ModelExceptions.ItemNotFoundException();
+      }
+      return shard.contracts.isItemAvailable(itemId, startDate, endDate);
+    });
+  }
+
+  @Override
+  public LocalDate today() {
+    return clock.today();
+  }
+
+  @Override
+  public LocalDate advanceTime(int days) {
+    synchronized (settlementLock) {
+      settle(days);
+      return clock.today();
+    }
+  }
+
+  @Override
+  public Settlement advanceAndSettle(int days) {
+    synchronized (settlementLock) {
+      return settle(days);
+    }
+  }
+
+  /**
+   * Stops the threads of the shards after the operations already submitted.
+   */
+  @Override
+  public void close() {
+    for (Shard shard : shards) {
+      shard.executor.shutdown();
+    }
+    try {
+      for (Shard shard : shards) {
+        shard.executor.awaitTermination(1, TimeUnit.MINUTES);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Ends the expired contracts on every shard, then sends each shard the
+   * contracts of the borrowers it holds to charge them.
+   */
+  private Settlement settle(int days) {
+    LocalDate newDate = clock.advance(days);
+    List<List<Contract>> expired = new ArrayList<>(shards.length);
+    List<Future<Settlement>> expiring = new ArrayList<>(shards.length);
+    for (Shard shard : shards) {
+      List<Contract> ended = new ArrayList<>();
+      expired.add(ended);
+      expiring.add(shard.executor.submit(() -> Settlement.expire(shard.contracts, newDate, ended)));
+    }
+    Settlement settlement = join(expiring.get(0));
+    for (int i = 1; i < shards.length; i++) {
+      settlement.add(join(expiring.get(i)));
+    }
+
+    List<List<Contract>> byBorrowerShard = new ArrayList<>(shards.length);
+    for (int i = 0; i < shards.length; i++) {
+      byBorrowerShard.add(new ArrayList<>());
+    }
+    for (List<Contract> ended : expired) {
+      for (Contract contract : ended) {
+        byBorrowerShard.get(shardOf(contract.getBorrowerId()).index).add(contract);
+      }
+    }
+    List<Future<Settlement>> charging = new ArrayList<>(shards.length);
+    for (Shard shard : shards) {
+      List<Contract> toCharge = byBorrowerShard.get(shard.index);
+      charging.add(shard.executor.submit(() -> Settlement.charge(shard.members, toCharge)));
+    }
+    for (Future<Settlement> charged : charging) {
+      settlement.add(join(charged));
+    }
+    return settlement;
+  }
+
+  private Shard shardOf(String id) {
+    return shards[indexOf(id, shards.length)];
+  }
+
+  private static int indexOf(String id, int shardCount) {
+    if (id == null) {
+      return 0;
+    }
+    int hash = id.hashCode() * 0x9E3779B9;
+    return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+  }
+
+  /**
+   * Splits values into the shards their keys hash to.
+   */
+  private static <T> List<List<T>> split(List<T> values, int shardCount, Function<T, String> key) {
+    List<List<T>> split = new ArrayList<>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      split.add(new ArrayList<>());
+    }
+    for (T value : values) {
+      split.get(indexOf(key.apply(value), shardCount)).add(value);
+    }
+    return split;
+  }
+
+  /**
+   * Runs an operation on the thread of a shard and waits for it, or runs it
+   * directly when already on that thread.
+   */
+  private <T> T on(Shard shard, Function<Shard, T> operation) {
+    if (Thread.currentThread() == shard.thread) {
+      return operation.apply(shard);
+    }
+    return join(shard.executor.submit(() -> operation.apply(shard)));
+  }
+
+  /**
+   * Runs an operation while holding the threads of two shards, taking the
+   * lower shard first.
+   */
+  private <T> T onBoth(Shard a, Shard b, Supplier<T> operation) {
+    Shard first = a.index <= b.index ? a : b;
+    Shard second = first == a ? b : a;
+    return on(first, s -> on(second, t -> operation.get()));
+  }
+
+  private <T> List<T> gather(Function<Shard, List<T>> operation) {
+    List<T> all = new ArrayList<>();
+    for (List<T> part : gatherEach(operation)) {
+      all.addAll(part);
+    }
+    return all;
+  }
+
+  private <T> List<T> gatherEach(Function<Shard, T> operation) {
+    List<Future<T>> futures = new ArrayList<>(shards.length);
+    for (Shard shard : shards) {
+      futures.add(shard.executor.submit(() -> operation.apply(shard)));
+    }
+    List<T> results = new ArrayList<>(shards.length);
+    for (Future<T> future : futures) {
+      results.add(join(future));
+    }
+    return results;
+  }
+
+  /**
+   * Waits for an operation, rethrowing the runtime exceptions it threw.
+   */
+  private static <T> T join(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a shard", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * One partition of the data and the thread that owns it.
+   */
+  private static final class Shard {
+    private final int index;
+    private final MemberRepositoryInterface members;
+    private final ItemRepositoryInterface items;
+    private final ContractRepositoryInterface contracts;
+    private final ExecutorService executor;
+    private volatile Thread thread;
+
+    private Shard(int index, MemberRepositoryInterface members, ItemRepositoryInterface items,
+        ContractRepositoryInterface contracts) {
+      this.index = index;
+      this.members = members;
+      this.items = items;
+      this.contracts = contracts;
+      this.executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread created = new Thread(runnable, "shard-" + index);
+        created.setDaemon(true);
+        thread = created;
+        return created;
+      });
+    }
+  }
+}
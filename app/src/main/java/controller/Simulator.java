@@ -0,0 +1,139 @@
+package controller;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import model.Contract;
+import model.Item;
+import model.Member;
+import model.ModelError;
+import model.Result;
+import model.Settlement;
+import view.SimulationView;
+
+/**
+ * Fast-forwards the lending system through generated activity, as fast as the
+ * CPU allows, to see how it behaves over months or years.
+ *
+ * <p>
+ * The simulator adds its own members and items, then runs day by day on the
+ * lending clock: new items are listed, which credits their owners, random
+ * members book random items for a few days starting within the next two
+ * weeks, and time is advanced by one day, which ends and charges the expired
+ * contracts. All of it goes through the {@link LendingService}, so the usual
+ * rules apply and rejected bookings are counted by reason.
+ * </p>
+ */
+public class Simulator {
+  private static final int REPORT_EVERY_DAYS = 30;
+  private static final int BOOKING_HORIZON_DAYS = 14;
+  private static final int MAX_BOOKING_DAYS = 7;
+  private static final int MAX_COST = 50;
+
+  private final LendingServiceInterface service;
+  private final SimulationView simulationView;
+  private final Random random;
+  private final List<String> memberIds = new ArrayList<>();
+  private final List<String> itemIds = new ArrayList<>();
+  private final Map<ModelError, Long> rejections = new EnumMap<>(ModelError.class);
+  private long bookings;
+  private long listings;
+  private long expired;
+  private long charged;
+  private long contractSequence;
+
+  /**
+   * Constructs a Simulator.
+   *
+   * @param service        the service the simulated activity goes through.
+   * @param simulationView the view reporting progress and the outcome.
+   * @param seed           the seed of the generated activity, so runs repeat.
+   */
+  public Simulator(LendingServiceInterface service, SimulationView simulationView, long seed) {
+    this.service = service;
+    this.simulationView = simulationView;
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Adds the members and items the simulated activity works on.
+   *
+   * @param members the number of members to add
+   * @param items   the number of items to add, owned by random members
+   * @param credits the initial credits of every member
+   */
+  public void populate(int members, int items, int credits) {
+    for (int i = 0; i < members; i++) {
+      String id = "SIM" + i;
+      Result<Member> member = service.tryCreateMember(id, "Simulated Member " + i, "sim" + i + "@example.com",
+          String.valueOf(9_000_000_000L + i), credits);
+      if (member.isOk()) {
+        memberIds.add(id);
+      }
+    }
+    for (int i = 0; i < items && !memberIds.isEmpty(); i++) {
+      listItem();
+    }
+  }
+
+  /**
+   * Simulates the given number of days.
+   *
+   * @param days           the number of days to simulate
+   * @param bookingsPerDay the booking attempts per day
+   * @param listingsPerDay the new items listed per day
+   */
+  public void run(int days, int bookingsPerDay, int listingsPerDay) {
+    long start = System.nanoTime();
+    for (int day = 1; day <= days && !memberIds.isEmpty(); day++) {
+      for (int i = 0; i < listingsPerDay; i++) {
+        listItem();
+      }
+      LocalDate today = service.today();
+      for (int i = 0; i < bookingsPerDay && !itemIds.isEmpty(); i++) {
+        book(today);
+      }
+      Settlement settlement = service.advanceAndSettle(1);
+      expired += settlement.getExpired();
+      charged += settlement.getCharged();
+      if (day % REPORT_EVERY_DAYS == 0 || day == days) {
+        simulationView.displayProgress(service.today(), day, bookings, totalRejections(), expired,
+            System.nanoTime() - start);
+      }
+    }
+    simulationView.displaySummary(days, listings, bookings, rejections, expired, charged,
+        System.nanoTime() - start);
+  }
+
+  private void listItem() {
+    String owner = memberIds.get(random.nextInt(memberIds.size()));
+    Result<Item> item = service.tryCreateItem(owner, "Simulated item " + itemIds.size(), 1 + random.nextInt(MAX_COST));
+    if (item.isOk()) {
+      itemIds.add(item.getValue().getId());
+      listings++;
+    }
+  }
+
+  private void book(LocalDate today) {
+    LocalDate from = today.plusDays(random.nextInt(BOOKING_HORIZON_DAYS));
+    Result<Contract> contract = service.tryCreateContract("SIMC" + contractSequence++,
+        itemIds.get(random.nextInt(itemIds.size())), memberIds.get(random.nextInt(memberIds.size())), from,
+        from.plusDays(random.nextInt(MAX_BOOKING_DAYS)));
+    if (contract.isOk()) {
+      bookings++;
+    } else {
+      rejections.merge(contract.getError(), 1L, Long::sum);
+    }
+  }
+
+  private long totalRejections() {
+    long total = 0;
+    for (long count : rejections.values()) {
+      total += count;
+    }
+    return total;
+  }
+}
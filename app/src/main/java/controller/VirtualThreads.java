@@ -0,0 +1,85 @@
+package controller;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates virtual threads when the running JDK supports them (21 and later)
+ * and falls back to platform threads otherwise, so the project keeps building
+ * with the older JDKs used in the course pipeline.
+ */
+public final class VirtualThreads {
+  private static final Method NEW_EXECUTOR = lookup(Executors.class, "newVirtualThreadPerTaskExecutor");
+  private static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+  private static final Method UNSTARTED = lookupBuilder();
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * Tells whether virtual threads are available in this JVM.
+   *
+   * @return true if tasks run on virtual threads
+   */
+  public static boolean isSupported() {
+    return NEW_EXECUTOR != null && OF_VIRTUAL != null && UNSTARTED != null;
+  }
+
+  /**
+   * Returns an executor that starts one new thread per task.
+   *
+   * @return a virtual-thread-per-task executor, or a cached thread pool when
+   *         virtual threads are not available
+   */
+  public static ExecutorService newPerTaskExecutor() {
+    if (isSupported()) {
+      try {
+        return (ExecutorService) NEW_EXECUTOR.invoke(null);
+      } catch (ReflectiveOperationException e) {
+        // fall through to platform threads
+      }
+    }
+    return Executors.newCachedThreadPool(task -> {
+      Thread thread = new Thread(task);
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Creates a new, unstarted thread for the task.
+   *
+   * @param task the task to run
+   * @return a virtual thread, or a daemon platform thread when virtual threads
+   *         are not available
+   */
+  public static Thread newThread(Runnable task) {
+    if (isSupported()) {
+      try {
+        return (Thread) UNSTARTED.invoke(OF_VIRTUAL.invoke(null), task);
+      } catch (ReflectiveOperationException e) {
+        // fall through to platform threads
+      }
+    }
+    Thread thread = new Thread(task);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  private static Method lookup(Class<?> type, String name) {
+    try {
+      return type.getMethod(name);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static Method lookupBuilder() {
+    try {
+      return Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+}
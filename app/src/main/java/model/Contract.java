@@ -37,6 +37,23 @@ public class Contract {
     this.active = true;
   }
 
+  /**
+   * Creates a contract without throwing, for bulk operations where many rows
+   * may be invalid.
+   *
+   * @param id        the unique identifier for the contract
+   * @param item      the item involved in the contract
+   * @param borrower  the member who is borrowing the item
+   * @param startDate the start date of the contract
+   * @param endDate   the end date of the contract
+   * @return the contract, or the validation error
+   */
+  public static Result<Contract> create(String id, Item item, Member borrower, LocalDate startDate,
+      LocalDate endDate) {
+    return endDate.isBefore(startDate) ? Result.failure(ModelError.INVALID_END_DATE)
+        : Result.ok(new Contract(id, item, borrower, startDate, endDate));
+  }
+
   /**
    * Copy constructor for Contract.
    *
@@ -61,6 +78,62 @@ public class Contract {
     return new Member(borrower); // Return a defensive copy of the Member
   }
 
+  /**
+   * Returns the ID of the item without copying the item.
+   *
+   * @return the ID of the borrowed item
+   */
+  public String getItemId() {
+    return item.getId();
+  }
+
+  /**
+   * Returns the name of the item without copying the item.
+   *
+   * @return the name of the borrowed item
+   */
+  public String getItemName() {
+    return item.getName();
+  }
+
+  /**
+   * Returns the cost of the item as booked, without copying the item.
+   *
+   * @return the cost of the borrowed item
+   */
+  public int getItemCost() {
+    return item.getCost();
+  }
+
+  /**
+   * Returns the name of the borrower without copying the member.
+   *
+   * @return the name of the borrower
+   */
+  public String getBorrowerName() {
+    return borrower.getName();
+  }
+
+  /**
+   * Returns the ID of the borrower without copying the member.
+   *
+   * @return the ID of the borrower
+   */
+  public String getBorrowerId() {
+    return borrower.getId();
+  }
+
+  /**
+   * Checks if this contract is active and overlaps the given period.
+   *
+   * @param start the first day of the period
+   * @param end   the last day of the period
+   * @return true if the contract is active and overlaps the period
+   */
+  public boolean overlaps(LocalDate start, LocalDate end) {
+    return active && !(endDate.isBefore(start) || startDate.isAfter(end));
+  }
+
   public LocalDate getStartDate() {
     return startDate;
   }
@@ -84,11 +157,9 @@ public class Contract {
    * @return true if the contracts conflict, false otherwise
    */
   public boolean conflictsWith(Contract other) {
-    return this.item.equals(other.getItem())
+    return this.item.getId().equals(other.getItemId())
         && this.active
-        && other.isActive()
-        && !(this.endDate.isBefore(other.getStartDate())
-            || this.startDate.isAfter(other.getEndDate()));
+        && other.overlaps(this.startDate, this.endDate);
   }
 
   @Override
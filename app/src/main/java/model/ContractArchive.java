@@ -0,0 +1,664 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cold tier of a {@link ContractRepository}: ended contracts moved off the
+ * heap into compressed, immutable segment files.
+ *
+ * <p>
+ * Every call to {@link #archive(List)} writes one segment. Its contracts are
+ * sorted by ID and cut into blocks of {@value #CONTRACTS_PER_BLOCK}, each
+ * compressed with a {@link Deflater} and checked with a CRC32 when read back.
+ * A segment is written to a temporary file, forced to disk and then renamed,
+ * so a crash never leaves half a segment behind. The file is
+ * </p>
+ *
+ * <pre>
+ * header   magic 0x4C4E4341 ("LNCA"), version byte, block count, contract count
+ * blocks   deflated contracts, back to back
+ * index    per block: offset, deflated length, raw length, CRC32, first ID
+ * trailer  offset of the index, CRC32 of the index
+ * </pre>
+ *
+ * <p>
+ * and every contract in a block is
+ * </p>
+ *
+ * <pre>
+ * length of the rest, ID, item ID, borrower ID, item name, cost, owner ID, owner name, owner email,
+ * owner phone, owner credits, borrower name, borrower email, borrower phone, borrower credits,
+ * start day, end day, active byte
+ * </pre>
+ *
+ * <p>
+ * with strings as their UTF-8 byte count, -1 for null, and the bytes. A lookup
+ * compares the IDs in a block as bytes, skipping the other contracts by their
+ * length, and decodes only the contracts it returns.
+ * </p>
+ *
+ * <p>
+ * The sparse index of first IDs per block stays in memory, together with
+ * sorted 64-bit hashes of all archived IDs and, per item and per borrower, the
+ * blocks holding their contracts: about 30 bytes per archived contract instead
+ * of the contract with its copies of item and borrower. A lookup by ID is a
+ * binary search and one block read; a lookup by item or borrower reads only
+ * the blocks listed for it. Segments are memory-mapped, so a block costs no
+ * system call, and the last blocks read are cached decompressed.
+ * Opening an archive reads every block once to rebuild these indexes.
+ * </p>
+ *
+ * <p>
+ * Contracts read back are new objects with their own copies of item and
+ * borrower. Read errors, including checksum mismatches, are thrown as
+ * {@link UncheckedIOException}s.
+ * </p>
+ */
+public class ContractArchive implements Closeable {
+  /**
+   * Number of contracts compressed together.
+   */
+  public static final int CONTRACTS_PER_BLOCK = 16;
+
+  static final int MAGIC = 0x4C4E4341;
+  private static final byte VERSION = 1;
+  private static final int HEADER_SIZE = 13;
+  private static final int TRAILER_SIZE = 12;
+  private static final int CACHED_BLOCKS = 256;
+  private static final int DICTIONARY_SAMPLES = 64;
+  private static final int DICTIONARY_BYTES = 4 * 1024;
+  private static final String SUFFIX = ".seg";
+  private static final int ID = 0;
+  private static final int ITEM_ID = 1;
+  private static final int BORROWER_ID = 2;
+
+  private final Path directory;
+  private final List<Segment> segments = new ArrayList<>();
+  // Hashes of the archived IDs in ascending order, and the segment of each
+  private long[] idHashes = new long[0];
+  private int[] idSegments = new int[0];
+  private int count;
+  private final Map<String, BlockList> byItemId = new HashMap<>();
+  private final Map<String, BlockList> byBorrowerId = new HashMap<>();
+  private final Inflater inflater = new Inflater();
+  private final Map<Long, byte[]> cache = new LinkedHashMap<>(CACHED_BLOCKS * 2, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+      return size() > CACHED_BLOCKS;
+    }
+  };
+
+  /**
+   * Opens the archive in a directory, creating the directory if missing and
+   * loading the segments already in it.
+   *
+   * @param directory the directory of the segment files
+   * @throws IOException if a segment cannot be read or is corrupt
+   */
+  public ContractArchive(Path directory) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*")) {
+      for (Path file : stream) {
+        if (file.toString().endsWith(SUFFIX)) {
+          files.add(file);
+        } else {
+          Files.delete(file); // Left over by a crash while writing
+        }
+      }
+    }
+    Collections.sort(files);
+    try {
+      for (Path file : files) {
+        load(file, null);
+      }
+    } catch (IOException | UncheckedIOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  public synchronized int countContracts() {
+    return count;
+  }
+
+  public synchronized int countSegments() {
+    return segments.size();
+  }
+
+  /**
+   * Returns the size of all segment files together.
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getBytes() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      bytes += segment.data.capacity();
+    }
+    return bytes;
+  }
+
+  /**
+   * Writes the contracts into a new segment. Their IDs must not be archived
+   * already.
+   *
+   * @param contracts the contracts to archive
+   * @throws IOException if the segment cannot be written
+   */
+  public synchronized void archive(List<Contract> contracts) throws IOException {
+    if (contracts.isEmpty()) {
+      return;
+    }
+    List<Contract> sorted = new ArrayList<>(contracts);
+    sorted.sort((a, b) -> a.getId().compareTo(b.getId()));
+    int blocks = (sorted.size() + CONTRACTS_PER_BLOCK - 1) / CONTRACTS_PER_BLOCK;
+    Path file = directory.resolve(String.format("segment-%06d%s", nextNumber(), SUFFIX));
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    Deflater deflater = new Deflater();
+    try (FileOutputStream stream = new FileOutputStream(temporary.toFile());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      out.writeInt(blocks);
+      out.writeInt(sorted.size());
+      ByteArrayOutputStream index = new ByteArrayOutputStream();
+      DataOutputStream indexOut = new DataOutputStream(index);
+      ByteArrayOutputStream raw = new ByteArrayOutputStream();
+      DataOutputStream rawOut = new DataOutputStream(raw);
+      ByteArrayOutputStream record = new ByteArrayOutputStream();
+      DataOutputStream recordOut = new DataOutputStream(record);
+      byte[] deflated = new byte[1 << 16];
+      CRC32 crc = new CRC32();
+      int step = Math.max(1, sorted.size() / DICTIONARY_SAMPLES);
+      for (int i = 0; i < sorted.size() && raw.size() < DICTIONARY_BYTES; i += step) {
+        record.reset();
+        write(recordOut, sorted.get(i));
+        rawOut.writeInt(record.size());
+        record.writeTo(rawOut);
+      }
+      byte[] dictionary = Arrays.copyOf(raw.toByteArray(), Math.min(raw.size(), DICTIONARY_BYTES));
+      indexOut.writeInt(dictionary.length);
+      indexOut.write(dictionary);
+      for (int from = 0; from < sorted.size(); from += CONTRACTS_PER_BLOCK) {
+        raw.reset();
+        List<Contract> block = sorted.subList(from, Math.min(sorted.size(), from + CONTRACTS_PER_BLOCK));
+        for (Contract contract : block) {
+          record.reset();
+          write(recordOut, contract);
+          rawOut.writeInt(record.size());
+          record.writeTo(rawOut);
+        }
+        byte[] bytes = raw.toByteArray();
+        crc.reset();
+        crc.update(bytes);
+        indexOut.writeLong(out.size());
+        deflater.reset();
+        deflater.setDictionary(dictionary);
+        deflater.setInput(bytes);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+          if (length == deflated.length) {
+            deflated = Arrays.copyOf(deflated, 2 * deflated.length);
+          }
+          length += deflater.deflate(deflated, length, deflated.length - length);
+        }
+        out.write(deflated, 0, length);
+        indexOut.writeInt(length);
+        indexOut.writeInt(bytes.length);
+        indexOut.writeInt((int) crc.getValue());
+        indexOut.writeUTF(block.get(0).getId());
+      }
+      final long indexOffset = out.size();
+      byte[] indexBytes = index.toByteArray();
+      crc.reset();
+      crc.update(indexBytes);
+      out.write(indexBytes);
+      out.writeLong(indexOffset);
+      out.writeInt((int) crc.getValue());
+      out.flush();
+      stream.getFD().sync();
+    } catch (IOException e) {
+      Files.deleteIfExists(temporary);
+      throw e;
+    } finally {
+      deflater.end();
+    }
+    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+    load(file, sorted);
+  }
+
+  /**
+   * Tells whether a contract with the ID was archived.
+   *
+   * @param contractId the ID
+   * @return true if the archive holds the contract
+   */
+  public synchronized boolean contains(String contractId) {
+    return find(contractId) != null;
+  }
+
+  /**
+   * Reads an archived contract.
+   *
+   * @param contractId the ID of the contract
+   * @return the contract, or null if it was not archived
+   */
+  public synchronized Contract find(String contractId) {
+    long hash = hash(contractId);
+    int i = Arrays.binarySearch(idHashes, hash);
+    if (i < 0) {
+      return null; // Almost every new ID ends here, without reading a block
+    }
+    while (i > 0 && idHashes[i - 1] == hash) {
+      i--;
+    }
+    byte[] key = contractId.getBytes(StandardCharsets.UTF_8);
+    List<Contract> found = new ArrayList<>(1);
+    for (; i < idHashes.length && idHashes[i] == hash && found.isEmpty(); i++) {
+      int block = segments.get(idSegments[i]).blockOf(contractId);
+      if (block >= 0) {
+        scan(idSegments[i], block, ID, key, found);
+      }
+    }
+    return found.isEmpty() ? null : found.get(0);
+  }
+
+  /**
+   * Reads the archived contracts for an item.
+   *
+   * @param itemId the ID of the item
+   * @return the contracts, in the order they were archived
+   */
+  public synchronized List<Contract> findByItem(String itemId) {
+    return findAll(byItemId.get(itemId), ITEM_ID, itemId);
+  }
+
+  /**
+   * Reads the archived contracts of a borrower.
+   *
+   * @param borrowerId the ID of the borrower
+   * @return the contracts, in the order they were archived
+   */
+  public synchronized List<Contract> findByBorrower(String borrowerId) {
+    return findAll(byBorrowerId.get(borrowerId), BORROWER_ID, borrowerId);
+  }
+
+  /**
+   * Returns one page of archived contracts, segment by segment in ID order.
+   *
+   * @param offset the index of the first contract to return
+   * @param limit  the maximum number of contracts to return
+   * @return the contracts in the requested range
+   */
+  public synchronized List<Contract> getContracts(int offset, int limit) {
+    List<Contract> page = new ArrayList<>();
+    int skip = Math.max(offset, 0);
+    for (int s = 0; s < segments.size() && page.size() < limit; s++) {
+      Segment segment = segments.get(s);
+      if (skip >= segment.count) {
+        skip -= segment.count;
+        continue;
+      }
+      for (int block = skip / CONTRACTS_PER_BLOCK; block < segment.offsets.length && page.size() < limit; block++) {
+        List<Contract> contracts = new ArrayList<>(CONTRACTS_PER_BLOCK);
+        scan(s, block, ID, null, contracts);
+        int from = Math.max(0, skip - block * CONTRACTS_PER_BLOCK);
+        page.addAll(contracts.subList(from, Math.min(contracts.size(), from + limit - page.size())));
+      }
+      skip = 0;
+    }
+    return page;
+  }
+
+  /**
+   * Releases the inflater. The segment files stay mapped until the archive is
+   * garbage collected.
+   */
+  @Override
+  public synchronized void close() {
+    inflater.end();
+    segments.clear();
+    cache.clear();
+  }
+
+  private List<Contract> findAll(BlockList blocks, int field, String value) {
+    List<Contract> found = new ArrayList<>();
+    if (blocks != null) {
+      byte[] key = value.getBytes(StandardCharsets.UTF_8);
+      for (int i = 0; i < blocks.size; i++) {
+        scan((int) (blocks.refs[i] >>> 32), (int) blocks.refs[i], field, key, found);
+      }
+    }
+    return found;
+  }
+
+  private int nextNumber() {
+    if (segments.isEmpty()) {
+      return 1;
+    }
+    String name = String.valueOf(segments.get(segments.size() - 1).file.getFileName());
+    return Integer.parseInt(name.substring("segment-".length(), name.length() - SUFFIX.length())) + 1;
+  }
+
+  /**
+   * Maps a segment, checks its index and indexes its contracts, taking their
+   * keys from the list if the segment was just written from it.
+   */
+  private void load(Path file, List<Contract> written) throws IOException {
+    ByteBuffer data;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    int size = data.capacity();
+    if (size < HEADER_SIZE + TRAILER_SIZE || data.getInt(0) != MAGIC || data.get(Integer.BYTES) != VERSION) {
+      throw new IOException(file + " is not a contract archive segment");
+    }
+    long indexOffset = data.getLong(size - TRAILER_SIZE);
+    if (indexOffset < HEADER_SIZE || indexOffset > size - TRAILER_SIZE) {
+      throw new IOException(file + " has a corrupt trailer");
+    }
+    ByteBuffer index = data.slice((int) indexOffset, size - TRAILER_SIZE - (int) indexOffset);
+    CRC32 crc = new CRC32();
+    crc.update(index.duplicate());
+    if ((int) crc.getValue() != data.getInt(size - Integer.BYTES)) {
+      throw new IOException(file + " has a corrupt index");
+    }
+    // The block and contract counts follow the magic number and the version
+    Segment segment = new Segment(file, data, data.getInt(5), data.getInt(9));
+    segment.dictionary = new byte[index.getInt()];
+    index.get(segment.dictionary);
+    for (int block = 0; block < segment.offsets.length; block++) {
+      segment.offsets[block] = (int) index.getLong();
+      segment.lengths[block] = index.getInt();
+      segment.rawLengths[block] = index.getInt();
+      segment.crcs[block] = index.getInt();
+      segment.firstIds[block] = readUtf(index);
+    }
+    segments.add(segment);
+    indexContracts(segments.size() - 1, written);
+  }
+
+  /**
+   * Adds the contracts of a segment to the in-memory indexes, merging their
+   * ID hashes into the sorted array.
+   */
+  private void indexContracts(int segmentNumber, List<Contract> written) throws IOException {
+    Segment segment = segments.get(segmentNumber);
+    long[] hashes = new long[segment.count];
+    int n = 0;
+    for (int block = 0; block < segment.offsets.length; block++) {
+      long ref = (long) segmentNumber << 32 | block;
+      if (written != null) {
+        for (Contract contract : written.subList(block * CONTRACTS_PER_BLOCK,
+            Math.min(written.size(), (block + 1) * CONTRACTS_PER_BLOCK))) {
+          hashes[n++] = hash(contract.getId());
+          index(ref, contract.getItemId(), contract.getBorrowerId());
+        }
+      } else {
+        ByteBuffer in = ByteBuffer.wrap(inflate(segmentNumber, block));
+        while (in.hasRemaining() && n < hashes.length) {
+          int next = in.getInt();
+          next += in.position();
+          hashes[n++] = hash(readString(in));
+          index(ref, readString(in), readString(in));
+          in.position(next);
+        }
+      }
+    }
+    if (n != hashes.length) {
+      throw new IOException(segment.file + " holds fewer contracts than its header says");
+    }
+    Arrays.sort(hashes);
+    long[] mergedHashes = new long[idHashes.length + n];
+    int[] mergedSegments = new int[mergedHashes.length];
+    int i = 0;
+    int j = 0;
+    for (int k = 0; k < mergedHashes.length; k++) {
+      if (j == n || i < idHashes.length && idHashes[i] <= hashes[j]) {
+        mergedHashes[k] = idHashes[i];
+        mergedSegments[k] = idSegments[i++];
+      } else {
+        mergedHashes[k] = hashes[j++];
+        mergedSegments[k] = segmentNumber;
+      }
+    }
+    idHashes = mergedHashes;
+    idSegments = mergedSegments;
+    count += n;
+  }
+
+  private void index(long ref, String itemId, String borrowerId) {
+    byItemId.computeIfAbsent(itemId, id -> new BlockList()).add(ref);
+    byBorrowerId.computeIfAbsent(borrowerId, id -> new BlockList()).add(ref);
+  }
+
+  /**
+   * Decodes the contracts of a block whose field equals the key, or all of
+   * them if the key is null, into the list.
+   */
+  private void scan(int segmentNumber, int block, int field, byte[] key, List<Contract> found) {
+    try {
+      ByteBuffer in = ByteBuffer.wrap(inflate(segmentNumber, block));
+      while (in.hasRemaining()) {
+        int next = in.getInt();
+        next += in.position();
+        if (key == null || matches(in, field, key)) {
+          found.add(read(in));
+        }
+        in.position(next);
+      }
+    } catch (IOException | RuntimeException e) {
+      throw new UncheckedIOException(new IOException(
+          segments.get(segmentNumber).file + " block " + block + " is unreadable", e));
+    }
+  }
+
+  /**
+   * Compares a string field of the contract at the position of the buffer
+   * with the key, without decoding it.
+   */
+  private static boolean matches(ByteBuffer in, int field, byte[] key) {
+    int position = in.position();
+    for (int i = 0; i < field; i++) {
+      position += Integer.BYTES + Math.max(0, in.getInt(position));
+    }
+    int length = in.getInt(position);
+    int from = in.arrayOffset() + position + Integer.BYTES;
+    return length == key.length && Arrays.equals(in.array(), from, from + length, key, 0, length);
+  }
+
+  private byte[] inflate(int segmentNumber, int block) throws IOException {
+    long key = (long) segmentNumber << 32 | block;
+    byte[] raw = cache.get(key);
+    if (raw != null) {
+      return raw;
+    }
+    Segment segment = segments.get(segmentNumber);
+    raw = new byte[segment.rawLengths[block]];
+    inflater.reset();
+    try {
+      inflater.setInput(segment.data.slice(segment.offsets[block], segment.lengths[block]));
+      int length = inflater.inflate(raw);
+      if (length == 0 && inflater.needsDictionary()) {
+        inflater.setDictionary(segment.dictionary);
+        length = inflater.inflate(raw);
+      }
+      if (length != raw.length || !inflater.finished()) {
+        throw new IOException(segment.file + " block " + block + " has the wrong length");
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(segment.file + " block " + block + " is corrupt", e);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(raw);
+    if ((int) crc.getValue() != segment.crcs[block]) {
+      throw new IOException(segment.file + " block " + block + " fails its checksum");
+    }
+    cache.put(key, raw);
+    return raw;
+  }
+
+  /**
+   * Reads a string written by {@link DataOutputStream#writeUTF(String)}.
+   */
+  private static String readUtf(ByteBuffer in) throws IOException {
+    byte[] bytes = new byte[Short.BYTES + Short.toUnsignedInt(in.getShort(in.position()))];
+    in.get(bytes);
+    return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+  }
+
+  private static void write(DataOutputStream out, Contract contract) throws IOException {
+    Item item = contract.getItem();
+    final Member owner = item.getOwner();
+    Member borrower = contract.getBorrower();
+    writeString(out, contract.getId());
+    writeString(out, item.getId());
+    writeString(out, borrower.getId());
+    writeString(out, item.getName());
+    out.writeInt(item.getCost());
+    writeString(out, owner.getId());
+    writeString(out, owner.getName());
+    writeString(out, owner.getEmail());
+    writeString(out, owner.getPhone());
+    out.writeInt(owner.getCredits());
+    writeString(out, borrower.getName());
+    writeString(out, borrower.getEmail());
+    writeString(out, borrower.getPhone());
+    out.writeInt(borrower.getCredits());
+    out.writeLong(contract.getStartDate().toEpochDay());
+    out.writeLong(contract.getEndDate().toEpochDay());
+    out.writeBoolean(contract.isActive());
+  }
+
+  private static Contract read(ByteBuffer in) {
+    String id = readString(in);
+    String itemId = readString(in);
+    String borrowerId = readString(in);
+    String itemName = readString(in);
+    int cost = in.getInt();
+    Member owner = Member.restore(readString(in), readString(in), readString(in), readString(in), in.getInt());
+    Member borrower = Member.restore(borrowerId, readString(in), readString(in), readString(in), in.getInt());
+    Contract contract = new Contract(id, new Item(itemId, owner, itemName, cost), borrower,
+        LocalDate.ofEpochDay(in.getLong()), LocalDate.ofEpochDay(in.getLong()));
+    contract.setActive(in.get() != 0);
+    return contract;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static String readString(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+    in.position(in.position() + length);
+    return value;
+  }
+
+  /**
+   * 64-bit FNV-1a hash of an ID, so distinct IDs practically never share one.
+   */
+  private static long hash(String id) {
+    long hash = 0xCBF29CE484222325L;
+    for (int i = 0; i < id.length(); i++) {
+      hash = (hash ^ id.charAt(i)) * 0x100000001B3L;
+    }
+    return hash;
+  }
+
+  /**
+   * Open segment file with its sparse index.
+   */
+  private static final class Segment {
+    private final Path file;
+    private final ByteBuffer data;
+    private final int count;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final int[] rawLengths;
+    private final int[] crcs;
+    private final String[] firstIds;
+    private byte[] dictionary;
+
+    private Segment(Path file, ByteBuffer data, int blocks, int count) {
+      this.file = file;
+      this.data = data;
+      this.count = count;
+      this.offsets = new int[blocks];
+      this.lengths = new int[blocks];
+      this.rawLengths = new int[blocks];
+      this.crcs = new int[blocks];
+      this.firstIds = new String[blocks];
+    }
+
+    /**
+     * Returns the only block that can hold the ID, or -1 if none can.
+     */
+    private int blockOf(String id) {
+      int i = Arrays.binarySearch(firstIds, id);
+      return i >= 0 ? i : -i - 2;
+    }
+  }
+
+  /**
+   * Growing list of block references, segment number in the high and block
+   * number in the low half, without repeating the last one.
+   */
+  private static final class BlockList {
+    private long[] refs = new long[1];
+    private int size;
+
+    private void add(long ref) {
+      if (size > 0 && refs[size - 1] == ref) {
+        return;
+      }
+      if (size == refs.length) {
+        refs = Arrays.copyOf(refs, 2 * size);
+      }
+      refs[size++] = ref;
+    }
+  }
+}
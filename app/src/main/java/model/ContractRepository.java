@@ -1,87 +1,369 @@
 package model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 /**
  * Repository class to manage contract data.
+ * All access is synchronized on the repository instance.
+ *
+ * <p>
+ * The repository owns the {@link LendingClock} deciding which contracts have
+ * expired, and keeps the contracts that are still active ordered by end date,
+ * so expiring them does not scan every contract ever made.
+ * </p>
+ *
+ * <p>
+ * With a {@link ContractArchive}, contracts that ended longer ago than a
+ * horizon are moved off the heap into the archive by
+ * {@link #archiveContracts()}, so the lists and indexes hold only active and
+ * recent contracts. Lookups by ID, item and borrower still find archived
+ * contracts; listing and counting cover the contracts on the heap, with
+ * {@link #getArchivedContracts(int, int)} for the others.
+ * </p>
  */
-public class ContractRepository {
+public class ContractRepository implements ContractRepositoryInterface {
   private List<Contract> contracts;
+  private final Map<String, Contract> byId = new HashMap<>();
+  private final Map<String, List<Contract>> byItemId = new HashMap<>();
+  private final Map<String, List<Contract>> byBorrowerId = new HashMap<>();
+  // Contracts that were active when added, by end date; ended ones are skipped
+  private final NavigableMap<LocalDate, List<Contract>> byEndDate = new TreeMap<>();
+  // Every contract on the heap by end date, while there is an archive
+  private final NavigableMap<LocalDate, List<Contract>> retained = new TreeMap<>();
+  private final LendingClock clock;
+  private final ModelEventBus events;
+  private ContractArchive archive;
+  private int horizonDays;
+  private int batchSize;
 
   /**
-   * Constructs a ContractRepository with an empty list of contracts.
+   * Constructs a ContractRepository with an empty list of contracts, a clock
+   * starting today and its own event bus.
    */
   public ContractRepository() {
-    this.contracts = new ArrayList<>();
+    this(new LendingClock(), new ModelEventBus());
   }
 
   /**
-   * Copy constructor for creating a new instance of ContractRepository
-   * by copying the contents of another ContractRepository instance.
+   * Constructs a ContractRepository with an empty list of contracts.
    *
-   * @param other the ContractRepository instance to copy from
+   * @param clock  the clock of the lending system
+   * @param events the bus receiving the changes to the contracts
    */
-  public ContractRepository(ContractRepository other) {
-    this.contracts = new ArrayList<>(other.contracts);
+  public ContractRepository(LendingClock clock, ModelEventBus events) {
+    this.contracts = new ArrayList<>();
+    this.clock = clock;
+    this.events = events;
+    clock.publishTo(events);
   }
 
   /**
-   * Adds a new contract to the repository.
+   * Constructs a ContractRepository holding contracts already recorded
+   * elsewhere, e.g. one shard of a rebuilt model, without publishing them.
    *
-   * @param contract the contract to add
-   * @throws ModelExceptions.IdExistsException if a contract with the same ID
-   *                                           already exists
+   * @param clock     the clock of the lending system
+   * @param events    the bus receiving the changes to the contracts
+   * @param contracts the contracts, with unique IDs
    */
-  public void addContract(Contract contract) {
-    if (contracts.stream().anyMatch(c -> c.getId().equals(contract.getId()))) {
-      throw new ModelExceptions.IdExistsException();
+  public ContractRepository(LendingClock clock, ModelEventBus events, List<Contract> contracts) {
+    this(clock, events);
+    this.contracts.addAll(contracts);
+    for (Contract contract : contracts) {
+      index(contract);
     }
-    contracts.add(contract);
   }
 
   /**
-   * Deletes a contract from the repository.
+   * Copy constructor for creating a new instance of ContractRepository
+   * by copying the contents of another ContractRepository instance.
    *
-   * @param contract the contract to delete
+   * @param other the ContractRepository instance to copy from
    */
-  public void deleteContract(Contract contract) {
-    contracts.remove(contract);
+  public ContractRepository(ContractRepository other) {
+    this.contracts = new ArrayList<>(other.contracts);
+    this.clock = other.clock; // One system, one current date
+    this.events = new ModelEventBus();
+    this.archive = other.archive;
+    this.horizonDays = other.horizonDays;
+    this.batchSize = other.batchSize;
+    for (Contract contract : contracts) {
+      index(contract);
+    }
+  }
+
+  @Override
+  public LendingClock getClock() {
+    return clock;
+  }
+
+  @Override
+  public ModelEventBus getEventBus() {
+    return events;
   }
 
   /**
-   * Retrieves a contract from the repository by its ID.
+   * Moves contracts that ended more than a number of days ago to an archive
+   * from now on.
    *
-   * @param contractId the ID of the contract to retrieve
-   * @return the contract with the specified ID, or null if not found
+   * @param archive     the archive
+   * @param horizonDays the number of days ended contracts stay on the heap
+   * @param batchSize   the number of contracts that must be due before they
+   *                    are archived together, so segments are not tiny
    */
-  public Contract getContract(String contractId) {
-    return contracts.stream()
-        .filter(existingContract -> existingContract.getId().equals(contractId))
-        .findFirst()
-        .orElse(null);
+  public synchronized void setArchive(ContractArchive archive, int horizonDays, int batchSize) {
+    this.archive = archive;
+    this.horizonDays = horizonDays;
+    this.batchSize = Math.max(1, batchSize);
+    retained.clear();
+    for (Contract contract : contracts) {
+      retain(contract);
+    }
   }
 
   /**
-   * Retrieves all contracts from the repository.
+   * Returns the archive of the repository.
    *
-   * @return a list of all contracts
+   * @return the archive, or null if contracts stay on the heap
    */
-  public List<Contract> getAllContracts() {
+  public synchronized ContractArchive getArchive() {
+    return archive;
+  }
+
+  @Override
+  public synchronized void addContract(Contract contract) {
+    tryAddContract(contract).orThrow();
+  }
+
+  @Override
+  public synchronized Result<Contract> tryAddContract(Contract contract) {
+    if (isTaken(contract.getId())) {
+      return Result.failure(ModelError.ID_EXISTS);
+    }
+    if (contract.isActive() && hasConflict(contract)) {
+      return Result.failure(ModelError.CONFLICTING_CONTRACT);
+    }
+    contracts.add(contract);
+    index(contract);
+    created(contract);
+    return Result.ok(contract);
+  }
+
+  @Override
+  public synchronized ModelError[] addContracts(List<Contract> batch) {
+    ModelError[] errors = new ModelError[batch.size()];
+    for (int i = 0; i < batch.size(); i++) {
+      Contract contract = batch.get(i);
+      if (isTaken(contract.getId())) {
+        errors[i] = ModelError.ID_EXISTS;
+      } else if (hasConflict(contract)) {
+        errors[i] = ModelError.CONFLICTING_CONTRACT;
+      } else {
+        contracts.add(contract);
+        index(contract);
+        created(contract);
+      }
+    }
+    return errors;
+  }
+
+  @Override
+  public synchronized void deleteContract(Contract contract) {
+    if (contracts.remove(contract)) {
+      Contract stored = byId.remove(contract.getId());
+      unindex(byItemId, stored.getItemId(), stored);
+      unindex(byBorrowerId, stored.getBorrowerId(), stored);
+      List<Contract> ending = byEndDate.get(stored.getEndDate());
+      if (ending != null) {
+        ending.remove(stored);
+      }
+      List<Contract> retainedEnding = retained.get(stored.getEndDate());
+      if (retainedEnding != null) {
+        retainedEnding.remove(stored);
+      }
+      if (events.hasSubscribers()) {
+        events.publish(new ModelEvents.ContractDeleted(stored));
+      }
+    }
+  }
+
+  @Override
+  public synchronized Contract getContract(String contractId) {
+    Contract contract = byId.get(contractId);
+    return contract != null || archive == null ? contract : archive.find(contractId);
+  }
+
+  @Override
+  public synchronized List<Contract> getContractsForItem(String itemId) {
+    List<Contract> found = archive != null ? archive.findByItem(itemId) : new ArrayList<>();
+    found.addAll(byItemId.getOrDefault(itemId, Collections.emptyList()));
+    return found;
+  }
+
+  @Override
+  public synchronized List<Contract> getContractsForBorrower(String borrowerId) {
+    List<Contract> found = archive != null ? archive.findByBorrower(borrowerId) : new ArrayList<>();
+    found.addAll(byBorrowerId.getOrDefault(borrowerId, Collections.emptyList()));
+    return found;
+  }
+
+  @Override
+  public synchronized boolean hasConflict(Contract newContract) {
+    // Only contracts for the same item can conflict
+    return byItemId.getOrDefault(newContract.getItemId(), Collections.emptyList()).stream()
+        .anyMatch(existingContract -> existingContract.conflictsWith(newContract));
+  }
+
+  @Override
+  public synchronized boolean isItemAvailable(String itemId, LocalDate start, LocalDate end) {
+    for (Contract contract : byItemId.getOrDefault(itemId, Collections.emptyList())) {
+      if (contract.overlaps(start, end)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized int countContracts() {
+    return contracts.size();
+  }
+
+  @Override
+  public synchronized List<Contract> getContracts(int offset, int limit) {
+    int from = Math.min(Math.max(offset, 0), contracts.size());
+    return new ArrayList<>(contracts.subList(from, Math.min(contracts.size(), from + Math.max(limit, 0))));
+  }
+
+  @Override
+  public synchronized int countArchivedContracts() {
+    return archive != null ? archive.countContracts() : 0;
+  }
+
+  @Override
+  public synchronized List<Contract> getArchivedContracts(int offset, int limit) {
+    return archive != null ? archive.getContracts(offset, limit) : new ArrayList<>();
+  }
+
+  @Override
+  public synchronized List<Contract> getAllContracts() {
     return Collections.unmodifiableList(new ArrayList<>(contracts));
   }
 
-  /**
-   * Cancels all active contracts for a specific item.
-   *
-   * @param item the item for which to cancel contracts
-   */
-  public void cancelContractsForItem(Item item) {
-    for (Contract contract : contracts) {
-      if (contract.getItem().equals(item) && contract.isActive()) {
+  @Override
+  public synchronized List<Contract> expireContracts(LocalDate date) {
+    List<Contract> expired = new ArrayList<>();
+    for (Map.Entry<LocalDate, List<Contract>> ending = byEndDate.firstEntry();
+        ending != null && ending.getKey().isBefore(date); ending = byEndDate.firstEntry()) {
+      byEndDate.pollFirstEntry();
+      for (Contract contract : ending.getValue()) {
+        if (contract.isActive()) {
+          contract.setActive(false);
+          expired.add(contract);
+          if (events.hasSubscribers()) {
+            events.publish(new ModelEvents.ContractExpired(contract));
+          }
+        }
+      }
+    }
+    return expired;
+  }
+
+  @Override
+  public synchronized int archiveContracts() {
+    if (archive == null) {
+      return 0;
+    }
+    NavigableMap<LocalDate, List<Contract>> due = retained.headMap(clock.today().minusDays(horizonDays), false);
+    List<Contract> ended = new ArrayList<>();
+    for (List<Contract> ending : due.values()) {
+      for (Contract contract : ending) {
+        if (!contract.isActive()) {
+          ended.add(contract);
+        }
+      }
+    }
+    if (ended.size() < batchSize) {
+      return 0;
+    }
+    try {
+      archive.archive(ended);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    for (Contract contract : ended) {
+      byId.remove(contract.getId());
+      unindex(byItemId, contract.getItemId(), contract);
+      unindex(byBorrowerId, contract.getBorrowerId(), contract);
+      List<Contract> ending = byEndDate.get(contract.getEndDate());
+      if (ending != null) {
+        ending.remove(contract);
+      }
+    }
+    // Contracts still active past their end date stay until they expire
+    for (Iterator<List<Contract>> iterator = due.values().iterator(); iterator.hasNext(); ) {
+      List<Contract> ending = iterator.next();
+      ending.removeIf(contract -> !contract.isActive());
+      if (ending.isEmpty()) {
+        iterator.remove();
+      }
+    }
+    contracts.removeIf(contract -> !byId.containsKey(contract.getId()));
+    return ended.size();
+  }
+
+  @Override
+  public synchronized void cancelContractsForItem(Item item) {
+    for (Contract contract : byItemId.getOrDefault(item.getId(), Collections.emptyList())) {
+      if (contract.isActive()) {
         contract.setActive(false);
+        if (events.hasSubscribers()) {
+          events.publish(new ModelEvents.ContractCancelled(contract));
+        }
       }
     }
   }
+
+  private void created(Contract contract) {
+    if (events.hasSubscribers()) {
+      events.publish(new ModelEvents.ContractCreated(contract));
+    }
+  }
+
+  private boolean isTaken(String contractId) {
+    return byId.containsKey(contractId) || archive != null && archive.contains(contractId);
+  }
+
+  private void retain(Contract contract) {
+    if (archive != null) {
+      retained.computeIfAbsent(contract.getEndDate(), date -> new ArrayList<>()).add(contract);
+    }
+  }
+
+  private void index(Contract contract) {
+    byId.put(contract.getId(), contract);
+    byItemId.computeIfAbsent(contract.getItemId(), id -> new ArrayList<>(2)).add(contract);
+    byBorrowerId.computeIfAbsent(contract.getBorrowerId(), id -> new ArrayList<>(2)).add(contract);
+    if (contract.isActive()) {
+      byEndDate.computeIfAbsent(contract.getEndDate(), date -> new ArrayList<>()).add(contract);
+    }
+    retain(contract);
+  }
+
+  private static void unindex(Map<String, List<Contract>> index, String key, Contract contract) {
+    List<Contract> list = index.get(key);
+    list.remove(contract);
+    if (list.isEmpty()) {
+      index.remove(key);
+    }
+  }
 }
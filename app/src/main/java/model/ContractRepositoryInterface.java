@@ -0,0 +1,201 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Storage of the contracts, together with the clock deciding when they end.
+ * {@link ContractRepository} keeps them in memory, {@link JdbcContractRepository}
+ * in a database.
+ */
+public interface ContractRepositoryInterface {
+  /**
+   * Returns the clock of the lending system.
+   *
+   * @return the clock shared by everything using this repository
+   */
+  LendingClock getClock();
+
+  /**
+   * Returns the bus the changes to the contracts are published on.
+   *
+   * @return the event bus
+   */
+  ModelEventBus getEventBus();
+
+  /**
+   * Runs work changing the contracts and the members and items stored with
+   * them, e.g. a booking or a settlement, so that all of its changes are kept
+   * or none. The in-memory repositories keep every change at once and just
+   * run the work.
+   *
+   * @param <T>  the type of the result
+   * @param work the work
+   * @return the result of the work
+   */
+  default <T> T inTransaction(Supplier<T> work) {
+    return work.get();
+  }
+
+  /**
+   * Adds a new contract to the repository.
+   *
+   * @param contract the contract to add
+   * @throws ModelExceptions.IdExistsException if a contract with the same ID
+   *                                           already exists
+   */
+  void addContract(Contract contract);
+
+  /**
+   * Adds a contract to the repository unless its ID is taken or, if it is
+   * active, it conflicts with an active contract for its item, without
+   * throwing. Both are checked in the same step as the contract is added, so
+   * concurrent callers cannot book the same item for overlapping dates.
+   *
+   * @param contract the contract to add
+   * @return the added contract, or the error that prevented it
+   */
+  Result<Contract> tryAddContract(Contract contract);
+
+  /**
+   * Adds many contracts at once, e.g. from a bulk import. Like
+   * {@link #tryAddContract(Contract)}, each contract is checked against the
+   * active contracts for its item, here including earlier contracts of the
+   * batch.
+   *
+   * @param batch the contracts to add, in order
+   * @return for each contract, the error that prevented adding it, or null if it
+   *         was added
+   */
+  ModelError[] addContracts(List<Contract> batch);
+
+  /**
+   * Deletes a contract from the repository. Archived contracts cannot be
+   * deleted.
+   *
+   * @param contract the contract to delete
+   */
+  void deleteContract(Contract contract);
+
+  /**
+   * Retrieves a contract from the repository by its ID, reading it from the
+   * archive if it was archived.
+   *
+   * @param contractId the ID of the contract to retrieve
+   * @return the contract with the specified ID, or null if not found
+   */
+  Contract getContract(String contractId);
+
+  /**
+   * Returns every contract for an item, archived ones first.
+   *
+   * @param itemId the ID of the item
+   * @return the contracts for the item
+   */
+  List<Contract> getContractsForItem(String itemId);
+
+  /**
+   * Returns every contract of a borrower, archived ones first.
+   *
+   * @param borrowerId the ID of the borrower
+   * @return the contracts of the borrower
+   */
+  List<Contract> getContractsForBorrower(String borrowerId);
+
+  /**
+   * Checks if the given contract conflicts with any contract in the repository.
+   *
+   * @param newContract the contract to check
+   * @return true if an existing contract conflicts with it, false otherwise
+   */
+  boolean hasConflict(Contract newContract);
+
+  /**
+   * Checks if an item is free of active contracts for the whole period.
+   *
+   * @param itemId the ID of the item
+   * @param start  the first day of the period
+   * @param end    the last day of the period
+   * @return true if no active contract for the item overlaps the period
+   */
+  boolean isItemAvailable(String itemId, LocalDate start, LocalDate end);
+
+  /**
+   * Returns a test for items free for the whole period, e.g. for ranking search
+   * results.
+   *
+   * @param start the first day of the period
+   * @param end   the last day of the period
+   * @return the test
+   */
+  default Predicate<Item> availableDuring(LocalDate start, LocalDate end) {
+    return item -> isItemAvailable(item.getId(), start, end);
+  }
+
+  /**
+   * Returns the number of contracts in the repository.
+   *
+   * @return the number of contracts
+   */
+  int countContracts();
+
+  /**
+   * Returns one page of contracts without copying the rest of the repository.
+   *
+   * @param offset the index of the first contract to return
+   * @param limit  the maximum number of contracts to return
+   * @return the contracts in the requested range
+   */
+  List<Contract> getContracts(int offset, int limit);
+
+  /**
+   * Returns the number of archived contracts, which
+   * {@link #countContracts()} does not count.
+   *
+   * @return the number of contracts in the archive, 0 without one
+   */
+  int countArchivedContracts();
+
+  /**
+   * Returns one page of archived contracts.
+   *
+   * @param offset the index of the first contract to return
+   * @param limit  the maximum number of contracts to return
+   * @return the contracts in the requested range
+   */
+  List<Contract> getArchivedContracts(int offset, int limit);
+
+  /**
+   * Retrieves all contracts from the repository.
+   *
+   * @return a list of all contracts
+   */
+  List<Contract> getAllContracts();
+
+  /**
+   * Ends every active contract whose end date is before the given date.
+   *
+   * @param date the new current date
+   * @return the contracts that were ended
+   */
+  List<Contract> expireContracts(LocalDate date);
+
+  /**
+   * Moves the contracts that are no longer active and ended long enough ago
+   * out of the working set, if the repository keeps a separate archive.
+   *
+   * @return the number of contracts archived
+   * @throws java.io.UncheckedIOException if the archive cannot be written, in
+   *                                      which case the contracts stay
+   */
+  int archiveContracts();
+
+  /**
+   * Cancels all active contracts for a specific item.
+   *
+   * @param item the item for which to cancel contracts
+   */
+  void cancelContractsForItem(Item item);
+}
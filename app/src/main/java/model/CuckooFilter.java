@@ -0,0 +1,270 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Approximate set of strings answering "certainly absent" or "maybe present"
+ * in a few memory accesses, with deletions, growing as keys are added.
+ * Safe to share between threads; every method locks the filter.
+ *
+ * <p>
+ * A key is stored as a 16-bit fingerprint of its hash in one of two buckets of
+ * four slots, the second bucket derived from the first and the fingerprint
+ * alone, so entries can be moved to their other bucket to make room (cuckoo
+ * hashing). A lookup reads the two buckets; it is never wrong about a key that
+ * was added and not removed, and wrong about an absent key with a probability
+ * of about 8 / 65536, 0.012%, per table. Removing a key clears one copy of its
+ * fingerprint, so only keys that were added may be removed.
+ * </p>
+ *
+ * <p>
+ * A table takes new keys until it is 94% full, then a table four times as
+ * large is added for the following keys; lookups and removals check every
+ * table, so the false positive rate grows with the number of tables, which
+ * grows with the logarithm of the keys. Sizing the first table for the keys
+ * expected keeps it at one. The rare key that finds no room after 500 moves
+ * is kept in a small stash of the table.
+ * </p>
+ *
+ * <p>
+ * Within a table, keys with the same fingerprint in the same two buckets are
+ * interchangeable, so clearing either copy is right. Across tables they are
+ * not: the filter does not record which table took a key, and clearing a
+ * colliding key's fingerprint in another table would make that key absent.
+ * A removal whose fingerprint is in more than one table therefore clears
+ * none of them; the leftover copies only add false positives, about one per
+ * 8,000 removals per extra table.
+ * </p>
+ */
+public final class CuckooFilter {
+  private static final int SLOTS = 4;
+  private static final int MAX_KICKS = 500;
+  private static final double MAX_LOAD = 0.94;
+  private static final int MAX_BUCKETS = 1 << 26;
+  private static final int GROWTH = 4;
+
+  private final List<Table> tables = new ArrayList<>();
+  private long size;
+
+  /**
+   * Creates an empty filter.
+   *
+   * @param expectedKeys the number of keys the first table is sized for
+   */
+  public CuckooFilter(long expectedKeys) {
+    tables.add(new Table(expectedKeys));
+  }
+
+  /**
+   * Adds a key. Adding a key twice stores it twice.
+   *
+   * @param key the key
+   */
+  public synchronized void add(String key) {
+    Table table = tables.get(tables.size() - 1);
+    if (table.size >= table.capacity * MAX_LOAD) {
+      table = new Table(GROWTH * table.capacity);
+      tables.add(table);
+    }
+    table.add(hash(key));
+    size++;
+  }
+
+  /**
+   * Tells whether a key may have been added.
+   *
+   * @param key the key
+   * @return false if the key was certainly not added or was removed since,
+   *         true if it probably was added
+   */
+  public synchronized boolean mightContain(String key) {
+    long hash = hash(key);
+    for (int i = tables.size() - 1; i >= 0; i--) {
+      if (tables.get(i).contains(hash)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Removes one copy of a key that was added, unless its fingerprint is in
+   * more than one table and the copy to clear is ambiguous.
+   *
+   * @param key the key
+   * @return true if a fingerprint of the key was found
+   */
+  public synchronized boolean remove(String key) {
+    long hash = hash(key);
+    Table holder = null;
+    for (Table table : tables) {
+      if (table.contains(hash)) {
+        if (holder != null) {
+          size--;
+          return true;
+        }
+        holder = table;
+      }
+    }
+    if (holder == null) {
+      return false;
+    }
+    holder.remove(hash);
+    size--;
+    return true;
+  }
+
+  /**
+   * Returns the number of keys added and not removed.
+   *
+   * @return the number of keys
+   */
+  public synchronized long size() {
+    return size;
+  }
+
+  /**
+   * Returns the memory taken by the fingerprints.
+   *
+   * @return the size of the tables in bytes
+   */
+  public synchronized long getBytes() {
+    long bytes = 0;
+    for (Table table : tables) {
+      bytes += 2L * table.fingerprints.length;
+    }
+    return bytes;
+  }
+
+  /**
+   * Hashes the UTF-16 units of the key with 64-bit FNV-1a, then mixes the
+   * result so the bucket and fingerprint bits are independent.
+   */
+  private static long hash(String key) {
+    long hash = 0xCBF29CE484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+    }
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return hash ^ (hash >>> 33);
+  }
+
+  /**
+   * One table of buckets, the slots of bucket b at 4 * b to 4 * b + 3.
+   */
+  private static final class Table {
+    private final short[] fingerprints;
+    private final long capacity;
+    private final int mask;
+    private final List<long[]> stash = new ArrayList<>(); // {bucket, fingerprint}
+    private final Random random = new Random(0);
+    private long size;
+
+    private Table(long expectedKeys) {
+      int buckets = Integer.highestOneBit((int) Math.min(MAX_BUCKETS, Math.max(4, expectedKeys / SLOTS)));
+      if ((long) buckets * SLOTS < expectedKeys && buckets < MAX_BUCKETS) {
+        buckets <<= 1;
+      }
+      fingerprints = new short[buckets * SLOTS];
+      capacity = (long) buckets * SLOTS;
+      mask = buckets - 1;
+    }
+
+    private void add(long hash) {
+      short fingerprint = fingerprint(hash);
+      int bucket = (int) hash & mask;
+      size++;
+      if (insert(bucket, fingerprint) || insert(alternate(bucket, fingerprint), fingerprint)) {
+        return;
+      }
+      // Both buckets are full: move random entries to their other bucket until one finds room
+      for (int kick = 0; kick < MAX_KICKS; kick++) {
+        int slot = bucket * SLOTS + random.nextInt(SLOTS);
+        short evicted = fingerprints[slot];
+        fingerprints[slot] = fingerprint;
+        fingerprint = evicted;
+        bucket = alternate(bucket, fingerprint);
+        if (insert(bucket, fingerprint)) {
+          return;
+        }
+      }
+      stash.add(new long[] {bucket, fingerprint});
+    }
+
+    private boolean contains(long hash) {
+      short fingerprint = fingerprint(hash);
+      int bucket = (int) hash & mask;
+      return find(bucket, fingerprint) >= 0 || find(alternate(bucket, fingerprint), fingerprint) >= 0
+          || stashIndex(bucket, fingerprint) >= 0;
+    }
+
+    private boolean remove(long hash) {
+      short fingerprint = fingerprint(hash);
+      int bucket = (int) hash & mask;
+      int slot = find(bucket, fingerprint);
+      if (slot < 0) {
+        slot = find(alternate(bucket, fingerprint), fingerprint);
+      }
+      if (slot >= 0) {
+        fingerprints[slot] = 0;
+      } else {
+        int index = stashIndex(bucket, fingerprint);
+        if (index < 0) {
+          return false;
+        }
+        stash.remove(index);
+      }
+      size--;
+      return true;
+    }
+
+    private boolean insert(int bucket, short fingerprint) {
+      for (int slot = bucket * SLOTS; slot < (bucket + 1) * SLOTS; slot++) {
+        if (fingerprints[slot] == 0) {
+          fingerprints[slot] = fingerprint;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private int find(int bucket, short fingerprint) {
+      for (int slot = bucket * SLOTS; slot < (bucket + 1) * SLOTS; slot++) {
+        if (fingerprints[slot] == fingerprint) {
+          return slot;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Finds a stashed fingerprint, which may sit under either of its buckets.
+     */
+    private int stashIndex(int bucket, short fingerprint) {
+      int other = alternate(bucket, fingerprint);
+      for (int i = 0; i < stash.size(); i++) {
+        long[] entry = stash.get(i);
+        if (entry[1] == fingerprint && (entry[0] == bucket || entry[0] == other)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private int alternate(int bucket, short fingerprint) {
+      return (bucket ^ (fingerprint * 0x5BD1E995)) & mask;
+    }
+
+    /**
+     * Takes 16 bits of the hash apart from the bucket bits, 0 marking an
+     * empty slot.
+     */
+    private static short fingerprint(long hash) {
+      short fingerprint = (short) (hash >>> 48);
+      return fingerprint != 0 ? fingerprint : 1;
+    }
+  }
+}
@@ -0,0 +1,282 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from normalized name tokens to document ordinals.
+ *
+ * <p>
+ * Ordinals must be added in increasing order, which lets every posting list be
+ * an append-only byte array of variable-length encoded gaps (one byte for gaps
+ * below 128), or a bitmap for common words. Removed documents are not erased from the lists; the owner keeps
+ * track of dead ordinals, filters them from results and rebuilds the index
+ * with fresh ordinals once too many have accumulated.
+ * </p>
+ */
+final class InvertedIndex {
+  private static final int[] EMPTY = new int[0];
+
+  private final Map<String, PostingList> postings = new HashMap<>();
+
+  /**
+   * Indexes the tokens of the text under the ordinal, which must be larger than
+   * every ordinal added before.
+   */
+  void add(int ordinal, String text) {
+    for (String token : tokenize(text)) {
+      postings.computeIfAbsent(token, t -> new PostingList()).append(ordinal);
+    }
+  }
+
+  void clear() {
+    postings.clear();
+  }
+
+  /**
+   * Estimates the work of a query in decoded postings and bitmap words, or
+   * returns 0 if a token is unknown and nothing can match.
+   */
+  long queryCost(Set<String> tokens) {
+    long total = 0;
+    for (String token : tokens) {
+      PostingList list = postings.get(token);
+      if (list == null) {
+        return 0;
+      }
+      total += list.bits != null ? list.bits.length : list.count;
+    }
+    return total;
+  }
+
+  /**
+   * Estimates the share of documents containing every token, assuming tokens
+   * occur independently of each other.
+   */
+  double selectivity(Set<String> tokens, int documents) {
+    double selectivity = 1;
+    for (String token : tokens) {
+      PostingList list = postings.get(token);
+      selectivity *= list == null ? 0 : Math.min(1.0, (double) list.count / Math.max(1, documents));
+    }
+    return selectivity;
+  }
+
+  /**
+   * Returns the ordinals, in increasing order, of all documents containing
+   * every token, including documents removed since they were added.
+   */
+  int[] query(Set<String> tokens) {
+    if (tokens.isEmpty()) {
+      return EMPTY;
+    }
+    PostingList[] lists = new PostingList[tokens.size()];
+    int i = 0;
+    for (String token : tokens) {
+      lists[i] = postings.get(token);
+      if (lists[i++] == null) {
+        return EMPTY;
+      }
+    }
+    Arrays.sort(lists, (a, b) -> Integer.compare(a.count, b.count));
+    int[] result;
+    if (lists[0].bits == null) {
+      result = lists[0].decode();
+    } else {
+      // AND all bitmaps word by word before looking at single ordinals
+      long[] words = lists[0].bits.clone();
+      for (PostingList list : lists) {
+        if (list.bits != null) {
+          for (int w = 0; w < words.length; w++) {
+            words[w] &= w < list.bits.length ? list.bits[w] : 0;
+          }
+        }
+      }
+      result = ordinals(words);
+    }
+    int size = result.length;
+    for (int l = 1; l < lists.length && size > 0; l++) {
+      size = lists[l].retainAll(result, size);
+    }
+    return size == result.length ? result : Arrays.copyOf(result, size);
+  }
+
+  /**
+   * Checks a single text for every token without consulting the index or
+   * allocating.
+   */
+  static boolean containsAll(String text, Set<String> tokens) {
+    for (String token : tokens) {
+      if (!containsWord(text, token)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean containsWord(String text, String token) {
+    int length = token.length();
+    for (int i = 0; i + length <= text.length(); i++) {
+      if ((i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)))
+          && text.regionMatches(true, i, token, 0, length)
+          && (i + length == text.length() || !Character.isLetterOrDigit(text.charAt(i + length)))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Splits the text into distinct lower-case runs of letters and digits.
+   */
+  static Set<String> tokenize(String text) {
+    Set<String> tokens = new LinkedHashSet<>();
+    if (text == null) {
+      return tokens;
+    }
+    int length = text.length();
+    int start = -1;
+    for (int i = 0; i <= length; i++) {
+      boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+      if (wordChar && start < 0) {
+        start = i;
+      } else if (!wordChar && start >= 0) {
+        tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        start = -1;
+      }
+    }
+    return tokens;
+  }
+
+  private static int[] ordinals(long[] words) {
+    int count = 0;
+    for (long word : words) {
+      count += Long.bitCount(word);
+    }
+    int[] ordinals = new int[count];
+    int i = 0;
+    for (int w = 0; w < words.length; w++) {
+      for (long word = words[w]; word != 0; word &= word - 1) {
+        ordinals[i++] = w << 6 | Long.numberOfTrailingZeros(word);
+      }
+    }
+    return ordinals;
+  }
+
+  /**
+   * List of increasing ordinals, delta and varint encoded while sparse and a
+   * bitmap once at least one in 32 ordinals is in the list, which keeps
+   * intersections of common words to a few word-wise ANDs.
+   */
+  private static final class PostingList {
+    private static final int MIN_BITMAP_COUNT = 1024;
+
+    private byte[] data = new byte[4];
+    private long[] bits;
+    private int length;
+    private int count;
+    private int last = -1;
+
+    void append(int ordinal) {
+      if (ordinal == last) {
+        return;
+      }
+      if (bits != null) {
+        if (ordinal >> 6 >= bits.length) {
+          bits = Arrays.copyOf(bits, Math.max(bits.length * 2, (ordinal >> 6) + 1));
+        }
+        bits[ordinal >> 6] |= 1L << ordinal;
+      } else {
+        if (length + 5 > data.length) {
+          data = Arrays.copyOf(data, data.length * 2);
+        }
+        int gap = ordinal - last;
+        while ((gap & ~0x7F) != 0) {
+          data[length++] = (byte) ((gap & 0x7F) | 0x80);
+          gap >>>= 7;
+        }
+        data[length++] = (byte) gap;
+      }
+      last = ordinal;
+      count++;
+      if (bits == null && count >= MIN_BITMAP_COUNT && (long) count * 32 > last) {
+        toBitmap();
+      }
+    }
+
+    private void toBitmap() {
+      long[] words = new long[(last >> 6) + 1];
+      for (int ordinal : decode()) {
+        words[ordinal >> 6] |= 1L << ordinal;
+      }
+      bits = words;
+      data = null;
+      length = 0;
+    }
+
+    int[] decode() {
+      if (bits != null) {
+        return ordinals(bits);
+      }
+      int[] ordinals = new int[count];
+      int position = 0;
+      int value = -1;
+      for (int i = 0; i < count; i++) {
+        int gap = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = data[position++];
+          gap |= (b & 0x7F) << shift;
+          shift += 7;
+        } while (b < 0);
+        value += gap;
+        ordinals[i] = value;
+      }
+      return ordinals;
+    }
+
+    /**
+     * Keeps only the first size candidates that are also in this list, in
+     * place, and returns how many remain.
+     */
+    int retainAll(int[] candidates, int size) {
+      int kept = 0;
+      if (bits != null) {
+        for (int c = 0; c < size; c++) {
+          int ordinal = candidates[c];
+          if (ordinal >> 6 < bits.length && (bits[ordinal >> 6] & 1L << ordinal) != 0) {
+            candidates[kept++] = ordinal;
+          }
+        }
+        return kept;
+      }
+      int c = 0;
+      int position = 0;
+      int value = -1;
+      for (int i = 0; i < count && c < size; i++) {
+        int gap = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = data[position++];
+          gap |= (b & 0x7F) << shift;
+          shift += 7;
+        } while (b < 0);
+        value += gap;
+        while (c < size && candidates[c] < value) {
+          c++;
+        }
+        if (c < size && candidates[c] == value) {
+          candidates[kept++] = value;
+          c++;
+        }
+      }
+      return kept;
+    }
+  }
+}
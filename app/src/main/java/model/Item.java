@@ -1,6 +1,7 @@
 package model;
 
 import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * Represents an item with an owner, name, and cost.
@@ -10,6 +11,7 @@ public class Item {
   private String name;
   private int cost;
   private Member owner;
+  private Consumer<Item> changeListener;
 
   /**
    * Constructs an Item with the specified owner, name, and cost.
@@ -20,15 +22,55 @@ public class Item {
    * @throws ModelExceptions.NegativeCostException if the cost is negative
    */
   public Item(Member owner, String name, int cost) {
+    this(null, owner, name, cost);
+  }
+
+  /**
+   * Constructs an Item with a known ID, e.g. when importing items exported
+   * elsewhere.
+   *
+   * @param id    the ID of the item, or null to generate one
+   * @param owner the owner of the item
+   * @param name  the name of the item
+   * @param cost  the cost of the item
+   * @throws ModelExceptions.NegativeCostException if the cost is negative
+   */
+  public Item(String id, Member owner, String name, int cost) {
     if (cost < 0) {
-      throw new ModelExceptions.NegativeCostException();
+      throw ModelError.NEGATIVE_COST.toException();
     }
-    this.id = generateId(); // Assuming ID is generated automatically
+    this.id = id != null ? id : generateId();
     this.name = name;
     this.cost = cost;
     this.owner = new Member(owner); // Store a defensive copy of the owner
   }
 
+  /**
+   * Creates an item without throwing, for bulk operations where many rows may
+   * be invalid.
+   *
+   * @param owner the owner of the item
+   * @param name  the name of the item
+   * @param cost  the cost of the item
+   * @return the item, or the validation error
+   */
+  public static Result<Item> create(Member owner, String name, int cost) {
+    return create(null, owner, name, cost);
+  }
+
+  /**
+   * Creates an item with a known ID without throwing.
+   *
+   * @param id    the ID of the item, or null to generate one
+   * @param owner the owner of the item
+   * @param name  the name of the item
+   * @param cost  the cost of the item
+   * @return the item, or the validation error
+   */
+  public static Result<Item> create(String id, Member owner, String name, int cost) {
+    return cost < 0 ? Result.failure(ModelError.NEGATIVE_COST) : Result.ok(new Item(id, owner, name, cost));
+  }
+
   /**
    * Copy constructor for Item.
    *
@@ -88,6 +130,23 @@ public class Item {
    */
   public void setName(String name) {
     this.name = name;
+    notifyChanged();
+  }
+
+  /**
+   * Registers the callback run after the name or cost changed, replacing any
+   * previous one.
+   *
+   * @param listener the callback, or null to remove it
+   */
+  void setChangeListener(Consumer<Item> listener) {
+    this.changeListener = listener;
+  }
+
+  private void notifyChanged() {
+    if (changeListener != null) {
+      changeListener.accept(this); // Lets the repository holding the item re-index it
+    }
   }
 
   /**
@@ -107,9 +166,10 @@ public class Item {
    */
   public void setCost(int cost) {
     if (cost < 0) {
-      throw new ModelExceptions.NegativeCostException();
+      throw ModelError.NEGATIVE_COST.toException();
     }
     this.cost = cost;
+    notifyChanged();
   }
 
   /**
@@ -121,6 +181,24 @@ public class Item {
     return new Member(owner); // Return a defensive copy of the owner
   }
 
+  /**
+   * Returns the ID of the owner without copying the owner.
+   *
+   * @return the ID of the owner
+   */
+  public String getOwnerId() {
+    return owner.getId();
+  }
+
+  /**
+   * Returns the name of the owner without copying the owner.
+   *
+   * @return the name of the owner
+   */
+  public String getOwnerName() {
+    return owner.getName();
+  }
+
   /**
    * Sets the owner with a defensive copy.
    *
@@ -1,20 +1,77 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
 
 /**
  * Repository class for managing a collection of items.
+ * Safe to share between threads; every method locks the repository.
+ *
+ * <p>
+ * Item names are kept in a full-text index, and items in cost order, both
+ * following changes made through {@link Item#setName(String)} and
+ * {@link Item#setCost(int)} while the item is in the repository.
+ * </p>
  */
-public class ItemRepository {
+public class ItemRepository implements ItemRepositoryInterface {
+  private static final int MIN_DEAD_ORDINALS_TO_COMPACT = 1024;
+  // Relative cost of checking one name for one word while walking in cost order,
+  // measured against decoding one posting or ANDing one bitmap word
+  private static final int WALK_COST_PER_WORD = 20;
+
   private List<Item> items;
+  private final Map<String, Item> byId = new HashMap<>();
+  private final PrefixIndex<Item> searchIndex = new PrefixIndex<>(Item::getId);
+  private final InvertedIndex textIndex = new InvertedIndex();
+  private final List<Item> byOrdinal = new ArrayList<>();
+  private int[] costByOrdinal = new int[1024];
+  // Sort keys of the live items, cost in the high and ordinal in the low half
+  private final Map<String, Long> costKeys = new HashMap<>();
+  private final NavigableMap<Long, Item> byCost = new TreeMap<>();
+  private int deadOrdinals;
+  private final ModelEventBus events;
 
   /**
-   * Constructs an ItemRepository with an empty list of items.
+   * Constructs an ItemRepository with an empty list of items and its own event
+   * bus.
    */
   public ItemRepository() {
+    this(new ModelEventBus());
+  }
+
+  /**
+   * Constructs an ItemRepository with an empty list of items.
+   *
+   * @param events the bus receiving the changes to the items
+   */
+  public ItemRepository(ModelEventBus events) {
     this.items = new ArrayList<>();
+    this.events = events;
+  }
+
+  /**
+   * Constructs an ItemRepository holding items already recorded elsewhere,
+   * e.g. one shard of a rebuilt model, without publishing them.
+   *
+   * @param events the bus receiving the changes to the items
+   * @param items  the items, with unique IDs
+   */
+  public ItemRepository(ModelEventBus events, List<Item> items) {
+    this.items = new ArrayList<>(items);
+    this.events = events;
+    for (Item item : items) {
+      index(item);
+      item.setChangeListener(this::reindex);
+    }
   }
 
   /**
@@ -26,48 +83,271 @@ public class ItemRepository {
    */
   public ItemRepository(ItemRepository other) {
     this.items = new ArrayList<>(other.items);
+    this.events = new ModelEventBus();
+    for (Item item : items) {
+      index(item); // Renames keep being reported to the original repository only
+    }
   }
 
-  /**
-   * Adds an item to the repository after checking for duplicates.
-   * Throws an IdExistsException if an item with the same ID already exists.
-   *
-   * @param item the item to be added
-   * @throws ModelExceptions.IdExistsException if an item with the same ID already
-   *                                           exists
-   */
-  public void addItem(Item item) {
+  @Override
+  public ModelEventBus getEventBus() {
+    return events;
+  }
+
+  @Override
+  public synchronized void addItem(Item item) {
+    tryAddItem(item).orThrow();
+  }
+
+  @Override
+  public synchronized Result<Item> tryAddItem(Item item) {
     if (itemExists(item)) {
-      throw new ModelExceptions.IdExistsException();
+      return Result.failure(ModelError.ID_EXISTS);
     }
     items.add(item);
+    index(item);
+    item.setChangeListener(this::reindex);
+    if (events.hasSubscribers()) {
+      events.publish(new ModelEvents.ItemCreated(item));
+    }
+    return Result.ok(item);
+  }
+
+  // The search indexes are only updated once at the end of the batch
+  @Override
+  public synchronized ModelError[] addItems(List<Item> batch) {
+    ModelError[] errors = new ModelError[batch.size()];
+    List<Item> added = new ArrayList<>(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      Item item = batch.get(i);
+      if (byId.putIfAbsent(item.getId(), item) != null) {
+        errors[i] = ModelError.ID_EXISTS;
+      } else {
+        items.add(item);
+        added.add(item);
+      }
+    }
+    searchIndex.addAll(added, item -> new String[] { item.getName(), item.getId() });
+    for (Item item : added) {
+      addToTextIndex(item);
+      item.setChangeListener(this::reindex);
+      if (events.hasSubscribers()) {
+        events.publish(new ModelEvents.ItemCreated(item));
+      }
+    }
+    return errors;
+  }
+
+  @Override
+  public synchronized void deleteItem(Item item) {
+    if (items.remove(item)) {
+      Item stored = byId.get(item.getId());
+      stored.setChangeListener(null);
+      unindex(stored);
+      compactIfSparse();
+      if (events.hasSubscribers()) {
+        events.publish(new ModelEvents.ItemDeleted(stored));
+      }
+    }
+  }
+
+  @Override
+  public synchronized Item getItemById(String id) {
+    return byId.get(id);
+  }
+
+  @Override
+  public synchronized int countItems() {
+    return items.size();
+  }
+
+  @Override
+  public synchronized List<Item> getItems(int offset, int limit) {
+    int from = Math.min(Math.max(offset, 0), items.size());
+    return new ArrayList<>(items.subList(from, Math.min(items.size(), from + Math.max(limit, 0))));
+  }
+
+  @Override
+  public synchronized List<Item> searchItems(String prefix, int limit) {
+    return searchIndex.search(prefix, limit);
+  }
+
+  // Queries matching few items intersect the posting lists and rank every
+  // match. Queries matching many items walk the items in cost order instead and
+  // stop once enough matches are found, so common words stay cheap.
+  @Override
+  public synchronized List<Item> findItems(String query, Predicate<? super Item> preferred, int limit) {
+    Set<String> tokens = InvertedIndex.tokenize(query);
+    long queryCost = textIndex.queryCost(tokens);
+    if (queryCost == 0 || limit <= 0) {
+      return new ArrayList<>();
+    }
+    // Walking in cost order visits about limit / selectivity items before it has enough matches
+    double expectedWalk = limit / Math.max(textIndex.selectivity(tokens, costKeys.size()), 1e-9);
+    if (expectedWalk * tokens.size() * WALK_COST_PER_WORD < queryCost) {
+      List<Item> walked = walkByCost(tokens, preferred, limit, (long) (4 * expectedWalk) + 256);
+      if (walked != null) {
+        return walked;
+      }
+    }
+    int[] matches = textIndex.query(tokens);
+    long[] keys = new long[matches.length];
+    int count = 0;
+    for (int ordinal : matches) {
+      if (byOrdinal.get(ordinal) != null) {
+        keys[count++] = (long) costByOrdinal[ordinal] << 32 | ordinal;
+      }
+    }
+    // Test the preference on the cheapest matches only, widening the window until enough are preferred
+    List<Item> result = new ArrayList<>(limit);
+    List<Item> others = new ArrayList<>(limit);
+    int window = preferred == null ? limit : 2 * limit;
+    while (true) {
+      long[] cheapest = smallest(keys, count, window);
+      result.clear();
+      others.clear();
+      for (long key : cheapest) {
+        Item item = byOrdinal.get((int) key);
+        if (preferred == null || preferred.test(item)) {
+          result.add(item);
+          if (result.size() == limit) {
+            return result;
+          }
+        } else if (others.size() < limit) {
+          others.add(item);
+        }
+      }
+      if (cheapest.length == count) {
+        break;
+      }
+      window = (int) Math.min(count, 4L * window);
+    }
+    result.addAll(others.subList(0, Math.min(others.size(), limit - result.size())));
+    return result;
   }
 
   /**
-   * Deletes an item from the repository.
-   *
-   * @param item the item to be deleted
+   * Returns the k smallest of the first count keys in ascending order.
    */
-  public void deleteItem(Item item) {
-    items.remove(item);
+  private static long[] smallest(long[] keys, int count, int k) {
+    if (k >= count / 4) {
+      long[] sorted = Arrays.copyOf(keys, count);
+      Arrays.sort(sorted);
+      return k >= count ? sorted : Arrays.copyOf(sorted, k);
+    }
+    long[] best = new long[k]; // Ascending, filled by insertion
+    int size = 0;
+    for (int i = 0; i < count; i++) {
+      long key = keys[i];
+      if (size == k && key >= best[k - 1]) {
+        continue;
+      }
+      int position = size == k ? k - 1 : size++;
+      while (position > 0 && best[position - 1] > key) {
+        best[position] = best[position - 1];
+        position--;
+      }
+      best[position] = key;
+    }
+    return best;
   }
 
   /**
-   * Returns a list of all items in the repository.
+   * Collects matches in cost order, giving up after the budget of visited
+   * items.
    *
-   * @return a list of all items
+   * @return the result, or null if the budget ran out first
    */
-  public List<Item> getAllItems() {
+  private List<Item> walkByCost(Set<String> tokens, Predicate<? super Item> preferred, int limit, long budget) {
+    List<Item> preferredMatches = new ArrayList<>(limit);
+    List<Item> otherMatches = new ArrayList<>(limit);
+    long visited = 0;
+    for (Item item : byCost.values()) {
+      if (++visited > budget) {
+        return null;
+      }
+      if (InvertedIndex.containsAll(item.getName(), tokens)) {
+        if (preferred == null || preferred.test(item)) {
+          preferredMatches.add(item);
+          if (preferredMatches.size() == limit) {
+            return preferredMatches;
+          }
+        } else if (otherMatches.size() < limit) {
+          otherMatches.add(item);
+        }
+      }
+    }
+    preferredMatches.addAll(otherMatches.subList(0, Math.min(otherMatches.size(), limit - preferredMatches.size())));
+    return preferredMatches;
+  }
+
+  @Override
+  public synchronized List<Item> getAllItems() {
     return Collections.unmodifiableList(new ArrayList<>(items));
   }
 
+  @Override
+  public synchronized boolean itemExists(Item item) {
+    return byId.containsKey(item.getId());
+  }
+
+  private void index(Item item) {
+    byId.put(item.getId(), item);
+    searchIndex.add(item, item.getName(), item.getId());
+    addToTextIndex(item);
+  }
+
+  private void addToTextIndex(Item item) {
+    int ordinal = byOrdinal.size();
+    final long costKey = (long) item.getCost() << 32 | ordinal;
+    byOrdinal.add(item);
+    if (ordinal == costByOrdinal.length) {
+      costByOrdinal = Arrays.copyOf(costByOrdinal, ordinal * 2);
+    }
+    costByOrdinal[ordinal] = item.getCost();
+    costKeys.put(item.getId(), costKey);
+    byCost.put(costKey, item);
+    textIndex.add(ordinal, item.getName());
+  }
+
+  private void unindex(Item item) {
+    Long costKey = costKeys.remove(item.getId());
+    if (costKey != null) {
+      byCost.remove(costKey);
+      // Posting lists are append-only; the ordinal is skipped from now on
+      byOrdinal.set((int) (long) costKey, null);
+      deadOrdinals++;
+    }
+    byId.remove(item.getId());
+    searchIndex.remove(item);
+  }
+
   /**
-   * Checks if an item exists in the repository.
-   *
-   * @param item the item to check for
-   * @return true if the item exists, false otherwise
+   * Re-indexes a renamed or repriced item under a new ordinal.
+   */
+  private synchronized void reindex(Item item) {
+    if (byId.get(item.getId()) == item) {
+      unindex(item);
+      index(item);
+      compactIfSparse();
+    }
+  }
+
+  /**
+   * Rebuilds the full-text index with dense ordinals once most of the ordinals
+   * belong to deleted or changed items.
    */
-  public boolean itemExists(Item item) {
-    return items.contains(item);
+  private void compactIfSparse() {
+    if (deadOrdinals < MIN_DEAD_ORDINALS_TO_COMPACT || deadOrdinals < costKeys.size()) {
+      return;
+    }
+    textIndex.clear();
+    byOrdinal.clear();
+    costKeys.clear();
+    byCost.clear();
+    deadOrdinals = 0;
+    for (Item item : items) {
+      addToTextIndex(item);
+    }
   }
 }
@@ -0,0 +1,113 @@
+package model;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Storage of the items. {@link ItemRepository} keeps them in memory,
+ * {@link JdbcItemRepository} in a database.
+ */
+public interface ItemRepositoryInterface {
+  /**
+   * Returns the bus the changes to the items are published on.
+   *
+   * @return the event bus
+   */
+  ModelEventBus getEventBus();
+
+  /**
+   * Adds an item to the repository after checking for duplicates.
+   * Throws an IdExistsException if an item with the same ID already exists.
+   *
+   * @param item the item to be added
+   * @throws ModelExceptions.IdExistsException if an item with the same ID already
+   *                                           exists
+   */
+  void addItem(Item item);
+
+  /**
+   * Adds an item to the repository unless its ID is taken, without throwing.
+   *
+   * @param item the item to be added
+   * @return the added item, or the error that prevented it
+   */
+  Result<Item> tryAddItem(Item item);
+
+  /**
+   * Adds many items at once, e.g. from a bulk import. IDs are checked item by
+   * item, including against earlier items of the batch.
+   *
+   * @param batch the items to add, in order
+   * @return for each item, the error that prevented adding it, or null if it was
+   *         added
+   */
+  ModelError[] addItems(List<Item> batch);
+
+  /**
+   * Deletes an item from the repository.
+   *
+   * @param item the item to be deleted
+   */
+  void deleteItem(Item item);
+
+  /**
+   * Retrieves an item from the repository by its ID.
+   *
+   * @param id the ID of the item to be retrieved
+   * @return the item with the specified ID, or null if not found
+   */
+  Item getItemById(String id);
+
+  /**
+   * Returns the number of items in the repository.
+   *
+   * @return the number of items
+   */
+  int countItems();
+
+  /**
+   * Returns one page of items without copying the rest of the repository.
+   *
+   * @param offset the index of the first item to return
+   * @param limit  the maximum number of items to return
+   * @return the items in the requested range
+   */
+  List<Item> getItems(int offset, int limit);
+
+  /**
+   * Finds items whose name or ID starts with the given text, ignoring case.
+   *
+   * @param prefix the text typed so far; empty matches every item
+   * @param limit  the maximum number of items to return
+   * @return the matching items in key order
+   */
+  List<Item> searchItems(String prefix, int limit);
+
+  /**
+   * Finds the items whose name contains every word of the query, in any order
+   * and ignoring case. Preferred items come first, and the cheaper item first
+   * among equally preferred ones.
+   *
+   * @param query     the words to look for
+   * @param preferred the items to put first, e.g. those available today, or null
+   *                  to rank by cost only
+   * @param limit     the maximum number of items to return
+   * @return the best matching items, best first
+   */
+  List<Item> findItems(String query, Predicate<? super Item> preferred, int limit);
+
+  /**
+   * Returns a list of all items in the repository.
+   *
+   * @return a list of all items
+   */
+  List<Item> getAllItems();
+
+  /**
+   * Checks if an item exists in the repository.
+   *
+   * @param item the item to check for
+   * @return true if the item exists, false otherwise
+   */
+  boolean itemExists(Item item);
+}
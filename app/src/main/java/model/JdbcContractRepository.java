@@ -0,0 +1,354 @@
+package model;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Repository keeping the contracts in the {@code contracts} table of a
+ * {@link JdbcStorage}.
+ * Safe to share between threads; every method locks the repository.
+ *
+ * <p>
+ * A contract row carries a copy of its item, which may be deleted while the
+ * contract is kept, and refers to the item's owner and the borrower by
+ * foreign keys into the members table, joined when contracts are read, so
+ * they show the members as they are now. Every read returns new objects: contracts change through the
+ * repository only, by expiring or cancelling them. Conflicts and availability
+ * are decided by the database on the index of item and dates. Contracts are
+ * never moved to a {@link ContractArchive}; ended ones stay in the table, off
+ * the heap already. A {@link CuckooFilter} of the IDs in the table answers
+ * most lookups of IDs that do not exist, such as the check of a new contract,
+ * without a query.
+ * </p>
+ */
+public class JdbcContractRepository implements ContractRepositoryInterface {
+  private static final String SELECT = "SELECT c.id, c.item_id, c.item_name, c.item_cost, c.owner_id, o.name,"
+      + " o.email, o.phone, o.credits, c.borrower_id, b.name, b.email, b.phone, b.credits, c.start_date,"
+      + " c.end_date, c.active FROM contracts c JOIN members o ON o.id = c.owner_id"
+      + " JOIN members b ON b.id = c.borrower_id";
+  private static final String INSERT = "INSERT INTO contracts (id, item_id, item_name, item_cost, owner_id,"
+      + " borrower_id, start_date, end_date, active) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String OVERLAPPING = "SELECT 1 FROM contracts WHERE item_id = ? AND start_date <= ?"
+      + " AND end_date >= ? AND active";
+
+  private final JdbcStorage storage;
+  private final LendingClock clock;
+  private final ModelEventBus events;
+  private final CuckooFilter ids;
+
+  /**
+   * Constructs a repository on the contracts table of the storage.
+   *
+   * @param storage the database
+   * @param clock   the clock deciding when contracts end
+   * @param events  the bus receiving the changes to the contracts
+   * @throws ModelExceptions.StorageException if the IDs cannot be read
+   */
+  public JdbcContractRepository(JdbcStorage storage, LendingClock clock, ModelEventBus events) {
+    this.storage = storage;
+    this.clock = clock;
+    this.events = events;
+    clock.publishTo(events);
+    this.ids = storage.read(session -> {
+      try (ResultSet rows = session.prepare("SELECT COUNT(*) FROM contracts").executeQuery()) {
+        rows.next();
+        CuckooFilter filter = new CuckooFilter(2L * rows.getInt(1) + 1024);
+        try (ResultSet idRows = session.prepare("SELECT id FROM contracts").executeQuery()) {
+          while (idRows.next()) {
+            filter.add(idRows.getString(1));
+          }
+        }
+        return filter;
+      }
+    });
+  }
+
+  @Override
+  public LendingClock getClock() {
+    return clock;
+  }
+
+  @Override
+  public ModelEventBus getEventBus() {
+    return events;
+  }
+
+  // Members and items share the storage, so their changes commit with the contracts
+  @Override
+  public <T> T inTransaction(Supplier<T> work) {
+    return storage.transaction(work);
+  }
+
+  @Override
+  public synchronized void addContract(Contract contract) {
+    tryAddContract(contract).orThrow();
+  }
+
+  @Override
+  public synchronized Result<Contract> tryAddContract(Contract contract) {
+    ModelError error = storage.write(session -> {
+      if (exists(session, contract.getId())) {
+        return ModelError.ID_EXISTS;
+      }
+      if (hasConflict(session, contract)) {
+        return ModelError.CONFLICTING_CONTRACT;
+      }
+      insert(session, contract).executeUpdate();
+      return null;
+    });
+    if (error != null) {
+      return Result.failure(error);
+    }
+    created(contract);
+    return Result.ok(contract);
+  }
+
+  // The rows are inserted in batches, conflicts within the batch checked in memory
+  @Override
+  public synchronized ModelError[] addContracts(List<Contract> batch) {
+    ModelError[] errors = new ModelError[batch.size()];
+    List<Contract> added = new ArrayList<>(batch.size());
+    storage.write(session -> {
+      Set<String> batchIds = new HashSet<>();
+      Map<String, List<Contract>> byItemId = new HashMap<>();
+      int pending = 0;
+      for (int i = 0; i < batch.size(); i++) {
+        Contract contract = batch.get(i);
+        List<Contract> sameItem = byItemId.computeIfAbsent(contract.getItemId(), id -> new ArrayList<>());
+        if (!batchIds.add(contract.getId()) || exists(session, contract.getId())) {
+          errors[i] = ModelError.ID_EXISTS;
+        } else if (sameItem.stream().anyMatch(other -> other.conflictsWith(contract))
+            || hasConflict(session, contract)) {
+          errors[i] = ModelError.CONFLICTING_CONTRACT;
+        } else {
+          insert(session, contract).addBatch();
+          sameItem.add(contract);
+          added.add(contract);
+          if (++pending == JdbcStorage.BATCH_SIZE) {
+            session.prepare(INSERT).executeBatch();
+            pending = 0;
+          }
+        }
+      }
+      if (pending > 0) {
+        session.prepare(INSERT).executeBatch();
+      }
+      return null;
+    });
+    for (Contract contract : added) {
+      created(contract);
+    }
+    return errors;
+  }
+
+  private PreparedStatement insert(JdbcStorage.Session session, Contract contract) throws SQLException {
+    ids.add(contract.getId()); // Before inserting: if that fails, it only causes false positives
+    PreparedStatement insert = session.prepare(INSERT);
+    Item item = contract.getItem();
+    insert.setString(1, contract.getId());
+    insert.setString(2, item.getId());
+    insert.setString(3, item.getName());
+    insert.setInt(4, item.getCost());
+    insert.setString(5, item.getOwnerId());
+    insert.setString(6, contract.getBorrowerId());
+    insert.setDate(7, Date.valueOf(contract.getStartDate()));
+    insert.setDate(8, Date.valueOf(contract.getEndDate()));
+    insert.setBoolean(9, contract.isActive());
+    return insert;
+  }
+
+  private boolean exists(JdbcStorage.Session session, String id) throws SQLException {
+    if (!ids.mightContain(id)) {
+      return false;
+    }
+    PreparedStatement query = session.prepare("SELECT 1 FROM contracts WHERE id = ?");
+    query.setString(1, id);
+    try (ResultSet rows = query.executeQuery()) {
+      return rows.next();
+    }
+  }
+
+  @Override
+  public synchronized void deleteContract(Contract contract) {
+    int deleted = storage.write(session -> {
+      PreparedStatement delete = session.prepare("DELETE FROM contracts WHERE id = ?");
+      delete.setString(1, contract.getId());
+      return delete.executeUpdate();
+    });
+    if (deleted > 0) {
+      ids.remove(contract.getId());
+      if (events.hasSubscribers()) {
+        events.publish(new ModelEvents.ContractDeleted(contract));
+      }
+    }
+  }
+
+  @Override
+  public synchronized Contract getContract(String contractId) {
+    if (!ids.mightContain(contractId)) {
+      return null;
+    }
+    List<Contract> contracts = query(SELECT + " WHERE c.id = ?", contractId);
+    return contracts.isEmpty() ? null : contracts.get(0);
+  }
+
+  @Override
+  public synchronized List<Contract> getContractsForItem(String itemId) {
+    return query(SELECT + " WHERE c.item_id = ? ORDER BY c.seq", itemId);
+  }
+
+  @Override
+  public synchronized List<Contract> getContractsForBorrower(String borrowerId) {
+    return query(SELECT + " WHERE c.borrower_id = ? ORDER BY c.seq", borrowerId);
+  }
+
+  @Override
+  public synchronized boolean hasConflict(Contract newContract) {
+    return storage.read(session -> hasConflict(session, newContract));
+  }
+
+  private static boolean hasConflict(JdbcStorage.Session session, Contract contract) throws SQLException {
+    return contract.isActive()
+        && overlaps(session, contract.getItemId(), contract.getStartDate(), contract.getEndDate());
+  }
+
+  private static boolean overlaps(JdbcStorage.Session session, String itemId, LocalDate start, LocalDate end)
+      throws SQLException {
+    PreparedStatement query = session.prepare(OVERLAPPING);
+    query.setString(1, itemId);
+    query.setDate(2, Date.valueOf(end));
+    query.setDate(3, Date.valueOf(start));
+    try (ResultSet rows = query.executeQuery()) {
+      return rows.next();
+    }
+  }
+
+  @Override
+  public synchronized boolean isItemAvailable(String itemId, LocalDate start, LocalDate end) {
+    return !storage.read(session -> overlaps(session, itemId, start, end));
+  }
+
+  @Override
+  public synchronized int countContracts() {
+    return storage.read(session -> {
+      try (ResultSet rows = session.prepare("SELECT COUNT(*) FROM contracts").executeQuery()) {
+        rows.next();
+        return rows.getInt(1);
+      }
+    });
+  }
+
+  @Override
+  public synchronized List<Contract> getContracts(int offset, int limit) {
+    return storage.read(session -> {
+      PreparedStatement query = session.prepare(SELECT + " ORDER BY c.seq LIMIT ? OFFSET ?");
+      query.setInt(1, Math.max(limit, 0));
+      query.setInt(2, Math.max(offset, 0));
+      return materialize(query);
+    });
+  }
+
+  @Override
+  public int countArchivedContracts() {
+    return 0;
+  }
+
+  @Override
+  public List<Contract> getArchivedContracts(int offset, int limit) {
+    return new ArrayList<>();
+  }
+
+  @Override
+  public synchronized List<Contract> getAllContracts() {
+    return Collections.unmodifiableList(storage.read(session -> materialize(session.prepare(SELECT
+        + " ORDER BY c.seq"))));
+  }
+
+  @Override
+  public synchronized List<Contract> expireContracts(LocalDate date) {
+    List<Contract> expired = storage.write(session -> {
+      PreparedStatement query = session.prepare(SELECT
+          + " WHERE c.active AND c.end_date < ? ORDER BY c.end_date, c.seq");
+      query.setDate(1, Date.valueOf(date));
+      List<Contract> ending = materialize(query);
+      PreparedStatement update = session.prepare("UPDATE contracts SET active = FALSE WHERE active AND end_date < ?");
+      update.setDate(1, Date.valueOf(date));
+      update.executeUpdate();
+      return ending;
+    });
+    for (Contract contract : expired) {
+      contract.setActive(false);
+      if (events.hasSubscribers()) {
+        events.publish(new ModelEvents.ContractExpired(contract));
+      }
+    }
+    return expired;
+  }
+
+  @Override
+  public int archiveContracts() {
+    return 0;
+  }
+
+  @Override
+  public synchronized void cancelContractsForItem(Item item) {
+    List<Contract> cancelled = storage.write(session -> {
+      PreparedStatement query = session.prepare(SELECT + " WHERE c.item_id = ? AND c.active ORDER BY c.seq");
+      query.setString(1, item.getId());
+      List<Contract> active = materialize(query);
+      PreparedStatement update = session.prepare("UPDATE contracts SET active = FALSE WHERE item_id = ? AND active");
+      update.setString(1, item.getId());
+      update.executeUpdate();
+      return active;
+    });
+    for (Contract contract : cancelled) {
+      contract.setActive(false);
+      if (events.hasSubscribers()) {
+        events.publish(new ModelEvents.ContractCancelled(contract));
+      }
+    }
+  }
+
+  private List<Contract> query(String sql, String value) {
+    return storage.read(session -> {
+      PreparedStatement query = session.prepare(sql);
+      query.setString(1, value);
+      return materialize(query);
+    });
+  }
+
+  private static List<Contract> materialize(PreparedStatement query) throws SQLException {
+    List<Contract> contracts = new ArrayList<>();
+    try (ResultSet rows = query.executeQuery()) {
+      while (rows.next()) {
+        Member owner = Member.restore(rows.getString(5), rows.getString(6), rows.getString(7), rows.getString(8),
+            rows.getInt(9));
+        Item item = new Item(rows.getString(2), owner, rows.getString(3), rows.getInt(4));
+        Member borrower = Member.restore(rows.getString(10), rows.getString(11), rows.getString(12),
+            rows.getString(13), rows.getInt(14));
+        Contract contract = new Contract(rows.getString(1), item, borrower, rows.getDate(15).toLocalDate(),
+            rows.getDate(16).toLocalDate());
+        contract.setActive(rows.getBoolean(17));
+        contracts.add(contract);
+      }
+    }
+    return contracts;
+  }
+
+  private void created(Contract contract) {
+    if (events.hasSubscribers()) {
+      events.publish(new ModelEvents.ContractCreated(contract));
+    }
+  }
+}
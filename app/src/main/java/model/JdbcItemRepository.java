@@ -0,0 +1,399 @@
+package model;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Repository keeping the items in the {@code items} table of a
+ * {@link JdbcStorage}, with their owners read from the {@code members} table.
+ * Safe to share between threads; every method locks the repository.
+ *
+ * <p>
+ * The items looked up most are kept in a {@link SegmentedLruCache} bounded by
+ * estimated bytes, the only copy of them on the heap, so the same ID yields
+ * the same object while it is cached. The changes made through
+ * {@link Item#setName(String)} and {@link Item#setCost(int)} are buffered,
+ * with the items changed, and written as a batch when it fills, before a
+ * search needs them, when a transaction commits and when the storage is
+ * flushed. A {@link CuckooFilter}
+ * of the IDs in the table answers most lookups of IDs that do not exist
+ * without a query.
+ * </p>
+ */
+public class JdbcItemRepository implements ItemRepositoryInterface {
+  private static final String SELECT = "SELECT i.id, i.name, i.cost, i.owner_id, m.name, m.email, m.phone,"
+      + " m.credits FROM items i LEFT JOIN members m ON m.id = i.owner_id";
+  private static final String INSERT = "INSERT INTO items (id, owner_id, name, name_key, cost) VALUES (?, ?, ?, ?, ?)";
+
+  private final JdbcStorage storage;
+  private final ModelEventBus events;
+  private final SegmentedLruCache<String, Item> cache;
+  private final Map<String, Item> changed = new LinkedHashMap<>();
+  private final Consumer<Item> changeListener = this::itemChanged;
+  private final CuckooFilter ids;
+
+  /**
+   * Constructs a repository on the items table of the storage.
+   *
+   * @param storage  the database
+   * @param events   the bus receiving the changes to the items
+   * @param maxBytes the approximate heap the cached items may take
+   * @throws ModelExceptions.StorageException if the IDs cannot be read
+   */
+  public JdbcItemRepository(JdbcStorage storage, ModelEventBus events, long maxBytes) {
+    this.storage = storage;
+    this.events = events;
+    this.cache = new SegmentedLruCache<>(maxBytes, JdbcItemRepository::weigh);
+    this.ids = storage.read(session -> {
+      try (ResultSet rows = session.prepare("SELECT COUNT(*) FROM items").executeQuery()) {
+        rows.next();
+        CuckooFilter filter = new CuckooFilter(2L * rows.getInt(1) + 1024);
+        try (ResultSet idRows = session.prepare("SELECT id FROM items").executeQuery()) {
+          while (idRows.next()) {
+            filter.add(idRows.getString(1));
+          }
+        }
+        return filter;
+      }
+    });
+    storage.addParticipant(new JdbcStorage.Participant() {
+      @Override
+      public void write(JdbcStorage.Session session) throws SQLException {
+        writeChanges(session);
+      }
+
+      @Override
+      public void discard() {
+        discardChanges();
+      }
+    });
+  }
+
+  @Override
+  public ModelEventBus getEventBus() {
+    return events;
+  }
+
+  /**
+   * Returns the cache of the items, e.g. for its hit rate.
+   *
+   * @return the cache
+   */
+  public SegmentedLruCache<String, Item> getCache() {
+    return cache;
+  }
+
+  @Override
+  public synchronized void addItem(Item item) {
+    tryAddItem(item).orThrow();
+  }
+
+  @Override
+  public synchronized Result<Item> tryAddItem(Item item) {
+    boolean inserted = storage.write(session -> {
+      if (exists(session, item.getId())) {
+        return false;
+      }
+      insert(session, item).executeUpdate();
+      return true;
+    });
+    if (!inserted) {
+      return Result.failure(ModelError.ID_EXISTS);
+    }
+    added(item);
+    return Result.ok(item);
+  }
+
+  // The rows are inserted in batches, duplicates within the batch checked in memory
+  @Override
+  public synchronized ModelError[] addItems(List<Item> batch) {
+    ModelError[] errors = new ModelError[batch.size()];
+    List<Item> added = new ArrayList<>(batch.size());
+    storage.write(session -> {
+      Set<String> batchIds = new HashSet<>();
+      int pending = 0;
+      for (int i = 0; i < batch.size(); i++) {
+        Item item = batch.get(i);
+        if (!batchIds.add(item.getId()) || exists(session, item.getId())) {
+          errors[i] = ModelError.ID_EXISTS;
+        } else {
+          insert(session, item).addBatch();
+          added.add(item);
+          if (++pending == JdbcStorage.BATCH_SIZE) {
+            session.prepare(INSERT).executeBatch();
+            pending = 0;
+          }
+        }
+      }
+      if (pending > 0) {
+        session.prepare(INSERT).executeBatch();
+      }
+      return null;
+    });
+    for (Item item : added) {
+      added(item);
+    }
+    return errors;
+  }
+
+  private PreparedStatement insert(JdbcStorage.Session session, Item item) throws SQLException {
+    ids.add(item.getId()); // Before inserting: if that fails, it only causes false positives
+    PreparedStatement insert = session.prepare(INSERT);
+    insert.setString(1, item.getId());
+    insert.setString(2, item.getOwnerId());
+    insert.setString(3, item.getName());
+    insert.setString(4, JdbcStorage.key(item.getName()));
+    insert.setInt(5, item.getCost());
+    return insert;
+  }
+
+  private boolean exists(JdbcStorage.Session session, String id) throws SQLException {
+    if (!ids.mightContain(id)) {
+      return false;
+    }
+    PreparedStatement query = session.prepare("SELECT 1 FROM items WHERE id = ?");
+    query.setString(1, id);
+    try (ResultSet rows = query.executeQuery()) {
+      return rows.next();
+    }
+  }
+
+  @Override
+  public synchronized void deleteItem(Item item) {
+    int deleted = storage.write(session -> {
+      PreparedStatement delete = session.prepare("DELETE FROM items WHERE id = ?");
+      delete.setString(1, item.getId());
+      return delete.executeUpdate();
+    });
+    if (deleted > 0) {
+      ids.remove(item.getId());
+      Item stored = loaded(item.getId());
+      if (stored == null) {
+        stored = item;
+      }
+      cache.invalidate(stored.getId());
+      changed.remove(stored.getId());
+      stored.setChangeListener(null);
+      if (events.hasSubscribers()) {
+        events.publish(new ModelEvents.ItemDeleted(stored));
+      }
+    }
+  }
+
+  @Override
+  public synchronized Item getItemById(String id) {
+    Item item = changed.get(id);
+    if (item == null) {
+      item = cache.getIfPresent(id);
+    }
+    if (item != null || !ids.mightContain(id)) {
+      return item;
+    }
+    List<Item> items = storage.read(session -> {
+      PreparedStatement query = session.prepare(SELECT + " WHERE i.id = ?");
+      query.setString(1, id);
+      return materialize(query);
+    });
+    return items.isEmpty() ? null : items.get(0);
+  }
+
+  @Override
+  public synchronized int countItems() {
+    return storage.read(session -> {
+      try (ResultSet rows = session.prepare("SELECT COUNT(*) FROM items").executeQuery()) {
+        rows.next();
+        return rows.getInt(1);
+      }
+    });
+  }
+
+  @Override
+  public synchronized List<Item> getItems(int offset, int limit) {
+    return storage.read(session -> {
+      PreparedStatement query = session.prepare(SELECT + " ORDER BY i.seq LIMIT ? OFFSET ?");
+      query.setInt(1, Math.max(limit, 0));
+      query.setInt(2, Math.max(offset, 0));
+      return materialize(query);
+    });
+  }
+
+  @Override
+  public synchronized List<Item> searchItems(String prefix, int limit) {
+    flush();
+    String pattern = JdbcStorage.like(prefix, false);
+    return storage.read(session -> {
+      PreparedStatement query = session.prepare(SELECT
+          + " WHERE i.name_key LIKE ? ESCAPE '\\' OR LOWER(i.id) LIKE ? ESCAPE '\\' ORDER BY i.name_key, i.id LIMIT ?");
+      query.setString(1, pattern);
+      query.setString(2, pattern);
+      query.setInt(3, Math.max(limit, 0));
+      return materialize(query);
+    });
+  }
+
+  // The database narrows the items down by the longest word, all words are checked here
+  @Override
+  public synchronized List<Item> findItems(String query, Predicate<? super Item> preferred, int limit) {
+    Set<String> tokens = InvertedIndex.tokenize(query);
+    if (tokens.isEmpty() || limit <= 0) {
+      return new ArrayList<>();
+    }
+    flush();
+    String longest = "";
+    for (String token : tokens) {
+      longest = token.length() > longest.length() ? token : longest;
+    }
+    String pattern = JdbcStorage.like(longest, true);
+    return storage.read(session -> {
+      PreparedStatement statement = session.prepare(SELECT
+          + " WHERE i.name_key LIKE ? ESCAPE '\\' ORDER BY i.cost, i.seq");
+      statement.setString(1, pattern);
+      List<Item> preferredMatches = new ArrayList<>(limit);
+      List<Item> otherMatches = new ArrayList<>(limit);
+      try (ResultSet rows = statement.executeQuery()) {
+        while (rows.next()) {
+          Item item = item(rows);
+          if (!InvertedIndex.containsAll(item.getName(), tokens)) {
+            continue;
+          }
+          if (preferred == null || preferred.test(item)) {
+            preferredMatches.add(item);
+            if (preferredMatches.size() == limit) {
+              return preferredMatches;
+            }
+          } else if (otherMatches.size() < limit) {
+            otherMatches.add(item);
+          }
+        }
+      }
+      preferredMatches.addAll(otherMatches.subList(0, Math.min(otherMatches.size(),
+          limit - preferredMatches.size())));
+      return preferredMatches;
+    });
+  }
+
+  @Override
+  public synchronized List<Item> getAllItems() {
+    return Collections.unmodifiableList(storage.read(session -> materialize(session.prepare(SELECT
+        + " ORDER BY i.seq"))));
+  }
+
+  @Override
+  public synchronized boolean itemExists(Item item) {
+    return loaded(item.getId()) != null || storage.read(session -> exists(session, item.getId()));
+  }
+
+  /**
+   * Writes the buffered renames and cost changes as one batch.
+   *
+   * @throws ModelExceptions.StorageException if the database fails
+   */
+  public synchronized void flush() {
+    if (!changed.isEmpty()) {
+      storage.write(session -> {
+        writeChanges(session);
+        return null;
+      });
+    }
+  }
+
+  private synchronized void writeChanges(JdbcStorage.Session session) throws SQLException {
+    if (changed.isEmpty()) {
+      return;
+    }
+    PreparedStatement update = session.prepare("UPDATE items SET name = ?, name_key = ?, cost = ? WHERE id = ?");
+    for (Item item : changed.values()) {
+      update.setString(1, item.getName());
+      update.setString(2, JdbcStorage.key(item.getName()));
+      update.setInt(3, item.getCost());
+      update.setString(4, item.getId());
+      update.addBatch();
+    }
+    update.executeBatch();
+    changed.clear();
+  }
+
+  /**
+   * Drops the changed items after a transaction rolled back, so they are read
+   * again as the database has them.
+   */
+  private synchronized void discardChanges() {
+    for (Item item : changed.values()) {
+      cache.invalidate(item.getId());
+      item.setChangeListener(null);
+    }
+    changed.clear();
+  }
+
+  private List<Item> materialize(PreparedStatement query) throws SQLException {
+    List<Item> items = new ArrayList<>();
+    try (ResultSet rows = query.executeQuery()) {
+      while (rows.next()) {
+        items.add(item(rows));
+      }
+    }
+    return items;
+  }
+
+  /**
+   * Maps the current row to its item, reusing the one changed or cached, whose
+   * name and cost may be ahead of the database.
+   */
+  private Item item(ResultSet rows) throws SQLException {
+    String id = rows.getString(1);
+    Item item = loaded(id);
+    if (item == null) {
+      Member owner = Member.restore(rows.getString(4), rows.getString(5), rows.getString(6), rows.getString(7),
+          rows.getInt(8));
+      item = new Item(id, owner, rows.getString(2), rows.getInt(3));
+      track(item);
+    }
+    return item;
+  }
+
+  /**
+   * Returns the object of an item with changes not written yet, or the cached
+   * one.
+   */
+  private Item loaded(String id) {
+    Item item = changed.get(id);
+    return item != null ? item : cache.peek(id);
+  }
+
+  private void track(Item item) {
+    cache.put(item.getId(), item);
+    item.setChangeListener(changeListener);
+  }
+
+  private void added(Item item) {
+    track(item);
+    if (events.hasSubscribers()) {
+      events.publish(new ModelEvents.ItemCreated(item));
+    }
+  }
+
+  private synchronized void itemChanged(Item item) {
+    changed.put(item.getId(), item);
+    if (changed.size() >= JdbcStorage.BATCH_SIZE) {
+      flush();
+    }
+  }
+
+  /**
+   * Estimates the heap an item takes: the object, its name and the copy of
+   * its owner.
+   */
+  private static int weigh(Item item) {
+    return 64 + 2 * JdbcMemberRepository.length(item.getName()) + JdbcMemberRepository.weigh(item.getOwner());
+  }
+}
@@ -0,0 +1,514 @@
+package model;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Repository keeping the members in the {@code members} table of a
+ * {@link JdbcStorage}.
+ * Safe to share between threads; every method locks the repository.
+ *
+ * <p>
+ * The members looked up most are kept in a {@link SegmentedLruCache} bounded
+ * by estimated bytes, which is the only copy of them on the heap: the same ID
+ * yields the same object while it is cached, and changes to its credits reach
+ * the database as additions to the balance in the table. In a
+ * {@link JdbcStorage#transaction(java.util.function.Supplier) transaction},
+ * e.g. a settlement, the changes its thread makes are buffered for it, one
+ * row per member however often it changes, and written as one batch when it
+ * commits; if it rolls back, the changed members are dropped from the cache
+ * and read again. Otherwise every change is written at once. Members an open
+ * transaction changed are held until it ends, so they are not read back
+ * behind their changes if the cache evicts them.
+ * </p>
+ *
+ * <p>
+ * Contracts refer to their owner and borrower by foreign keys, so a member
+ * still named by a contract cannot be deleted.
+ * </p>
+ *
+ * <p>
+ * {@link CuckooFilter}s of the IDs, emails and phone numbers in the table,
+ * loaded when the repository is created, answer most lookups of keys that do
+ * not exist, such as the duplicate checks of a new member, without a query.
+ * They assume this repository is the only one writing the table.
+ * </p>
+ */
+public class JdbcMemberRepository implements MemberRepositoryInterface {
+  private static final String SELECT = "SELECT id, name, email, phone, credits FROM members";
+  private static final String INSERT =
+      "INSERT INTO members (id, name, name_key, email, phone, credits) VALUES (?, ?, ?, ?, ?, ?)";
+  private static final String UPDATE_CREDITS = "UPDATE members SET credits = credits + ? WHERE id = ?";
+
+  private final JdbcStorage storage;
+  private final ModelEventBus events;
+  private final SegmentedLruCache<String, Member> cache;
+  private final ThreadLocal<CreditChanges> transactionChanges = new ThreadLocal<>();
+  private final List<CreditChanges> openChanges = new ArrayList<>();
+  private final ObjIntConsumer<Member> creditsListener = this::creditsChanged;
+  private final CuckooFilter ids;
+  private final CuckooFilter emails;
+  private final CuckooFilter phones;
+
+  /**
+   * Constructs a repository on the members table of the storage.
+   *
+   * @param storage  the database
+   * @param events   the bus receiving the changes to the members
+   * @param maxBytes the approximate heap the cached members may take
+   * @throws ModelExceptions.StorageException if the keys cannot be read
+   */
+  public JdbcMemberRepository(JdbcStorage storage, ModelEventBus events, long maxBytes) {
+    this.storage = storage;
+    this.events = events;
+    this.cache = new SegmentedLruCache<>(maxBytes, JdbcMemberRepository::weigh);
+    long expected = 2L * count(storage) + 1024;
+    ids = new CuckooFilter(expected);
+    emails = new CuckooFilter(expected);
+    phones = new CuckooFilter(expected);
+    storage.read(session -> {
+      try (ResultSet rows = session.prepare("SELECT id, email, phone FROM members").executeQuery()) {
+        while (rows.next()) {
+          ids.add(rows.getString(1));
+          emails.add(rows.getString(2));
+          phones.add(rows.getString(3));
+        }
+      }
+      return null;
+    });
+    storage.addParticipant(new JdbcStorage.Participant() {
+      @Override
+      public void write(JdbcStorage.Session session) throws SQLException {
+        writeCredits(session);
+      }
+
+      @Override
+      public void discard() {
+        discardCredits();
+      }
+    });
+  }
+
+  @Override
+  public ModelEventBus getEventBus() {
+    return events;
+  }
+
+  /**
+   * Returns the cache of the members, e.g. for its hit rate.
+   *
+   * @return the cache
+   */
+  public SegmentedLruCache<String, Member> getCache() {
+    return cache;
+  }
+
+  @Override
+  public synchronized void validateMember(Member member) {
+    ModelError error = storage.read(session -> findDuplicate(session, member));
+    if (error != null) {
+      throw error.toException();
+    }
+  }
+
+  @Override
+  public synchronized void addMember(Member member) {
+    tryAddMember(member).orThrow();
+  }
+
+  @Override
+  public synchronized Result<Member> tryAddMember(Member member) {
+    ModelError error = storage.write(session -> {
+      ModelError duplicate = findDuplicate(session, member);
+      if (duplicate == null) {
+        PreparedStatement insert = insert(session, member);
+        insert.executeUpdate();
+      }
+      return duplicate;
+    });
+    if (error != null) {
+      return Result.failure(error);
+    }
+    added(member);
+    return Result.ok(member);
+  }
+
+  // The rows are inserted in batches, duplicates within the batch checked in memory
+  @Override
+  public synchronized ModelError[] addMembers(List<Member> batch) {
+    ModelError[] errors = new ModelError[batch.size()];
+    List<Member> added = new ArrayList<>(batch.size());
+    storage.write(session -> {
+      Set<String> batchIds = new HashSet<>();
+      Set<String> batchEmails = new HashSet<>();
+      Set<String> batchPhones = new HashSet<>();
+      int pending = 0;
+      for (int i = 0; i < batch.size(); i++) {
+        Member member = batch.get(i);
+        errors[i] = batchIds.contains(member.getId()) ? ModelError.ID_EXISTS
+            : batchEmails.contains(member.getEmail()) ? ModelError.EMAIL_EXISTS
+            : batchPhones.contains(member.getPhone()) ? ModelError.PHONE_EXISTS
+            : findDuplicate(session, member);
+        if (errors[i] == null) {
+          batchIds.add(member.getId());
+          batchEmails.add(member.getEmail());
+          batchPhones.add(member.getPhone());
+          insert(session, member).addBatch();
+          added.add(member);
+          if (++pending == JdbcStorage.BATCH_SIZE) {
+            session.prepare(INSERT).executeBatch();
+            pending = 0;
+          }
+        }
+      }
+      if (pending > 0) {
+        session.prepare(INSERT).executeBatch();
+      }
+      return null;
+    });
+    for (Member member : added) {
+      added(member);
+    }
+    return errors;
+  }
+
+  /**
+   * Prepares the insert of a member, adding its keys to the filters first: if
+   * the insert fails, they only cause false positives.
+   */
+  private PreparedStatement insert(JdbcStorage.Session session, Member member) throws SQLException {
+    ids.add(member.getId());
+    emails.add(member.getEmail());
+    phones.add(member.getPhone());
+    PreparedStatement insert = session.prepare(INSERT);
+    insert.setString(1, member.getId());
+    insert.setString(2, member.getName());
+    insert.setString(3, JdbcStorage.key(member.getName()));
+    insert.setString(4, member.getEmail());
+    insert.setString(5, member.getPhone());
+    insert.setInt(6, member.getCredits());
+    return insert;
+  }
+
+  private ModelError findDuplicate(JdbcStorage.Session session, Member member) throws SQLException {
+    if (!ids.mightContain(member.getId()) && !emails.mightContain(member.getEmail())
+        && !phones.mightContain(member.getPhone())) {
+      return null; // Certainly new, as almost every member added is
+    }
+    PreparedStatement query = session.prepare("SELECT id, email FROM members WHERE id = ? OR email = ? OR phone = ?");
+    query.setString(1, member.getId());
+    query.setString(2, member.getEmail());
+    query.setString(3, member.getPhone());
+    ModelError error = null;
+    try (ResultSet rows = query.executeQuery()) {
+      while (rows.next()) {
+        if (member.getId().equals(rows.getString(1))) {
+          return ModelError.ID_EXISTS;
+        }
+        if (member.getEmail().equals(rows.getString(2))) {
+          error = ModelError.EMAIL_EXISTS;
+        } else if (error == null) {
+          error = ModelError.PHONE_EXISTS;
+        }
+      }
+    }
+    return error;
+  }
+
+  @Override
+  public synchronized void deleteMember(Member member) {
+    String[] keys = storage.write(session -> {
+      PreparedStatement contracts = session.prepare("SELECT 1 FROM contracts WHERE borrower_id = ? OR owner_id = ?");
+      contracts.setString(1, member.getId());
+      contracts.setString(2, member.getId());
+      try (ResultSet rows = contracts.executeQuery()) {
+        if (rows.next()) {
+          throw ModelError.MEMBER_HAS_CONTRACTS.toException();
+        }
+      }
+      PreparedStatement query = session.prepare("SELECT email, phone FROM members WHERE id = ?");
+      query.setString(1, member.getId());
+      String[] deleted = null;
+      try (ResultSet rows = query.executeQuery()) {
+        if (rows.next()) {
+          deleted = new String[] {rows.getString(1), rows.getString(2)};
+        }
+      }
+      if (deleted != null) {
+        PreparedStatement delete = session.prepare("DELETE FROM members WHERE id = ?");
+        delete.setString(1, member.getId());
+        delete.executeUpdate();
+      }
+      return deleted;
+    });
+    if (keys != null) {
+      ids.remove(member.getId());
+      emails.remove(keys[0]);
+      phones.remove(keys[1]);
+      Member stored = loaded(member.getId());
+      if (stored == null) {
+        stored = member;
+      }
+      cache.invalidate(stored.getId());
+      for (CreditChanges changes : openChanges) {
+        changes.credits.remove(stored.getId());
+        changes.members.remove(stored.getId());
+      }
+      stored.setCreditsListener(null);
+      if (events.hasSubscribers()) {
+        events.publish(new ModelEvents.MemberDeleted(stored));
+      }
+    }
+  }
+
+  @Override
+  public synchronized Member getMemberById(String id) {
+    Member member = held(id);
+    if (member == null) {
+      member = cache.getIfPresent(id);
+    }
+    if (member != null || !ids.mightContain(id)) {
+      return member;
+    }
+    return queryOne(SELECT + " WHERE id = ?", id);
+  }
+
+  @Override
+  public synchronized Member getMemberByEmail(String email) {
+    return emails.mightContain(email) ? queryOne(SELECT + " WHERE email = ?", email) : null;
+  }
+
+  @Override
+  public synchronized Member getMemberByPhone(String phone) {
+    return phones.mightContain(phone) ? queryOne(SELECT + " WHERE phone = ?", phone) : null;
+  }
+
+  @Override
+  public synchronized boolean memberExists(Member member) {
+    return loaded(member.getId()) != null
+        || ids.mightContain(member.getId()) && exists("SELECT 1 FROM members WHERE id = ?", member.getId());
+  }
+
+  @Override
+  public synchronized boolean emailExists(String email) {
+    return emails.mightContain(email) && exists("SELECT 1 FROM members WHERE email = ?", email);
+  }
+
+  @Override
+  public synchronized boolean phoneExists(String phone) {
+    return phones.mightContain(phone) && exists("SELECT 1 FROM members WHERE phone = ?", phone);
+  }
+
+  @Override
+  public synchronized int countMembers() {
+    return count(storage);
+  }
+
+  private static int count(JdbcStorage storage) {
+    return storage.read(session -> {
+      try (ResultSet rows = session.prepare("SELECT COUNT(*) FROM members").executeQuery()) {
+        rows.next();
+        return rows.getInt(1);
+      }
+    });
+  }
+
+  @Override
+  public synchronized List<Member> getMembers(int offset, int limit) {
+    return storage.read(session -> {
+      PreparedStatement query = session.prepare(SELECT + " ORDER BY seq LIMIT ? OFFSET ?");
+      query.setInt(1, Math.max(limit, 0));
+      query.setInt(2, Math.max(offset, 0));
+      return materialize(query);
+    });
+  }
+
+  @Override
+  public synchronized List<Member> searchMembers(String prefix, int limit) {
+    String pattern = JdbcStorage.like(prefix, false);
+    return storage.read(session -> {
+      PreparedStatement query = session.prepare(SELECT + " WHERE name_key LIKE ? ESCAPE '\\'"
+          + " OR LOWER(email) LIKE ? ESCAPE '\\' OR phone LIKE ? ESCAPE '\\' OR LOWER(id) LIKE ? ESCAPE '\\'"
+          + " ORDER BY name_key, id LIMIT ?");
+      for (int i = 1; i <= 4; i++) {
+        query.setString(i, pattern);
+      }
+      query.setInt(5, Math.max(limit, 0));
+      return materialize(query);
+    });
+  }
+
+  @Override
+  public synchronized List<Member> getAllMembers() {
+    return Collections.unmodifiableList(storage.read(session -> materialize(session.prepare(SELECT
+        + " ORDER BY seq"))));
+  }
+
+  /**
+   * Writes the credit changes buffered by the calling thread's transaction as
+   * one batch.
+   */
+  private synchronized void writeCredits(JdbcStorage.Session session) throws SQLException {
+    CreditChanges changes = transactionChanges.get();
+    if (changes == null) {
+      return;
+    }
+    PreparedStatement update = session.prepare(UPDATE_CREDITS);
+    for (Map.Entry<String, Integer> change : changes.credits.entrySet()) {
+      update.setInt(1, change.getValue());
+      update.setString(2, change.getKey());
+      update.addBatch();
+    }
+    update.executeBatch();
+    close(changes);
+  }
+
+  /**
+   * Drops the members whose credits the calling thread's transaction, rolled
+   * back, changed, so they are read again as the database has them.
+   */
+  private synchronized void discardCredits() {
+    CreditChanges changes = transactionChanges.get();
+    if (changes == null) {
+      return;
+    }
+    for (Member member : changes.members.values()) {
+      cache.invalidate(member.getId());
+      member.setCreditsListener(null);
+    }
+    close(changes);
+  }
+
+  private void close(CreditChanges changes) {
+    openChanges.remove(changes);
+    transactionChanges.remove();
+  }
+
+  private Member queryOne(String sql, String value) {
+    List<Member> members = storage.read(session -> {
+      PreparedStatement query = session.prepare(sql);
+      query.setString(1, value);
+      return materialize(query);
+    });
+    return members.isEmpty() ? null : members.get(0);
+  }
+
+  private boolean exists(String sql, String value) {
+    return storage.read(session -> {
+      PreparedStatement query = session.prepare(sql);
+      query.setString(1, value);
+      try (ResultSet rows = query.executeQuery()) {
+        return rows.next();
+      }
+    });
+  }
+
+  /**
+   * Runs the query and maps its rows to members, reusing those cached or
+   * changed by the open transaction, whose credits may be ahead of the
+   * database.
+   */
+  private List<Member> materialize(PreparedStatement query) throws SQLException {
+    List<Member> members = new ArrayList<>();
+    try (ResultSet rows = query.executeQuery()) {
+      while (rows.next()) {
+        String id = rows.getString(1);
+        Member member = loaded(id);
+        if (member == null) {
+          member = Member.restore(id, rows.getString(2), rows.getString(3), rows.getString(4), rows.getInt(5));
+          track(member);
+        }
+        members.add(member);
+      }
+    }
+    return members;
+  }
+
+  /**
+   * Returns the object of a member changed by an open transaction, or the
+   * cached one.
+   */
+  private Member loaded(String id) {
+    Member member = held(id);
+    return member != null ? member : cache.peek(id);
+  }
+
+  /**
+   * Returns the object of a member changed by an open transaction.
+   */
+  private Member held(String id) {
+    for (CreditChanges changes : openChanges) {
+      Member member = changes.members.get(id);
+      if (member != null) {
+        return member;
+      }
+    }
+    return null;
+  }
+
+  private void track(Member member) {
+    cache.put(member.getId(), member);
+    member.setCreditsListener(creditsListener);
+  }
+
+  private void added(Member member) {
+    track(member);
+    if (events.hasSubscribers()) {
+      events.publish(new ModelEvents.MemberCreated(member));
+    }
+  }
+
+  private synchronized void creditsChanged(Member member, int amount) {
+    if (storage.inTransaction()) {
+      CreditChanges changes = transactionChanges.get();
+      if (changes == null) {
+        changes = new CreditChanges();
+        transactionChanges.set(changes);
+        openChanges.add(changes);
+      }
+      changes.credits.merge(member.getId(), amount, Integer::sum);
+      changes.members.put(member.getId(), member);
+    } else {
+      storage.write(session -> {
+        PreparedStatement update = session.prepare(UPDATE_CREDITS);
+        update.setInt(1, amount);
+        update.setString(2, member.getId());
+        return update.executeUpdate();
+      });
+    }
+    if (events.hasSubscribers()) {
+      events.publish(new ModelEvents.CreditsChanged(member, amount, member.getCredits()));
+    }
+  }
+
+  /**
+   * Estimates the heap a member takes: the object, its lists and its strings.
+   */
+  static int weigh(Member member) {
+    return 160 + 2 * (length(member.getId()) + length(member.getName()) + length(member.getEmail())
+        + length(member.getPhone()));
+  }
+
+  static int length(String text) {
+    return text == null ? 0 : text.length();
+  }
+
+  /**
+   * The credit changes buffered by one transaction, and the members they were
+   * made to.
+   */
+  private static final class CreditChanges {
+    private final Map<String, Integer> credits = new LinkedHashMap<>();
+    private final Map<String, Member> members = new HashMap<>();
+  }
+}
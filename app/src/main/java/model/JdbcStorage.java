@@ -0,0 +1,372 @@
+package model;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Database holding the members, items and contracts of the JDBC repositories,
+ * reached through a small pool of connections.
+ *
+ * <p>
+ * The tables are created on first use, with the indexes the repositories'
+ * lookups need. The SQL sticks to what H2, the embedded database the
+ * application ships with, shares with other databases; any JDBC URL whose
+ * driver is on the class path can be used. Every connection keeps its prepared
+ * statements, so a repeated lookup is parsed once per connection. Writes run
+ * in transactions, and the repositories send bulk changes as JDBC batches of
+ * {@link #BATCH_SIZE} statements instead of one round trip per row.
+ * </p>
+ *
+ * <p>
+ * A {@link #transaction(Supplier) transaction} spans every read and write its
+ * thread makes through the repositories, e.g. a whole settlement. Changes
+ * the thread makes to model objects meanwhile, such as credits, are buffered
+ * by the repositories for that transaction and written on the same connection
+ * just before it commits; if it rolls back, the repositories drop the objects
+ * holding them. Changes made on other threads are not part of it. Contract
+ * rows refer to the members table by foreign keys. For H2, the database is
+ * kept open until the storage is closed rather than closed by the JVM's
+ * shutdown hook, which may run first.
+ * </p>
+ */
+public class JdbcStorage implements Closeable {
+  /**
+   * Number of statements sent to the database in one batch.
+   */
+  public static final int BATCH_SIZE = 512;
+
+  private static final String[] SCHEMA = {
+      "CREATE TABLE IF NOT EXISTS members (seq BIGINT GENERATED BY DEFAULT AS IDENTITY, id VARCHAR PRIMARY KEY,"
+          + " name VARCHAR, name_key VARCHAR, email VARCHAR NOT NULL, phone VARCHAR NOT NULL, credits INT NOT NULL)",
+      "CREATE UNIQUE INDEX IF NOT EXISTS members_email ON members (email)",
+      "CREATE UNIQUE INDEX IF NOT EXISTS members_phone ON members (phone)",
+      "CREATE INDEX IF NOT EXISTS members_name_key ON members (name_key)",
+      "CREATE INDEX IF NOT EXISTS members_seq ON members (seq)",
+      "CREATE TABLE IF NOT EXISTS items (seq BIGINT GENERATED BY DEFAULT AS IDENTITY, id VARCHAR PRIMARY KEY,"
+          + " owner_id VARCHAR NOT NULL, name VARCHAR, name_key VARCHAR, cost INT NOT NULL)",
+      "CREATE INDEX IF NOT EXISTS items_name_key ON items (name_key)",
+      "CREATE INDEX IF NOT EXISTS items_cost ON items (cost, seq)",
+      "CREATE INDEX IF NOT EXISTS items_seq ON items (seq)",
+      "CREATE TABLE IF NOT EXISTS contracts (seq BIGINT GENERATED BY DEFAULT AS IDENTITY, id VARCHAR PRIMARY KEY,"
+          + " item_id VARCHAR NOT NULL, item_name VARCHAR, item_cost INT NOT NULL,"
+          + " owner_id VARCHAR NOT NULL REFERENCES members (id),"
+          + " borrower_id VARCHAR NOT NULL REFERENCES members (id), start_date DATE NOT NULL,"
+          + " end_date DATE NOT NULL, active BOOLEAN NOT NULL)",
+      "CREATE INDEX IF NOT EXISTS contracts_item ON contracts (item_id, start_date, end_date)",
+      "CREATE INDEX IF NOT EXISTS contracts_borrower ON contracts (borrower_id)",
+      "CREATE INDEX IF NOT EXISTS contracts_owner ON contracts (owner_id)",
+      "CREATE INDEX IF NOT EXISTS contracts_end ON contracts (active, end_date)",
+      "CREATE INDEX IF NOT EXISTS contracts_seq ON contracts (seq)"};
+
+  private final BlockingQueue<Session> idle;
+  private final List<Session> sessions = new ArrayList<>();
+  private final List<Participant> participants = new ArrayList<>();
+  private final ThreadLocal<Session> transaction = new ThreadLocal<>();
+
+  /**
+   * Opens the connections and creates the tables that are missing.
+   *
+   * @param url         the JDBC URL, e.g. {@code jdbc:h2:./lending}
+   * @param connections the number of connections to keep open
+   * @throws SQLException if the database cannot be reached or the schema not
+   *                      created
+   */
+  public JdbcStorage(String url, int connections) throws SQLException {
+    idle = new ArrayBlockingQueue<>(connections);
+    try {
+      for (int i = 0; i < connections; i++) {
+        Session session = new Session(DriverManager.getConnection(url.startsWith("jdbc:h2:")
+            && !url.toUpperCase(Locale.ROOT).contains("DB_CLOSE_ON_EXIT") ? url + ";DB_CLOSE_ON_EXIT=FALSE" : url));
+        sessions.add(session);
+        idle.add(session);
+      }
+      try (Statement statement = sessions.get(0).connection.createStatement()) {
+        for (String sql : SCHEMA) {
+          statement.execute(sql);
+        }
+      }
+    } catch (SQLException e) {
+      closeSessions();
+      throw e;
+    }
+  }
+
+  /**
+   * Runs work in one transaction, committed with the changes the repositories
+   * buffered meanwhile if the work returns, and rolled back if it throws.
+   * The reads and writes of the repositories on the calling thread join it;
+   * a transaction the thread already runs in is joined as well.
+   *
+   * @param <T>  the type of the result
+   * @param work the work
+   * @return the result of the work
+   * @throws ModelExceptions.StorageException if the database fails
+   */
+  public <T> T transaction(Supplier<T> work) {
+    if (transaction.get() != null) {
+      return work.get();
+    }
+    Session session = acquire();
+    boolean committed = false;
+    transaction.set(session);
+    try {
+      session.connection.setAutoCommit(false);
+      final T result = work.get();
+      for (Participant participant : participants()) {
+        participant.write(session);
+      }
+      session.connection.commit();
+      committed = true;
+      return result;
+    } catch (SQLException e) {
+      throw new ModelExceptions.StorageException(e);
+    } finally {
+      transaction.remove();
+      try {
+        if (!committed) {
+          session.connection.rollback();
+        }
+        session.connection.setAutoCommit(true);
+      } catch (SQLException e) {
+        // The connection is broken; the next use of it reports that
+      }
+      idle.add(session);
+      if (!committed) {
+        for (Participant participant : participants()) {
+          participant.discard();
+        }
+      }
+    }
+  }
+
+  /**
+   * Tells whether the calling thread runs in a transaction, so the changes it
+   * makes to model objects now are to be buffered until it commits.
+   */
+  boolean inTransaction() {
+    return transaction.get() != null;
+  }
+
+  /**
+   * Runs work on a connection of the pool, waiting for one if all are busy,
+   * or on the connection of the transaction the calling thread runs in.
+   *
+   * @param <T>  the type of the result
+   * @param work the work
+   * @return the result of the work
+   * @throws ModelExceptions.StorageException if the database fails
+   */
+  <T> T read(Work<T> work) {
+    Session joined = transaction.get();
+    if (joined != null) {
+      return join(joined, work);
+    }
+    Session session = acquire();
+    try {
+      return work.run(session);
+    } catch (SQLException e) {
+      throw new ModelExceptions.StorageException(e);
+    } finally {
+      idle.add(session);
+    }
+  }
+
+  /**
+   * Runs work in a transaction, committed if the work returns and rolled back
+   * if it throws, or as part of the transaction the calling thread runs in.
+   *
+   * @param <T>  the type of the result
+   * @param work the work
+   * @return the result of the work
+   * @throws ModelExceptions.StorageException if the database fails
+   */
+  <T> T write(Work<T> work) {
+    Session joined = transaction.get();
+    if (joined != null) {
+      return join(joined, work);
+    }
+    Session session = acquire();
+    try {
+      session.connection.setAutoCommit(false);
+      try {
+        T result = work.run(session);
+        session.connection.commit();
+        return result;
+      } catch (SQLException | RuntimeException e) {
+        session.connection.rollback();
+        throw e;
+      } finally {
+        session.connection.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      throw new ModelExceptions.StorageException(e);
+    } finally {
+      idle.add(session);
+    }
+  }
+
+  private static <T> T join(Session session, Work<T> work) {
+    try {
+      return work.run(session);
+    } catch (SQLException e) {
+      throw new ModelExceptions.StorageException(e);
+    }
+  }
+
+  /**
+   * Registers a repository buffering changes, written before every
+   * transaction commits, by {@link #flush()} and before closing.
+   */
+  synchronized void addParticipant(Participant participant) {
+    participants.add(participant);
+  }
+
+  private synchronized List<Participant> participants() {
+    return new ArrayList<>(participants);
+  }
+
+  /**
+   * Writes the changes the repositories still buffer, e.g. item updates not
+   * filling a batch yet, each repository's in a transaction of its own.
+   *
+   * @throws ModelExceptions.StorageException if the database fails
+   */
+  public void flush() {
+    for (Participant participant : participants()) {
+      write(session -> {
+        participant.write(session);
+        return null;
+      });
+    }
+  }
+
+  /**
+   * Writes the buffered changes and closes the connections.
+   *
+   * @throws ModelExceptions.StorageException if the buffered changes cannot be
+   *                                          written; the connections are
+   *                                          closed anyway
+   */
+  @Override
+  public synchronized void close() {
+    try {
+      flush();
+    } finally {
+      closeSessions();
+    }
+  }
+
+  /**
+   * Returns the lower-case search key stored next to a name.
+   */
+  static String key(String text) {
+    return text == null ? null : text.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Returns a LIKE pattern, escaped with backslashes, matching the text
+   * anywhere in a search key or, with {@code anywhere} false, at its start.
+   */
+  static String like(String text, boolean anywhere) {
+    StringBuilder pattern = new StringBuilder(text.length() + 2);
+    if (anywhere) {
+      pattern.append('%');
+    }
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '%' || c == '_' || c == '\\') {
+        pattern.append('\\');
+      }
+      pattern.append(c);
+    }
+    return pattern.append('%').toString().toLowerCase(Locale.ROOT);
+  }
+
+  private Session acquire() {
+    try {
+      return idle.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ModelExceptions.StorageException(new SQLException("Interrupted waiting for a connection", e));
+    }
+  }
+
+  private void closeSessions() {
+    for (Session session : sessions) {
+      try {
+        session.connection.close(); // Also closes the cached statements
+      } catch (SQLException e) {
+        // Nothing left to do with a connection that fails to close
+      }
+    }
+    sessions.clear();
+    idle.clear();
+  }
+
+  /**
+   * A repository buffering changes to the model objects it handed out until
+   * they are written, e.g. when a transaction commits. Both methods are called
+   * on the thread of the transaction.
+   */
+  interface Participant {
+    /**
+     * Writes the changes buffered by the calling thread on the session and
+     * forgets them.
+     */
+    void write(Session session) throws SQLException;
+
+    /**
+     * Forgets the buffered changes of the calling thread's transaction, rolled
+     * back, and the objects they were made to, which are ahead of the database
+     * now.
+     */
+    void discard();
+  }
+
+  /**
+   * Database work run by {@link #read(Work)} or {@link #write(Work)}.
+   *
+   * @param <T> the type of the result
+   */
+  @FunctionalInterface
+  interface Work<T> {
+    T run(Session session) throws SQLException;
+  }
+
+  /**
+   * A pooled connection with its prepared statements, used by one thread at a
+   * time.
+   */
+  static final class Session {
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    private Session(Connection connection) {
+      this.connection = connection;
+    }
+
+    /**
+     * Returns the prepared statement for the SQL, preparing it on first use.
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+      PreparedStatement statement = statements.get(sql);
+      if (statement == null) {
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+      }
+      return statement;
+    }
+  }
+}
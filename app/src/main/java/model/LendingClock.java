@@ -0,0 +1,95 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The current date of the lending system.
+ *
+ * <p>
+ * Starts at the real date and only moves when time is advanced, so advancing
+ * by 30 days twice ends up 60 days ahead. Shared by everything working on the
+ * same {@link ContractRepository}, which has the clock publish every advance
+ * as a {@link ModelEvents.ClockAdvanced} on its bus, so the date reaches the
+ * event log and is restored with the model.
+ * </p>
+ */
+public final class LendingClock {
+  private LocalDate today;
+  private ModelEventBus events;
+
+  /**
+   * Constructs a clock starting at the real current date.
+   */
+  public LendingClock() {
+    this(LocalDate.now());
+  }
+
+  /**
+   * Constructs a clock starting at the given date, e.g. for simulations.
+   *
+   * @param start the first current date
+   */
+  public LendingClock(LocalDate start) {
+    this.today = start;
+  }
+
+  /**
+   * Returns the current date.
+   *
+   * @return the current date
+   */
+  public synchronized LocalDate today() {
+    return today;
+  }
+
+  /**
+   * Moves the current date forward.
+   *
+   * @param days the number of days to advance
+   * @return the new current date
+   * @throws ModelExceptions.NegativeAmountException if days is negative
+   */
+  public synchronized LocalDate advance(int days) {
+    if (days < 0) {
+      throw ModelError.NEGATIVE_AMOUNT.toException();
+    }
+    today = today.plusDays(days);
+    if (days > 0 && events != null && events.hasSubscribers()) {
+      events.publish(new ModelEvents.ClockAdvanced(today, days));
+    }
+    return today;
+  }
+
+  /**
+   * Moves the current date forward to the given date, if it is later, e.g.
+   * to a date read from a log or sent by another node.
+   *
+   * @param date the date to reach
+   * @return the new current date
+   */
+  public synchronized LocalDate advanceTo(LocalDate date) {
+    long days = ChronoUnit.DAYS.between(today, date);
+    return days > 0 ? advance(Math.toIntExact(days)) : today;
+  }
+
+  /**
+   * Publishes the current date as an advance of no days, so what records the
+   * bus from now on knows the date of what follows, e.g. when a process
+   * starts at a later date than the one it was rebuilt to.
+   */
+  public synchronized void publishToday() {
+    if (events != null && events.hasSubscribers()) {
+      events.publish(new ModelEvents.ClockAdvanced(today, 0));
+    }
+  }
+
+  /**
+   * Sets the bus every advance is published to. Only one bus is kept.
+   *
+   * @param events the bus, or null for none
+   */
+  synchronized void publishTo(ModelEventBus events) {
+    this.events = events;
+  }
+}
@@ -0,0 +1,327 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the history of member balances, item ownership and contract states by
+ * lending date, so questions like "was item X booked on the 5th?" or "what
+ * was M2's balance then?" can be answered weeks later, although the model
+ * itself changes contracts and credits in place.
+ *
+ * <p>
+ * The history is told every change and every move of the lending clock, in
+ * the order they happened; a projection of the event log does this, so the
+ * history is rebuilt with the model on a restart. The state it follows is
+ * held in {@link PersistentMap}s, so every change creates a new version
+ * sharing everything but O(log n) nodes with the previous one. The last
+ * version of each lending day is kept; reading any of them costs O(log n)
+ * and nothing is ever copied. Changes before the first date the history is
+ * told are counted to that date.
+ * </p>
+ */
+public class LendingHistory {
+  private final TreeMap<LocalDate, Snapshot> days = new TreeMap<>();
+  private Snapshot current = new Snapshot(PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty(),
+      PersistentMap.empty());
+  private LocalDate today;
+
+  /**
+   * Returns the state at the end of the given day, or the current state if
+   * the day is today.
+   *
+   * @param date the day
+   * @return the state, empty if the day is before the history started
+   */
+  public synchronized Snapshot asOf(LocalDate date) {
+    Map.Entry<LocalDate, Snapshot> day = days.floorEntry(date);
+    return day != null ? day.getValue() : new Snapshot(PersistentMap.empty(), PersistentMap.empty(),
+        PersistentMap.empty(), PersistentMap.empty());
+  }
+
+  /**
+   * Returns the number of days with changes.
+   *
+   * @return the days kept
+   */
+  public synchronized int countDays() {
+    return days.size();
+  }
+
+  /**
+   * Moves the history to a later lending day. Earlier days are ignored, as
+   * the clock never goes back.
+   *
+   * @param date the new current day
+   */
+  public synchronized void advanceTo(LocalDate date) {
+    if (today == null || date.isAfter(today)) {
+      today = date;
+      days.put(today, current);
+    }
+  }
+
+  /**
+   * Adds a member with its credits.
+   *
+   * @param memberId the member ID
+   * @param credits  the credits of the member
+   */
+  public synchronized void registerMember(String memberId, int credits) {
+    change(current.withBalances(current.balances.put(memberId, credits)));
+  }
+
+  /**
+   * Adds to or deducts from the credits of a member.
+   *
+   * @param memberId the member ID
+   * @param amount   the credits added, negative for a deduction
+   */
+  public synchronized void moveCredits(String memberId, int amount) {
+    Integer balance = current.balances.get(memberId);
+    if (balance != null) {
+      change(current.withBalances(current.balances.put(memberId, balance + amount)));
+    }
+  }
+
+  /**
+   * Removes a member.
+   *
+   * @param memberId the member ID
+   */
+  public synchronized void deleteMember(String memberId) {
+    change(current.withBalances(current.balances.remove(memberId)));
+  }
+
+  /**
+   * Adds an item with its owner.
+   *
+   * @param itemId  the item ID
+   * @param ownerId the ID of the owner
+   */
+  public synchronized void listItem(String itemId, String ownerId) {
+    change(current.withOwners(current.owners.put(itemId, ownerId)));
+  }
+
+  /**
+   * Removes an item.
+   *
+   * @param itemId the item ID
+   */
+  public synchronized void deleteItem(String itemId) {
+    change(current.withOwners(current.owners.remove(itemId)));
+  }
+
+  /**
+   * Adds a contract.
+   *
+   * @param contractId the contract ID
+   * @param itemId     the ID of the item booked
+   * @param borrowerId the ID of the borrower
+   * @param startDate  the first day of the contract
+   * @param endDate    the last day of the contract
+   * @param active     whether the contract is active
+   */
+  public synchronized void bookContract(String contractId, String itemId, String borrowerId, LocalDate startDate,
+      LocalDate endDate, boolean active) {
+    change(current.with(new ContractState(contractId, itemId, borrowerId, startDate, endDate, active)));
+  }
+
+  /**
+   * Marks a contract as no longer active, cancelled or expired.
+   *
+   * @param contractId the contract ID
+   */
+  public synchronized void endContract(String contractId) {
+    change(current.ended(contractId));
+  }
+
+  /**
+   * Removes a contract.
+   *
+   * @param contractId the contract ID
+   */
+  public synchronized void deleteContract(String contractId) {
+    change(current.without(current.contracts.get(contractId)));
+  }
+
+  private void change(Snapshot next) {
+    if (next != current) {
+      current = next;
+      if (today != null) {
+        days.put(today, current);
+      }
+    }
+  }
+
+  /**
+   * The state of the lending system at one point in time. Snapshots never
+   * change, so they can be read without locking.
+   */
+  public static final class Snapshot {
+    private final PersistentMap<String, Integer> balances;
+    private final PersistentMap<String, String> owners;
+    private final PersistentMap<String, ContractState> contracts;
+    private final PersistentMap<String, PersistentMap<String, ContractState>> contractsByItem;
+
+    private Snapshot(PersistentMap<String, Integer> balances, PersistentMap<String, String> owners,
+        PersistentMap<String, ContractState> contracts,
+        PersistentMap<String, PersistentMap<String, ContractState>> contractsByItem) {
+      this.balances = balances;
+      this.owners = owners;
+      this.contracts = contracts;
+      this.contractsByItem = contractsByItem;
+    }
+
+    /**
+     * Returns the credits of a member.
+     *
+     * @param memberId the member ID
+     * @return the balance, or null if there was no such member
+     */
+    public Integer getBalance(String memberId) {
+      return balances.get(memberId);
+    }
+
+    /**
+     * Returns the owner of an item.
+     *
+     * @param itemId the item ID
+     * @return the ID of the owner, or null if there was no such item
+     */
+    public String getOwnerId(String itemId) {
+      return owners.get(itemId);
+    }
+
+    /**
+     * Returns the state of a contract.
+     *
+     * @param contractId the contract ID
+     * @return the contract, or null if there was no such contract
+     */
+    public ContractState getContract(String contractId) {
+      return contracts.get(contractId);
+    }
+
+    /**
+     * Returns the active contracts of an item that cover a day. Contracts end
+     * after their last day, so to see whether an item was booked on a past
+     * day, ask the snapshot of that day.
+     *
+     * @param itemId the item ID
+     * @param day    the day
+     * @return the contracts, empty if the item was not booked that day
+     */
+    public List<ContractState> getBookings(String itemId, LocalDate day) {
+      List<ContractState> bookings = new ArrayList<>();
+      PersistentMap<String, ContractState> ofItem = contractsByItem.get(itemId);
+      if (ofItem != null) {
+        ofItem.forEach((id, contract) -> {
+          if (contract.isActive() && contract.covers(day)) {
+            bookings.add(contract);
+          }
+        });
+      }
+      return bookings;
+    }
+
+    public int countMembers() {
+      return balances.size();
+    }
+
+    public int countItems() {
+      return owners.size();
+    }
+
+    public int countContracts() {
+      return contracts.size();
+    }
+
+    private Snapshot withBalances(PersistentMap<String, Integer> changed) {
+      return changed == balances ? this : new Snapshot(changed, owners, contracts, contractsByItem);
+    }
+
+    private Snapshot withOwners(PersistentMap<String, String> changed) {
+      return changed == owners ? this : new Snapshot(balances, changed, contracts, contractsByItem);
+    }
+
+    private Snapshot ended(String contractId) {
+      ContractState contract = contracts.get(contractId);
+      return contract == null ? this : with(contract.ended());
+    }
+
+    private Snapshot with(ContractState contract) {
+      PersistentMap<String, ContractState> ofItem = contractsByItem.get(contract.getItemId());
+      ofItem = ofItem != null ? ofItem : PersistentMap.empty();
+      return new Snapshot(balances, owners, contracts.put(contract.getId(), contract),
+          contractsByItem.put(contract.getItemId(), ofItem.put(contract.getId(), contract)));
+    }
+
+    private Snapshot without(ContractState contract) {
+      if (contract == null) {
+        return this;
+      }
+      PersistentMap<String, ContractState> ofItem = contractsByItem.get(contract.getItemId())
+          .remove(contract.getId());
+      return new Snapshot(balances, owners, contracts.remove(contract.getId()), ofItem.size() == 0
+          ? contractsByItem.remove(contract.getItemId()) : contractsByItem.put(contract.getItemId(), ofItem));
+    }
+  }
+
+  /**
+   * A contract as it was at one point in time.
+   */
+  public static final class ContractState {
+    private final String id;
+    private final String itemId;
+    private final String borrowerId;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final boolean active;
+
+    private ContractState(String id, String itemId, String borrowerId, LocalDate startDate, LocalDate endDate,
+        boolean active) {
+      this.id = id;
+      this.itemId = itemId;
+      this.borrowerId = borrowerId;
+      this.startDate = startDate;
+      this.endDate = endDate;
+      this.active = active;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getItemId() {
+      return itemId;
+    }
+
+    public String getBorrowerId() {
+      return borrowerId;
+    }
+
+    public LocalDate getStartDate() {
+      return startDate;
+    }
+
+    public LocalDate getEndDate() {
+      return endDate;
+    }
+
+    public boolean isActive() {
+      return active;
+    }
+
+    private boolean covers(LocalDate day) {
+      return !day.isBefore(startDate) && !day.isAfter(endDate);
+    }
+
+    private ContractState ended() {
+      return active ? new ContractState(id, itemId, borrowerId, startDate, endDate, false) : this;
+    }
+  }
+}
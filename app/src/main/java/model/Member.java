@@ -3,20 +3,31 @@ package model;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+import java.util.regex.Pattern;
 
 /**
  * Represents a member with an ID, name, email, phone number, credits, and a
  * list of items. Ensures that the credits are not negative.
  */
 public class Member {
+  // Compiled once per pattern instead of on every String.matches call
+  private static final Map<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
+
   private final String id;
   private String name;
   private String email;
   private String phone;
-  private int credits;
+  // Atomic: settlement charges members from several threads, and a booking
+  // may move the same member's credits at the same time
+  private final AtomicInteger credits;
   private final List<Item> items;
   private final List<Contract> contracts;
+  private ObjIntConsumer<Member> creditsListener;
 
   /**
    * Constructs a Member with the specified ID, name, email, phone number.
@@ -37,24 +48,81 @@ public class Member {
    */
   public Member(String id, String name, String email, String phone, int credits, String emailPattern,
       String phonePattern) {
-    if (credits < 0) {
-      throw new ModelExceptions.NegativeCreditsException();
-    }
-    if (!isValidEmail(email, emailPattern)) {
-      throw new ModelExceptions.InvalidEmailFormatException();
-    }
-    if (!isValidPhoneNumber(phone, phonePattern)) {
-      throw new ModelExceptions.InvalidPhoneNumberException();
-    }
+    this(id, name, email, phone, checkedCredits(validate(email, phone, credits, emailPattern, phonePattern), credits));
+  }
+
+  /**
+   * Constructs a member from values that have already been validated.
+   */
+  private Member(String id, String name, String email, String phone, int credits) {
     this.id = id;
     this.name = name;
     this.email = email;
     this.phone = phone;
-    this.credits = credits;
+    this.credits = new AtomicInteger(credits);
     this.items = new ArrayList<>();
     this.contracts = new ArrayList<>();
   }
 
+  /**
+   * Recreates a member that was validated when it was first created, e.g. the
+   * borrower of an archived contract.
+   */
+  static Member restore(String id, String name, String email, String phone, int credits) {
+    return new Member(id, name, email, phone, credits);
+  }
+
+  /**
+   * Creates a member without throwing, for bulk operations where many rows may
+   * be invalid.
+   *
+   * @param id           the ID of the member
+   * @param name         the name of the member
+   * @param email        the email of the member
+   * @param phone        the phone number of the member
+   * @param credits      the credits of the member
+   * @param emailPattern the pattern to validate the email format
+   * @param phonePattern the pattern to validate the phone number format
+   * @return the member, or the first validation error
+   */
+  public static Result<Member> create(String id, String name, String email, String phone, int credits,
+      String emailPattern, String phonePattern) {
+    ModelError error = validate(email, phone, credits, emailPattern, phonePattern);
+    return error != null ? Result.failure(error) : Result.ok(new Member(id, name, email, phone, credits));
+  }
+
+  private static int checkedCredits(ModelError error, int credits) {
+    if (error != null) {
+      throw error.toException();
+    }
+    return credits;
+  }
+
+  /**
+   * Checks the values a member is constructed from, in the order the
+   * constructor does.
+   *
+   * @param email        the email of the member
+   * @param phone        the phone number of the member
+   * @param credits      the credits of the member
+   * @param emailPattern the pattern to validate the email format
+   * @param phonePattern the pattern to validate the phone number format
+   * @return the first error, or null if the values are valid
+   */
+  public static ModelError validate(String email, String phone, int credits, String emailPattern,
+      String phonePattern) {
+    if (credits < 0) {
+      return ModelError.NEGATIVE_CREDITS;
+    }
+    if (!isValidEmail(email, emailPattern)) {
+      return ModelError.INVALID_EMAIL_FORMAT;
+    }
+    if (!isValidPhoneNumber(phone, phonePattern)) {
+      return ModelError.INVALID_PHONE_NUMBER;
+    }
+    return null;
+  }
+
   /**
    * Constructs a new Member by copying the attributes of another Member.
    *
@@ -65,7 +133,7 @@ public class Member {
     this.name = other.name;
     this.email = other.email;
     this.phone = other.phone;
-    this.credits = other.credits;
+    this.credits = new AtomicInteger(other.credits.get());
     this.items = new ArrayList<>();
     this.contracts = new ArrayList<>();
     // Deep copy of items and contracts
@@ -160,7 +228,7 @@ public class Member {
    * @return the credits of the member
    */
   public int getCredits() {
-    return credits;
+    return credits.get();
   }
 
   /**
@@ -174,7 +242,8 @@ public class Member {
     if (amount < 0) {
       throw new ModelExceptions.NegativeAmountException();
     }
-    this.credits += amount;
+    credits.addAndGet(amount);
+    notifyCreditsChanged(amount);
   }
 
   /**
@@ -188,7 +257,24 @@ public class Member {
     if (amount < 0) {
       throw new ModelExceptions.NegativeAmountException();
     }
-    this.credits -= amount;
+    credits.addAndGet(-amount);
+    notifyCreditsChanged(-amount);
+  }
+
+  /**
+   * Registers the callback run after every change of the credits, with the
+   * amount added or, if negative, deducted. Only one listener is kept.
+   *
+   * @param listener the callback, or null to remove it
+   */
+  void setCreditsListener(ObjIntConsumer<Member> listener) {
+    this.creditsListener = listener;
+  }
+
+  private void notifyCreditsChanged(int amount) {
+    if (creditsListener != null) {
+      creditsListener.accept(this, amount); // Lets the repository holding the member publish it
+    }
   }
 
   /**
@@ -282,8 +368,8 @@ public class Member {
    * @param emailPattern the pattern to validate the email format
    * @return true if the email is valid, false otherwise
    */
-  private boolean isValidEmail(String email, String emailPattern) {
-    return email != null && email.matches(emailPattern);
+  private static boolean isValidEmail(String email, String emailPattern) {
+    return email != null && matches(email, emailPattern);
   }
 
   /**
@@ -293,7 +379,11 @@ public class Member {
    * @param phonePattern the pattern to validate the phone number format
    * @return true if the phone number is valid, false otherwise
    */
-  private boolean isValidPhoneNumber(String phone, String phonePattern) {
-    return phone != null && phone.matches(phonePattern);
+  private static boolean isValidPhoneNumber(String phone, String phonePattern) {
+    return phone != null && matches(phone, phonePattern);
+  }
+
+  private static boolean matches(String input, String regex) {
+    return PATTERNS.computeIfAbsent(regex, Pattern::compile).matcher(input).matches();
   }
 }
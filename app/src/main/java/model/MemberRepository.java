@@ -2,19 +2,57 @@ package model;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Repository class for managing a collection of members.
+ * Methods are synchronized so one repository can serve concurrent sessions.
  */
-public class MemberRepository {
+public class MemberRepository implements MemberRepositoryInterface {
   private List<Member> members;
+  private final Map<String, Member> byId = new HashMap<>();
+  private final Map<String, Member> byEmail = new HashMap<>();
+  private final Map<String, Member> byPhone = new HashMap<>();
+  private final PrefixIndex<Member> searchIndex = new PrefixIndex<>(Member::getId);
+  private final ModelEventBus events;
+  private final ObjIntConsumer<Member> creditsListener = this::creditsChanged;
 
   /**
-   * Constructs a MemberRepository with an empty list of members.
+   * Constructs a MemberRepository with an empty list of members and its own
+   * event bus.
    */
   public MemberRepository() {
+    this(new ModelEventBus());
+  }
+
+  /**
+   * Constructs a MemberRepository with an empty list of members.
+   *
+   * @param events the bus receiving the changes to the members
+   */
+  public MemberRepository(ModelEventBus events) {
     this.members = new ArrayList<>();
+    this.events = events;
+  }
+
+  /**
+   * Constructs a MemberRepository holding members already recorded elsewhere,
+   * e.g. one shard of a rebuilt model, without publishing them. Their credit
+   * changes are published from now on.
+   *
+   * @param events  the bus receiving the changes to the members
+   * @param members the members, with unique IDs, emails and phone numbers
+   */
+  public MemberRepository(ModelEventBus events, List<Member> members) {
+    this.members = new ArrayList<>(members);
+    this.events = events;
+    for (Member member : members) {
+      index(member);
+      member.setCreditsListener(creditsListener);
+    }
   }
 
   /**
@@ -30,114 +68,161 @@ public class MemberRepository {
    */
   public MemberRepository(MemberRepository other) {
     this.members = new ArrayList<>(other.members);
+    this.events = new ModelEventBus();
+    for (Member member : members) {
+      index(member); // Credit changes keep being published by the original repository only
+    }
   }
 
-  /**
-   * Validates a member to ensure there are no duplicate IDs, emails, or phone
-   * numbers.
-   * Throws exceptions if any duplicates are found.
-   *
-   * @param member the member to be validated
-   * @throws ModelExceptions.IdExistsException    if a member with the same ID
-   *                                              already exists
-   * @throws ModelExceptions.EmailExistsException if a member with the same email
-   *                                              already exists
-   * @throws ModelExceptions.PhoneExistsException if a member with the same phone
-   *                                              number already exists
-   */
-  public void validateMember(Member member) {
-    // Validate ID uniqueness
-    if (members.stream().anyMatch(m -> m.getId().equals(member.getId()))) {
-      throw new ModelExceptions.IdExistsException();
+  @Override
+  public ModelEventBus getEventBus() {
+    return events;
+  }
+
+  @Override
+  public synchronized void validateMember(Member member) {
+    ModelError error = findDuplicate(member);
+    if (error != null) {
+      throw error.toException();
     }
+  }
 
-    // Validate email uniqueness
-    if (members.stream().anyMatch(m -> m.getEmail().equals(member.getEmail()))) {
-      throw new ModelExceptions.EmailExistsException();
+  @Override
+  public synchronized void addMember(Member member) {
+    tryAddMember(member).orThrow();
+  }
+
+  @Override
+  public synchronized Result<Member> tryAddMember(Member member) {
+    ModelError error = findDuplicate(member);
+    if (error != null) {
+      return Result.failure(error);
     }
+    members.add(member);
+    index(member);
+    added(member);
+    return Result.ok(member);
+  }
 
-    // Validate phone number uniqueness
-    if (members.stream().anyMatch(m -> m.getPhone().equals(member.getPhone()))) {
-      throw new ModelExceptions.PhoneExistsException();
+  // The search index is only updated once at the end of the batch
+  @Override
+  public synchronized ModelError[] addMembers(List<Member> batch) {
+    ModelError[] errors = new ModelError[batch.size()];
+    List<Member> added = new ArrayList<>(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      Member member = batch.get(i);
+      errors[i] = findDuplicate(member);
+      if (errors[i] == null) {
+        members.add(member);
+        byId.put(member.getId(), member);
+        byEmail.put(member.getEmail(), member);
+        byPhone.put(member.getPhone(), member);
+        added.add(member);
+      }
+    }
+    searchIndex.addAll(added, member -> new String[] { member.getName(), member.getEmail(), member.getPhone(),
+        member.getId() });
+    for (Member member : added) {
+      added(member);
     }
+    return errors;
   }
 
-  /**
-   * Adds a member to the repository after validation.
-   *
-   * @param member the member to be added
-   */
-  public void addMember(Member member) {
-    validateMember(member);
-    members.add(member);
+  private ModelError findDuplicate(Member member) {
+    if (byId.containsKey(member.getId())) {
+      return ModelError.ID_EXISTS;
+    }
+    if (byEmail.containsKey(member.getEmail())) {
+      return ModelError.EMAIL_EXISTS;
+    }
+    if (byPhone.containsKey(member.getPhone())) {
+      return ModelError.PHONE_EXISTS;
+    }
+    return null;
   }
 
-  /**
-   * Deletes a member from the repository.
-   *
-   * @param member the member to be deleted
-   */
-  public void deleteMember(Member member) {
-    members.remove(member);
+  @Override
+  public synchronized void deleteMember(Member member) {
+    if (members.remove(member)) {
+      Member stored = byId.remove(member.getId());
+      byEmail.remove(stored.getEmail(), stored);
+      byPhone.remove(stored.getPhone(), stored);
+      searchIndex.remove(member);
+      stored.setCreditsListener(null);
+      if (events.hasSubscribers()) {
+        events.publish(new ModelEvents.MemberDeleted(stored));
+      }
+    }
   }
 
-  /**
-   * Retrieves a member from the repository by their email.
-   *
-   * @param email the email of the member to be retrieved
-   * @return the member with the specified email, or null if not found
-   */
-  public Member getMemberByEmail(String email) {
-    return members.stream().filter(member -> member.getEmail().equals(email)).findFirst().orElse(null);
+  @Override
+  public synchronized Member getMemberById(String id) {
+    return byId.get(id);
   }
 
-  /**
-   * Retrieves a member from the repository by their phone number.
-   *
-   * @param phone the phone number of the member to be retrieved
-   * @return the member with the specified phone number, or null if not found
-   */
-  public Member getMemberByPhone(String phone) {
-    return members.stream().filter(member -> member.getPhone().equals(phone)).findFirst().orElse(null);
+  @Override
+  public synchronized Member getMemberByEmail(String email) {
+    return byEmail.get(email);
   }
 
-  /**
-   * Checks if a member exists in the repository.
-   *
-   * @param member the member to check for
-   * @return true if the member exists, false otherwise
-   */
-  public boolean memberExists(Member member) {
+  @Override
+  public synchronized Member getMemberByPhone(String phone) {
+    return byPhone.get(phone);
+  }
+
+  @Override
+  public synchronized boolean memberExists(Member member) {
     return members.contains(member);
   }
 
-  /**
-   * Checks if a member with the specified email exists in the repository.
-   *
-   * @param email the email to check for
-   * @return true if a member with the specified email exists, false otherwise
-   */
-  public boolean emailExists(String email) {
-    return members.stream().anyMatch(member -> member.getEmail().equals(email));
+  @Override
+  public synchronized boolean emailExists(String email) {
+    return byEmail.containsKey(email);
   }
 
-  /**
-   * Checks if a member with the specified phone number exists in the repository.
-   *
-   * @param phone the phone number to check for
-   * @return true if a member with the specified phone number exists, false
-   *         otherwise
-   */
-  public boolean phoneExists(String phone) {
-    return members.stream().anyMatch(member -> member.getPhone().equals(phone));
+  @Override
+  public synchronized boolean phoneExists(String phone) {
+    return byPhone.containsKey(phone);
   }
 
-  /**
-   * Returns a list of all members in the repository.
-   *
-   * @return a list of all members
-   */
-  public List<Member> getAllMembers() {
+  @Override
+  public synchronized int countMembers() {
+    return members.size();
+  }
+
+  @Override
+  public synchronized List<Member> getMembers(int offset, int limit) {
+    int from = Math.min(Math.max(offset, 0), members.size());
+    return new ArrayList<>(members.subList(from, Math.min(members.size(), from + Math.max(limit, 0))));
+  }
+
+  @Override
+  public synchronized List<Member> searchMembers(String prefix, int limit) {
+    return searchIndex.search(prefix, limit);
+  }
+
+  @Override
+  public synchronized List<Member> getAllMembers() {
     return Collections.unmodifiableList(new ArrayList<>(members));
   }
+
+  private void added(Member member) {
+    member.setCreditsListener(creditsListener);
+    if (events.hasSubscribers()) {
+      events.publish(new ModelEvents.MemberCreated(member));
+    }
+  }
+
+  private void creditsChanged(Member member, int amount) {
+    if (events.hasSubscribers()) {
+      events.publish(new ModelEvents.CreditsChanged(member, amount, member.getCredits()));
+    }
+  }
+
+  private void index(Member member) {
+    byId.put(member.getId(), member);
+    byEmail.put(member.getEmail(), member);
+    byPhone.put(member.getPhone(), member);
+    searchIndex.add(member, member.getName(), member.getEmail(), member.getPhone(), member.getId());
+  }
 }
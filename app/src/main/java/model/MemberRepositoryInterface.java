@@ -0,0 +1,146 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Storage of the members. {@link MemberRepository} keeps them in memory,
+ * {@link JdbcMemberRepository} in a database.
+ */
+public interface MemberRepositoryInterface {
+  /**
+   * Returns the bus the changes to the members are published on.
+   *
+   * @return the event bus
+   */
+  ModelEventBus getEventBus();
+
+  /**
+   * Validates a member to ensure there are no duplicate IDs, emails, or phone
+   * numbers.
+   * Throws exceptions if any duplicates are found.
+   *
+   * @param member the member to be validated
+   * @throws ModelExceptions.IdExistsException    if a member with the same ID
+   *                                              already exists
+   * @throws ModelExceptions.EmailExistsException if a member with the same email
+   *                                              already exists
+   * @throws ModelExceptions.PhoneExistsException if a member with the same phone
+   *                                              number already exists
+   */
+  void validateMember(Member member);
+
+  /**
+   * Adds a member to the repository after validation.
+   *
+   * @param member the member to be added
+   */
+  void addMember(Member member);
+
+  /**
+   * Adds a member to the repository unless its ID, email or phone number is
+   * taken, without throwing.
+   *
+   * @param member the member to be added
+   * @return the added member, or the duplicate that prevented it
+   */
+  Result<Member> tryAddMember(Member member);
+
+  /**
+   * Adds many members at once, e.g. from a bulk import. Duplicates are checked
+   * member by member, including against earlier members of the batch.
+   *
+   * @param batch the members to add, in order
+   * @return for each member, the duplicate that prevented adding it, or null if
+   *         it was added
+   */
+  ModelError[] addMembers(List<Member> batch);
+
+  /**
+   * Deletes a member from the repository.
+   *
+   * @param member the member to be deleted
+   */
+  void deleteMember(Member member);
+
+  /**
+   * Retrieves a member from the repository by their ID.
+   *
+   * @param id the ID of the member to be retrieved
+   * @return the member with the specified ID, or null if not found
+   */
+  Member getMemberById(String id);
+
+  /**
+   * Retrieves a member from the repository by their email.
+   *
+   * @param email the email of the member to be retrieved
+   * @return the member with the specified email, or null if not found
+   */
+  Member getMemberByEmail(String email);
+
+  /**
+   * Retrieves a member from the repository by their phone number.
+   *
+   * @param phone the phone number of the member to be retrieved
+   * @return the member with the specified phone number, or null if not found
+   */
+  Member getMemberByPhone(String phone);
+
+  /**
+   * Checks if a member exists in the repository.
+   *
+   * @param member the member to check for
+   * @return true if the member exists, false otherwise
+   */
+  boolean memberExists(Member member);
+
+  /**
+   * Checks if a member with the specified email exists in the repository.
+   *
+   * @param email the email to check for
+   * @return true if a member with the specified email exists, false otherwise
+   */
+  boolean emailExists(String email);
+
+  /**
+   * Checks if a member with the specified phone number exists in the repository.
+   *
+   * @param phone the phone number to check for
+   * @return true if a member with the specified phone number exists, false
+   *         otherwise
+   */
+  boolean phoneExists(String phone);
+
+  /**
+   * Returns the number of members in the repository.
+   *
+   * @return the number of members
+   */
+  int countMembers();
+
+  /**
+   * Returns one page of members without copying the rest of the repository.
+   *
+   * @param offset the index of the first member to return
+   * @param limit  the maximum number of members to return
+   * @return the members in the requested range
+   */
+  List<Member> getMembers(int offset, int limit);
+
+  /**
+   * Finds members whose name, email, phone number or ID starts with the given
+   * text, ignoring case.
+   *
+   * @param prefix the text typed so far; empty matches every member
+   * @param limit  the maximum number of members to return
+   * @return the matching members in key order
+   */
+  List<Member> searchMembers(String prefix, int limit);
+
+  /**
+   * Returns a list of all members in the repository.
+   *
+   * @return a list of all members
+   */
+  List<Member> getAllMembers();
+}
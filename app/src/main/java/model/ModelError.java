@@ -0,0 +1,55 @@
+package model;
+
+import java.util.function.Supplier;
+
+/**
+ * Error codes for expected model failures, returned by the non-throwing
+ * validation and insertion methods and carried by every
+ * {@link ModelExceptions.ModelException}.
+ */
+public enum ModelError {
+  EMAIL_EXISTS("Email already exists", ModelExceptions.EmailExistsException::new),
+  PHONE_EXISTS("Phone number already exists", ModelExceptions.PhoneExistsException::new),
+  ID_EXISTS("ID already exists", ModelExceptions.IdExistsException::new),
+  NEGATIVE_CREDITS("Credits cannot be negative", ModelExceptions.NegativeCreditsException::new),
+  NEGATIVE_AMOUNT("Amount cannot be negative", ModelExceptions.NegativeAmountException::new),
+  NEGATIVE_COST("Cost cannot be negative", ModelExceptions.NegativeCostException::new),
+  INVALID_END_DATE("End date is before start date", ModelExceptions.InvalidEndDateException::new),
+  INVALID_EMAIL_FORMAT("Invalid email format", ModelExceptions.InvalidEmailFormatException::new),
+  INVALID_PHONE_NUMBER("Invalid phone number", ModelExceptions.InvalidPhoneNumberException::new),
+  ITEM_NOT_FOUND("Item not found", ModelExceptions.ItemNotFoundException::new),
+  BORROWER_NOT_FOUND("Borrower not found", ModelExceptions.BorrowerNotFoundException::new),
+  MEMBER_NOT_FOUND("Member not found", ModelExceptions.MemberNotFoundException::new),
+  CONTRACT_NOT_FOUND("Contract not found", ModelExceptions.ContractNotFoundException::new),
+  INSUFFICIENT_FUNDS("Insufficient credits", ModelExceptions.InsufficientFundsException::new),
+  CONFLICTING_CONTRACT("Item is already booked for the period",
+      ModelExceptions.ConflictingContractException::new),
+  READ_ONLY("Read-only replica; send changes to the primary", ModelExceptions.ReadOnlyException::new),
+  MEMBER_HAS_CONTRACTS("Member still has contracts", ModelExceptions.MemberHasContractsException::new);
+
+  private final String message;
+  private final Supplier<ModelExceptions.ModelException> exception;
+
+  ModelError(String message, Supplier<ModelExceptions.ModelException> exception) {
+    this.message = message;
+    this.exception = exception;
+  }
+
+  /**
+   * Returns a short description of the error.
+   *
+   * @return the description
+   */
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * Creates the exception the throwing API uses for this error.
+   *
+   * @return a new exception of the matching type
+   */
+  public ModelExceptions.ModelException toException() {
+    return exception.get();
+  }
+}
@@ -0,0 +1,155 @@
+package model;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * Stream of {@link ModelEvents} published by the repositories.
+ *
+ * <p>
+ * Subscribers are {@link Flow.Subscriber}s and receive events on the executor
+ * of the bus, never on the thread that changed the model. By default every
+ * subscriber with pending events gets a thread of its own, so a slow one
+ * cannot hold up the others by occupying a shared pool. Each subscriber has
+ * a bounded buffer and gets only as many events as it requested; when a slow
+ * subscriber's buffer is full, further events for it are dropped and counted
+ * instead of blocking the publisher. When nobody subscribed, the repositories
+ * do not even create the events. Events are numbered atomically without a
+ * lock, so threads changing different parts of the model publish in
+ * parallel; subscribers may get the events of different threads out of
+ * sequence order.
+ * </p>
+ *
+ * <p>
+ * A bus can also have recorders, which get every event on the publishing
+ * thread before the subscribers do, for consumers like the audit log or the
+ * event log that must not miss any event and so cannot be subscribers. They
+ * are called under a lock of the bus, taken only while there are recorders,
+ * so each recorder gets one event at a time and in sequence order.
+ * </p>
+ */
+public class ModelEventBus implements Flow.Publisher<ModelEvents.ModelEvent>, AutoCloseable {
+  /**
+   * Buffer capacity per subscriber of a bus created without one.
+   */
+  public static final int DEFAULT_BUFFER_CAPACITY = 8192;
+
+  private static final Executor DELIVERY = Executors.newCachedThreadPool(task -> {
+    Thread thread = new Thread(task, "model-events");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final SubmissionPublisher<ModelEvents.ModelEvent> publisher;
+  private final LongAdder dropped = new LongAdder();
+  private final BiPredicate<Flow.Subscriber<? super ModelEvents.ModelEvent>, ModelEvents.ModelEvent> onDrop =
+      (subscriber, event) -> {
+        dropped.increment();
+        return false; // Do not retry, the publisher must not wait
+      };
+  private final List<Consumer<? super ModelEvents.ModelEvent>> recorders = new CopyOnWriteArrayList<>();
+  private final AtomicLong sequence = new AtomicLong();
+  private final ReentrantLock recording = new ReentrantLock();
+
+  /**
+   * Constructs a bus delivering on threads shared by all buses, one per
+   * subscriber with pending events.
+   */
+  public ModelEventBus() {
+    this(DELIVERY, DEFAULT_BUFFER_CAPACITY);
+  }
+
+  /**
+   * Constructs a bus.
+   *
+   * @param executor       the executor running the subscribers
+   * @param bufferCapacity the number of undelivered events kept per subscriber,
+   *                       rounded up to a power of two
+   */
+  public ModelEventBus(Executor executor, int bufferCapacity) {
+    this.publisher = new SubmissionPublisher<>(executor, bufferCapacity);
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super ModelEvents.ModelEvent> subscriber) {
+    publisher.subscribe(subscriber);
+  }
+
+  /**
+   * Adds a recorder getting every event synchronously, in sequence order,
+   * while the publisher holds the recording lock of the bus. It must return
+   * quickly and must not change the model.
+   *
+   * @param recorder the recorder
+   */
+  public void addRecorder(Consumer<? super ModelEvents.ModelEvent> recorder) {
+    recorders.add(recorder);
+  }
+
+  /**
+   * Removes a recorder added before.
+   *
+   * @param recorder the recorder
+   */
+  public void removeRecorder(Consumer<? super ModelEvents.ModelEvent> recorder) {
+    recorders.remove(recorder);
+  }
+
+  /**
+   * Tells whether anybody listens, so publishers can skip creating events.
+   *
+   * @return true if the bus has a recorder or at least one subscriber
+   */
+  public boolean hasSubscribers() {
+    return !recorders.isEmpty() || publisher.hasSubscribers();
+  }
+
+  /**
+   * Returns how many events were dropped because a subscriber's buffer was full,
+   * counting each subscriber that missed an event.
+   *
+   * @return the number of dropped deliveries
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Numbers the event, hands it to the recorders and offers it to every
+   * subscriber without blocking. Only numbering and recording are locked, and
+   * only if there are recorders.
+   */
+  void publish(ModelEvents.ModelEvent event) {
+    if (recorders.isEmpty()) {
+      event.setSequence(sequence.incrementAndGet());
+    } else {
+      recording.lock();
+      try {
+        event.setSequence(sequence.incrementAndGet());
+        for (Consumer<? super ModelEvents.ModelEvent> recorder : recorders) {
+          recorder.accept(event);
+        }
+      } finally {
+        recording.unlock();
+      }
+    }
+    publisher.offer(event, onDrop);
+  }
+
+  /**
+   * Completes every subscriber once it has received the buffered events.
+   */
+  @Override
+  public void close() {
+    publisher.close();
+  }
+}
@@ -0,0 +1,221 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * Contains the events published on a {@link ModelEventBus} when the model
+ * changes.
+ *
+ * <p>
+ * Events refer to the changed objects instead of copying them, so publishing
+ * costs one small allocation; a subscriber reading them later sees their
+ * current state.
+ * </p>
+ */
+public class ModelEvents {
+
+  /**
+   * Base class of the model events.
+   */
+  public abstract static class ModelEvent {
+    private long sequence;
+
+    /**
+     * Returns the position of the event on its bus. Events are numbered in the
+     * order they were published, starting at 1.
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+      return sequence;
+    }
+
+    void setSequence(long sequence) {
+      this.sequence = sequence;
+    }
+  }
+
+  /**
+   * Published when a member is added to a repository.
+   */
+  public static final class MemberCreated extends ModelEvent {
+    private final Member member;
+
+    MemberCreated(Member member) {
+      this.member = member;
+    }
+
+    public Member getMember() {
+      return member;
+    }
+  }
+
+  /**
+   * Published when a member is deleted from a repository.
+   */
+  public static final class MemberDeleted extends ModelEvent {
+    private final Member member;
+
+    MemberDeleted(Member member) {
+      this.member = member;
+    }
+
+    public Member getMember() {
+      return member;
+    }
+  }
+
+  /**
+   * Published when an item is added to a repository.
+   */
+  public static final class ItemCreated extends ModelEvent {
+    private final Item item;
+
+    ItemCreated(Item item) {
+      this.item = item;
+    }
+
+    public Item getItem() {
+      return item;
+    }
+  }
+
+  /**
+   * Published when an item is deleted from a repository.
+   */
+  public static final class ItemDeleted extends ModelEvent {
+    private final Item item;
+
+    ItemDeleted(Item item) {
+      this.item = item;
+    }
+
+    public Item getItem() {
+      return item;
+    }
+  }
+
+  /**
+   * Published when a contract is added to a repository.
+   */
+  public static final class ContractCreated extends ModelEvent {
+    private final Contract contract;
+
+    ContractCreated(Contract contract) {
+      this.contract = contract;
+    }
+
+    public Contract getContract() {
+      return contract;
+    }
+  }
+
+  /**
+   * Published when an active contract is cancelled because its item was
+   * deleted.
+   */
+  public static final class ContractCancelled extends ModelEvent {
+    private final Contract contract;
+
+    ContractCancelled(Contract contract) {
+      this.contract = contract;
+    }
+
+    public Contract getContract() {
+      return contract;
+    }
+  }
+
+  /**
+   * Published when a contract is deleted from a repository.
+   */
+  public static final class ContractDeleted extends ModelEvent {
+    private final Contract contract;
+
+    ContractDeleted(Contract contract) {
+      this.contract = contract;
+    }
+
+    public Contract getContract() {
+      return contract;
+    }
+  }
+
+  /**
+   * Published when a contract ends because time advanced past its end date.
+   */
+  public static final class ContractExpired extends ModelEvent {
+    private final Contract contract;
+
+    ContractExpired(Contract contract) {
+      this.contract = contract;
+    }
+
+    public Contract getContract() {
+      return contract;
+    }
+  }
+
+  /**
+   * Published when the clock of a repository moves forward.
+   */
+  public static final class ClockAdvanced extends ModelEvent {
+    private final LocalDate today;
+    private final int days;
+
+    ClockAdvanced(LocalDate today, int days) {
+      this.today = today;
+      this.days = days;
+    }
+
+    /**
+     * Returns the current date after the advance.
+     *
+     * @return the new current date
+     */
+    public LocalDate getToday() {
+      return today;
+    }
+
+    public int getDays() {
+      return days;
+    }
+  }
+
+  /**
+   * Published when the credits of a member in a repository change.
+   */
+  public static final class CreditsChanged extends ModelEvent {
+    private final Member member;
+    private final int amount;
+    private final int balance;
+
+    CreditsChanged(Member member, int amount, int balance) {
+      this.member = member;
+      this.amount = amount;
+      this.balance = balance;
+    }
+
+    public Member getMember() {
+      return member;
+    }
+
+    /**
+     * Returns the change, positive when credits were added.
+     *
+     * @return the amount added or, if negative, deducted
+     */
+    public int getAmount() {
+      return amount;
+    }
+
+    /**
+     * Returns the credits of the member right after the change.
+     *
+     * @return the new balance
+     */
+    public int getBalance() {
+      return balance;
+    }
+  }
+}
@@ -1,73 +1,203 @@
 package model;
 
+import java.sql.SQLException;
+
 /**
  * Contains custom exception classes for various model-related errors.
  */
 public class ModelExceptions {
 
+  /**
+   * Base class of the model exceptions. They signal expected failures, such as
+   * a duplicate email, and are caught right away, so they skip capturing a
+   * stack trace, which would otherwise dominate the cost of a failed
+   * operation.
+   */
+  public abstract static class ModelException extends RuntimeException {
+    private final ModelError error;
+
+    /**
+     * Creates an exception for the given error, without a stack trace.
+     *
+     * @param error the error code, which also provides the message
+     */
+    protected ModelException(ModelError error) {
+      super(error.getMessage(), null, false, false);
+      this.error = error;
+    }
+
+    /**
+     * Returns the error code of the exception.
+     *
+     * @return the error code
+     */
+    public ModelError getError() {
+      return error;
+    }
+  }
+
   /**
    * Exception thrown when an email already exists.
    */
-  public static class EmailExistsException extends RuntimeException {
+  public static class EmailExistsException extends ModelException {
+    public EmailExistsException() {
+      super(ModelError.EMAIL_EXISTS);
+    }
   }
 
   /**
    * Exception thrown when a phone number already exists.
    */
-  public static class PhoneExistsException extends RuntimeException {
+  public static class PhoneExistsException extends ModelException {
+    public PhoneExistsException() {
+      super(ModelError.PHONE_EXISTS);
+    }
   }
 
   /**
    * Exception thrown when negative credits are encountered.
    */
-  public static class NegativeCreditsException extends RuntimeException {
+  public static class NegativeCreditsException extends ModelException {
+    public NegativeCreditsException() {
+      super(ModelError.NEGATIVE_CREDITS);
+    }
   }
 
   /**
    * Exception thrown when a negative amount is encountered.
    */
-  public static class NegativeAmountException extends RuntimeException {
+  public static class NegativeAmountException extends ModelException {
+    public NegativeAmountException() {
+      super(ModelError.NEGATIVE_AMOUNT);
+    }
   }
 
   /**
    * Exception thrown when a negative cost is encountered.
    */
-  public static class NegativeCostException extends RuntimeException {
+  public static class NegativeCostException extends ModelException {
+    public NegativeCostException() {
+      super(ModelError.NEGATIVE_COST);
+    }
   }
 
   /**
    * Exception thrown when an invalid end date is encountered.
    */
-  public static class InvalidEndDateException extends RuntimeException {
+  public static class InvalidEndDateException extends ModelException {
+    public InvalidEndDateException() {
+      super(ModelError.INVALID_END_DATE);
+    }
   }
 
   /**
    * Exception thrown when an ID already exists.
    */
-  public static class IdExistsException extends RuntimeException {
+  public static class IdExistsException extends ModelException {
+    public IdExistsException() {
+      super(ModelError.ID_EXISTS);
+    }
   }
 
   /**
    * Exception thrown when an email has an invalid format.
    */
-  public static class InvalidEmailFormatException extends RuntimeException {
+  public static class InvalidEmailFormatException extends ModelException {
+    public InvalidEmailFormatException() {
+      super(ModelError.INVALID_EMAIL_FORMAT);
+    }
   }
 
   /**
    * Exception thrown when a phone number has an invalid format.
    */
-  public static class InvalidPhoneNumberException extends RuntimeException {
+  public static class InvalidPhoneNumberException extends ModelException {
+    public InvalidPhoneNumberException() {
+      super(ModelError.INVALID_PHONE_NUMBER);
+    }
   }
 
   /**
    * Exception thrown when an item is not found.
    */
-  public static class ItemNotFoundException extends RuntimeException {
+  public static class ItemNotFoundException extends ModelException {
+    public ItemNotFoundException() {
+      super(ModelError.ITEM_NOT_FOUND);
+    }
   }
 
   /**
    * Exception thrown when a borrower has an invalid format.
    */
-  public static class BorrowerNotFoundException extends RuntimeException {
+  public static class BorrowerNotFoundException extends ModelException {
+    public BorrowerNotFoundException() {
+      super(ModelError.BORROWER_NOT_FOUND);
+    }
+  }
+
+  /**
+   * Exception thrown when a member is not found.
+   */
+  public static class MemberNotFoundException extends ModelException {
+    public MemberNotFoundException() {
+      super(ModelError.MEMBER_NOT_FOUND);
+    }
+  }
+
+  /**
+   * Exception thrown when a contract is not found.
+   */
+  public static class ContractNotFoundException extends ModelException {
+    public ContractNotFoundException() {
+      super(ModelError.CONTRACT_NOT_FOUND);
+    }
+  }
+
+  /**
+   * Exception thrown when a borrower cannot afford an item.
+   */
+  public static class InsufficientFundsException extends ModelException {
+    public InsufficientFundsException() {
+      super(ModelError.INSUFFICIENT_FUNDS);
+    }
+  }
+
+  /**
+   * Exception thrown when a contract overlaps an existing contract.
+   */
+  public static class ConflictingContractException extends ModelException {
+    public ConflictingContractException() {
+      super(ModelError.CONFLICTING_CONTRACT);
+    }
+  }
+
+  /**
+   * Exception thrown when a read-only replica is asked to change something.
+   */
+  public static class ReadOnlyException extends ModelException {
+    public ReadOnlyException() {
+      super(ModelError.READ_ONLY);
+    }
+  }
+
+  /**
+   * Exception thrown when a member named by contracts the database keeps is
+   * to be deleted.
+   */
+  public static class MemberHasContractsException extends ModelException {
+    public MemberHasContractsException() {
+      super(ModelError.MEMBER_HAS_CONTRACTS);
+    }
+  }
+
+  /**
+   * Exception thrown when the database behind a JDBC repository fails. Unlike
+   * the model exceptions it is unexpected, so it keeps its stack trace and the
+   * {@link SQLException} as its cause.
+   */
+  public static class StorageException extends RuntimeException {
+    public StorageException(SQLException cause) {
+      super(cause.getMessage(), cause);
+    }
   }
 }
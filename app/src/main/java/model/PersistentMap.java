@@ -0,0 +1,412 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable map whose updates return a new map sharing all but the changed
+ * path with the old one, so keeping every version costs O(log n) per change
+ * instead of a copy of the map.
+ *
+ * <p>
+ * The map is a hash array mapped trie: every level of the tree consumes five
+ * bits of the key's hash and keeps only the children that exist, packed into
+ * an array indexed by a 32-bit bitmap. A lookup visits at most seven levels,
+ * in practice log32(n), and a put or removal copies the small arrays of the
+ * nodes on that path. Keys whose hashes are equal share a collision node.
+ * Values must not be null; the iteration order is the order of the hashes.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class PersistentMap<K, V> {
+  private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0);
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private final Node root;
+  private final int size;
+
+  private PersistentMap(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Returns the empty map.
+   *
+   * @param <K> the type of the keys
+   * @param <V> the type of the values
+   * @return the empty map
+   */
+  @SuppressWarnings("unchecked")
+  public static <K, V> PersistentMap<K, V> empty() {
+    return (PersistentMap<K, V>) EMPTY;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the value of a key.
+   *
+   * @param key the key
+   * @return the value, or null if the map does not contain the key
+   */
+  @SuppressWarnings("unchecked")
+  public V get(K key) {
+    return (V) root.get(0, hash(key), key);
+  }
+
+  /**
+   * Returns a map with the key mapped to the value, leaving this one as it is.
+   *
+   * @param key   the key
+   * @param value the value
+   * @return the new map, or this one if the key already had the value
+   */
+  public PersistentMap<K, V> put(K key, V value) {
+    Change change = new Change();
+    Node changed = root.put(0, hash(key), key, value, change);
+    return changed == root ? this : new PersistentMap<>(changed, change.added ? size + 1 : size);
+  }
+
+  /**
+   * Returns a map without the key, leaving this one as it is.
+   *
+   * @param key the key
+   * @return the new map, or this one if it does not contain the key
+   */
+  public PersistentMap<K, V> remove(K key) {
+    Node changed = root.remove(0, hash(key), key);
+    if (changed == root) {
+      return this;
+    }
+    return new PersistentMap<>(changed != null ? changed : BitmapNode.EMPTY, size - 1);
+  }
+
+  /**
+   * Passes every entry to the action.
+   *
+   * @param action the action
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    root.forEach((BiConsumer<Object, Object>) action);
+  }
+
+  /**
+   * Reports how this map differs from an older version of it: every key added,
+   * removed or mapped to another value, with the value before and after.
+   * Subtrees the two versions share are skipped, so the cost grows with the
+   * number of changes between them rather than with their size. Values are
+   * compared by identity.
+   *
+   * @param older   the older version
+   * @param changes the receiver of the differences
+   */
+  @SuppressWarnings("unchecked")
+  public void diff(PersistentMap<K, V> older, Changes<? super K, ? super V> changes) {
+    diff(older.root, root, (Changes<Object, Object>) changes);
+  }
+
+  private static void diff(Node older, Node newer, Changes<Object, Object> changes) {
+    if (older == newer) {
+      return;
+    }
+    if (!(older instanceof BitmapNode) || !(newer instanceof BitmapNode)) {
+      diffEntries(null, older, null, newer, changes);
+      return;
+    }
+    BitmapNode before = (BitmapNode) older;
+    BitmapNode after = (BitmapNode) newer;
+    for (int bits = before.bitmap | after.bitmap; bits != 0; bits &= bits - 1) {
+      int bit = Integer.lowestOneBit(bits);
+      int i = 2 * Integer.bitCount(before.bitmap & (bit - 1));
+      int j = 2 * Integer.bitCount(after.bitmap & (bit - 1));
+      if ((before.bitmap & bit) == 0) {
+        forEachIn(after.slots[j], after.slots[j + 1], (key, value) -> changes.accept(key, null, value));
+      } else if ((after.bitmap & bit) == 0) {
+        forEachIn(before.slots[i], before.slots[i + 1], (key, value) -> changes.accept(key, value, null));
+      } else if (before.slots[i] == null && after.slots[j] == null) {
+        diff((Node) before.slots[i + 1], (Node) after.slots[j + 1], changes);
+      } else {
+        diffEntries(before.slots[i], before.slots[i + 1], after.slots[j], after.slots[j + 1], changes);
+      }
+    }
+  }
+
+  /**
+   * Compares two slots entry by entry, for slots that are not both children.
+   */
+  private static void diffEntries(Object olderKey, Object olderValue, Object newerKey, Object newerValue,
+      Changes<Object, Object> changes) {
+    Map<Object, Object> before = new HashMap<>();
+    forEachIn(olderKey, olderValue, before::put);
+    forEachIn(newerKey, newerValue, (key, value) -> {
+      Object old = before.remove(key);
+      if (old != value) {
+        changes.accept(key, old, value);
+      }
+    });
+    before.forEach((key, value) -> changes.accept(key, value, null));
+  }
+
+  /**
+   * Passes the entries of a slot to the action: the entry itself, or those of
+   * the child if the key is null.
+   */
+  private static void forEachIn(Object key, Object value, BiConsumer<Object, Object> action) {
+    if (key == null) {
+      ((Node) value).forEach(action);
+    } else {
+      action.accept(key, value);
+    }
+  }
+
+  /**
+   * Spreads the bits of the key's hash, so keys differing in few bits still
+   * part at the top of the trie.
+   */
+  private static int hash(Object key) {
+    int hash = key.hashCode() * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Receives the differences between two versions of a map.
+   *
+   * @param <K> the type of the keys
+   * @param <V> the type of the values
+   */
+  public interface Changes<K, V> {
+    /**
+     * Receives one key whose value differs.
+     *
+     * @param key    the key
+     * @param before the value in the older version, or null if it was added
+     * @param after  the value in the newer version, or null if it was removed
+     */
+    void accept(K key, V before, V after);
+  }
+
+  /**
+   * Tells a put whether it added a key rather than replacing a value.
+   */
+  private static final class Change {
+    private boolean added;
+  }
+
+  /**
+   * Immutable trie node.
+   */
+  private abstract static class Node {
+    abstract Object get(int shift, int hash, Object key);
+
+    abstract Node put(int shift, int hash, Object key, Object value, Change change);
+
+    /**
+     * Returns the node without the key, null if that leaves it empty, or this
+     * node if it does not contain the key.
+     */
+    abstract Node remove(int shift, int hash, Object key);
+
+    abstract void forEach(BiConsumer<Object, Object> action);
+  }
+
+  /**
+   * Node with up to 32 slots, each either a key and its value or, with a null
+   * key, a child node.
+   */
+  private static final class BitmapNode extends Node {
+    private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+    private final int bitmap;
+    private final Object[] slots;
+
+    private BitmapNode(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+
+    @Override
+    Object get(int shift, int hash, Object key) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+      Object slotKey = slots[index];
+      if (slotKey == null) {
+        return ((Node) slots[index + 1]).get(shift + BITS, hash, key);
+      }
+      return key.equals(slotKey) ? slots[index + 1] : null;
+    }
+
+    @Override
+    Node put(int shift, int hash, Object key, Object value, Change change) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+      if ((bitmap & bit) == 0) {
+        Object[] copy = new Object[slots.length + 2];
+        System.arraycopy(slots, 0, copy, 0, index);
+        copy[index] = key;
+        copy[index + 1] = value;
+        System.arraycopy(slots, index, copy, index + 2, slots.length - index);
+        change.added = true;
+        return new BitmapNode(bitmap | bit, copy);
+      }
+      Object slotKey = slots[index];
+      Object slotValue = slots[index + 1];
+      if (slotKey == null) {
+        Node child = ((Node) slotValue).put(shift + BITS, hash, key, value, change);
+        return child == slotValue ? this : with(index + 1, child);
+      }
+      if (key.equals(slotKey)) {
+        return value == slotValue ? this : with(index + 1, value);
+      }
+      change.added = true;
+      Node child = pair(shift + BITS, hash(slotKey), slotKey, slotValue, hash, key, value);
+      Object[] copy = slots.clone();
+      copy[index] = null;
+      copy[index + 1] = child;
+      return new BitmapNode(bitmap, copy);
+    }
+
+    @Override
+    Node remove(int shift, int hash, Object key) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+      Object slotKey = slots[index];
+      if (slotKey == null) {
+        Node child = (Node) slots[index + 1];
+        Node changed = child.remove(shift + BITS, hash, key);
+        if (changed == child) {
+          return this;
+        }
+        return changed != null ? with(index + 1, changed) : without(bit, index);
+      }
+      return key.equals(slotKey) ? without(bit, index) : this;
+    }
+
+    @Override
+    void forEach(BiConsumer<Object, Object> action) {
+      for (int i = 0; i < slots.length; i += 2) {
+        if (slots[i] == null) {
+          ((Node) slots[i + 1]).forEach(action);
+        } else {
+          action.accept(slots[i], slots[i + 1]);
+        }
+      }
+    }
+
+    private BitmapNode with(int index, Object value) {
+      Object[] copy = slots.clone();
+      copy[index] = value;
+      return new BitmapNode(bitmap, copy);
+    }
+
+    private BitmapNode without(int bit, int index) {
+      if (bitmap == bit) {
+        return null;
+      }
+      Object[] copy = new Object[slots.length - 2];
+      System.arraycopy(slots, 0, copy, 0, index);
+      System.arraycopy(slots, index + 2, copy, index, slots.length - index - 2);
+      return new BitmapNode(bitmap ^ bit, copy);
+    }
+
+    /**
+     * Creates the node holding two keys that met in one slot.
+     */
+    private static Node pair(int shift, int firstHash, Object firstKey, Object firstValue, int secondHash,
+        Object secondKey, Object secondValue) {
+      if (firstHash == secondHash) {
+        return new CollisionNode(firstHash, new Object[] {firstKey, firstValue, secondKey, secondValue});
+      }
+      Change ignored = new Change();
+      return EMPTY.put(shift, firstHash, firstKey, firstValue, ignored)
+          .put(shift, secondHash, secondKey, secondValue, ignored);
+    }
+  }
+
+  /**
+   * Node of the keys sharing one full hash, searched linearly.
+   */
+  private static final class CollisionNode extends Node {
+    private final int hash;
+    private final Object[] entries;
+
+    private CollisionNode(int hash, Object[] entries) {
+      this.hash = hash;
+      this.entries = entries;
+    }
+
+    @Override
+    Object get(int shift, int hash, Object key) {
+      int index = indexOf(key);
+      return index >= 0 ? entries[index + 1] : null;
+    }
+
+    @Override
+    Node put(int shift, int hash, Object key, Object value, Change change) {
+      if (hash != this.hash) {
+        // Another hash reached this slot: nest the collisions one level down
+        int bit = 1 << ((this.hash >>> shift) & MASK);
+        return new BitmapNode(bit, new Object[] {null, this}).put(shift, hash, key, value, change);
+      }
+      int index = indexOf(key);
+      if (index >= 0) {
+        if (entries[index + 1] == value) {
+          return this;
+        }
+        Object[] copy = entries.clone();
+        copy[index + 1] = value;
+        return new CollisionNode(hash, copy);
+      }
+      Object[] copy = new Object[entries.length + 2];
+      System.arraycopy(entries, 0, copy, 0, entries.length);
+      copy[entries.length] = key;
+      copy[entries.length + 1] = value;
+      change.added = true;
+      return new CollisionNode(hash, copy);
+    }
+
+    @Override
+    Node remove(int shift, int hash, Object key) {
+      int index = indexOf(key);
+      if (index < 0) {
+        return this;
+      }
+      if (entries.length == 2) {
+        return null;
+      }
+      Object[] copy = new Object[entries.length - 2];
+      System.arraycopy(entries, 0, copy, 0, index);
+      System.arraycopy(entries, index + 2, copy, index, entries.length - index - 2);
+      return new CollisionNode(hash, copy);
+    }
+
+    @Override
+    void forEach(BiConsumer<Object, Object> action) {
+      for (int i = 0; i < entries.length; i += 2) {
+        action.accept(entries[i], entries[i + 1]);
+      }
+    }
+
+    private int indexOf(Object key) {
+      for (int i = 0; i < entries.length; i += 2) {
+        if (key.equals(entries[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+}
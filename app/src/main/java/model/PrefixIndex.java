@@ -0,0 +1,107 @@
+package model;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Sorted index answering case-insensitive prefix queries over several keys of
+ * each value, e.g. the name, email, phone and ID of a member.
+ *
+ * <p>
+ * Every key is stored as "key\0id" in one sorted map, so a query is a range
+ * scan from the prefix that stops after the requested number of distinct
+ * values. The keys a value was indexed under are remembered, so removal works
+ * even if the value has changed since.
+ * </p>
+ */
+final class PrefixIndex<T> {
+  private static final char SEPARATOR = '\0';
+
+  private final Function<T, String> idOf;
+  private final NavigableMap<String, T> entries = new TreeMap<>();
+  private final Map<String, String[]> keysById = new HashMap<>();
+
+  PrefixIndex(Function<T, String> idOf) {
+    this.idOf = idOf;
+  }
+
+  /**
+   * Indexes the value under the given keys, replacing any previous keys.
+   */
+  void add(T value, String... keys) {
+    remove(value);
+    String id = idOf.apply(value);
+    String[] stored = new String[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      stored[i] = normalize(keys[i]) + SEPARATOR + id;
+      entries.put(stored[i], value);
+    }
+    keysById.put(id, stored);
+  }
+
+  /**
+   * Indexes many values at once. The keys are sorted first, so the sorted map
+   * is filled in order, which is much faster than inserting them at random.
+   */
+  void addAll(List<T> values, Function<? super T, String[]> keysOf) {
+    List<Map.Entry<String, T>> pending = new ArrayList<>(values.size() * 4);
+    for (T value : values) {
+      remove(value);
+      String id = idOf.apply(value);
+      String[] keys = keysOf.apply(value);
+      String[] stored = new String[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+        stored[i] = normalize(keys[i]) + SEPARATOR + id;
+        pending.add(new AbstractMap.SimpleImmutableEntry<>(stored[i], value));
+      }
+      keysById.put(id, stored);
+    }
+    pending.sort(Map.Entry.comparingByKey());
+    for (Map.Entry<String, T> entry : pending) {
+      entries.put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  void remove(T value) {
+    String[] stored = keysById.remove(idOf.apply(value));
+    if (stored != null) {
+      for (String key : stored) {
+        entries.remove(key);
+      }
+    }
+  }
+
+  void clear() {
+    entries.clear();
+    keysById.clear();
+  }
+
+  /**
+   * Returns up to limit distinct values with a key starting with the prefix, in
+   * key order.
+   */
+  List<T> search(String prefix, int limit) {
+    String from = normalize(prefix);
+    Set<T> matches = new LinkedHashSet<>();
+    for (Map.Entry<String, T> entry : entries.tailMap(from, true).entrySet()) {
+      if (matches.size() >= limit || !entry.getKey().startsWith(from)) {
+        break;
+      }
+      matches.add(entry.getValue());
+    }
+    return new ArrayList<>(matches);
+  }
+
+  private static String normalize(String key) {
+    return key == null ? "" : key.trim().toLowerCase(Locale.ROOT);
+  }
+}
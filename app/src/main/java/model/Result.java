@@ -0,0 +1,79 @@
+package model;
+
+/**
+ * Outcome of a non-throwing model operation: either a value or an error code.
+ *
+ * @param <T> the type of the value
+ */
+public final class Result<T> {
+  private final T value;
+  private final ModelError error;
+
+  private Result(T value, ModelError error) {
+    this.value = value;
+    this.error = error;
+  }
+
+  /**
+   * Creates a successful result.
+   *
+   * @param <T>   the type of the value
+   * @param value the value
+   * @return the result
+   */
+  public static <T> Result<T> ok(T value) {
+    return new Result<>(value, null);
+  }
+
+  /**
+   * Creates a failed result.
+   *
+   * @param <T>   the type of the value
+   * @param error the reason of the failure
+   * @return the result
+   */
+  public static <T> Result<T> failure(ModelError error) {
+    return new Result<>(null, error);
+  }
+
+  /**
+   * Tells whether the operation succeeded.
+   *
+   * @return true if there is a value
+   */
+  public boolean isOk() {
+    return error == null;
+  }
+
+  /**
+   * Returns the value of a successful result.
+   *
+   * @return the value, or null if the operation failed
+   */
+  public T getValue() {
+    return value;
+  }
+
+  /**
+   * Returns the reason of a failed result.
+   *
+   * @return the error, or null if the operation succeeded
+   */
+  public ModelError getError() {
+    return error;
+  }
+
+  /**
+   * Returns the value or throws the exception matching the error, for callers
+   * on the throwing path.
+   *
+   * @return the value
+   * @throws ModelExceptions.ModelException if the operation failed
+   */
+  public T orThrow() {
+    if (error != null) {
+      throw error.toException();
+    }
+    return value;
+  }
+}
@@ -0,0 +1,339 @@
+package model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded cache evicting by segmented LRU, safe to share between threads.
+ *
+ * <p>
+ * Entries enter a probation segment and move to a protected segment, holding
+ * up to 80% of the weight, when they are hit again; the least recently used
+ * protected entry falls back to probation when the segment is full, and
+ * eviction takes the least recently used probation entry first. A burst of
+ * keys read once, e.g. a scan, so only evicts other keys read once, not the
+ * frequently read ones. Every entry has a weight given by a function of its
+ * value, and the cache keeps the sum of the weights under its maximum.
+ * </p>
+ *
+ * <p>
+ * The keys are spread over 16 shards by hash, each with its own lock and an
+ * equal share of the maximum weight. {@link #get(Object, Function)} loads a
+ * missing value without holding the lock, so a slow load blocks no other key;
+ * two threads missing the same key may both load it. A load racing with
+ * {@link #invalidate(Object)} of its shard is returned but not cached, so it
+ * cannot bring back a value the invalidation removed.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class SegmentedLruCache<K, V> {
+  private static final int SHARDS = 16;
+
+  private final Shard<K, V>[] shards;
+  private final ToIntFunction<? super V> weigher;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxWeight the maximum sum of the weights of the entries
+   * @param weigher   the weight of a value, at least 1
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public SegmentedLruCache(long maxWeight, ToIntFunction<? super V> weigher) {
+    this.weigher = weigher;
+    this.shards = new Shard[SHARDS];
+    for (int i = 0; i < SHARDS; i++) {
+      shards[i] = new Shard<>(Math.max(1, maxWeight / SHARDS));
+    }
+  }
+
+  /**
+   * Returns the value of a key, loading and caching it if missing.
+   *
+   * @param key    the key
+   * @param loader loads the value of a missing key, returning null if there
+   *               is none; nulls are not cached
+   * @return the value, or null if the loader found none
+   */
+  public V get(K key, Function<? super K, ? extends V> loader) {
+    Shard<K, V> shard = shard(key);
+    long version;
+    synchronized (shard) {
+      V value = shard.get(key);
+      if (value != null) {
+        hits.increment();
+        return value;
+      }
+      version = shard.invalidations;
+    }
+    misses.increment();
+    V loaded = loader.apply(key);
+    if (loaded != null) {
+      synchronized (shard) {
+        if (shard.invalidations == version) {
+          evictions.add(shard.put(key, loaded, weigher.applyAsInt(loaded)));
+        }
+      }
+    }
+    return loaded;
+  }
+
+  /**
+   * Returns the cached value of a key without loading it. Counts as a hit or
+   * a miss like {@link #get(Object, Function)}.
+   *
+   * @param key the key
+   * @return the value, or null if it is not cached
+   */
+  public V getIfPresent(K key) {
+    Shard<K, V> shard = shard(key);
+    V value;
+    synchronized (shard) {
+      value = shard.get(key);
+    }
+    (value != null ? hits : misses).increment();
+    return value;
+  }
+
+  /**
+   * Returns the cached value of a key without counting a hit or a miss and
+   * without promoting it out of probation, e.g. to reuse the object of a row
+   * a query returned.
+   *
+   * @param key the key
+   * @return the value, or null if it is not cached
+   */
+  public V peek(K key) {
+    Shard<K, V> shard = shard(key);
+    synchronized (shard) {
+      return shard.peek(key);
+    }
+  }
+
+  /**
+   * Caches the value of a key, e.g. after writing it through to the storage.
+   *
+   * @param key   the key
+   * @param value the value, not null
+   */
+  public void put(K key, V value) {
+    Shard<K, V> shard = shard(key);
+    int weight = weigher.applyAsInt(value);
+    synchronized (shard) {
+      evictions.add(shard.put(key, value, weight));
+    }
+  }
+
+  /**
+   * Removes a key, e.g. after deleting it from the storage.
+   *
+   * @param key the key
+   */
+  public void invalidate(K key) {
+    Shard<K, V> shard = shard(key);
+    synchronized (shard) {
+      shard.remove(key);
+      shard.invalidations++;
+    }
+  }
+
+  /**
+   * Returns the number of cached entries.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    int size = 0;
+    for (Shard<K, V> shard : shards) {
+      synchronized (shard) {
+        size += shard.probation.size() + shard.protectedEntries.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the sum of the weights of the cached entries.
+   *
+   * @return the weight
+   */
+  public long weight() {
+    long weight = 0;
+    for (Shard<K, V> shard : shards) {
+      synchronized (shard) {
+        weight += shard.probationWeight + shard.protectedWeight;
+      }
+    }
+    return weight;
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the share of the lookups that were hits.
+   *
+   * @return the hit rate between 0 and 1, or 0 before the first lookup
+   */
+  public double hitRate() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%,d entries, %.1f%% hits, %,d misses, %,d evictions", size(), 100 * hitRate(),
+        missCount(), evictionCount());
+  }
+
+  private Shard<K, V> shard(K key) {
+    int hash = key.hashCode() * 0x9E3779B9;
+    return shards[(hash ^ (hash >>> 16)) & (SHARDS - 1)];
+  }
+
+  /**
+   * A cached value and its weight.
+   */
+  private static final class Entry<V> {
+    private final V value;
+    private final int weight;
+
+    private Entry(V value, int weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * One shard of the cache, with its two segments in least recently used
+   * first order. Guarded by its own monitor.
+   */
+  private static final class Shard<K, V> {
+    private final long maxWeight;
+    private final long maxProtectedWeight;
+    private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Entry<V>> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long probationWeight;
+    private long protectedWeight;
+    private long invalidations;
+
+    private Shard(long maxWeight) {
+      this.maxWeight = maxWeight;
+      this.maxProtectedWeight = maxWeight * 4 / 5;
+    }
+
+    private V get(K key) {
+      Entry<V> entry = protectedEntries.get(key); // Moves it to the most recently used end
+      if (entry != null) {
+        return entry.value;
+      }
+      entry = probation.remove(key);
+      if (entry == null) {
+        return null;
+      }
+      probationWeight -= entry.weight;
+      protect(key, entry);
+      return entry.value;
+    }
+
+    private V peek(K key) {
+      Entry<V> entry = probation.get(key);
+      if (entry == null) {
+        entry = protectedEntries.get(key);
+      }
+      return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Adds or replaces an entry and evicts until the shard fits.
+     *
+     * @return the number of entries evicted
+     */
+    private int put(K key, V value, int weight) {
+      Entry<V> entry = new Entry<>(value, weight);
+      Entry<V> old = protectedEntries.remove(key);
+      if (old != null) {
+        protectedWeight -= old.weight;
+        protect(key, entry);
+      } else {
+        old = probation.remove(key);
+        if (old != null) {
+          probationWeight -= old.weight;
+        }
+        probation.put(key, entry);
+        probationWeight += weight;
+      }
+      int evicted = 0;
+      while (probationWeight + protectedWeight > maxWeight) {
+        if (!evictEldest(probation.isEmpty() ? protectedEntries : probation)) {
+          break;
+        }
+        evicted++;
+      }
+      return evicted;
+    }
+
+    private void remove(K key) {
+      Entry<V> entry = protectedEntries.remove(key);
+      if (entry != null) {
+        protectedWeight -= entry.weight;
+        return;
+      }
+      entry = probation.remove(key);
+      if (entry != null) {
+        probationWeight -= entry.weight;
+      }
+    }
+
+    /**
+     * Moves an entry to the protected segment, demoting its least recently
+     * used entries to probation while it is over its share.
+     */
+    private void protect(K key, Entry<V> entry) {
+      protectedEntries.put(key, entry);
+      protectedWeight += entry.weight;
+      Iterator<Map.Entry<K, Entry<V>>> eldest = protectedEntries.entrySet().iterator();
+      while (protectedWeight > maxProtectedWeight && protectedEntries.size() > 1) {
+        Map.Entry<K, Entry<V>> demoted = eldest.next();
+        eldest.remove();
+        protectedWeight -= demoted.getValue().weight;
+        probation.put(demoted.getKey(), demoted.getValue());
+        probationWeight += demoted.getValue().weight;
+      }
+    }
+
+    private boolean evictEldest(LinkedHashMap<K, Entry<V>> segment) {
+      Iterator<Map.Entry<K, Entry<V>>> eldest = segment.entrySet().iterator();
+      if (!eldest.hasNext()) {
+        return false;
+      }
+      Entry<V> entry = eldest.next().getValue();
+      eldest.remove();
+      if (segment == probation) {
+        probationWeight -= entry.weight;
+      } else {
+        protectedWeight -= entry.weight;
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,262 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Ends the contracts that expired by a new date and charges their borrowers,
+ * in parallel.
+ *
+ * <p>
+ * The expired contracts are grouped by borrower, so each balance is updated by
+ * exactly one task and no locking is needed per member. Each borrower is looked
+ * up in the repository once, before forking, so the tasks never wait for the
+ * lock of the repository. Groups are split into fork-join tasks, and the
+ * outcomes are added up into one summary instead of being reported contract by
+ * contract. Borrowers are charged on the members in the repository, not on the
+ * copies held by the contracts. Contracts that
+ * ended long enough ago are then moved to the archive of the repository, if it
+ * has one.
+ * </p>
+ */
+public final class Settlement {
+  private static final int GROUPS_PER_TASK = 256;
+
+  private long expired;
+  private long charged;
+  private long negativeAmounts;
+  private long overdrawnBorrowers;
+  private long missingBorrowers;
+  private long archived;
+
+  private Settlement() {
+  }
+
+  /**
+   * Ends every active contract that expired before the date and charges each
+   * borrower the cost of the item, then archives the contracts past the
+   * archive horizon.
+   *
+   * @param contractRepository the contracts to settle
+   * @param memberRepository   the borrowers to charge
+   * @param date               the new current date
+   * @param pool               the pool running the charging tasks
+   * @return the outcome
+   */
+  public static Settlement settle(ContractRepositoryInterface contractRepository,
+      MemberRepositoryInterface memberRepository, LocalDate date, ForkJoinPool pool) {
+    List<Charge> charges = group(memberRepository, contractRepository.expireContracts(date));
+    Settlement settlement = pool.invoke(new ChargeTask(charges, 0, charges.size()));
+    settlement.archived = contractRepository.archiveContracts();
+    return settlement;
+  }
+
+  /**
+   * Ends the active contracts of one partition of the data that expired
+   * before the date and archives the contracts past the archive horizon,
+   * leaving the charging to {@link #charge(MemberRepositoryInterface, List)}
+   * on the partitions holding the borrowers.
+   *
+   * @param contractRepository the contracts of the partition
+   * @param date               the new current date
+   * @param expired            receives the contracts ended
+   * @return the outcome, counting the archived contracts only
+   */
+  public static Settlement expire(ContractRepositoryInterface contractRepository, LocalDate date,
+      List<Contract> expired) {
+    expired.addAll(contractRepository.expireContracts(date));
+    Settlement settlement = new Settlement();
+    settlement.archived = contractRepository.archiveContracts();
+    return settlement;
+  }
+
+  /**
+   * Charges the borrowers of expired contracts on the calling thread, e.g.
+   * the thread owning the partition of the data that holds them.
+   *
+   * @param memberRepository the borrowers to charge
+   * @param expired          the contracts ended
+   * @return the outcome
+   */
+  public static Settlement charge(MemberRepositoryInterface memberRepository, List<Contract> expired) {
+    List<Charge> charges = group(memberRepository, expired);
+    return chargeRange(charges, 0, charges.size());
+  }
+
+  /**
+   * Recreates the outcome of a settlement reported by another process.
+   *
+   * @param expired            the number of contracts ended
+   * @param charged            the credits deducted
+   * @param negativeAmounts    the contracts not charged for a negative cost
+   * @param overdrawnBorrowers the borrowers left with a negative balance
+   * @param missingBorrowers   the contracts without a borrower
+   * @param archived           the contracts archived
+   * @return the outcome
+   */
+  public static Settlement of(long expired, long charged, long negativeAmounts, long overdrawnBorrowers,
+      long missingBorrowers, long archived) {
+    Settlement settlement = new Settlement();
+    settlement.expired = expired;
+    settlement.charged = charged;
+    settlement.negativeAmounts = negativeAmounts;
+    settlement.overdrawnBorrowers = overdrawnBorrowers;
+    settlement.missingBorrowers = missingBorrowers;
+    settlement.archived = archived;
+    return settlement;
+  }
+
+  /**
+   * Adds the outcome of another part of the same settlement to this one.
+   *
+   * @param other the other outcome
+   * @return this outcome
+   */
+  public Settlement add(Settlement other) {
+    expired += other.expired;
+    charged += other.charged;
+    negativeAmounts += other.negativeAmounts;
+    overdrawnBorrowers += other.overdrawnBorrowers;
+    missingBorrowers += other.missingBorrowers;
+    archived += other.archived;
+    return this;
+  }
+
+  /**
+   * Groups the contracts by borrower, looking each borrower up once on the
+   * calling thread.
+   */
+  private static List<Charge> group(MemberRepositoryInterface memberRepository, List<Contract> expired) {
+    Map<String, Charge> byBorrower = new HashMap<>();
+    for (Contract contract : expired) {
+      byBorrower.computeIfAbsent(contract.getBorrowerId(), id -> new Charge(memberRepository.getMemberById(id)))
+          .contracts.add(contract);
+    }
+    return new ArrayList<>(byBorrower.values());
+  }
+
+  private static Settlement chargeRange(List<Charge> charges, int from, int to) {
+    Settlement result = new Settlement();
+    for (int i = from; i < to; i++) {
+      Charge charge = charges.get(i);
+      result.expired += charge.contracts.size();
+      Member borrower = charge.borrower;
+      if (borrower == null) {
+        result.missingBorrowers += charge.contracts.size();
+        continue;
+      }
+      for (Contract contract : charge.contracts) {
+        try {
+          borrower.deductCredits(contract.getItemCost());
+          result.charged += contract.getItemCost();
+        } catch (ModelExceptions.NegativeAmountException e) {
+          result.negativeAmounts++;
+        }
+      }
+      if (borrower.getCredits() < 0) {
+        result.overdrawnBorrowers++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of contracts ended.
+   *
+   * @return the number of expired contracts
+   */
+  public long getExpired() {
+    return expired;
+  }
+
+  /**
+   * Returns the credits deducted from all borrowers together.
+   *
+   * @return the total charged
+   */
+  public long getCharged() {
+    return charged;
+  }
+
+  /**
+   * Returns the number of contracts not charged because of a negative cost.
+   *
+   * @return the number of negative amounts
+   */
+  public long getNegativeAmounts() {
+    return negativeAmounts;
+  }
+
+  /**
+   * Returns the number of borrowers left with a negative balance, i.e. who did
+   * not have enough credits for their contracts.
+   *
+   * @return the number of overdrawn borrowers
+   */
+  public long getOverdrawnBorrowers() {
+    return overdrawnBorrowers;
+  }
+
+  /**
+   * Returns the number of contracts whose borrower is no longer a member, which
+   * were ended without charging anyone.
+   *
+   * @return the number of contracts without a borrower
+   */
+  public long getMissingBorrowers() {
+    return missingBorrowers;
+  }
+
+  /**
+   * Returns the number of ended contracts moved to the archive afterwards.
+   *
+   * @return the number of archived contracts
+   */
+  public long getArchived() {
+    return archived;
+  }
+
+  /**
+   * The expired contracts of one borrower, and the borrower found for them.
+   */
+  private static final class Charge {
+    private final Member borrower;
+    private final List<Contract> contracts = new ArrayList<>(2);
+
+    private Charge(Member borrower) {
+      this.borrower = borrower;
+    }
+  }
+
+  /**
+   * Charges the borrowers of a range of groups, splitting large ranges.
+   */
+  private static final class ChargeTask extends RecursiveTask<Settlement> {
+    private final transient List<Charge> charges;
+    private final int from;
+    private final int to;
+
+    private ChargeTask(List<Charge> charges, int from, int to) {
+      this.charges = charges;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Settlement compute() {
+      if (to - from > GROUPS_PER_TASK) {
+        int middle = (from + to) >>> 1;
+        ChargeTask left = new ChargeTask(charges, from, middle);
+        left.fork();
+        Settlement right = new ChargeTask(charges, middle, to).compute();
+        return left.join().add(right);
+      }
+      return chargeRange(charges, from, to);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package view;
+
+import java.io.PrintStream;
+import java.time.Instant;
+
+/**
+ * View class printing decoded audit records, one per line.
+ */
+public class AuditView {
+  private final PrintStream out;
+
+  /**
+   * Constructs an AuditView writing to the given stream.
+   *
+   * @param out the destination of the records
+   */
+  public AuditView(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Displays one audit record.
+   *
+   * @param sequence the sequence number of the change
+   * @param time     when the change was recorded
+   * @param type     the kind of change
+   * @param details  the IDs and numbers of the change
+   */
+  public void displayRecord(long sequence, Instant time, String type, String details) {
+    out.printf("%10d %s %-18s %s%n", sequence, time, type, details);
+  }
+
+  /**
+   * Displays that a file ends with an incomplete record.
+   *
+   * @param file  the audit file
+   * @param bytes the bytes of the incomplete record
+   */
+  public void displayPartialRecord(String file, int bytes) {
+    out.printf("%s ends with a partial record of %d bytes, skipped%n", file, bytes);
+  }
+
+  /**
+   * Displays the number of records read.
+   *
+   * @param records the records read from all files
+   */
+  public void displayTotal(long records) {
+    out.printf("%d records%n", records);
+    out.flush();
+  }
+}
@@ -0,0 +1,68 @@
+package view;
+
+import java.io.PrintStream;
+
+/**
+ * View class reporting the outcome of a batch run.
+ */
+public class BatchView {
+  private final PrintStream out;
+
+  /**
+   * Constructs a BatchView writing to the given stream.
+   *
+   * @param out the destination of the report
+   */
+  public BatchView(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Displays a command that could not be executed.
+   *
+   * @param lineNumber the line of the command in the script
+   * @param line       the command as written
+   * @param message    the reason it failed
+   */
+  public void displayCommandError(long lineNumber, String line, String message) {
+    out.println("Line " + lineNumber + ": " + message + " [" + line + "]");
+  }
+
+  /**
+   * Displays the answer to an availability query.
+   *
+   * @param itemId    the item asked about
+   * @param start     the first day asked about, as written
+   * @param end       the last day asked about, as written
+   * @param available whether the item is free on those days
+   */
+  public void displayAvailability(String itemId, String start, String end, boolean available) {
+    out.println("available " + itemId + " " + start + " " + end + ": " + (available ? "yes" : "no"));
+  }
+
+  /**
+   * Displays the throughput of one command type.
+   *
+   * @param command  the command keyword
+   * @param count    how many times it ran
+   * @param failures how many of those runs failed
+   * @param nanos    the total time spent executing it
+   */
+  public void displayThroughput(String command, long count, long failures, long nanos) {
+    out.printf("%-16s %10d ops %8d failed %12.0f ops/s%n", command, count, failures,
+        count / Math.max(nanos / 1e9, 1e-9));
+  }
+
+  /**
+   * Displays the totals of the run.
+   *
+   * @param lines  the number of lines read
+   * @param errors the number of lines that failed
+   * @param nanos  the wall-clock time of the run
+   */
+  public void displaySummary(long lines, long errors, long nanos) {
+    out.printf("%d lines, %d errors in %.3f s (%.0f lines/s)%n", lines, errors, nanos / 1e9,
+        lines / Math.max(nanos / 1e9, 1e-9));
+    out.flush();
+  }
+}
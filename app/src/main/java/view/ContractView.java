@@ -1,5 +1,6 @@
 package view;
 
+import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
@@ -7,42 +8,58 @@ import java.util.Scanner;
 import model.Contract;
 import model.Item;
 import model.Member;
+import model.Settlement;
 
 /**
  * View class for managing contract-related user interactions.
  */
 public class ContractView implements ContractViewInterface {
   private final Scanner scanner;
+  private final PrintStream out;
+  private final PagedRenderer renderer;
 
   /**
    * Constructs a ContractView with a new Scanner instance.
    */
   public ContractView() {
-    this.scanner = new Scanner(System.in, StandardCharsets.UTF_8.name());
+    this(new Scanner(System.in, StandardCharsets.UTF_8.name()), System.out);
+  }
+
+  /**
+   * Constructs a ContractView reading from the given scanner and writing to the
+   * given stream.
+   *
+   * @param scanner the source of user input
+   * @param out     the destination of all output
+   */
+  public ContractView(Scanner scanner, PrintStream out) {
+    this.scanner = scanner;
+    this.out = out;
+    this.renderer = new PagedRenderer(out);
   }
 
   @Override
   public void displayContractDetails(Contract contract) {
     if (contract != null) {
-      System.out.println("Contract ID: " + contract.getId());
-      System.out.println("Item Name: " + contract.getItem().getName());
-      System.out.println("Borrower Name: " + contract.getBorrower().getName());
-      System.out.println("Start Date: " + contract.getStartDate());
-      System.out.println("End Date: " + contract.getEndDate());
-      System.out.println("Active: " + contract.isActive());
+      out.println("Contract ID: " + contract.getId());
+      out.println("Item Name: " + contract.getItemName());
+      out.println("Borrower Name: " + contract.getBorrowerName());
+      out.println("Start Date: " + contract.getStartDate());
+      out.println("End Date: " + contract.getEndDate());
+      out.println("Active: " + contract.isActive());
     } else {
-      System.out.println("Contract not found.");
+      out.println("Contract not found.");
     }
   }
 
   @Override
   public String[] getContractInput() {
-    System.out.println("Enter Contract Details:");
-    System.out.print("ID: ");
+    out.println("Enter Contract Details:");
+    out.print("ID: ");
     String id = scanner.nextLine();
-    System.out.print("Start Date (YYYY-MM-DD): ");
+    out.print("Start Date (YYYY-MM-DD): ");
     String startDate = scanner.nextLine();
-    System.out.print("End Date (YYYY-MM-DD): ");
+    out.print("End Date (YYYY-MM-DD): ");
     String endDate = scanner.nextLine();
     return new String[] { id, startDate, endDate };
   }
@@ -57,88 +74,139 @@ public class ContractView implements ContractViewInterface {
     return getInput("Enter the number of the item: ");
   }
 
+  @Override
+  public String getItemSearchInput() {
+    return getInput("Search item by words in its name or ID (Enter to list): ");
+  }
+
+  @Override
+  public String getBorrowerSearchInput() {
+    return getInput("Search borrower by name, email, phone or ID (Enter to list): ");
+  }
+
   @Override
   public String getContractIdInput() {
-    System.out.print("Enter Contract ID: ");
+    out.print("Enter Contract ID: ");
     return scanner.nextLine();
   }
 
   @Override
   public void displayAllContracts(Iterable<Contract> contracts) {
     for (Contract contract : contracts) {
-      displayContractDetails(contract);
-      System.out.println("-----");
+      appendContractRow(contract);
+      renderer.endRow();
+    }
+    renderer.flush();
+  }
+
+  @Override
+  public void displayContractPage(List<Contract> contracts, int firstRow, int page, int pageCount, int totalRows) {
+    for (int i = 0; i < contracts.size(); i++) {
+      renderer.row().append(firstRow + i + 1).append(". ");
+      appendContractRow(contracts.get(i));
+      renderer.endRow();
     }
+    renderer.endPage(page, pageCount, firstRow, contracts.size(), totalRows);
+  }
+
+  @Override
+  public String getPageCommand() {
+    return getInput("[n]ext, [p]rev, page number, size N, or Enter to return: ");
+  }
+
+  private void appendContractRow(Contract contract) {
+    renderer.row().append(contract.getId())
+        .append(" | ").append(contract.getItemName())
+        .append(" | ").append(contract.getBorrowerName())
+        .append(" | ").append(contract.getStartDate()).append(" to ").append(contract.getEndDate())
+        .append(contract.isActive() ? " | active" : " | ended");
   }
 
   @Override
   public void displayNegativeAmountMessage() {
-    System.out.println("The amount cannot be negative.");
+    out.println("The amount cannot be negative.");
   }
 
   @Override
   public void displayMessage(String message) {
-    System.out.println(message);
+    out.println(message);
   }
 
   @Override
   public void displayItemOrBorrowerNotFoundMessage() {
-    System.out.println("Item or Borrower not found. Please enter valid details.");
+    out.println("Item or Borrower not found. Please enter valid details.");
   }
 
   @Override
   public void displayInsufficientFundsMessage() {
-    System.out.println("Contract creation failed due to insufficient funds.");
+    out.println("Contract creation failed due to insufficient funds.");
   }
 
   @Override
   public void displayConflictingContractMessage() {
-    System.out.println("Contract creation failed due to conflicting time.");
+    out.println("Contract creation failed due to conflicting time.");
   }
 
   @Override
   public void displayContractNotFoundMessage() {
-    System.out.println("Contract not found. Please enter a valid contract ID.");
+    out.println("Contract not found. Please enter a valid contract ID.");
   }
 
   @Override
   public void displayEndDateBeforeStartDateMessage() {
-    System.out.println("End date cannot be before start date. Please enter valid dates.");
+    out.println("End date cannot be before start date. Please enter valid dates.");
   }
 
   @Override
   public void displayCreateSuccessMessage() {
-    System.out.println("Contract created successfully.");
+    out.println("Contract created successfully.");
   }
 
   @Override
   public void displayDeleteSuccessMessage() {
-    System.out.println("Contract deleted successfully.");
+    out.println("Contract deleted successfully.");
   }
 
   @Override
   public void displayInvalidDataMessage() {
-    System.out.println("Invalid input. Please enter valid data.");
+    out.println("Invalid input. Please enter valid data.");
   }
 
   @Override
   public void displayAdvanceTimeMessage(int days, LocalDate newDate) {
-    System.out.println("Time advanced by " + days + " days. New date: " + newDate);
+    out.println("Time advanced by " + days + " days. New date: " + newDate);
+  }
+
+  @Override
+  public void displaySettlementSummary(Settlement settlement) {
+    out.println(settlement.getExpired() + " contracts ended, " + settlement.getCharged() + " credits charged.");
+    if (settlement.getOverdrawnBorrowers() > 0) {
+      out.println(settlement.getOverdrawnBorrowers() + " borrowers had insufficient credits and are overdrawn.");
+    }
+    if (settlement.getNegativeAmounts() > 0) {
+      out.println(settlement.getNegativeAmounts() + " contracts were not charged: the amount cannot be negative.");
+    }
+    if (settlement.getMissingBorrowers() > 0) {
+      out.println(settlement.getMissingBorrowers() + " contracts were not charged: borrower not found.");
+    }
+    if (settlement.getArchived() > 0) {
+      out.println(settlement.getArchived() + " ended contracts were archived.");
+    }
   }
 
   @Override
   public void displayInvalidEndDateMessage() {
-    System.out.println("End date cannot be before start date.");
+    out.println("End date cannot be before start date.");
   }
 
   @Override
   public void displayIdExistsMessage() {
-    System.out.println("Contract ID already exists. Contract not created.");
+    out.println("Contract ID already exists. Contract not created.");
   }
 
   @Override
   public void displayInvalidDateFormatMessage() {
-    System.out.println("Invalid date format. Please enter the date in YYYY-MM-DD format.");
+    out.println("Invalid date format. Please enter the date in YYYY-MM-DD format.");
   }
 
   @Override
@@ -148,47 +216,57 @@ public class ContractView implements ContractViewInterface {
 
   @Override
   public void displayUnexpectedErrorMessage() {
-    System.out.println("An unexpected error occurred. Please try again.");
+    out.println("An unexpected error occurred. Please try again.");
   }
 
   @Override
   public void displayUnexpectedErrorMessage(String message) {
-    System.out.println("An unexpected error occurred: " + message);
+    out.println("An unexpected error occurred: " + message);
   }
 
   @Override
   public void displayItemNotFoundMessage() {
-    System.out.println("Item not found. Please provide a valid item.");
+    out.println("Item not found. Please provide a valid item.");
   }
 
   @Override
   public void displayBorrowerNotFoundMessage() {
-    System.out.println("Borrower not found. Please provide a valid borrower.");
+    out.println("Borrower not found. Please provide a valid borrower.");
   }
 
   @Override
   public void displayMembers(List<Member> members) {
-    System.out.println("Available Borrowers:");
+    renderer.row().append("Available Borrowers:");
+    renderer.endRow();
     for (int i = 0; i < members.size(); i++) {
-      System.out.println((i + 1) + ". " + members.get(i).getName());
+      Member member = members.get(i);
+      renderer.row().append(i + 1).append(". ").append(member.getName())
+          .append(" (").append(member.getEmail()).append(')');
+      renderer.endRow();
     }
+    renderer.flush();
   }
 
   @Override
   public void displayInvalidSelectionMessage() {
-    System.out.println("Invalid selection. Please try again.");
+    out.println("Invalid selection. Please try again.");
   }
 
   @Override
   public void displayAllItems(List<Item> items) {
-    System.out.println("Available Items:");
+    renderer.row().append("Available Items:");
+    renderer.endRow();
     for (int i = 0; i < items.size(); i++) {
-      System.out.println((i + 1) + ". " + items.get(i).getName());
+      Item item = items.get(i);
+      renderer.row().append(i + 1).append(". ").append(item.getName())
+          .append(" (").append(item.getOwnerName()).append(')');
+      renderer.endRow();
     }
+    renderer.flush();
   }
 
   private String getInput(String prompt) {
-    System.out.print(prompt);
+    out.print(prompt);
     return scanner.nextLine();
   }
 }
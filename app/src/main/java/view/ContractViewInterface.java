@@ -5,6 +5,7 @@ import java.util.List;
 import model.Contract;
 import model.Item;
 import model.Member;
+import model.Settlement;
 
 /**
  * Interface for handling the user interactions related to contracts.
@@ -94,6 +95,13 @@ public interface ContractViewInterface {
    */
   void displayAdvanceTimeMessage(int days, LocalDate newDate);
 
+  /**
+   * Displays the outcome of ending and charging the expired contracts.
+   *
+   * @param settlement the totals of the settlement.
+   */
+  void displaySettlementSummary(Settlement settlement);
+
   /**
    * Displays a message when the provided end date for a contract is invalid.
    */
@@ -155,6 +163,22 @@ public interface ContractViewInterface {
    */
   String getSelectedItemIndex();
 
+  /**
+   * Prompts the user for words in an item's name, or the beginning of its name
+   * or ID.
+   *
+   * @return the search text as a string.
+   */
+  String getItemSearchInput();
+
+  /**
+   * Prompts the user for the beginning of the borrower's name, email, phone
+   * number or ID.
+   *
+   * @return the search text as a string.
+   */
+  String getBorrowerSearchInput();
+
   /**
    * Displays a list of all members for selection.
    *
@@ -173,4 +197,24 @@ public interface ContractViewInterface {
    * @param items the list of items to display.
    */
   void displayAllItems(List<Item> items);
+
+  /**
+   * Displays one page of contracts, one line per contract.
+   *
+   * @param contracts the contracts on the page.
+   * @param firstRow  the zero-based position of the first contract in the full
+   *                  list.
+   * @param page      the current page, starting at 1.
+   * @param pageCount the number of pages.
+   * @param totalRows the number of contracts on all pages.
+   */
+  void displayContractPage(List<Contract> contracts, int firstRow, int page, int pageCount, int totalRows);
+
+  /**
+   * Prompts the user to move to another page: next, previous, a page number,
+   * a new page size or anything else to leave.
+   *
+   * @return the raw navigation command as a string.
+   */
+  String getPageCommand();
 }
@@ -0,0 +1,33 @@
+package view;
+
+import java.io.PrintStream;
+
+/**
+ * View class reporting the outcome of an export.
+ */
+public class ExportView {
+  private final PrintStream out;
+
+  /**
+   * Constructs an ExportView writing to the given stream.
+   *
+   * @param out the destination of the report
+   */
+  public ExportView(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Displays the totals of one exported file.
+   *
+   * @param file  the name of the file
+   * @param rows  the number of rows written
+   * @param bytes the size of the file
+   * @param nanos the wall-clock time of the export
+   */
+  public void displayExportSummary(String file, long rows, long bytes, long nanos) {
+    out.printf("%s: %d rows, %d bytes in %.3f s (%.0f rows/s)%n", file, rows, bytes, nanos / 1e9,
+        rows / Math.max(nanos / 1e9, 1e-9));
+    out.flush();
+  }
+}
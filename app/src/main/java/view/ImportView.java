@@ -0,0 +1,57 @@
+package view;
+
+import java.io.PrintStream;
+
+/**
+ * View class reporting the outcome of a bulk CSV import.
+ */
+public class ImportView {
+  private final PrintStream out;
+
+  /**
+   * Constructs an ImportView writing to the given stream.
+   *
+   * @param out the destination of the report
+   */
+  public ImportView(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Displays a row that could not be imported.
+   *
+   * @param lineNumber the line of the row in the file
+   * @param row        the row as written
+   * @param message    the reason it was rejected
+   */
+  public void displayRowError(long lineNumber, String row, String message) {
+    out.println("Line " + lineNumber + ": " + message + " [" + row + "]");
+  }
+
+  /**
+   * Displays the totals of one imported file.
+   *
+   * @param file     the name of the file
+   * @param imported the number of rows added
+   * @param rejected the number of rows rejected
+   * @param report   the file listing every rejected row, or null if none was
+   *                 rejected
+   * @param nanos    the wall-clock time of the import
+   */
+  public void displayImportSummary(String file, long imported, long rejected, String report, long nanos) {
+    long rows = imported + rejected;
+    out.printf("%s: %d rows, %d imported, %d rejected in %.3f s (%.0f rows/s)%n", file, rows, imported, rejected,
+        nanos / 1e9, rows / Math.max(nanos / 1e9, 1e-9));
+    if (report != null) {
+      out.println("Rejected rows are listed in " + report);
+    }
+    out.flush();
+  }
+
+  /**
+   * Closes the underlying stream, e.g. when the view writes a report file.
+   */
+  public void close() {
+    out.close();
+  }
+}
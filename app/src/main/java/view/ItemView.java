@@ -1,5 +1,6 @@
 package view;
 
+import java.io.PrintStream;
 import java.util.List;
 import java.util.Scanner;
 import model.Item;
@@ -12,13 +13,28 @@ import model.Member;
  */
 public class ItemView implements ItemViewInterface {
   private final Scanner scanner;
+  private final PrintStream out;
+  private final PagedRenderer renderer;
 
   /**
    * Constructs an ItemView object and initializes the scanner for input.
    * The scanner is set to use UTF-8 encoding for reading input.
    */
   public ItemView() {
-    this.scanner = new Scanner(System.in, "UTF-8");
+    this(new Scanner(System.in, "UTF-8"), System.out);
+  }
+
+  /**
+   * Constructs an ItemView reading from the given scanner and writing to the
+   * given stream.
+   *
+   * @param scanner the source of user input
+   * @param out     the destination of all output
+   */
+  public ItemView(Scanner scanner, PrintStream out) {
+    this.scanner = scanner;
+    this.out = out;
+    this.renderer = new PagedRenderer(out);
   }
 
   @Override
@@ -30,14 +46,14 @@ public class ItemView implements ItemViewInterface {
 
   @Override
   public void displayItemDetails(Item item) {
-    System.out.println("Owner: " + item.getOwner().getName());
-    System.out.println("Name: " + item.getName());
-    System.out.println("Cost: " + item.getCost());
+    out.println("Owner: " + item.getOwnerName());
+    out.println("Name: " + item.getName());
+    out.println("Cost: " + item.getCost());
   }
 
   @Override
   public void displayMessage(String message) {
-    System.out.println(message);
+    out.println(message);
   }
 
   @Override
@@ -82,15 +98,20 @@ public class ItemView implements ItemViewInterface {
 
   @Override
   public void displayMembers(List<Member> members) {
-    displayMessage("Available Members:");
+    renderer.row().append("Available Members:");
+    renderer.endRow();
     for (int i = 0; i < members.size(); i++) {
-      System.out.println((i + 1) + ". " + members.get(i).getName());
+      Member member = members.get(i);
+      renderer.row().append(i + 1).append(". ").append(member.getName())
+          .append(" (").append(member.getEmail()).append(')');
+      renderer.endRow();
     }
+    renderer.flush();
   }
 
   @Override
   public String getSelectedOwnerName() {
-    return getInput("Enter Owner Name: ");
+    return getInput("Search owner by name, email, phone or ID (Enter to list): ");
   }
 
   @Override
@@ -104,31 +125,62 @@ public class ItemView implements ItemViewInterface {
   }
 
   private String getInput(String prompt) {
-    System.out.print(prompt);
+    out.print(prompt);
     return scanner.nextLine();
   }
 
   @Override
   public void displayAllItems(Iterable<Item> items) {
     for (Item item : items) {
-      displayItemDetails(item);
-      System.out.println("-----");
+      appendItemRow(item);
+      renderer.endRow();
     }
+    renderer.flush();
   }
 
   @Override
   public void displayAllItems(List<Item> items) {
     for (int i = 0; i < items.size(); i++) {
-      System.out.println((i + 1) + ". " + items.get(i).getName()); // Display each item
+      Item item = items.get(i);
+      renderer.row().append(i + 1).append(". ").append(item.getName())
+          .append(" (").append(item.getOwnerName()).append(')'); // Display each item
+      renderer.endRow();
+    }
+    renderer.flush();
+  }
+
+  @Override
+  public void displayItemPage(List<Item> items, int firstRow, int page, int pageCount, int totalRows) {
+    for (int i = 0; i < items.size(); i++) {
+      renderer.row().append(firstRow + i + 1).append(". ");
+      appendItemRow(items.get(i));
+      renderer.endRow();
     }
+    renderer.endPage(page, pageCount, firstRow, items.size(), totalRows);
+  }
+
+  @Override
+  public String getPageCommand() {
+    return getInput("[n]ext, [p]rev, page number, size N, or Enter to return: ");
+  }
+
+  private void appendItemRow(Item item) {
+    renderer.row().append(item.getName())
+        .append(" | cost ").append(item.getCost())
+        .append(" | owner ").append(item.getOwnerName());
   }
 
   @Override
   public String getSelectedItemInput() {
-    System.out.print("Select an item by number: ");
+    out.print("Select an item by number: ");
     return scanner.nextLine(); // Return the raw user input as a string
   }
 
+  @Override
+  public String getItemSearchInput() {
+    return getInput("Search item by name or ID (Enter to list): ");
+  }
+
   @Override
   public void close() {
     scanner.close();
@@ -82,9 +82,10 @@ public interface ItemViewInterface {
   void displayMembers(List<Member> members);
 
   /**
-   * Prompts the user to input the selected owner name.
+   * Prompts the user for the beginning of the owner's name, email, phone number
+   * or ID.
    *
-   * @return the selected owner name as a string.
+   * @return the search text as a string.
    */
   String getSelectedOwnerName();
 
@@ -103,14 +104,14 @@ public interface ItemViewInterface {
   /**
    * Displays a list of all items.
    *
-   * @param items an iterable collection of items to display.
+   * @param items     an iterable collection of items to display.
    */
   void displayAllItems(Iterable<Item> items);
 
   /**
    * Displays a list of all items for selection.
    *
-   * @param items the list of items to display.
+   * @param items     the list of items to display.
    */
   void displayAllItems(List<Item> items);
 
@@ -121,8 +122,35 @@ public interface ItemViewInterface {
    */
   String getSelectedItemInput();
 
+  /**
+   * Prompts the user for the beginning of an item's name or ID.
+   *
+   * @return the search text as a string.
+   */
+  String getItemSearchInput();
+
   /**
    * Closes any open resources or streams, such as a scanner.
    */
   void close();
+
+  /**
+   * Displays one page of items, one line per item.
+   *
+   * @param items     the items on the page.
+   * @param firstRow  the zero-based position of the first item in the full
+   *                  list.
+   * @param page      the current page, starting at 1.
+   * @param pageCount the number of pages.
+   * @param totalRows the number of items on all pages.
+   */
+  void displayItemPage(List<Item> items, int firstRow, int page, int pageCount, int totalRows);
+
+  /**
+   * Prompts the user to move to another page: next, previous, a page number,
+   * a new page size or anything else to leave.
+   *
+   * @return the raw navigation command as a string.
+   */
+  String getPageCommand();
 }
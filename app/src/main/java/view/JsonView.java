@@ -0,0 +1,272 @@
+package view;
+
+import java.time.LocalDate;
+import java.util.List;
+import model.Contract;
+import model.Item;
+import model.LendingHistory;
+import model.Member;
+
+/**
+ * Renders model objects as JSON documents for the HTTP API.
+ */
+public class JsonView {
+
+  /**
+   * Renders a single member.
+   *
+   * @param member the member to render
+   * @return the member as a JSON object
+   */
+  public String member(Member member) {
+    StringBuilder json = new StringBuilder(128);
+    appendMember(json, member);
+    return json.toString();
+  }
+
+  /**
+   * Renders a list of members.
+   *
+   * @param members the members to render
+   * @return the members as a JSON array
+   */
+  public String members(List<Member> members) {
+    StringBuilder json = new StringBuilder(64 + members.size() * 128).append('[');
+    for (int i = 0; i < members.size(); i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      appendMember(json, members.get(i));
+    }
+    return json.append(']').toString();
+  }
+
+  /**
+   * Renders a single item.
+   *
+   * @param item the item to render
+   * @return the item as a JSON object
+   */
+  public String item(Item item) {
+    StringBuilder json = new StringBuilder(128);
+    appendItem(json, item);
+    return json.toString();
+  }
+
+  /**
+   * Renders a list of items.
+   *
+   * @param items the items to render
+   * @return the items as a JSON array
+   */
+  public String items(List<Item> items) {
+    StringBuilder json = new StringBuilder(64 + items.size() * 128).append('[');
+    for (int i = 0; i < items.size(); i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      appendItem(json, items.get(i));
+    }
+    return json.append(']').toString();
+  }
+
+  /**
+   * Renders a single contract.
+   *
+   * @param contract the contract to render
+   * @return the contract as a JSON object
+   */
+  public String contract(Contract contract) {
+    StringBuilder json = new StringBuilder(160);
+    appendContract(json, contract);
+    return json.toString();
+  }
+
+  /**
+   * Renders a list of contracts.
+   *
+   * @param contracts the contracts to render
+   * @return the contracts as a JSON array
+   */
+  public String contracts(List<Contract> contracts) {
+    StringBuilder json = new StringBuilder(64 + contracts.size() * 160).append('[');
+    for (int i = 0; i < contracts.size(); i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      appendContract(json, contracts.get(i));
+    }
+    return json.append(']').toString();
+  }
+
+  /**
+   * Renders a single named field, e.g. {"available":true}.
+   *
+   * @param name  the field name
+   * @param value the field value, rendered as a string unless it is a number or
+   *              boolean
+   * @return the field wrapped in a JSON object
+   */
+  public String field(String name, Object value) {
+    StringBuilder json = new StringBuilder(64).append('{');
+    appendString(json, name).append(':');
+    if (value instanceof Number || value instanceof Boolean) {
+      json.append(value);
+    } else {
+      appendString(json, String.valueOf(value));
+    }
+    return json.append('}').toString();
+  }
+
+  /**
+   * Renders the balance of a member on a past day.
+   *
+   * @param date     the day
+   * @param memberId the member ID
+   * @param balance  the credits of the member at the end of the day
+   * @return the balance as a JSON object
+   */
+  public String balanceAsOf(LocalDate date, String memberId, int balance) {
+    StringBuilder json = new StringBuilder(96).append("{\"asOf\":\"").append(date).append("\",\"memberId\":");
+    return appendString(json, memberId).append(",\"credits\":").append(balance).append('}').toString();
+  }
+
+  /**
+   * Renders the owner and the bookings of an item on a past day.
+   *
+   * @param date     the day of the state
+   * @param itemId   the item ID
+   * @param ownerId  the owner ID
+   * @param day      the day the bookings cover
+   * @param bookings the active contracts covering the day
+   * @return the item as a JSON object
+   */
+  public String itemAsOf(LocalDate date, String itemId, String ownerId, LocalDate day,
+      List<LendingHistory.ContractState> bookings) {
+    StringBuilder json = new StringBuilder(128 + bookings.size() * 160).append("{\"asOf\":\"").append(date)
+        .append("\",\"itemId\":");
+    appendString(json, itemId).append(",\"ownerId\":");
+    appendString(json, ownerId).append(",\"day\":\"").append(day).append("\",\"booked\":")
+        .append(!bookings.isEmpty()).append(",\"bookings\":[");
+    for (int i = 0; i < bookings.size(); i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      appendContractState(json, bookings.get(i));
+    }
+    return json.append("]}").toString();
+  }
+
+  /**
+   * Renders a contract as it was on a past day.
+   *
+   * @param date     the day
+   * @param contract the state of the contract at the end of the day
+   * @return the contract as a JSON object
+   */
+  public String contractAsOf(LocalDate date, LendingHistory.ContractState contract) {
+    StringBuilder json = new StringBuilder(192).append("{\"asOf\":\"").append(date).append("\",\"contract\":");
+    appendContractState(json, contract);
+    return json.append('}').toString();
+  }
+
+  /**
+   * Renders the replication state of a replica.
+   *
+   * @param role      "follower", or "primary" once promoted
+   * @param leader    the leader followed, as host:port
+   * @param connected whether the replica is connected to the leader
+   * @param position  the bytes of the log applied
+   * @param lagBytes  the bytes of the leader's log not applied yet
+   * @param lagMillis the age of the newest leader state applied, or -1
+   * @return the state as a JSON object
+   */
+  public String replication(String role, String leader, boolean connected, long position, long lagBytes,
+      long lagMillis) {
+    StringBuilder json = new StringBuilder(160).append("{\"role\":");
+    appendString(json, role).append(",\"leader\":");
+    appendString(json, leader).append(",\"connected\":").append(connected).append(",\"position\":")
+        .append(position).append(",\"lagBytes\":").append(lagBytes).append(",\"lagMillis\":").append(lagMillis);
+    return json.append('}').toString();
+  }
+
+  /**
+   * Renders an error document.
+   *
+   * @param code    a machine readable error code
+   * @param message a human readable message
+   * @return the error as a JSON object
+   */
+  public String error(String code, String message) {
+    StringBuilder json = new StringBuilder(96).append("{\"error\":");
+    appendString(json, code).append(",\"message\":");
+    return appendString(json, message).append('}').toString();
+  }
+
+  private void appendMember(StringBuilder json, Member member) {
+    json.append("{\"id\":");
+    appendString(json, member.getId()).append(",\"name\":");
+    appendString(json, member.getName()).append(",\"email\":");
+    appendString(json, member.getEmail()).append(",\"phone\":");
+    appendString(json, member.getPhone()).append(",\"credits\":").append(member.getCredits()).append('}');
+  }
+
+  private void appendItem(StringBuilder json, Item item) {
+    json.append("{\"id\":");
+    appendString(json, item.getId()).append(",\"name\":");
+    appendString(json, item.getName()).append(",\"cost\":").append(item.getCost()).append(",\"ownerId\":");
+    appendString(json, item.getOwnerId()).append('}');
+  }
+
+  private void appendContract(StringBuilder json, Contract contract) {
+    json.append("{\"id\":");
+    appendString(json, contract.getId()).append(",\"itemId\":");
+    appendString(json, contract.getItemId()).append(",\"borrowerId\":");
+    appendString(json, contract.getBorrowerId()).append(",\"startDate\":\"").append(contract.getStartDate())
+        .append("\",\"endDate\":\"").append(contract.getEndDate())
+        .append("\",\"active\":").append(contract.isActive()).append('}');
+  }
+
+  private void appendContractState(StringBuilder json, LendingHistory.ContractState contract) {
+    json.append("{\"id\":");
+    appendString(json, contract.getId()).append(",\"itemId\":");
+    appendString(json, contract.getItemId()).append(",\"borrowerId\":");
+    appendString(json, contract.getBorrowerId()).append(",\"startDate\":\"").append(contract.getStartDate())
+        .append("\",\"endDate\":\"").append(contract.getEndDate())
+        .append("\",\"active\":").append(contract.isActive()).append('}');
+  }
+
+  private StringBuilder appendString(StringBuilder json, String value) {
+    if (value == null) {
+      return json.append("null");
+    }
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+      }
+    }
+    return json.append('"');
+  }
+}
@@ -1,5 +1,6 @@
 package view;
 
+import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
 
@@ -8,88 +9,105 @@ import java.util.Scanner;
  */
 public class MainView implements MainViewInterface {
   private final Scanner scanner;
+  private final PrintStream out;
 
   /**
    * Constructs a MainView with a new Scanner instance.
    */
   public MainView() {
-    this.scanner = new Scanner(System.in, StandardCharsets.UTF_8.name());
+    this(new Scanner(System.in, StandardCharsets.UTF_8.name()), System.out);
+  }
+
+  /**
+   * Constructs a MainView reading from the given scanner and writing to the
+   * given stream.
+   *
+   * @param scanner the source of user input
+   * @param out     the destination of all output
+   */
+  public MainView(Scanner scanner, PrintStream out) {
+    this.scanner = scanner;
+    this.out = out;
+  }
+
+  @Override
+  public void displayMainMenu() {
+    out.println("Main Menu:");
+    out.println("1. Manage Members");
+    out.println("2. Manage Items");
+    out.println("3. Manage Contracts");
+    out.println("4. Advance Time");
+    out.println("5. Exit");
+    out.print("Select an option: ");
   }
 
   @Override
   public String getRawMainMenuSelection() {
-    System.out.println("Main Menu:");
-    System.out.println("1. Manage Members");
-    System.out.println("2. Manage Items");
-    System.out.println("3. Manage Contracts");
-    System.out.println("4. Advance Time");
-    System.out.println("5. Exit");
-    System.out.print("Select an option: ");
     return scanner.nextLine();
   }
 
   @Override
   public String getRawMemberMenuSelection() {
-    System.out.println("Member Menu:");
-    System.out.println("1. Create Member");
-    System.out.println("2. Delete Member");
-    System.out.println("3. View All Members");
-    System.out.println("4. Back to Main Menu");
-    System.out.print("Select an option: ");
+    out.println("Member Menu:");
+    out.println("1. Create Member");
+    out.println("2. Delete Member");
+    out.println("3. View All Members");
+    out.println("4. Back to Main Menu");
+    out.print("Select an option: ");
     return scanner.nextLine(); // Return raw input as a string
   }
 
   @Override
   public String getRawItemMenuSelection() {
-    System.out.println("Item Menu:");
-    System.out.println("1. Create Item");
-    System.out.println("2. Delete Item");
-    System.out.println("3. View All Items");
-    System.out.println("4. Back to Main Menu");
-    System.out.print("Select an option: ");
+    out.println("Item Menu:");
+    out.println("1. Create Item");
+    out.println("2. Delete Item");
+    out.println("3. View All Items");
+    out.println("4. Back to Main Menu");
+    out.print("Select an option: ");
     return scanner.nextLine();
   }
 
   @Override
   public String getRawContractMenuSelection() {
-    System.out.println("Contract Menu:");
-    System.out.println("1. Create Contract");
-    System.out.println("2. Delete Contract");
-    System.out.println("3. View All Contracts");
-    System.out.println("4. Back to Main Menu");
-    System.out.print("Select an option: ");
+    out.println("Contract Menu:");
+    out.println("1. Create Contract");
+    out.println("2. Delete Contract");
+    out.println("3. View All Contracts");
+    out.println("4. Back to Main Menu");
+    out.print("Select an option: ");
     return scanner.nextLine();
   }
 
   @Override
   public String getRawAdvanceTimeInput() {
-    System.out.print("Enter the number of days to advance: ");
+    out.print("Enter the number of days to advance: ");
     return scanner.nextLine();
   }
 
   @Override
   public void displayMessage(String message) {
-    System.out.println(message);
+    out.println(message);
   }
 
   @Override
   public void displayInvalidSelectionMessage() {
-    System.out.println("Invalid selection. Please try again.");
+    out.println("Invalid selection. Please try again.");
   }
 
   @Override
   public void displayInvalidNumberMessage() {
-    System.out.println("Invalid input. Please enter a valid number.");
+    out.println("Invalid input. Please enter a valid number.");
   }
 
   @Override
   public void displayUnexpectedErrorMessage(String message) {
-    System.out.println("An unexpected error occurred: " + message);
+    out.println("An unexpected error occurred: " + message);
   }
 
   @Override
   public String getSelectedItemIndex() {
-    System.out.print("Select an item by number: ");
+    out.print("Select an item by number: ");
     return scanner.nextLine(); // Return the raw user input as a string
   }
 
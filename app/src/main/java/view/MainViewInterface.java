@@ -13,6 +13,8 @@ public interface MainViewInterface {
 
   void displayUnexpectedErrorMessage(String message);
 
+  void displayMainMenu();
+
   String getRawMainMenuSelection();
 
   String getRawMemberMenuSelection();
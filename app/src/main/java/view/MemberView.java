@@ -1,5 +1,6 @@
 package view;
 
+import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Scanner;
@@ -10,14 +11,29 @@ import model.Member;
  */
 public class MemberView implements MemberViewInterface {
   private final Scanner scanner;
+  private final PrintStream out;
+  private final PagedRenderer renderer;
 
   public MemberView() {
-    this.scanner = new Scanner(System.in, StandardCharsets.UTF_8.name());
+    this(new Scanner(System.in, StandardCharsets.UTF_8.name()), System.out);
+  }
+
+  /**
+   * Constructs a MemberView reading from the given scanner and writing to the
+   * given stream.
+   *
+   * @param scanner the source of user input
+   * @param out     the destination of all output
+   */
+  public MemberView(Scanner scanner, PrintStream out) {
+    this.scanner = scanner;
+    this.out = out;
+    this.renderer = new PagedRenderer(out);
   }
 
   @Override
   public String[] getMemberInput() {
-    System.out.println("Enter Member Details:");
+    out.println("Enter Member Details:");
     String id = getInput("ID: ");
     String name = getInput("Name: ");
     String email = getInput("Email: ");
@@ -28,29 +44,57 @@ public class MemberView implements MemberViewInterface {
 
   @Override
   public void displayMemberDetails(Member member) {
-    System.out.println("Member ID: " + member.getId());
-    System.out.println("Name: " + member.getName());
-    System.out.println("Email: " + member.getEmail());
-    System.out.println("Phone: " + member.getPhone());
-    System.out.println("Credits: " + member.getCredits());
+    out.println("Member ID: " + member.getId());
+    out.println("Name: " + member.getName());
+    out.println("Email: " + member.getEmail());
+    out.println("Phone: " + member.getPhone());
+    out.println("Credits: " + member.getCredits());
   }
 
   @Override
   public void displayAllMembers(List<Member> members) {
     for (int i = 0; i < members.size(); i++) {
-      System.out.println((i + 1) + ". " + members.get(i).getName()); // Display each member
+      Member member = members.get(i);
+      renderer.row().append(i + 1).append(". ").append(member.getName())
+          .append(" (").append(member.getEmail()).append(')'); // Display each member
+      renderer.endRow();
+    }
+    renderer.flush();
+  }
+
+  @Override
+  public void displayMemberPage(List<Member> members, int firstRow, int page, int pageCount, int totalRows) {
+    for (int i = 0; i < members.size(); i++) {
+      Member member = members.get(i);
+      renderer.row().append(firstRow + i + 1).append(". ").append(member.getId())
+          .append(" | ").append(member.getName())
+          .append(" | ").append(member.getEmail())
+          .append(" | ").append(member.getPhone())
+          .append(" | ").append(member.getCredits()).append(" credits");
+      renderer.endRow();
     }
+    renderer.endPage(page, pageCount, firstRow, members.size(), totalRows);
+  }
+
+  @Override
+  public String getPageCommand() {
+    return getInput("[n]ext, [p]rev, page number, size N, or Enter to return: ");
   }
 
   @Override
   public String getSelectedMemberInput() {
-    System.out.print("Select a member by number: ");
+    out.print("Select a member by number: ");
     return scanner.nextLine(); // Return the raw user input as a string
   }
 
+  @Override
+  public String getMemberSearchInput() {
+    return getInput("Search member by name, email, phone or ID (Enter to list): ");
+  }
+
   @Override
   public String getInput(String prompt) {
-    System.out.print(prompt);
+    out.print(prompt);
     return scanner.nextLine();
   }
 
@@ -66,87 +110,87 @@ public class MemberView implements MemberViewInterface {
 
   @Override
   public void displayInvalidEmailFormatMessage() {
-    System.out.println("Invalid email format. Expected format: string@string.string");
+    out.println("Invalid email format. Expected format: string@string.string");
   }
 
   @Override
   public void displayNegativeAmountMessage() {
-    System.out.println("Amount cannot be negative.");
+    out.println("Amount cannot be negative.");
   }
 
   @Override
   public void displayInvalidEndDateMessage() {
-    System.out.println("End date cannot be before start date.");
+    out.println("End date cannot be before start date.");
   }
 
   @Override
   public void displayNegativeCostMessage() {
-    System.out.println("Cost cannot be negative.");
+    out.println("Cost cannot be negative.");
   }
 
   @Override
   public void displayAddCreditsSuccessMessage() {
-    System.out.println("Credits added successfully.");
+    out.println("Credits added successfully.");
   }
 
   @Override
   public void displayDeductCreditsSuccessMessage() {
-    System.out.println("Credits deducted successfully.");
+    out.println("Credits deducted successfully.");
   }
 
   @Override
   public void displayInvalidDataMessage() {
-    System.out.println("Invalid input. Please enter valid data.");
+    out.println("Invalid input. Please enter valid data.");
   }
 
   @Override
   public void displayNegativeCreditsMessage() {
-    System.out.println("Credits cannot be negative.");
+    out.println("Credits cannot be negative.");
   }
 
   @Override
   public void displayEmailExistsMessage() {
-    System.out.println("Email already exists. Member not created.");
+    out.println("Email already exists. Member not created.");
   }
 
   @Override
   public void displayPhoneExistsMessage() {
-    System.out.println("Phone already exists. Member not created.");
+    out.println("Phone already exists. Member not created.");
   }
 
   @Override
   public void displayIdExistsMessage() {
-    System.out.println("ID already exists. Member not created.");
+    out.println("ID already exists. Member not created.");
   }
 
   @Override
   public void displayMemberNotFoundMessage() {
-    System.out.println("Member not found. Please enter a valid member ID.");
+    out.println("Member not found. Please enter a valid member ID.");
   }
 
   @Override
   public void displayCreateSuccessMessage() {
-    System.out.println("Member created successfully.");
+    out.println("Member created successfully.");
   }
 
   @Override
   public void displayDeleteSuccessMessage() {
-    System.out.println("Member deleted successfully.");
+    out.println("Member deleted successfully.");
   }
 
   @Override
   public void displayUnexpectedErrorMessage(String message) {
-    System.out.println("An unexpected error occurred: " + message);
+    out.println("An unexpected error occurred: " + message);
   }
 
   @Override
   public void displayMessage(String message) {
-    System.out.println(message);
+    out.println(message);
   }
 
   @Override
   public void displayInvalidSelectionMessage() {
-    System.out.println("Invalid selection. Please try again.");
+    out.println("Invalid selection. Please try again.");
   }
 
   @Override
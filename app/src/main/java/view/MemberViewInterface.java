@@ -27,7 +27,7 @@ public interface MemberViewInterface {
   /**
    * Displays a list of all members.
    *
-   * @param members the list of members to display.
+   * @param members   the list of members to display.
    */
   void displayAllMembers(List<Member> members);
 
@@ -167,8 +167,36 @@ public interface MemberViewInterface {
    */
   String getSelectedMemberInput();
 
+  /**
+   * Prompts the user for the beginning of a member's name, email, phone number
+   * or ID.
+   *
+   * @return the search text as a string.
+   */
+  String getMemberSearchInput();
+
   /**
    * Closes any open resources or streams, such as a scanner.
    */
   void close();
+
+  /**
+   * Displays one page of members, one line per member.
+   *
+   * @param members   the members on the page.
+   * @param firstRow  the zero-based position of the first member in the full
+   *                  list.
+   * @param page      the current page, starting at 1.
+   * @param pageCount the number of pages.
+   * @param totalRows the number of members on all pages.
+   */
+  void displayMemberPage(List<Member> members, int firstRow, int page, int pageCount, int totalRows);
+
+  /**
+   * Prompts the user to move to another page: next, previous, a page number,
+   * a new page size or anything else to leave.
+   *
+   * @return the raw navigation command as a string.
+   */
+  String getPageCommand();
 }
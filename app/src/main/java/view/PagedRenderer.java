@@ -0,0 +1,73 @@
+package view;
+
+import java.io.PrintStream;
+
+/**
+ * Formats list rows into one reusable buffer and writes it out in large
+ * chunks instead of one println per field.
+ */
+public class PagedRenderer {
+  private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+  private final PrintStream out;
+  private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 1024);
+
+  /**
+   * Constructs a renderer writing to the given stream.
+   *
+   * @param out the destination of the rendered rows
+   */
+  public PagedRenderer(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Returns the buffer to append the next row to. Call {@link #endRow()} when
+   * the row is complete.
+   *
+   * @return the shared row buffer
+   */
+  public StringBuilder row() {
+    return buffer;
+  }
+
+  /**
+   * Terminates the current row and writes the buffer once it is large.
+   */
+  public void endRow() {
+    buffer.append(System.lineSeparator());
+    if (buffer.length() >= FLUSH_THRESHOLD) {
+      flush();
+    }
+  }
+
+  /**
+   * Appends the page footer and writes everything buffered so far.
+   *
+   * @param page      the current page, starting at 1
+   * @param pageCount the number of pages
+   * @param firstRow  the zero-based index of the first row on the page
+   * @param rows      the number of rows on the page
+   * @param totalRows the number of rows on all pages
+   */
+  public void endPage(int page, int pageCount, int firstRow, int rows, int totalRows) {
+    if (pageCount > 1) {
+      buffer.append("Page ").append(page).append('/').append(pageCount)
+          .append(" (rows ").append(rows == 0 ? 0 : firstRow + 1).append('-').append(firstRow + rows)
+          .append(" of ").append(totalRows).append(')');
+      endRow();
+    }
+    flush();
+  }
+
+  /**
+   * Writes everything buffered so far.
+   */
+  public void flush() {
+    if (buffer.length() > 0) {
+      out.append(buffer);
+      buffer.setLength(0);
+    }
+    out.flush();
+  }
+}
@@ -0,0 +1,59 @@
+package view;
+
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.Map;
+import model.ModelError;
+
+/**
+ * View class reporting the progress and outcome of a simulation.
+ */
+public class SimulationView {
+  private final PrintStream out;
+
+  /**
+   * Constructs a SimulationView writing to the given stream.
+   *
+   * @param out the destination of the report
+   */
+  public SimulationView(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Displays how far the simulation has come.
+   *
+   * @param date     the simulated current date
+   * @param days     the days simulated so far
+   * @param bookings the bookings made so far
+   * @param rejected the bookings rejected so far
+   * @param expired  the contracts ended so far
+   * @param nanos    the wall-clock time so far
+   */
+  public void displayProgress(LocalDate date, long days, long bookings, long rejected, long expired, long nanos) {
+    out.printf("%s day %6d: %9d bookings, %9d rejected, %9d ended, %8.0f days/s%n", date, days, bookings,
+        rejected, expired, days / Math.max(nanos / 1e9, 1e-9));
+  }
+
+  /**
+   * Displays the totals of the simulation.
+   *
+   * @param days       the days simulated
+   * @param listings   the items listed
+   * @param bookings   the bookings made
+   * @param rejections the rejected bookings by reason
+   * @param expired    the contracts ended
+   * @param charged    the credits charged for them
+   * @param nanos      the wall-clock time of the simulation
+   */
+  public void displaySummary(long days, long listings, long bookings, Map<ModelError, Long> rejections,
+      long expired, long charged, long nanos) {
+    out.printf("Simulated %d days in %.3f s (%.0f days/s): %d items listed, %d bookings, %d contracts ended, "
+        + "%d credits charged%n", days, nanos / 1e9, days / Math.max(nanos / 1e9, 1e-9), listings, bookings,
+        expired, charged);
+    for (Map.Entry<ModelError, Long> rejection : rejections.entrySet()) {
+      out.printf("  rejected: %-40s %9d%n", rejection.getKey().getMessage(), rejection.getValue());
+    }
+    out.flush();
+  }
+}
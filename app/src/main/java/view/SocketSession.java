@@ -0,0 +1,338 @@
+package view;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Terminal session over a socket connection.
+ *
+ * <p>
+ * The network thread pushes received bytes in with {@link #receive(ByteBuffer)}
+ * and sends output with {@link #writeTo(WritableByteChannel)}; a controller
+ * thread reads and writes through ordinary console views that share one
+ * scanner and one print stream. An idle session holds no more than its small
+ * input buffer: the output buffer is only allocated while there is output
+ * waiting to be sent, and the input buffer shrinks back once read.
+ * </p>
+ *
+ * <p>
+ * Both directions are bounded. A controller that gets ahead of a client not
+ * reading its replies waits until the output is sent, and a client that sends
+ * more than 64KB ahead of the controller is not read from until the
+ * controller has caught up. The scanner is given at most one line per read,
+ * so the lines typed ahead stay in the session, where {@link #hasInput()}
+ * sees them.
+ * </p>
+ */
+public class SocketSession {
+  private static final int MAX_PENDING_OUTPUT = 256 * 1024;
+  private static final int MAX_PENDING_INPUT = 64 * 1024;
+  private static final int INPUT_SIZE = 128;
+
+  // A ReentrantLock rather than a monitor: controllers run on virtual threads
+  // (see controller.VirtualThreads), and waiting on a monitor pins the carrier
+  // thread while awaiting a Condition releases it.
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition inputChanged = lock.newCondition();
+  private final Condition outputDrained = lock.newCondition();
+  private final Runnable outputReady;
+  private final Runnable inputDrained;
+  private Scanner scanner;
+  private PrintStream out;
+  private byte[] input = new byte[INPUT_SIZE];
+  private int inputStart;
+  private int inputEnd;
+  private boolean inputClosed;
+  private boolean inputFull;
+  private ByteBuffer output;
+
+  /**
+   * Creates a session. The views must be created and used from one controller
+   * thread at a time.
+   *
+   * @param outputReady  called from the controller thread whenever output has
+   *                     been flushed and should be written to the socket
+   * @param inputDrained called from the controller thread when it has read
+   *                     enough of the input that {@link #receive(ByteBuffer)}
+   *                     refused more to take more again
+   */
+  public SocketSession(Runnable outputReady, Runnable inputDrained) {
+    this.outputReady = outputReady;
+    this.inputDrained = inputDrained;
+  }
+
+  /**
+   * Creates the member view for this session.
+   *
+   * @return a member view bound to the session
+   */
+  public MemberView memberView() {
+    openConsole();
+    return new MemberView(scanner, out);
+  }
+
+  /**
+   * Creates the item view for this session.
+   *
+   * @return an item view bound to the session
+   */
+  public ItemView itemView() {
+    openConsole();
+    return new ItemView(scanner, out);
+  }
+
+  /**
+   * Creates the contract view for this session.
+   *
+   * @return a contract view bound to the session
+   */
+  public ContractView contractView() {
+    openConsole();
+    return new ContractView(scanner, out);
+  }
+
+  /**
+   * Creates the main view for this session.
+   *
+   * @return a main view bound to the session
+   */
+  public MainView mainView() {
+    openConsole();
+    return new MainView(scanner, out);
+  }
+
+  /**
+   * Creates the scanner and print stream shared by the session's views. They
+   * hold several kilobytes of buffers, so sessions that never start a
+   * controller do without them.
+   */
+  private void openConsole() {
+    if (out == null) {
+      out = new PrintStream(new SessionOutput(), true, StandardCharsets.UTF_8);
+      scanner = new Scanner(new SessionInput(), StandardCharsets.UTF_8.name());
+    }
+  }
+
+  /**
+   * Appends bytes received from the client to the session input.
+   *
+   * @param data the received bytes, between position and limit
+   * @return false if the client is too far ahead of the controller, so no
+   *         more should be read until the session calls inputDrained
+   */
+  public boolean receive(ByteBuffer data) {
+    lock.lock();
+    try {
+      int length = data.remaining();
+      if (inputEnd + length > input.length) {
+        int pending = inputEnd - inputStart;
+        byte[] target = pending + length > input.length
+            ? new byte[Math.max(input.length * 2, pending + length)]
+            : input;
+        System.arraycopy(input, inputStart, target, 0, pending);
+        input = target;
+        inputStart = 0;
+        inputEnd = pending;
+      }
+      data.get(input, inputEnd, length);
+      inputEnd += length;
+      inputChanged.signalAll();
+      inputFull = inputEnd - inputStart >= MAX_PENDING_INPUT;
+      return !inputFull;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Sends what the controller has printed without a newline, such as a
+   * prompt, which is otherwise sent once it waits for input.
+   */
+  public void flush() {
+    if (out != null) {
+      out.flush();
+    }
+  }
+
+  /**
+   * Tells whether the controller can read without waiting for the client,
+   * because input is pending or has ended.
+   *
+   * @return true if a read would not block
+   */
+  public boolean hasInput() {
+    lock.lock();
+    try {
+      return inputStart < inputEnd || inputClosed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Marks the end of client input. Pending input can still be read, after
+   * which the session's views see the end of input.
+   */
+  public void closeInput() {
+    lock.lock();
+    try {
+      inputClosed = true;
+      inputChanged.signalAll();
+      outputDrained.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Writes as much pending output as the channel accepts without blocking.
+   *
+   * @param channel the non-blocking channel of the connection
+   * @return true if all pending output has been written
+   * @throws IOException if the channel fails
+   */
+  public boolean writeTo(WritableByteChannel channel) throws IOException {
+    lock.lock();
+    try {
+      if (output == null) {
+        return true;
+      }
+      output.flip();
+      channel.write(output);
+      output.compact();
+      outputDrained.signalAll(); // Wake a controller held back by a full buffer
+      if (output.position() == 0) {
+        output = null; // Release the buffer while the session is idle
+        return true;
+      }
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Tells whether output is waiting to be sent.
+   *
+   * @return true if there is pending output
+   */
+  public boolean hasPendingOutput() {
+    lock.lock();
+    try {
+      return output != null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void append(byte[] bytes, int offset, int length) throws InterruptedIOException {
+    lock.lock();
+    try {
+      while (output != null && output.position() > MAX_PENDING_OUTPUT && !inputClosed) {
+        outputReady.run();
+        try {
+          outputDrained.await(); // The client is not reading; hold the controller back
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+      if (output == null) {
+        output = ByteBuffer.allocate(Math.max(1024, length));
+      } else if (output.remaining() < length) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + length));
+        output.flip();
+        larger.put(output);
+        output = larger;
+      }
+      output.put(bytes, offset, length);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Reads from the received bytes up to the end of a line, blocking the
+   * controller thread until the client sends more.
+   */
+  private final class SessionInput extends InputStream {
+    @Override
+    public int read() throws InterruptedIOException {
+      byte[] one = new byte[1];
+      return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws InterruptedIOException {
+      out.flush(); // Prompts are printed without a newline; send them before waiting
+      lock.lock();
+      try {
+        while (inputStart == inputEnd && !inputClosed) {
+          try {
+            inputChanged.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+          }
+        }
+        if (inputStart == inputEnd) {
+          return -1;
+        }
+        int count = Math.min(length, inputEnd - inputStart);
+        for (int i = 0; i < count; i++) {
+          if (input[inputStart + i] == '\n') {
+            count = i + 1;
+            break;
+          }
+        }
+        System.arraycopy(input, inputStart, target, offset, count);
+        inputStart += count;
+        if (inputStart == inputEnd) {
+          inputStart = 0;
+          inputEnd = 0;
+          if (input.length > INPUT_SIZE) {
+            input = new byte[INPUT_SIZE];
+          }
+        }
+        if (inputFull && inputEnd - inputStart < MAX_PENDING_INPUT) {
+          inputFull = false;
+          inputDrained.run();
+        }
+        return count;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Collects the controller's output until it is flushed to the socket.
+   */
+  private final class SessionOutput extends OutputStream {
+    @Override
+    public void write(int b) throws InterruptedIOException {
+      append(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws InterruptedIOException {
+      append(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() {
+      if (hasPendingOutput()) {
+        outputReady.run();
+      }
+    }
+  }
+}
@@ -0,0 +1,285 @@
+package controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import model.Item;
+import model.Member;
+import model.ModelError;
+import model.Result;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Kills the nodes of a two node cluster in the middle of credit transfers and
+ * checks that every transfer reaches its member exactly once after the nodes
+ * are back.
+ *
+ * <p>
+ * Every node is a process of the application serving {@code --node} on an
+ * event log of its own. Killing a node destroys the process, and restarting
+ * it starts a new process on the same port and log, which must rebuild the
+ * repositories and the credit ledger the old one left behind. A router that
+ * crashed half way through a listing or a settlement is played by sending the
+ * steps it got through straight to the nodes, as is a join that crashed
+ * after copying a member to its new node.
+ * </p>
+ */
+public class ClusterCreditSagaTest {
+  private static final String LISTENING = "Cluster node listening on port ";
+
+  private final List<Process> processes = new ArrayList<>();
+  private Path directory;
+  private TestNode memberNode;
+  private TestNode itemNode;
+  private ClusterLendingService cluster;
+  private HashRing ring;
+
+  @BeforeEach
+  void startCluster() throws IOException {
+    directory = Files.createTempDirectory("saga");
+    memberNode = new TestNode("member");
+    itemNode = new TestNode("item");
+    cluster = new ClusterLendingService(List.of(memberNode.address(), itemNode.address()));
+    ring = new HashRing(cluster.getNodes());
+  }
+
+  @AfterEach
+  void stopCluster() throws IOException, InterruptedException {
+    cluster.close();
+    for (Process process : processes) {
+      process.destroyForcibly().waitFor();
+    }
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Test
+  void creditPostedBeforeCrashReachesOwner() throws Exception {
+    String ownerId = idOn(memberNode, "M");
+    Member owner = cluster.createMember(ownerId, "Owner", "owner@example.com", "0701234567", 100);
+
+    send(itemNode, ClusterProtocol.ADD_ITEM, out -> ClusterProtocol.writeItem(out, newItem(owner, 30)));
+    assertEquals(1, pending(itemNode).size());
+    assertEquals(100, cluster.getMember(ownerId).getCredits());
+
+    itemNode.kill();
+    memberNode.kill();
+    memberNode.restart();
+    assertFalse(cluster.reconcile());
+    assertEquals(100, cluster.getMember(ownerId).getCredits());
+
+    itemNode.restart();
+    assertEquals(1, pending(itemNode).size());
+    assertTrue(cluster.reconcile());
+    assertEquals(130, cluster.getMember(ownerId).getCredits());
+    assertEquals(0, pending(itemNode).size());
+
+    assertTrue(cluster.reconcile());
+    assertEquals(130, cluster.getMember(ownerId).getCredits());
+  }
+
+  @Test
+  void creditAppliedBeforeLostAcknowledgementIsNotAppliedAgain() throws Exception {
+    String ownerId = idOn(memberNode, "M");
+    Member owner = cluster.createMember(ownerId, "Owner", "owner@example.com", "0701234567", 100);
+
+    send(itemNode, ClusterProtocol.ADD_ITEM, out -> ClusterProtocol.writeItem(out, newItem(owner, 30)));
+    List<CreditLedger.Transfer> posted = pending(itemNode);
+    send(memberNode, ClusterProtocol.APPLY_CREDITS, out -> ClusterProtocol.writeTransfers(out, posted));
+    assertEquals(130, cluster.getMember(ownerId).getCredits());
+
+    memberNode.kill();
+    itemNode.kill();
+    memberNode.restart();
+    itemNode.restart();
+    assertTrue(cluster.reconcile());
+    assertEquals(130, cluster.getMember(ownerId).getCredits());
+    assertEquals(0, pending(itemNode).size());
+  }
+
+  @Test
+  void chargeDeliveredAgainAfterAcknowledgementIsAppliedOnce() throws Exception {
+    String ownerId = idOn(itemNode, "M");
+    String borrowerId = idOn(memberNode, "B");
+    cluster.createMember(ownerId, "Owner", "owner@example.com", "0701234567", 0);
+    cluster.createMember(borrowerId, "Borrower", "borrower@example.com", "0707654321", 100);
+    Item item = cluster.createItem(ownerId, "Tent", 10);
+    LocalDate start = cluster.today().plusDays(1);
+    cluster.createContract("C1", item.getId(), borrowerId, start, start.plusDays(1));
+
+    // A router settling the contract on the node of its item, wherever the generated item ID placed it
+    List<CreditLedger.Transfer> charges = new ArrayList<>();
+    for (TestNode node : List.of(memberNode, itemNode)) {
+      send(node, ClusterProtocol.EXPIRE, out -> ClusterProtocol.writeDate(out, start.plusDays(2)));
+      charges.addAll(pending(node));
+    }
+    assertEquals(1, charges.size());
+    assertTrue(cluster.reconcile());
+    assertEquals(90, cluster.getMember(borrowerId).getCredits());
+    assertEquals(10, cluster.getMember(ownerId).getCredits());
+
+    // A router that read the outbox before the charge was acknowledged delivers it late, after the nodes
+    // restarted, one of them with the contract or item of a member of the other
+    memberNode.kill();
+    itemNode.kill();
+    memberNode.restart();
+    itemNode.restart();
+    send(memberNode, ClusterProtocol.APPLY_CREDITS, out -> ClusterProtocol.writeTransfers(out, charges));
+    assertEquals(90, cluster.getMember(borrowerId).getCredits());
+
+    // The contract ID booked again is charged again
+    cluster.deleteContract("C1");
+    LocalDate again = start.plusDays(5);
+    cluster.createContract("C1", item.getId(), borrowerId, again, again);
+    cluster.advanceAndSettle(10);
+    assertEquals(80, cluster.getMember(borrowerId).getCredits());
+  }
+
+  @Test
+  void listingOfDeletedOwnerIsUndone() throws Exception {
+    String ownerId = idOn(memberNode, "M");
+    Member owner = cluster.createMember(ownerId, "Owner", "owner@example.com", "0701234567", 100);
+    Item item = newItem(owner, 30);
+
+    send(itemNode, ClusterProtocol.ADD_ITEM, out -> ClusterProtocol.writeItem(out, item));
+    itemNode.kill();
+    itemNode.restart();
+    cluster.deleteMember(ownerId);
+    assertTrue(cluster.reconcile());
+
+    assertTrue(cluster.listItems().stream().noneMatch(listed -> listed.getId().equals(item.getId())));
+    assertEquals(0, pending(itemNode).size());
+  }
+
+  @Test
+  void memberIdLeftOnAnotherNodeIsNotGivenOutAgain() throws Exception {
+    String id = idOn(memberNode, "M");
+    send(itemNode, ClusterProtocol.ADD_MEMBER, out -> {
+      ClusterProtocol.writeString(out, id);
+      ClusterProtocol.writeString(out, "Copied");
+      ClusterProtocol.writeString(out, "copied@example.com");
+      ClusterProtocol.writeString(out, "0701234567");
+      out.writeInt(0);
+    });
+
+    Result<Member> created = cluster.tryCreateMember(id, "New", "new@example.com", "0707654321", 0);
+    assertFalse(created.isOk());
+    assertEquals(ModelError.ID_EXISTS, created.getError());
+    assertTrue(cluster.tryCreateMember(idOn(memberNode, "N"), "New", "new@example.com", "0707654321", 0).isOk());
+  }
+
+  /**
+   * Returns an ID with the given prefix that the ring places on the node.
+   */
+  private String idOn(TestNode node, String prefix) {
+    for (int i = 0;; i++) {
+      String id = prefix + i;
+      if (ring.owner(id).equals(node.address())) {
+        return id;
+      }
+    }
+  }
+
+  private Item newItem(Member owner, int cost) {
+    return new Item(idOn(itemNode, "I"), owner, "Canoe", cost);
+  }
+
+  private static List<CreditLedger.Transfer> pending(TestNode node) throws IOException {
+    return send(node, ClusterProtocol.OUTBOX, out -> { }, ClusterProtocol::readTransfers);
+  }
+
+  private static void send(TestNode node, int operation, ClusterProtocol.Request request) throws IOException {
+    send(node, operation, request, in -> null);
+  }
+
+  /**
+   * Sends one request to a node as a router would, failing unless the node
+   * accepts it.
+   */
+  private static <T> T send(TestNode node, int operation, ClusterProtocol.Request request,
+      ClusterProtocol.Reply<T> reply) throws IOException {
+    try (Socket socket = new Socket("localhost", node.port);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+      out.writeByte(operation);
+      request.write(out);
+      out.flush();
+      assertEquals(ClusterProtocol.OK, in.readUnsignedByte());
+      return reply.read(in);
+    }
+  }
+
+  /**
+   * A node process and the event log that outlives it.
+   */
+  private final class TestNode {
+    private final Path log;
+    private final int port;
+    private Process process;
+
+    private TestNode(String name) throws IOException {
+      log = directory.resolve(name + ".log");
+      process = start(0);
+      port = listening(process);
+    }
+
+    private String address() {
+      return "localhost:" + port;
+    }
+
+    private void kill() throws InterruptedException {
+      process.destroyForcibly().waitFor();
+    }
+
+    private void restart() throws IOException {
+      process = start(port);
+      assertEquals(port, listening(process));
+      // The connections the router keeps open broke with the old process
+      cluster.close();
+    }
+
+    private Process start(int nodePort) throws IOException {
+      List<String> command = List.of(System.getProperty("java.home") + File.separator + "bin" + File.separator
+          + "java", "-cp", System.getProperty("java.class.path"), "controller.App", "--event-log", log.toString(),
+          "--node", String.valueOf(nodePort));
+      Process started = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      processes.add(started);
+      return started;
+    }
+
+    /**
+     * Reads the output of the process up to the line announcing its port.
+     */
+    private int listening(Process started) throws IOException {
+      BufferedReader out = started.inputReader(StandardCharsets.UTF_8);
+      for (String line = out.readLine(); line != null; line = out.readLine()) {
+        if (line.startsWith(LISTENING)) {
+          return Integer.parseInt(line.substring(LISTENING.length()).trim());
+        }
+      }
+      throw new IOException("Node exited before listening");
+    }
+  }
+}
@@ -0,0 +1,245 @@
+package controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Kills the application at random points while it books contracts into an
+ * event log, tears the end of the log the way a power failure would, and
+ * checks that every restart recovers quickly to a consistent prefix of what
+ * was booked.
+ *
+ * <p>
+ * Every round runs a script of contract bookings in a new process and kills
+ * it once the log has grown by a random amount, often across a segment
+ * boundary. Then the tail is left as is, cut in the middle of a record,
+ * followed by random bytes, or followed by zeros. The log must replay to the
+ * contracts of every round booked in order without a gap and with the
+ * values booked, opening it for appending must cut off exactly what did not
+ * replay, and the next round's process must rebuild the same events.
+ * </p>
+ */
+public class EventLogCrashTest {
+  private static final String REBUILT = "Rebuilt the model from ";
+  private static final String CUT_OFF = "Cut off ";
+  private static final int ROUNDS = 6;
+  private static final int ITEMS = 100;
+  private static final int CONTRACTS = 400_000;
+  private static final LocalDate FIRST_DAY = LocalDate.of(2090, 1, 1);
+  private static final long RECOVERY_MILLIS = 500;
+  private static final long TIMEOUT_MILLIS = 60_000;
+
+  private final Random random = new Random(50);
+  private Path directory;
+  private Path log;
+
+  @BeforeEach
+  void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("crash");
+    log = directory.resolve("events.log");
+  }
+
+  @AfterEach
+  void deleteDirectory() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Test
+  void recoversConsistentPrefixAfterEveryCrash() throws Exception {
+    long events = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      Path output = directory.resolve("round" + round + ".out");
+      Process process = start(output, "--event-log", log.toString(), "--batch", script(round).toString());
+      long target = size(log) + 256 * 1024 + random.nextInt(3 << 20);
+      long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+      while (process.isAlive() && size(log) < target) {
+        assertTrue(System.currentTimeMillis() < deadline, "Round " + round + " did not grow the log in time");
+        Thread.sleep(1);
+      }
+      process.destroyForcibly().waitFor();
+      if (round > 0) {
+        assertRebuilt(output, events);
+      }
+      tearTail();
+
+      Recovered recovered = replay();
+      recovered.check(round);
+      events = recovered.events;
+      assertOpensAt(recovered.end);
+    }
+
+    // A last clean start recovers the torn tail of the last round and exits normally
+    Path output = directory.resolve("final.out");
+    Path empty = Files.createFile(directory.resolve("empty.txt"));
+    long torn = Files.size(log) - replay().end;
+    Process process = start(output, "--event-log", log.toString(), "--batch", empty.toString());
+    assertEquals(0, process.waitFor());
+    assertRebuilt(output, events);
+    List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+    assertEquals(torn > 0, lines.stream().anyMatch(line -> line.startsWith(CUT_OFF + torn + " bytes")));
+    assertEquals(Files.size(log), replay().end);
+  }
+
+  /**
+   * Writes the bookings of a round: its items, then contracts spread over
+   * them without overlapping.
+   */
+  private Path script(int round) throws IOException {
+    Path script = directory.resolve("round" + round + ".txt");
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(script, StandardCharsets.UTF_8))) {
+      out.println("member.create OWNER Owner owner@example.com 1 0");
+      out.println("member.create BORROWER Borrower borrower@example.com 2 1000");
+      for (int i = 0; i < ITEMS; i++) {
+        out.println("item.create OWNER \"Round " + round + " item " + i + "\" 0 @i" + i);
+      }
+      for (int n = 0; n < CONTRACTS; n++) {
+        LocalDate day = day(n);
+        out.println("contract.create R" + round + "C" + n + " @i" + n % ITEMS + " BORROWER " + day + " " + day);
+      }
+    }
+    return script;
+  }
+
+  private static long size(Path file) throws IOException {
+    return Files.exists(file) ? Files.size(file) : 0;
+  }
+
+  private static LocalDate day(int contract) {
+    return FIRST_DAY.plusDays(contract / ITEMS * 2L);
+  }
+
+  /**
+   * Leaves the end of the log torn in one of four ways.
+   */
+  private void tearTail() throws IOException {
+    try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+      long size = channel.size();
+      switch (random.nextInt(4)) {
+        case 0:
+          break;
+        case 1:
+          channel.truncate(Math.max(0, size - 1 - random.nextInt(64)));
+          break;
+        case 2:
+          byte[] garbage = new byte[1 + random.nextInt(8192)];
+          random.nextBytes(garbage);
+          channel.write(ByteBuffer.wrap(garbage), size);
+          break;
+        default:
+          channel.write(ByteBuffer.allocate(1 + random.nextInt(8192)), size);
+          break;
+      }
+    }
+  }
+
+  /**
+   * Opens a copy of the log for appending, as a restart does, and checks it
+   * cuts the copy off where replaying stopped, quickly.
+   */
+  private void assertOpensAt(long end) throws IOException {
+    Path copy = directory.resolve("copy.log");
+    Files.copy(log, copy);
+    long start = System.nanoTime();
+    try (EventLog opened = new EventLog(copy)) {
+      long millis = (System.nanoTime() - start) / 1_000_000;
+      assertTrue(millis < RECOVERY_MILLIS, "Opening the log took " + millis + " ms");
+      assertEquals(end, opened.size());
+      assertEquals(Files.size(log) - end, opened.getTruncated());
+    }
+    assertEquals(end, Files.size(copy));
+    Files.delete(copy);
+  }
+
+  /**
+   * Checks that the process rebuilt the given number of events, the ones the
+   * log held after the previous round.
+   */
+  private static void assertRebuilt(Path output, long events) throws IOException {
+    String rebuilt = Files.readAllLines(output, StandardCharsets.UTF_8).stream()
+        .filter(line -> line.startsWith(REBUILT)).findFirst().orElse("");
+    assertTrue(rebuilt.startsWith(REBUILT + events + " events"), "Expected " + events + " events: " + rebuilt);
+  }
+
+  private Recovered replay() throws IOException {
+    Recovered recovered = new Recovered();
+    recovered.end = EventLog.replay(log, 0, recovered::apply);
+    return recovered;
+  }
+
+  private Process start(Path output, String... args) throws IOException {
+    List<String> command = new ArrayList<>(List.of(System.getProperty("java.home") + File.separator + "bin"
+        + File.separator + "java", "-cp", System.getProperty("java.class.path"), "controller.App"));
+    command.addAll(List.of(args));
+    return new ProcessBuilder(command).redirectOutput(output.toFile())
+        .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+  }
+
+  /**
+   * The events of the log as replayed: the contracts booked by every round in
+   * order, each checked against the script when read.
+   */
+  private static final class Recovered {
+    private final Set<String> items = new HashSet<>();
+    private final Map<Integer, Integer> booked = new HashMap<>();
+    private long events;
+    private long end;
+
+    private void apply(DomainEvent event) {
+      events++;
+      if (event.getType() == DomainEvent.Type.ITEM_LISTED) {
+        items.add(event.getId());
+      }
+      if (event.getType() != DomainEvent.Type.CONTRACT_BOOKED || !event.getId().startsWith("R")) {
+        return;
+      }
+      String id = event.getId();
+      int round = Integer.parseInt(id.substring(1, id.indexOf('C')));
+      int contract = Integer.parseInt(id.substring(id.indexOf('C') + 1));
+      int next = booked.getOrDefault(round, 0);
+      assertEquals(next, contract, "Contract " + id + " after a gap");
+      assertTrue(items.contains(event.getReference()), "Contract " + id + " of an unknown item");
+      assertEquals("BORROWER", event.getBorrowerId());
+      assertEquals(day(contract), event.getStartDate());
+      assertEquals(day(contract), event.getEndDate());
+      booked.put(round, next + 1);
+    }
+
+    /**
+     * Checks that the rounds up to this one booked contracts, and that
+     * no round booked more than its script.
+     */
+    private void check(int round) {
+      for (int i = 0; i <= round; i++) {
+        int count = booked.getOrDefault(i, 0);
+        assertTrue(count > 0 && count <= CONTRACTS, "Round " + i + " has " + count + " contracts");
+      }
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs a leader and a follower as two processes of the application and fails
+ * over from one to the other.
+ */
+public class ReplicationFailoverTest {
+  private static final String HTTP = "HTTP API listening on port ";
+  private static final String REPLICATION = "Replicating the event log on port ";
+  private static final long TIMEOUT_MILLIS = 10_000;
+
+  private final HttpClient client = HttpClient.newHttpClient();
+  private final List<Process> processes = new ArrayList<>();
+  private Path directory;
+
+  @BeforeEach
+  void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("replication");
+  }
+
+  @AfterEach
+  void stopProcesses() throws IOException, InterruptedException {
+    for (Process process : processes) {
+      process.destroyForcibly().waitFor();
+    }
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Test
+  void followerServesReadsAndTakesOverWhenPromoted() throws Exception {
+    Process leader = start("--event-log", directory.resolve("leader.log").toString(), "--replicate", "0",
+        "--http", "0");
+    int replication = port(leader, REPLICATION);
+    int leaderHttp = port(leader, HTTP);
+    Path copy = directory.resolve("follower.log");
+    Process follower = start("--event-log", copy.toString(), "--follow", "localhost:" + replication, "--http", "0");
+    int followerHttp = port(follower, HTTP);
+
+    assertEquals(201, post(leaderHttp, "/members", "id=R1&name=Replicated&email=r1@example.com&phone=5550000001"
+        + "&credits=40").statusCode());
+    awaitStatus(followerHttp, "/members/R1", 200);
+    assertEquals(get(leaderHttp, "/items").body(), get(followerHttp, "/items").body());
+    assertEquals(get(leaderHttp, "/contracts").body(), get(followerHttp, "/contracts").body());
+    assertTrue(get(followerHttp, "/replication").body().contains("\"lagBytes\":0"));
+    assertEquals(503, post(followerHttp, "/members", "id=R2&name=Refused&email=r2@example.com&phone=5550000002"
+        + "&credits=40").statusCode());
+
+    leader.destroyForcibly().waitFor();
+    HttpResponse<String> promoted = post(followerHttp, "/replication/promote", "");
+    assertEquals(200, promoted.statusCode());
+    assertTrue(promoted.body().contains("\"role\":\"primary\""));
+    assertEquals(201, post(followerHttp, "/members", "id=R3&name=After&email=r3@example.com&phone=5550000003"
+        + "&credits=40").statusCode());
+
+    // The promoted copy of the log is a complete event log of its own
+    follower.destroy();
+    follower.waitFor();
+    Process restarted = start("--event-log", copy.toString(), "--http", "0");
+    int restartedHttp = port(restarted, HTTP);
+    assertEquals(200, get(restartedHttp, "/members/R1").statusCode());
+    assertEquals(200, get(restartedHttp, "/members/R3").statusCode());
+  }
+
+  @Test
+  void followerReconnectsToRestartedLeader() throws Exception {
+    Path log = directory.resolve("leader.log");
+    Process leader = start("--event-log", log.toString(), "--replicate", "0", "--http", "0");
+    int replication = port(leader, REPLICATION);
+    int leaderHttp = port(leader, HTTP);
+    Process follower = start("--event-log", directory.resolve("follower.log").toString(), "--follow",
+        "localhost:" + replication, "--http", "0");
+    int followerHttp = port(follower, HTTP);
+
+    assertEquals(201, post(leaderHttp, "/members", "id=R1&name=Replicated&email=r1@example.com&phone=5550000001"
+        + "&credits=40").statusCode());
+    awaitStatus(followerHttp, "/members/R1", 200);
+
+    // The follower's copy holds nothing the restarted leader lacks, so it is still a prefix of the log
+    leader.destroyForcibly().waitFor();
+    Process restarted = start("--event-log", log.toString(), "--replicate", String.valueOf(replication), "--http",
+        "0");
+    int restartedHttp = port(restarted, HTTP);
+    assertEquals(201, post(restartedHttp, "/members", "id=R2&name=Restarted&email=r2@example.com"
+        + "&phone=5550000002&credits=40").statusCode());
+    awaitStatus(followerHttp, "/members/R2", 200);
+  }
+
+  private Process start(String... args) throws IOException {
+    List<String> command = new ArrayList<>(List.of(System.getProperty("java.home") + File.separator + "bin"
+        + File.separator + "java", "-cp", System.getProperty("java.class.path"), "controller.App"));
+    command.addAll(List.of(args));
+    Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    processes.add(process);
+    return process;
+  }
+
+  /**
+   * Reads the output of the process up to the line announcing a port.
+   */
+  private static int port(Process process, String prefix) throws IOException {
+    BufferedReader out = process.inputReader(StandardCharsets.UTF_8);
+    for (String line = out.readLine(); line != null; line = out.readLine()) {
+      if (line.startsWith(prefix)) {
+        return Integer.parseInt(line.substring(prefix.length()).trim());
+      }
+    }
+    throw new IOException("Process exited before printing " + prefix);
+  }
+
+  private void awaitStatus(int port, String path, int status) throws Exception {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (get(port, path).statusCode() != status) {
+      assertTrue(System.currentTimeMillis() < deadline, path + " did not answer " + status + " in time");
+      Thread.sleep(20);
+    }
+  }
+
+  private HttpResponse<String> get(int port, String path) throws IOException, InterruptedException {
+    return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).build(),
+        HttpResponse.BodyHandlers.ofString());
+  }
+
+  private HttpResponse<String> post(int port, String path, String form) throws IOException, InterruptedException {
+    return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+        .header("Content-Type", "application/x-www-form-urlencoded")
+        .POST(HttpRequest.BodyPublishers.ofString(form)).build(), HttpResponse.BodyHandlers.ofString());
+  }
+}